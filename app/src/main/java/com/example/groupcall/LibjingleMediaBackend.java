@@ -0,0 +1,235 @@
+package com.example.groupcall;
+
+import android.util.Log;
+
+import org.webrtc.AudioTrack;
+import org.webrtc.DataChannel;
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.MediaStream;
+import org.webrtc.PeerConnection;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.SdpObserver;
+import org.webrtc.SessionDescription;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * libjingle PeerConnections for {@link CallSignaling}. Every connection
+ * sends the current local stream and keeps the remote streams it received,
+ * by label, for the app to render; its data channels and stats stay with the
+ * app. ICE servers and the local stream are set on the signaling thread
+ * before the connections that use them are created.
+ */
+class LibjingleMediaBackend implements MediaBackend<LibjingleMediaBackend.Connection> {
+    private final static String Tag = LibjingleMediaBackend.class.getCanonicalName();
+    private final PeerConnectionFactory factory;
+    private final MediaConstraints constraints;
+    // same as constraints, plus new ICE credentials
+    private final MediaConstraints iceRestartConstraints;
+    private List<PeerConnection.IceServer> iceServers = new LinkedList<>();
+    private MediaStream localStream;
+
+    LibjingleMediaBackend(PeerConnectionFactory factory, MediaConstraints constraints, MediaConstraints iceRestartConstraints) {
+        this.factory = factory;
+        this.constraints = constraints;
+        this.iceRestartConstraints = iceRestartConstraints;
+    }
+
+    void setIceServers(List<PeerConnection.IceServer> iceServers) {
+        this.iceServers = iceServers;
+    }
+
+    void setLocalStream(MediaStream localStream) {
+        this.localStream = localStream;
+    }
+
+    @Override
+    public Connection createPeer(String id, Events events) {
+        return new Connection(id, events);
+    }
+
+    final class Connection implements Peer {
+        final PeerConnection peerConnection;
+        private final MediaStream localStream = LibjingleMediaBackend.this.localStream;
+        private final ConcurrentHashMap<String, MediaStream> remoteStreams = new ConcurrentHashMap<>();
+        // run once on close, e.g. the app's data channels
+        private final List<Runnable> closers = new CopyOnWriteArrayList<>();
+        private boolean closed;
+
+        private Connection(String id, Events events) {
+            Log.d(Tag, "new PeerConnection for " + id);
+            this.peerConnection = factory.createPeerConnection(iceServers, constraints, new Observer(id, events));
+            peerConnection.addStream(localStream);
+        }
+
+        // null once removed, or if it never arrived
+        MediaStream stream(String label) {
+            return remoteStreams.get(label);
+        }
+
+        Collection<MediaStream> streams() {
+            return remoteStreams.values();
+        }
+
+        void updateIce(List<PeerConnection.IceServer> servers) {
+            peerConnection.updateIce(servers, constraints);
+        }
+
+        void onClose(Runnable closer) {
+            closers.add(closer);
+        }
+
+        @Override
+        public void createOffer(SdpCallback callback, boolean iceRestart) {
+            peerConnection.createOffer(observer(callback), iceRestart ? iceRestartConstraints : constraints);
+        }
+
+        @Override
+        public void createAnswer(SdpCallback callback) {
+            peerConnection.createAnswer(observer(callback), constraints);
+        }
+
+        @Override
+        public void setLocalDescription(SdpCallback callback, String type, String description) {
+            peerConnection.setLocalDescription(observer(callback), description(type, description));
+        }
+
+        @Override
+        public void setRemoteDescription(SdpCallback callback, String type, String description) {
+            peerConnection.setRemoteDescription(observer(callback), description(type, description));
+        }
+
+        @Override
+        public void addIceCandidate(Candidate candidate) {
+            peerConnection.addIceCandidate(new IceCandidate(candidate.mid, candidate.mLineIndex, candidate.sdp));
+        }
+
+        @Override
+        public boolean hasRemoteDescription() {
+            return peerConnection.getRemoteDescription() != null;
+        }
+
+        @Override
+        public SignalingState signalingState() {
+            switch (peerConnection.signalingState()) {
+                case HAVE_LOCAL_OFFER:
+                case HAVE_LOCAL_PRANSWER:
+                    return SignalingState.HAVE_LOCAL_OFFER;
+                case HAVE_REMOTE_OFFER:
+                case HAVE_REMOTE_PRANSWER:
+                    return SignalingState.HAVE_REMOTE_OFFER;
+                case CLOSED:
+                    return SignalingState.CLOSED;
+                default:
+                    return SignalingState.STABLE;
+            }
+        }
+
+        // signaling thread only
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Runnable closer : closers) {
+                closer.run();
+            }
+            // dispose() would dispose the shared local stream too
+            peerConnection.removeStream(localStream);
+            peerConnection.dispose();
+            remoteStreams.clear();
+        }
+
+        private final class Observer implements PeerConnection.Observer {
+            private final String id;
+            private final Events events;
+
+            private Observer(String id, Events events) {
+                this.id = id;
+                this.events = events;
+            }
+
+            @Override
+            public void onSignalingChange(PeerConnection.SignalingState signalingState) {
+            }
+
+            @Override
+            public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
+                events.onIceConnectionChange(IceConnectionMonitor.Ice.valueOf(iceConnectionState.name()));
+            }
+
+            @Override
+            public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
+            }
+
+            @Override
+            public void onIceCandidate(IceCandidate iceCandidate) {
+                events.onIceCandidate(new Candidate(iceCandidate.sdpMid, iceCandidate.sdpMLineIndex, iceCandidate.sdp));
+            }
+
+            @Override
+            public void onAddStream(MediaStream mediaStream) {
+                Log.d(Tag, "On Add Stream " + mediaStream.label());
+                remoteStreams.put(mediaStream.label(), mediaStream);
+                List<String> audioTrackIds = new ArrayList<>();
+                for (AudioTrack track : mediaStream.audioTracks) {
+                    audioTrackIds.add(track.id());
+                }
+                events.onAddStream(mediaStream.label(), audioTrackIds);
+            }
+
+            @Override
+            public void onRemoveStream(MediaStream mediaStream) {
+                Log.d(Tag, "On Remove Stream " + mediaStream.label());
+                remoteStreams.remove(mediaStream.label());
+                events.onRemoveStream(mediaStream.label());
+            }
+
+            @Override
+            public void onDataChannel(DataChannel dataChannel) {
+                // app messages only use the negotiated channels
+                Log.d(Tag, "Closing in-band data channel " + dataChannel.label() + " from " + id);
+                dataChannel.close();
+            }
+
+            @Override
+            public void onRenegotiationNeeded() {
+            }
+        }
+    }
+
+    static SessionDescription description(String type, String description) {
+        return new SessionDescription(SessionDescription.Type.fromCanonicalForm(type), description);
+    }
+
+    private static SdpObserver observer(final SdpCallback callback) {
+        return new SdpObserver() {
+            @Override
+            public void onCreateSuccess(SessionDescription created) {
+                callback.onCreateSuccess(created.type.canonicalForm(), created.description);
+            }
+
+            @Override
+            public void onSetSuccess() {
+                callback.onSetSuccess();
+            }
+
+            @Override
+            public void onCreateFailure(String error) {
+                callback.onCreateFailure(error);
+            }
+
+            @Override
+            public void onSetFailure(String error) {
+                callback.onSetFailure(error);
+            }
+        };
+    }
+}
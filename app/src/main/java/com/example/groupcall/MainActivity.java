@@ -39,7 +39,7 @@ public class MainActivity extends Activity implements WebRTCClient.PeerListener{
     private GLSurfaceView surfaceView;
     private String callerId;
     private VideoRenderer.Callbacks localRender;
-    private VideoRenderer.Callbacks remoteRender;
+    private VideoCompositor compositor;
     private final VideoRendererGui.ScalingType scalingType = VideoRendererGui.ScalingType.SCALE_ASPECT_FILL;
 
     // Local preview screen position before call is connected.
@@ -52,19 +52,28 @@ public class MainActivity extends Activity implements WebRTCClient.PeerListener{
     private static final int LOCAL_Y_CONNECTED = 72;
     private static final int LOCAL_WIDTH_CONNECTED = 25;
     private static final int LOCAL_HEIGHT_CONNECTED = 25;
-    // Remote video screen position
-    private static final int REMOTE_X = 0;
-    private static final int REMOTE_Y = 0;
-    private static final int REMOTE_WIDTH = 100;
-    private static final int REMOTE_HEIGHT = 100;
+    // Remote video tiles, re-laid out as participants join and leave
+    private static final TileLayout.Mode REMOTE_LAYOUT = TileLayout.Mode.GRID;
+    private static final int REMOTE_TILES_PREALLOCATED = 4;
+    // beyond this many participants the active speaker gets the large tile
+    private static final int REMOTE_GRID_MAX = 4;
+    // loudest participants rendered at full rate, then thumbnails, the rest paused
+    private static final int REMOTE_FULL_RATE = 2;
+    private static final int REMOTE_THUMBNAIL_FPS = 5;
+    private static final int REMOTE_RENDERED = 9;
+    // remote participants the room takes, one render slot each
+    private static final int MAX_PEERS = REMOTE_RENDERED;
 
 
     private void renderInit(){
         int height = Resources.getSystem().getDisplayMetrics().heightPixels-100;
         int width = Resources.getSystem().getDisplayMetrics().widthPixels-50;
-        P2PConnectionParameters parameters = new P2PConnectionParameters(true,false,width,height,30,1,VideoCodec,true,1,AudioCodec,true);
+        P2PConnectionParameters parameters = new P2PConnectionParameters(true,false,width,height,30,1,VideoCodec,true,1,AudioCodec,true)
+                .withMaxPeers(MAX_PEERS);
         //instantiate the client class and refer this class as observer
         client = new WebRTCClient(this,socketAddress,parameters,VideoRendererGui.getEGLContext());
+        // camera and an offering connection get ready while the link is being shared
+        client.warmUp(1);
     }
 
     @Override
@@ -141,10 +150,8 @@ public class MainActivity extends Activity implements WebRTCClient.PeerListener{
 
     @Override
     public void onAddRemoteStream(MediaStream remoteStream, int endPoint) {
-        remoteStream.videoTracks.get(0).addRenderer(new VideoRenderer(remoteRender));
-        VideoRendererGui.update(remoteRender,
-                REMOTE_X, REMOTE_Y,
-                REMOTE_WIDTH, REMOTE_HEIGHT, scalingType, false);
+        compositor.add(endPoint).attach(remoteStream.videoTracks.get(0));
+        updateRemoteLayout();
         VideoRendererGui.update(localRender,
                 LOCAL_X_CONNECTED, LOCAL_Y_CONNECTED,
                 LOCAL_WIDTH_CONNECTED, LOCAL_HEIGHT_CONNECTED,
@@ -153,12 +160,36 @@ public class MainActivity extends Activity implements WebRTCClient.PeerListener{
 
     @Override
     public void onRemoveRemoteStream(int endPoint) {
+        compositor.remove(endPoint);
+        updateRemoteLayout();
+        if (compositor.size() > 0) {
+            return;
+        }
         VideoRendererGui.update(localRender,
                 LOCAL_X_CONNECTING, LOCAL_Y_CONNECTING,
                 LOCAL_WIDTH_CONNECTING, LOCAL_HEIGHT_CONNECTING,
                 scalingType, false);
     }
 
+    @Override
+    public void onBackgroundChanged(boolean background) {
+        compositor.setSuspended(background);
+    }
+
+    @Override
+    public int attachedRenderers() {
+        return compositor.attachedRenderers();
+    }
+
+    @Override
+    public void onActiveSpeakerChanged(int endPoint, List<Integer> ranking) {
+        compositor.prioritize(endPoint, ranking, REMOTE_FULL_RATE, REMOTE_THUMBNAIL_FPS, REMOTE_RENDERED);
+    }
+
+    private void updateRemoteLayout() {
+        compositor.setMode(compositor.size() > REMOTE_GRID_MAX ? TileLayout.Mode.SPEAKER : REMOTE_LAYOUT);
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -187,7 +218,11 @@ public class MainActivity extends Activity implements WebRTCClient.PeerListener{
         surfaceView.setKeepScreenOn(true);
         VideoRendererGui.setView(surfaceView,()->{renderInit();});
 
-        remoteRender = VideoRendererGui.create(REMOTE_X,REMOTE_Y,REMOTE_WIDTH,REMOTE_HEIGHT,scalingType,false);
+        compositor = new VideoCompositor(REMOTE_LAYOUT, scalingType, REMOTE_TILES_PREALLOCATED, (endPoint, tile) -> {
+            if (client != null) {
+                client.subscribe(endPoint, tile.width, tile.height);
+            }
+        });
         localRender = VideoRendererGui.create(LOCAL_X_CONNECTING,LOCAL_Y_CONNECTING,LOCAL_WIDTH_CONNECTING,LOCAL_HEIGHT_CONNECTING,scalingType,true);
 
         final Intent intent = getIntent();
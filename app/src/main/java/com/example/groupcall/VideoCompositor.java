@@ -0,0 +1,250 @@
+package com.example.groupcall;
+
+import android.util.Log;
+
+import org.webrtc.VideoRenderer;
+import org.webrtc.VideoRendererGui;
+import org.webrtc.VideoTrack;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Places remote video tracks on the shared GL view using {@link TileLayout}.
+ * GL renderers are pooled: a tile that goes away parks its renderer at zero
+ * size and the next participant reuses it, so joins and leaves never create
+ * textures or touch the GL view itself.
+ */
+class VideoCompositor {
+    private final static String Tag = "VideoCompositor";
+
+    interface Listener {
+        // called for every tile whose rectangle changed, e.g. to resubscribe to a layer that fits
+        void onTileChanged(int endPoint, TileLayout.Tile tile);
+    }
+
+    // render rate of a tile, 0 renders every frame
+    static final int PausedFps = -1;
+
+    /** The render callbacks of one participant. */
+    static final class Tile implements VideoRenderer.Callbacks {
+        final int endPoint;
+        final FrameCounter frames = new FrameCounter(FrameCounter.DefaultDisplayIntervalNs);
+        private final VideoRenderer.Callbacks target;
+        private volatile boolean visible;
+        // < 0 paused, 0 unthrottled
+        private volatile long minFrameIntervalNs;
+        private TileLayout.Tile rect;
+        private VideoTrack track;
+        // null while parked
+        private VideoRenderer renderer;
+        // in the background: the track is kept but no renderer is on it
+        private boolean parked;
+
+        private Tile(int endPoint, VideoRenderer.Callbacks target) {
+            this.endPoint = endPoint;
+            this.target = target;
+        }
+
+        @Override
+        public void renderFrame(VideoRenderer.I420Frame frame) {
+            if (frames.onFrame(System.nanoTime(), visible, minFrameIntervalNs)) {
+                target.renderFrame(frame);
+            }
+        }
+
+        synchronized void attach(VideoTrack videoTrack) {
+            detach();
+            track = videoTrack;
+            if (!parked) {
+                addRenderer();
+            }
+        }
+
+        private synchronized void detach() {
+            removeRenderer();
+            track = null;
+        }
+
+        private synchronized void park(boolean park) {
+            parked = park;
+            if (park) {
+                removeRenderer();
+            } else if (track != null && renderer == null) {
+                addRenderer();
+            }
+        }
+
+        private synchronized boolean hasRenderer() {
+            return renderer != null;
+        }
+
+        private void addRenderer() {
+            renderer = new VideoRenderer(this);
+            track.addRenderer(renderer);
+        }
+
+        private void removeRenderer() {
+            if (renderer != null) {
+                track.removeRenderer(renderer);
+                renderer.dispose();
+                renderer = null;
+            }
+        }
+    }
+
+    private final VideoRendererGui.ScalingType scalingType;
+    private final TileLayout layout;
+    private final Listener listener;
+    private final Map<Integer, Tile> tiles = new HashMap<>();
+    private final ArrayDeque<VideoRenderer.Callbacks> pool = new ArrayDeque<>();
+    private boolean suspended;
+
+    /**
+     * VideoRendererGui draws renderers in creation order, so {@code preallocated}
+     * renderers are created up front; constructing the compositor before the
+     * local preview keeps the preview on top of the first tiles.
+     */
+    VideoCompositor(TileLayout.Mode mode, VideoRendererGui.ScalingType scalingType, int preallocated, Listener listener) {
+        this.layout = new TileLayout(mode);
+        this.scalingType = scalingType;
+        this.listener = listener;
+        for (int i = 0; i < preallocated; i++) {
+            pool.add(VideoRendererGui.create(0, 0, 0, 0, scalingType, false));
+        }
+    }
+
+    /** Creates the tile of a participant, or returns the existing one. */
+    synchronized Tile add(int endPoint) {
+        Tile tile = tiles.get(endPoint);
+        if (tile != null) {
+            return tile;
+        }
+        VideoRenderer.Callbacks target = pool.poll();
+        if (target == null) {
+            target = VideoRendererGui.create(0, 0, 0, 0, scalingType, false);
+        }
+        tile = new Tile(endPoint, target);
+        tile.parked = suspended;
+        tiles.put(endPoint, tile);
+        if (layout.add(endPoint)) {
+            apply();
+        }
+        return tile;
+    }
+
+    synchronized void remove(int endPoint) {
+        Tile tile = tiles.remove(endPoint);
+        if (tile == null) {
+            return;
+        }
+        tile.visible = false;
+        tile.detach();
+        Log.d(Tag, "Tile " + endPoint + " removed, " + tile.frames);
+        VideoRendererGui.update(tile.target, 0, 0, 0, 0, scalingType, false);
+        pool.push(tile.target);
+        if (layout.remove(endPoint)) {
+            apply();
+        }
+    }
+
+    /**
+     * Takes the renderers off every remote track while suspended, so no frame
+     * is converted or uploaded, and puts them back afterwards. Tiles keep their
+     * place, tiles added meanwhile start suspended.
+     */
+    synchronized void setSuspended(boolean suspend) {
+        suspended = suspend;
+        for (Tile tile : tiles.values()) {
+            tile.park(suspend);
+        }
+    }
+
+    synchronized int attachedRenderers() {
+        int attached = 0;
+        for (Tile tile : tiles.values()) {
+            attached += tile.hasRenderer() ? 1 : 0;
+        }
+        return attached;
+    }
+
+    synchronized void setMode(TileLayout.Mode mode) {
+        if (layout.setMode(mode)) {
+            apply();
+        }
+    }
+
+    synchronized void setSpeaker(int endPoint) {
+        if (layout.setSpeaker(endPoint)) {
+            apply();
+        }
+    }
+
+    /** Caps how often a tile is redrawn: {@link #PausedFps}, 0 for every frame, or a frame rate. */
+    synchronized void setRenderRate(int endPoint, int fps) {
+        Tile tile = tiles.get(endPoint);
+        if (tile != null) {
+            tile.minFrameIntervalNs = fps < 0 ? -1 : fps == 0 ? 0 : 1_000_000_000L / fps;
+        }
+    }
+
+    /**
+     * Gives the speaker the large tile and sets render rates by rank: the first
+     * {@code fullRate} end points render every frame, the rest up to
+     * {@code rendered} at {@code thumbnailFps}, anyone further down is paused.
+     * Tiles without audio yet rank after everyone in {@code ranking}.
+     */
+    synchronized void prioritize(int speaker, List<Integer> ranking, int fullRate, int thumbnailFps, int rendered) {
+        if (speaker >= 0) {
+            setSpeaker(speaker);
+        }
+        List<Integer> order = new ArrayList<>();
+        for (Integer endPoint : ranking) {
+            if (tiles.containsKey(endPoint)) {
+                order.add(endPoint);
+            }
+        }
+        for (Integer endPoint : tiles.keySet()) {
+            if (!order.contains(endPoint)) {
+                order.add(endPoint);
+            }
+        }
+        for (int rank = 0; rank < order.size(); rank++) {
+            setRenderRate(order.get(rank), rank < fullRate ? 0 : rank < rendered ? thumbnailFps : PausedFps);
+        }
+    }
+
+    synchronized TileLayout.Mode mode() {
+        return layout.mode();
+    }
+
+    synchronized int size() {
+        return tiles.size();
+    }
+
+    /** Frame counters of the current tiles, by endpoint. */
+    synchronized Map<Integer, FrameCounter> frameCounters() {
+        Map<Integer, FrameCounter> counters = new HashMap<>();
+        for (Tile tile : tiles.values()) {
+            counters.put(tile.endPoint, tile.frames);
+        }
+        return counters;
+    }
+
+    private void apply() {
+        for (Map.Entry<Integer, TileLayout.Tile> entry : layout.tiles().entrySet()) {
+            Tile tile = tiles.get(entry.getKey());
+            TileLayout.Tile rect = entry.getValue();
+            if (rect.equals(tile.rect)) {
+                continue;
+            }
+            tile.rect = rect;
+            VideoRendererGui.update(tile.target, rect.x, rect.y, rect.width, rect.height, scalingType, false);
+            tile.visible = true;
+            listener.onTileChanged(tile.endPoint, rect);
+        }
+    }
+}
@@ -6,21 +6,40 @@ import android.util.Log;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.webrtc.AudioSource;
+import org.webrtc.AudioTrack;
 import org.webrtc.DataChannel;
-import org.webrtc.IceCandidate;
 import org.webrtc.MediaConstraints;
 import org.webrtc.MediaStream;
 import org.webrtc.PeerConnection;
 import org.webrtc.PeerConnectionFactory;
-import org.webrtc.SdpObserver;
-import org.webrtc.SessionDescription;
+import org.webrtc.StatsReport;
 import org.webrtc.VideoCapturer;
 import org.webrtc.VideoCapturerAndroid;
+import org.webrtc.VideoRenderer;
 import org.webrtc.VideoSource;
+import org.webrtc.VideoTrack;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ScheduledExecutorService;
 
 import android.opengl.EGLContext;
 
@@ -29,25 +48,72 @@ import io.socket.client.Socket;
 import io.socket.emitter.Emitter;
 
 public class WebRTCClient {
-    private final static int MaxPeers = 2;
     private final static String Tag = WebRTCClient.class.getCanonicalName();
+    private final static long StatsIntervalMs = 2000;
+    // audio levels are polled faster than the bandwidth stats so speaker changes feel immediate
+    private final static long AudioLevelIntervalMs = 300;
+    // servers are probed again this often, credentials are checked for expiry as well
+    private final static long IceServerRefreshIntervalMs = 60000;
+    // telemetry listeners get a snapshot this often; samples come with every stats poll
+    private final static long TelemetryIntervalMs = 10000;
+    private final static int MinAudioBitrateKbps = 6;
+    // signaling hosts that never answered the session handshake, so later calls do not wait for it again
+    private final static Set<String> LegacySignalingHosts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private PeerConnectionFactory factory;
-    private boolean[] endPoints = new boolean[MaxPeers];
-    private LinkedList<PeerConnection.IceServer> iceServers = new LinkedList<>();
-    private HashMap<String, Peer> peers = new HashMap<>();
-    private MediaConstraints peerMediaConstraints = new MediaConstraints();
+    // creates every PeerConnection with the ICE servers and local stream it was last given
+    private final LibjingleMediaBackend backend;
+    // session, outbox, peers, warm peers and topology; driven from the socket and the signaling thread
+    private final CallSignaling<LibjingleMediaBackend.Connection> signaling;
+    // false until the first list arrived; warm peers wait for it so they do not gather without STUN/TURN
+    private boolean iceServersReady;
+    private final IceServerPool iceServerPool;
+    // provider fetches and probes block on the network, so they get their own thread
+    private final ScheduledExecutorService iceServerScheduler = Executors.newSingleThreadScheduledExecutor();
     private MediaStream localMediaStream;
     private VideoSource videoSource;
+    private VideoCapturerAndroid videoCapturer;
+    private final VideoLayers videoLayers;
+    // caps the capture format while the encoder is overloaded; null without cpuOveruseDetection
+    private final CaptureLadder captureLadder;
+    // applied to every offer/answer we create before it is set and sent
+    private final SdpTransformer localSdpTransformer;
+    // layers remote subscribers asked for from our camera
+    private final LayerSubscriptions layerSubscriptions = new LayerSubscriptions(VideoLayers.Full);
+    private final CallMetrics metrics = new CallMetrics();
+    private final TelemetryCollector telemetry = new TelemetryCollector(TelemetryCollector.DefaultWindow);
+    // decode, dispatch and SDP callback latencies per message type
+    private final SignalingTimings signalingTimings = new SignalingTimings();
+    // every inbound command runs through it, signalingTimings outermost
+    private final CommandPipeline commandPipeline = new CommandPipeline();
+    private volatile SignalingTraceLog signalingTrace;
+    // binary trace of all signaling in and out, for reproducing failed calls
+    private volatile SignalingRecorder signalingRecorder;
+    // app messaging over the peers' DataChannels, usable from any thread
+    private final MessageFramer messageFramer = new MessageFramer(MessageFramer.DefaultMaxFrameBytes);
+    private final AtomicInteger nextMessageId = new AtomicInteger();
+    private final ConcurrentHashMap<String, CopyOnWriteArrayList<MessageListener>> subscriptions = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<AppChannel> openChannels = new CopyOnWriteArrayList<>();
+    private final ActiveSpeakerDetector speakerDetector = new ActiveSpeakerDetector(ActiveSpeakerDetector.DefaultWindow,
+            ActiveSpeakerDetector.DefaultHoldMs, ActiveSpeakerDetector.DefaultSwitchRatio, ActiveSpeakerDetector.DefaultSilenceLevel);
+    // OnPause until OnResume: no camera, no video sent or rendered, no stats polling
+    private boolean background;
+    // layer last asked for per end point, sent again when leaving the background
+    private final HashMap<Integer, Integer> requestedLayers = new HashMap<>();
+    private int captureLayer = VideoLayers.Full;
+    private int captureFps = -1;
+    // worst encoder load reported since the last adaptToEncoderLoad
+    private CaptureLadder.Load encoderLoad;
     private PeerListener peerListener;
+    private final String host;
     private P2PConnectionParameters connectionParameters;
     private Socket client;
+    // owns peers, the command map and every peer state transition
+    private final SignalingExecutor signalingExecutor = new SignalingExecutor(SignalingExecutor.DefaultOverflowThreshold);
+    private final ScheduledExecutorService signalingScheduler = Executors.newSingleThreadScheduledExecutor();
 
 
     //Interfaces
 
-    private interface Command {
-        void execute(String peerId, JSONObject payload) throws JSONException;
-    }
     public interface PeerListener {
         void receiveCallerId(String id);
 
@@ -60,6 +126,104 @@ public class WebRTCClient {
         void onAddRemoteStream(MediaStream remoteStream, int endPoint);
 
         void onRemoveRemoteStream(int endPoint);
+
+        // endPoint gets the large tile (-1 when nobody speaks); ranking lists end points loudest first
+        default void onActiveSpeakerChanged(int endPoint, List<Integer> ranking) {
+        }
+
+        // detach every renderer from the remote tracks when true, attach them again when false
+        default void onBackgroundChanged(boolean background) {
+        }
+
+        // renderers currently attached to remote tracks, reported in ResourceSnapshot
+        default int attachedRenderers() {
+            return 0;
+        }
+    }
+
+    /** Delivery of app messages: in order, or as soon as they arrive; both are reliable. */
+    public enum Delivery {ORDERED, UNORDERED}
+
+    public interface MessageListener {
+        // called on a WebRTC thread; payload is only read, never reused by the client
+        void onMessage(String peerId, String topic, ByteBuffer payload);
+    }
+
+    public CallMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Per peer RTT, jitter, loss, bitrates, frame rates and ICE state; listeners are called on a background thread. */
+    public TelemetryCollector getTelemetry() {
+        return telemetry;
+    }
+
+    /** Decode, dispatch and SDP callback latencies per signaling message type. */
+    public SignalingTimings getSignalingTimings() {
+        return signalingTimings;
+    }
+
+    /** Writes every inbound frame and timing to the writer until stopped; replaces a running trace. */
+    public void startSignalingTrace(Writer writer) {
+        SignalingTraceLog trace = new SignalingTraceLog(writer);
+        SignalingTraceLog previous = signalingTrace;
+        signalingTrace = trace;
+        signalingTimings.setListener(trace);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    public void stopSignalingTrace() {
+        SignalingTraceLog trace = signalingTrace;
+        signalingTrace = null;
+        signalingTimings.setListener(null);
+        if (trace != null) {
+            trace.close();
+        }
+    }
+
+    /**
+     * Records every signaling frame in and out to a memory mapped file until
+     * stopped; replaces a running recording. Read it back with
+     * {@link SignalingRecording#read} or replay it with {@link SignalingLoadGenerator}.
+     */
+    public void startSignalingRecording(File file, int capacityBytes) throws IOException {
+        SignalingRecorder previous = signalingRecorder;
+        signalingRecorder = SignalingRecorder.create(file, capacityBytes);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    public void stopSignalingRecording() {
+        SignalingRecorder recorder = signalingRecorder;
+        signalingRecorder = null;
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.close();
+            Log.d(Tag, "Recorded " + recorder.records() + " signaling frames, dropped " + recorder.dropped());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void recordInbound(String event, Object payload) {
+        SignalingRecorder recorder = signalingRecorder;
+        if (recorder != null) {
+            recorder.recordInbound(event, payload);
+        }
+    }
+
+    // tests add their own; the pipeline may be changed from any thread
+    void addCommandInterceptor(CommandInterceptor interceptor) {
+        commandPipeline.add(interceptor);
+    }
+
+    public SignalingExecutor getSignalingExecutor() {
+        return signalingExecutor;
     }
 
     public void askCallerId(){
@@ -73,323 +237,804 @@ public class WebRTCClient {
 
     public WebRTCClient(PeerListener peerListener, String host, P2PConnectionParameters parameters, EGLContext eglContext){
         this.peerListener = peerListener;
+        this.host = host;
         this.connectionParameters = parameters;
         PeerConnectionFactory.initializeAndroidGlobals(peerListener,true,true,parameters.videoCodecHwAcceleration,eglContext);
         factory = new PeerConnectionFactory();
-        SignalingServerMessageHandler messageHandler = new SignalingServerMessageHandler();
+        metrics.markPhase(CallMetrics.Phase.FACTORY_INIT);
+        MediaConstraints peerMediaConstraints = new MediaConstraints();
+        peerMediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
+        peerMediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo", "true"));
+        peerMediaConstraints.optional.add(new MediaConstraints.KeyValuePair("DtlsSrtpKeyAgreement", "true"));
+        // the capture ladder adapts instead of the engine scaling the encoder input behind our back
+        peerMediaConstraints.optional.add(new MediaConstraints.KeyValuePair("googCpuOveruseDetection", "false"));
+        // same as peerMediaConstraints, plus new ICE credentials
+        MediaConstraints iceRestartConstraints = new MediaConstraints();
+        iceRestartConstraints.mandatory.addAll(peerMediaConstraints.mandatory);
+        iceRestartConstraints.mandatory.add(new MediaConstraints.KeyValuePair("IceRestart", "true"));
+        iceRestartConstraints.optional.addAll(peerMediaConstraints.optional);
+        backend = new LibjingleMediaBackend(factory, peerMediaConstraints, iceRestartConstraints);
+        // reconnects are driven by the session so it can resume
+        IO.Options options = new IO.Options();
+        options.reconnection = false;
         try {
-            client = IO.socket(host);
+            client = IO.socket(host, options);
         }catch (URISyntaxException error){
-            error.printStackTrace();
+            throw new IllegalArgumentException("Bad signaling host " + host, error);
+        }
+        signaling = new CallSignaling<>(s -> new SocketTransport(), backend, new SignalingListener(), parameters,
+                signalingExecutor, signalingScheduler, commandPipeline, signalingTimings, metrics, telemetry);
+        this.videoLayers = signaling.videoLayers();
+        this.captureLadder = parameters.cpuOveruseDetection ? new CaptureLadder(videoLayers, CaptureLadder.DefaultUpSamples) : null;
+        this.localSdpTransformer = SdpTransformers.chain(
+                codecPreference(),
+                SdpTransformers.opusDtxAndFec(),
+                parameters.videoCodec != null ? SdpTransformers.videoStartBitrate(parameters.videoCodec, signaling.videoStartBitrateKbps()) : SdpTransformers.chain());
+        signaling.register("layer", new SetLayerCommand());
+        commandPipeline.add(signalingTimings);
+        if (LegacySignalingHosts.contains(host)) {
+            signaling.session().assumeLegacy();
+        }
+        signalingExecutor.start();
+        signalingScheduler.scheduleAtFixedRate(() -> post(this::pollStats), StatsIntervalMs, StatsIntervalMs, TimeUnit.MILLISECONDS);
+        signalingScheduler.scheduleAtFixedRate(() -> post(this::pollAudioLevels), AudioLevelIntervalMs, AudioLevelIntervalMs, TimeUnit.MILLISECONDS);
+        signalingScheduler.scheduleAtFixedRate(() -> telemetry.publish(System.currentTimeMillis()), TelemetryIntervalMs, TelemetryIntervalMs, TimeUnit.MILLISECONDS);
+        client.on("takeCallerId", args -> {
+            String id = (String) args[0];
+            Log.d(Tag, "Caller id " + id);
+            peerListener.receiveCallerId(id);
+        });
+        client.on("id", args -> {
+            Log.d(Tag, "Call id received");
+            peerListener.onCallReady((String) args[0]);
+        });
+        client.on(Socket.EVENT_CONNECT, args -> {
+            if (metrics.markPhase(CallMetrics.Phase.SOCKET_CONNECTED)) {
+                Log.d(Tag, "Signaling socket connected after " + metrics.getPhaseMs(CallMetrics.Phase.SOCKET_CONNECTED) + "ms");
+            }
+            signaling.on(Socket.EVENT_CONNECT, null);
+        });
+        client.on(Socket.EVENT_DISCONNECT, args -> {
+            rememberLegacyHost();
+            signaling.on(Socket.EVENT_DISCONNECT, null);
+        });
+        client.on(Socket.EVENT_CONNECT_ERROR, args -> signaling.on(Socket.EVENT_CONNECT_ERROR, null));
+        for (String event : new String[]{"message", SignalingSession.SessionEvent, SignalingSession.AckEvent}) {
+            client.on(event, args -> {
+                recordInbound(event, args[0]);
+                signaling.on(event, args[0]);
+            });
         }
-        client.on("takeCallerId",messageHandler.onTakeCallerId);
-        client.on("id",messageHandler.onId);
-        client.on("message",messageHandler.onCommand);
         client.on("hello", new Emitter.Listener() {
             @Override
             public void call(Object... args) {
 
             }
         });
-        client.connect();
+        signaling.connect();
 
-        iceServers.add(new PeerConnection.IceServer("stun:23.21.150.121"));
-        iceServers.add(new PeerConnection.IceServer("stun:stun.l.google.com:19302"));
+        iceServerPool = new IceServerPool(parameters.iceServerProvider, new StunProber(StunProber.DefaultTimeoutMs, new Random()),
+                IceServerPool.DefaultRefreshMarginMs);
+        iceServerScheduler.scheduleWithFixedDelay(this::refreshIceServers, 0, IceServerRefreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
 
-        peerMediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
-        peerMediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo", "true"));
-        peerMediaConstraints.optional.add(new MediaConstraints.KeyValuePair("DtlsSrtpKeyAgreement", "true"));
+    // socket and native callbacks can still fire while the client is being torn down
+    private void post(Runnable event) {
+        if (!signalingExecutor.post(event)) {
+            Log.d(Tag, "Dropping signaling event after shutdown");
+        }
     }
 
-    private Peer addPeer(String id, int endPoint) {
-        Peer peer = new Peer(id, endPoint);
-        peers.put(id, peer);
-        endPoints[endPoint] = true;
-        return peer;
+    private void rememberLegacyHost() {
+        if (signaling.session().isLegacy()) {
+            LegacySignalingHosts.add(host);
+        }
     }
 
-    private void removePeer(String id) {
-        Peer peer = peers.get(id);
-        peerListener.onRemoveRemoteStream(peer.endPoint);
-        peer.peerConnection.close();
-        peers.remove(peer.id);
-        endPoints[peer.endPoint] = false;
+    // candidates are coalesced per destination, anything else flushes the destination right away
+    public void sendMessage(String to, String type, JSONObject payload) throws JSONException {
+        signaling.sendMessage(to, type, payload);
     }
 
-    private int findEndPoint() {
-        for (int i = 0; i < MaxPeers; i++) if (!endPoints[i]) return i;
-        return MaxPeers;
+    public void OnResume(){
+        post(() -> setBackground(false));
     }
 
-    public void sendMessage(String to, String type, JSONObject payload) throws JSONException {
-        JSONObject message = new JSONObject();
-        message.put("to", to);
-        message.put("type", type);
-        message.put("payload", payload);
-        System.out.println("payload for message :  " +payload);
-        client.emit("message", message);
+    public void OnPause(){
+        post(() -> setBackground(true));
     }
 
-    public void OnResume(){
-        if (videoSource != null){
-            videoSource.restart();
+    /**
+     * Background mode keeps the call up on audio only. Local video is disabled
+     * and the camera stopped, remote video is disabled and every sender is asked
+     * for its smallest layer, the app detaches its renderers and stats polling
+     * stops. Leaving it restores all of that in one signaling thread task.
+     */
+    private void setBackground(boolean enabled) {
+        if (background == enabled) {
+            return;
         }
+        background = enabled;
+        if (localMediaStream != null) {
+            for (VideoTrack track : localMediaStream.videoTracks) {
+                track.setEnabled(!enabled);
+            }
+        }
+        if (videoSource != null) {
+            if (enabled) {
+                videoSource.stop();
+            } else {
+                videoSource.restart();
+                // the source may have been stopped at another format than the current one
+                captureFps = -1;
+                applyCaptureFormat();
+            }
+        }
+        for (CallSignaling<LibjingleMediaBackend.Connection>.Peer peer : signaling.peers()) {
+            for (MediaStream stream : peer.media().streams()) {
+                for (VideoTrack track : stream.videoTracks) {
+                    track.setEnabled(!enabled);
+                }
+            }
+        }
+        int lowest = videoLayers.count() - 1;
+        for (Map.Entry<Integer, Integer> entry : requestedLayers.entrySet()) {
+            try {
+                signaling.subscribe(entry.getKey() - 1, enabled ? lowest : entry.getValue());
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+        }
+        peerListener.onBackgroundChanged(enabled);
+        Log.d(Tag, (enabled ? "Entered" : "Left") + " background, " + snapshotResources());
     }
 
-    public void OnPause(){
-        if (videoSource != null){
-            videoSource.stop();
+    /** Counts what the call currently holds; completes on the signaling thread, cancelled after onDestroy. */
+    public Future<ResourceSnapshot> getResourceSnapshot() {
+        FutureTask<ResourceSnapshot> task = new FutureTask<>(this::snapshotResources);
+        if (!signalingExecutor.post(task)) {
+            task.cancel(false);
         }
+        return task;
     }
 
-    public void onDestroy() {
-        for (Peer peer : peers.values()) {
-            peer.peerConnection.dispose();
+    private ResourceSnapshot snapshotResources() {
+        int localVideo = 0;
+        int localAudio = 0;
+        if (localMediaStream != null) {
+            for (VideoTrack track : localMediaStream.videoTracks) {
+                localVideo += track.enabled() ? 1 : 0;
+            }
+            for (AudioTrack track : localMediaStream.audioTracks) {
+                localAudio += track.enabled() ? 1 : 0;
+            }
         }
-        if (videoSource != null) {
-            videoSource.dispose();
+        int remoteVideo = 0;
+        int remoteAudio = 0;
+        for (CallSignaling<LibjingleMediaBackend.Connection>.Peer peer : signaling.peers()) {
+            for (MediaStream stream : peer.media().streams()) {
+                for (VideoTrack track : stream.videoTracks) {
+                    remoteVideo += track.enabled() ? 1 : 0;
+                }
+                for (AudioTrack track : stream.audioTracks) {
+                    remoteAudio += track.enabled() ? 1 : 0;
+                }
+            }
         }
-        factory.dispose();
+        int pooled = signaling.idleWarmPeers();
+        return new ResourceSnapshot(background, signaling.peerCount() + pooled, pooled, localVideo, localAudio,
+                remoteVideo, remoteAudio, peerListener.attachedRenderers(), openChannels.size(),
+                client != null && client.connected() ? 1 : 0, videoSource != null && !background);
+    }
+
+    public void onDestroy() {
         client.off();
-        client.disconnect();
-        client.close();
+        post(() -> {
+            rememberLegacyHost();
+            signaling.close();
+            signalingScheduler.shutdown();
+            iceServerScheduler.shutdownNow();
+            if (localMediaStream != null) {
+                localMediaStream.dispose();
+            }
+            if (videoSource != null) {
+                videoSource.dispose();
+            }
+            factory.dispose();
+            client.close();
+            stopSignalingTrace();
+            stopSignalingRecording();
+        });
+        signalingExecutor.shutdown();
+    }
+
+    /**
+     * Gets the call ready before anyone accepted it: starts the camera and
+     * creates {@code peerCount} PeerConnections that already made an offer and
+     * are gathering ICE candidates. The next outgoing offer adopts one of them.
+     */
+    public void warmUp(int peerCount) {
+        post(() -> {
+            signaling.warmUp(peerCount);
+            setCamera();
+        });
     }
 
     public void start(String name) {
-        setCamera();
+        post(() -> {
+            metrics.markPhase(CallMetrics.Phase.CALL_STARTED);
+            setCamera();
+            try {
+                signaling.start(name);
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    public void subscribe(String topic, MessageListener listener) {
+        CopyOnWriteArrayList<MessageListener> listeners = subscriptions.get(topic);
+        if (listeners == null) {
+            subscriptions.putIfAbsent(topic, new CopyOnWriteArrayList<>());
+            listeners = subscriptions.get(topic);
+        }
+        listeners.addIfAbsent(listener);
+    }
+
+    public void unsubscribe(String topic, MessageListener listener) {
+        CopyOnWriteArrayList<MessageListener> listeners = subscriptions.get(topic);
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Sends an app message to every connected peer over its DataChannel,
+     * without a round trip through the signaling server. Returns false if a
+     * peer's channel is backed up and refused the message; the other peers
+     * still get it.
+     *
+     * @throws IllegalArgumentException if the topic or the payload is too large to frame
+     */
+    public boolean publish(String topic, byte[] payload, Delivery delivery) {
+        List<ByteBuffer> frames = messageFramer.encode(nextMessageId.incrementAndGet(), topic, ByteBuffer.wrap(payload));
+        boolean accepted = true;
+        for (AppChannel channel : openChannels) {
+            if (channel.delivery == delivery && !channel.sender.offer(frames)) {
+                accepted = false;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Requests the smallest video layer that covers a remote tile, given in the
+     * same percentages as {@code VideoRendererGui.update}. {@code endPoint} is the
+     * one passed to {@link PeerListener#onAddRemoteStream}.
+     */
+    public void subscribe(int endPoint, int widthPercent, int heightPercent) {
+        post(() -> {
+            int layer = videoLayers.selectForViewport(connectionParameters.videoWidth, connectionParameters.videoHeight,
+                    widthPercent, heightPercent);
+            requestedLayers.put(endPoint, layer);
+            if (background) {
+                // asked for when leaving the background
+                return;
+            }
+            try {
+                signaling.subscribe(endPoint - 1, layer);
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * One camera source is captured at one size for every peer, so it follows
+     * the largest layer anyone subscribed to, limited by the peer with the
+     * least bandwidth and by the CPU ladder.
+     */
+    private void applyCaptureFormat() {
+        if (videoCapturer == null || background) {
+            return;
+        }
+        int layer = layerSubscriptions.current();
+        int fps = videoLayers.fps(layer);
+        for (CallSignaling<LibjingleMediaBackend.Connection>.Peer peer : signaling.peers()) {
+            BitratePolicy.Level level = peer.level();
+            if (level.layer > layer) {
+                layer = level.layer;
+                fps = Math.min(level.fps, videoLayers.fps(layer));
+            } else if (level.layer == layer) {
+                fps = Math.min(fps, level.fps);
+            }
+        }
+        if (captureLadder != null) {
+            CaptureLadder.Step step = captureLadder.step();
+            if (step.layer > layer) {
+                layer = step.layer;
+                fps = Math.min(step.fps, videoLayers.fps(layer));
+            } else {
+                fps = Math.min(fps, step.fps);
+            }
+        }
+        if (layer == captureLayer && fps == captureFps) {
+            return;
+        }
+        captureLayer = layer;
+        captureFps = fps;
+        Log.d(Tag, "Capturing " + videoLayers.width(layer) + "x" + videoLayers.height(layer) + "@" + fps);
+        videoCapturer.changeCaptureFormat(videoLayers.width(layer), videoLayers.height(layer), fps);
+    }
+
+    private void pollStats() {
+        if (background) {
+            return;
+        }
+        adaptToEncoderLoad();
+        for (CallSignaling<LibjingleMediaBackend.Connection>.Peer peer : signaling.peers()) {
+            peer.media().peerConnection.getStats(reports -> onStats(peer, reports), null);
+        }
+    }
+
+    // on a WebRTC thread
+    private void onStats(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer, StatsReport[] reports) {
+        long now = System.currentTimeMillis();
+        StatsSample sample = null;
+        CaptureLadder.Load load = null;
+        PeerTelemetry peerTelemetry = peer.telemetry();
+        if (peerTelemetry != null) {
+            peerTelemetry.begin();
+        }
+        for (StatsReport report : reports) {
+            HashMap<String, String> values = new HashMap<>();
+            for (StatsReport.Value value : report.values) {
+                values.put(value.name, value.value);
+            }
+            if (peerTelemetry != null) {
+                peerTelemetry.onReport(report.type, values);
+            }
+            if (sample == null) {
+                sample = StatsSample.fromReport(report.type, values, now);
+                if (sample != null) {
+                    load = CaptureLadder.Load.fromReport(report.type, values);
+                }
+            }
+        }
+        if (peerTelemetry != null) {
+            peerTelemetry.end(now);
+        }
+        if (sample == null) {
+            return;
+        }
+        final StatsSample videoSample = sample;
+        final CaptureLadder.Load videoLoad = load;
+        post(() -> {
+            if (!peer.isCurrent()) {
+                return;
+            }
+            encoderLoad = CaptureLadder.Load.worst(encoderLoad, videoLoad);
+            if (peer.onVideoSample(videoSample)) {
+                Log.d(Tag, "Peer " + peer.id() + " now " + peer.level());
+                applyCaptureFormat();
+            }
+        });
+    }
+
+    // every peer runs its own encoder on the same CPU, so the busiest one decides
+    private void adaptToEncoderLoad() {
+        if (captureLadder == null) {
+            return;
+        }
+        CaptureLadder.Load load = encoderLoad;
+        encoderLoad = null;
+        if (load == null) {
+            return;
+        }
+        int stepsDown = captureLadder.stepsDown();
+        if (captureLadder.update(load)) {
+            Log.d(Tag, "Encoder " + load + ", capture capped at " + captureLadder.step());
+            metrics.onCaptureStep(captureLadder.stepsDown() > stepsDown);
+            applyCaptureFormat();
+        }
+    }
+
+    // on the ice server thread: the fetched list is used unranked until the probes are done
+    private void refreshIceServers() {
         try {
-            JSONObject message = new JSONObject();
-            message.put("name", name);
-            client.emit("readyToStream", message);
-        } catch (JSONException e) {
+            if (iceServerPool.fetch(System.currentTimeMillis())) {
+                publishIceServers(iceServerPool.servers(), true);
+            }
+        } catch (IOException e) {
             e.printStackTrace();
         }
+        List<IceServerConfig> ranked = iceServerPool.rank();
+        Log.d(Tag, "ICE servers " + ranked + ", " + iceServerPool.unreachable() + " unreachable");
+        publishIceServers(ranked, false);
+    }
+
+    // new credentials also go to existing peers, so a later ICE restart can still use TURN
+    private void publishIceServers(List<IceServerConfig> servers, boolean updatePeers) {
+        List<PeerConnection.IceServer> converted = new LinkedList<>();
+        for (IceServerConfig server : servers) {
+            converted.add(new PeerConnection.IceServer(server.uri, server.username, server.credential));
+        }
+        post(() -> {
+            backend.setIceServers(converted);
+            if (updatePeers) {
+                for (CallSignaling<LibjingleMediaBackend.Connection>.Peer peer : signaling.peers()) {
+                    peer.media().updateIce(converted);
+                }
+            }
+            if (!iceServersReady) {
+                iceServersReady = true;
+                enableWarmPeers();
+            }
+        });
+    }
+
+    // warm peers need the local stream and the ICE servers
+    private void enableWarmPeers() {
+        if (localMediaStream != null && iceServersReady) {
+            signaling.enableWarmPeers();
+        }
+    }
+
+    private void pollAudioLevels() {
+        if (background) {
+            return;
+        }
+        for (CallSignaling<LibjingleMediaBackend.Connection>.Peer peer : signaling.peers()) {
+            peer.media().peerConnection.getStats(reports -> onAudioReports(peer, reports), null);
+        }
+    }
+
+    // on a WebRTC thread, separate from the bandwidth stats in onStats
+    private void onAudioReports(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer, StatsReport[] reports) {
+        List<String> trackIds = new ArrayList<>();
+        List<Double> levels = new ArrayList<>();
+        for (StatsReport report : reports) {
+            HashMap<String, String> values = new HashMap<>();
+            for (StatsReport.Value value : report.values) {
+                values.put(value.name, value.value);
+            }
+            double level = ActiveSpeakerDetector.audioLevel(report.type, values);
+            if (level >= 0) {
+                trackIds.add(values.get("googTrackId"));
+                levels.add(level);
+            }
+        }
+        post(() -> {
+            if (peer.isCurrent()) {
+                onAudioLevels(peer, trackIds, levels);
+            }
+        });
+    }
+
+    private void onAudioLevels(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer, List<String> trackIds, List<Double> levels) {
+        for (int i = 0; i < trackIds.size(); i++) {
+            int endPoint = signaling.endPointOfTrack(peer, trackIds.get(i));
+            if (endPoint >= 0) {
+                speakerDetector.onAudioLevel(endPoint, levels.get(i));
+            }
+        }
+        if (speakerDetector.evaluate(System.currentTimeMillis())) {
+            publishSpeaker();
+        }
+    }
+
+    private void forgetSpeaker(int endPoint) {
+        if (speakerDetector.remove(endPoint)) {
+            publishSpeaker();
+        }
+    }
+
+    private void publishSpeaker() {
+        Log.d(Tag, "Active speaker is now " + speakerDetector.speaker());
+        peerListener.onActiveSpeakerChanged(speakerDetector.speaker(), speakerDetector.ranking());
+    }
+
+    private SdpTransformer codecPreference() {
+        List<SdpTransformer> transformers = new LinkedList<>();
+        if (connectionParameters.videoCodec != null) {
+            transformers.add(SdpTransformers.preferCodec("video", connectionParameters.videoCodec));
+        }
+        if (connectionParameters.audioCodec != null) {
+            transformers.add(SdpTransformers.preferCodec("audio", connectionParameters.audioCodec));
+        }
+        return SdpTransformers.chain(transformers.toArray(new SdpTransformer[0]));
+    }
+
+    // b=AS in the remote description caps what we send to that peer; next to nothing in the background
+    private String transformRemoteSdp(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer, String sdp) {
+        int maxKbps = background ? CallSignaling.MinVideoBitrateKbps : Math.min(CallSignaling.MaxVideoBitrateKbps, peer.maxBitrateKbps());
+        int audioKbps = connectionParameters.audioStartBitrate >= MinAudioBitrateKbps ? connectionParameters.audioStartBitrate : 0;
+        return SdpTransformers.chain(codecPreference(), SdpTransformers.bandwidth("video", maxKbps),
+                SdpTransformers.opusMaxAverageBitrate(audioKbps)).transform(sdp);
+    }
+
+    // parsing rejects malformed descriptions (IllegalArgumentException) before they reach the native stack
+    private String remoteDescription(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer, String type, String sdp) {
+        Sdp remote = Sdp.parse(transformRemoteSdp(peer, sdp));
+        Sdp.Media video = remote.media("video");
+        if (video != null && !video.codecs.isEmpty()) {
+            Log.d(Tag, "Remote " + type + " from " + peer.id() + " prefers " + video.codecs.get(0));
+        }
+        return remote.serialize();
     }
 
+    // no-op once the local stream exists, e.g. after warmUp
     private void setCamera() {
+        if (localMediaStream != null) {
+            return;
+        }
         localMediaStream = factory.createLocalMediaStream("ARDAMS");
         if (connectionParameters.videoCallEnabled) {
             MediaConstraints videoConstraints = new MediaConstraints();
             videoConstraints.mandatory.add(new MediaConstraints.KeyValuePair("maxHeight", Integer.toString(connectionParameters.videoHeight)));
             videoConstraints.mandatory.add(new MediaConstraints.KeyValuePair("maxWidth", Integer.toString(connectionParameters.videoWidth)));
             videoConstraints.mandatory.add(new MediaConstraints.KeyValuePair("maxFrameRate", Integer.toString(connectionParameters.videoFps)));
-            videoConstraints.mandatory.add(new MediaConstraints.KeyValuePair("minFrameRate", Integer.toString(connectionParameters.videoFps)));
+            // a floor below the configured rate, so the ladders can lower it later
+            int minFps = captureLadder != null ? captureLadder.minFps() : Math.max(1, connectionParameters.videoFps / 2);
+            videoConstraints.mandatory.add(new MediaConstraints.KeyValuePair("minFrameRate", Integer.toString(minFps)));
             videoSource = factory.createVideoSource(getVideoCapture(), videoConstraints);
-            localMediaStream.addTrack(factory.createVideoTrack("ARDAMSv0", videoSource));
+            VideoTrack videoTrack = factory.createVideoTrack("ARDAMSv0", videoSource);
+            localMediaStream.addTrack(videoTrack);
+            metrics.markPhase(CallMetrics.Phase.CAPTURER_READY);
+            new FirstFrameProbe(CallMetrics.Phase.FIRST_LOCAL_FRAME, videoTrack);
         }
         AudioSource audioSource = factory.createAudioSource(new MediaConstraints());
         localMediaStream.addTrack(factory.createAudioTrack("ARDAMSa0", audioSource));
+        backend.setLocalStream(localMediaStream);
         peerListener.onLocalStream(localMediaStream);
+        enableWarmPeers();
     }
 
     private VideoCapturer getVideoCapture() {
         String frontCameraDeviceName = VideoCapturerAndroid.getNameOfFrontFacingDevice();
-        return VideoCapturerAndroid.create(frontCameraDeviceName);
+        videoCapturer = VideoCapturerAndroid.create(frontCameraDeviceName);
+        return videoCapturer;
     }
 
-    private class SignalingServerMessageHandler{
-        private HashMap<String,Command> commandMap;
-
-        private SignalingServerMessageHandler(){
-            this.commandMap = new HashMap<>();
-            commandMap.put("init",new CreateCallOfferCommand());
-            commandMap.put("offer",new CreateAnswerCommand());
-            commandMap.put("answer",new SetRemoteSDPCommand());
-            commandMap.put("candidate", new AddIceCandidateCommand());
+    private class SocketTransport implements SignalingSession.Transport {
+        @Override
+        public void connect() {
+            client.connect();
         }
 
-        public Emitter.Listener onCommand = new Emitter.Listener() {
-            @Override
-            public void call(Object... args) {
-                JSONObject data = (JSONObject) args[0];
-                try {
-                    String from = data.getString("from");
-                    String type = data.getString("type");
-                    JSONObject payload = null;
-                    if (!type.equals("init")) {
-                        payload = data.getJSONObject("payload");
-                    }
-                    // if peer is unknown, try to add him
-                    if (!peers.containsKey(from)) {
-                        // if MAX_PEER is reach, ignore the call
-                        int endPoint = findEndPoint();
-                        if (endPoint != MaxPeers) {
-                            Peer peer = addPeer(from, endPoint);
-                            peer.peerConnection.addStream(localMediaStream);
-                            commandMap.get(type).execute(from, payload);
-                        }
-                    } else {
-                        commandMap.get(type).execute(from, payload);
-                    }
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-            }
-        };
-
-        public Emitter.Listener onTakeCallerId = new Emitter.Listener() {
-            @Override
-            public void call(Object... args) {
-                String id = (String) args[0];
-                System.out.println("caller id :" + id);
-                peerListener.receiveCallerId(id);
-            }
-        };
-
-        public Emitter.Listener onId = new Emitter.Listener() {
-            @Override
-            public void call(Object... args) {
-                System.out.println("ID Received");
-                String id = (String) args[0];
-                peerListener.onCallReady(id);
-            }
-        };
-    }
+        @Override
+        public void disconnect() {
+            client.disconnect();
+        }
 
-    private class CreateCallOfferCommand implements Command{
         @Override
-        public void execute(String peerId, JSONObject payload) throws JSONException {
-            Log.d(Tag,"Create Call Offer Command Executed");
-            Peer peer = peers.get(peerId);
-            peer.peerConnection.createOffer(peer,peerMediaConstraints);
+        public void emit(String event, Object payload) {
+            SignalingRecorder recorder = signalingRecorder;
+            if (recorder != null) {
+                recorder.recordOutbound(event, payload);
+            }
+            client.emit(event, payload);
         }
     }
 
-    private class CreateAnswerCommand implements Command{
+    private class SignalingListener implements CallSignaling.Listener<LibjingleMediaBackend.Connection> {
         @Override
-        public void execute(String peerId, JSONObject payload) throws JSONException {
-            Log.d(Tag,"Create Answer Command Executed");
-            Peer peer = peers.get(peerId);
-            SessionDescription sessionDescription = new SessionDescription(SessionDescription.Type.fromCanonicalForm(payload.getString("type")),payload.getString("sdp"));
-            peer.peerConnection.setRemoteDescription(peer,sessionDescription);
-            peer.peerConnection.createAnswer(peer,peerMediaConstraints);
+        public void onStatusChanged(String status) {
+            peerListener.onStatusChanged(status);
         }
-    }
 
-    private class SetRemoteSDPCommand implements Command{
         @Override
-        public void execute(String peerId, JSONObject payload) throws JSONException {
-            Log.d(Tag,"Create Remote SDP Command Executed");
-            Peer peer = peers.get(peerId);
-            SessionDescription sessionDescription = new SessionDescription(SessionDescription.Type.fromCanonicalForm(payload.getString("type")),payload.getString("sdp"));
-            peer.peerConnection.setRemoteDescription(peer,sessionDescription);
+        public void onPeerState(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer, IceConnectionMonitor.State state) {
+            Log.d(Tag, "Peer " + peer.id() + " " + state);
+            peerListener.onStatusChanged(state.name());
         }
-    }
 
-    private class AddIceCandidateCommand implements Command{
+        // negotiated on both ends before the offer, so they are part of the first SDP
         @Override
-        public void execute(String peerId, JSONObject payload) throws JSONException {
-            Log.d(Tag, "Add Ice Candidate Command Executed");
-            PeerConnection pConnection = peers.get(peerId).peerConnection;
-            if (pConnection.getRemoteDescription() != null){
-                IceCandidate iceCandidate = new IceCandidate(
-                        payload.getString("id"),
-                        payload.getInt("label"),
-                        payload.getString("candidate")
-                );
-                pConnection.addIceCandidate(iceCandidate);
+        public void onPeerCreated(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer) {
+            for (Delivery delivery : Delivery.values()) {
+                AppChannel channel = new AppChannel(peer, delivery);
+                peer.media().onClose(channel::close);
             }
         }
-    }
-
-    private class Peer implements SdpObserver, PeerConnection.Observer{
-        private PeerConnection peerConnection;
-        private String id;
-        private int endPoint;
-
-
-        public Peer(String id, int endPoint){
-            Log.d(Tag, "new Peer: " + id + ", from : " + endPoint);
-            this.peerConnection = factory.createPeerConnection(iceServers, peerMediaConstraints,this);
-            this.id = id;
-            this.endPoint = endPoint;
 
-            //initialise local stream
-
-            peerConnection.addStream(localMediaStream);
-            peerListener.onStatusChanged("CONNECTING");
+        @Override
+        public void onPeerRemoved(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer) {
+            // its subscription and its bitrate level no longer hold the camera down
+            layerSubscriptions.remove(peer.id());
+            applyCaptureFormat();
         }
 
         @Override
-        public void onSignalingChange(PeerConnection.SignalingState signalingState) {
-
+        public void onStreamReceived(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer, String streamLabel) {
+            MediaStream mediaStream = peer.media().stream(streamLabel);
+            if (mediaStream == null) {
+                return;
+            }
+            if (metrics.getPhaseMs(CallMetrics.Phase.FIRST_REMOTE_FRAME) < 0 && !mediaStream.videoTracks.isEmpty()) {
+                new FirstFrameProbe(CallMetrics.Phase.FIRST_REMOTE_FRAME, mediaStream.videoTracks.get(0));
+            }
+            for (VideoTrack track : mediaStream.videoTracks) {
+                track.setEnabled(!background);
+            }
         }
 
         @Override
-        public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
-            if (iceConnectionState == PeerConnection.IceConnectionState.DISCONNECTED){
-                removePeer(id);
-                peerListener.onStatusChanged("DISCONNECTED");
+        public void onRemoteStream(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer, String streamLabel, int endPoint) {
+            MediaStream mediaStream = peer.media().stream(streamLabel);
+            if (mediaStream != null) {
+                peerListener.onAddRemoteStream(mediaStream, endPoint);
             }
         }
 
         @Override
-        public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
+        public void onRemoteStreamRemoved(int endPoint) {
+            forgetSpeaker(endPoint);
+            requestedLayers.remove(endPoint);
+            peerListener.onRemoveRemoteStream(endPoint);
+        }
+
+        @Override
+        public String transformLocal(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer, String sdp) {
+            return Sdp.parse(localSdpTransformer.transform(sdp)).serialize();
+        }
 
+        @Override
+        public String transformRemote(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer, String type, String sdp) {
+            return remoteDescription(peer, type, sdp);
         }
 
         @Override
-        public void onIceCandidate(IceCandidate iceCandidate) {
-            try{
-                JSONObject payload = new JSONObject();
-                payload.put("label", iceCandidate.sdpMLineIndex);
-                payload.put("id", iceCandidate.sdpMid);
-                payload.put("candidate", iceCandidate.sdp);
-                sendMessage(id,"candidate",payload);
-            }catch (JSONException error){
-                error.printStackTrace();
+        public void onInbound(Object frame) {
+            SignalingTraceLog trace = signalingTrace;
+            if (trace != null) {
+                trace.onInbound(frame);
             }
         }
 
         @Override
-        public void onAddStream(MediaStream mediaStream) {
-            Log.d(Tag, "On Add Stream "+mediaStream.label());
-            // remote streams are displayed from 1 to MAX_PEER (0 is localStream)
-            peerListener.onAddRemoteStream(mediaStream,endPoint+1);
+        public void onIgnored(String reason) {
+            Log.d(Tag, "Ignoring " + reason);
         }
 
         @Override
-        public void onRemoveStream(MediaStream mediaStream) {
-            Log.d(Tag, "On Remove Stream " + mediaStream.label());
-            removePeer(id);
+        public void onFailure(String error) {
+            Log.d(Tag, "Signaling failed: " + error);
         }
 
         @Override
-        public void onDataChannel(DataChannel dataChannel) {
+        public void onSignalingRecovered(long downtimeMs, boolean resumed) {
+            Log.d(Tag, "Signaling " + (resumed ? "resumed" : "session lost") + " after " + downtimeMs + "ms");
+        }
+    }
 
+    private class SetLayerCommand implements Command{
+        @Override
+        public void execute(String peerId, SignalingMessage message) throws JSONException {
+            Log.d(Tag,"Set Layer Command Executed");
+            int layer = message.payload.getInt("layer");
+            if (layer < 0 || layer >= VideoLayers.DefaultCount) {
+                Log.d(Tag, "Ignoring layer " + layer + " from " + peerId);
+                return;
+            }
+            if (layerSubscriptions.request(peerId, layer)) {
+                applyCaptureFormat();
+            }
+        }
+    }
+
+    // marks a phase on the first frame of a track, then detaches so later frames skip the Java copy
+    private class FirstFrameProbe implements VideoRenderer.Callbacks {
+        private final CallMetrics.Phase phase;
+        private final VideoTrack track;
+        private final VideoRenderer renderer;
+        private volatile boolean seen;
+
+        private FirstFrameProbe(CallMetrics.Phase phase, VideoTrack track) {
+            this.phase = phase;
+            this.track = track;
+            this.renderer = new VideoRenderer(this);
+            track.addRenderer(renderer);
         }
 
         @Override
-        public void onRenegotiationNeeded() {
+        public void renderFrame(VideoRenderer.I420Frame frame) {
+            if (seen) {
+                return;
+            }
+            seen = true;
+            if (metrics.markPhase(phase)) {
+                Log.d(Tag, phase + " after " + metrics.getPhaseMs(phase) + "ms, " + metrics);
+            }
+            post(() -> {
+                track.removeRenderer(renderer);
+                renderer.dispose();
+            });
+        }
+    }
 
+    /**
+     * One negotiated DataChannel of a peer. Both ends create it with the same
+     * id before the offer, so no in-band open handshake is needed.
+     */
+    private class AppChannel implements DataChannel.Observer, DataChannelSender.Channel, MessageReassembler.Sink {
+        private final CallSignaling<LibjingleMediaBackend.Connection>.Peer peer;
+        private final Delivery delivery;
+        private final DataChannel channel;
+        private final DataChannelSender sender = new DataChannelSender(this, DataChannelSender.DefaultHighWatermark,
+                DataChannelSender.DefaultLowWatermark, DataChannelSender.DefaultMaxQueuedBytes);
+        // only touched from the channel's callbacks
+        private final MessageReassembler reassembler = new MessageReassembler(MessageReassembler.DefaultMaxPending,
+                MessageReassembler.DefaultMaxMessageBytes, MessageReassembler.DefaultTimeoutMs);
+
+        private AppChannel(CallSignaling<LibjingleMediaBackend.Connection>.Peer peer, Delivery delivery) {
+            this.peer = peer;
+            this.delivery = delivery;
+            DataChannel.Init init = new DataChannel.Init();
+            init.negotiated = true;
+            init.id = delivery.ordinal();
+            init.ordered = delivery == Delivery.ORDERED;
+            this.channel = peer.media().peerConnection.createDataChannel("app-" + delivery.name().toLowerCase(), init);
+            channel.registerObserver(this);
         }
 
         @Override
-        public void onCreateSuccess(SessionDescription sessionDescription) {
-            try{
-                JSONObject payload = new JSONObject();
-                payload.put("sdp",sessionDescription);
-                payload.put("type",sessionDescription.type.canonicalForm());
-                sendMessage(id,sessionDescription.type.canonicalForm(),payload);
-                peerConnection.setLocalDescription(Peer.this,sessionDescription);
-            }catch (JSONException error){
-                error.printStackTrace();
+        public void onStateChange() {
+            DataChannel.State state = channel.state();
+            Log.d(Tag, "Data channel " + channel.label() + " to " + peer.id() + " " + state);
+            if (state == DataChannel.State.OPEN) {
+                openChannels.addIfAbsent(this);
+                sender.onWritable();
+            } else if (state == DataChannel.State.CLOSED) {
+                openChannels.remove(this);
             }
         }
 
         @Override
-        public void onSetSuccess() {
+        public void onBufferedAmountChange(long previousAmount) {
+            sender.onWritable();
+        }
 
+        @Override
+        public void onMessage(DataChannel.Buffer buffer) {
+            if (!buffer.binary) {
+                return;
+            }
+            try {
+                reassembler.onFrame(buffer.data, System.nanoTime() / 1000000, this);
+            } catch (IllegalArgumentException e) {
+                Log.d(Tag, "Dropping bad frame from " + peer.id() + ": " + e.getMessage());
+            }
         }
 
         @Override
-        public void onCreateFailure(String s) {
+        public void onMessage(String topic, ByteBuffer payload) {
+            List<MessageListener> listeners = subscriptions.get(topic);
+            if (listeners == null) {
+                return;
+            }
+            for (MessageListener listener : listeners) {
+                listener.onMessage(peer.id(), topic, payload.asReadOnlyBuffer());
+            }
+        }
 
+        @Override
+        public long bufferedAmount() {
+            return channel.bufferedAmount();
         }
 
         @Override
-        public void onSetFailure(String s) {
+        public boolean send(ByteBuffer frame) {
+            // send() consumes the buffer, and the same frame goes to every peer
+            return channel.state() == DataChannel.State.OPEN && channel.send(new DataChannel.Buffer(frame.duplicate(), true));
+        }
 
+        private void close() {
+            openChannels.remove(this);
+            sender.clear();
+            channel.unregisterObserver();
+            channel.close();
+            channel.dispose();
         }
     }
 }
@@ -0,0 +1,52 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * The most frequent signaling message both ways: a gathered candidate turned
+ * into its payload text, and a received one decoded from the JSONObject
+ * socket.io parses it into.
+ */
+@State(Scope.Thread)
+public class CandidateSerializationBenchmark {
+    private final JsonSignalingCodec json = new JsonSignalingCodec();
+    private final SignalingMessage into = new SignalingMessage();
+    private MediaBackend.Candidate gathered;
+    private JSONObject received;
+
+    @Setup
+    public void setUp() throws JSONException {
+        Random random = new Random(42);
+        gathered = new MediaBackend.Candidate("audio", 0, candidateLine(random));
+        JSONObject frame = SignalingPayloads.message(SignalingMessage.Candidate, candidate(1, random));
+        frame.put("from", "remote-1");
+        received = frame;
+    }
+
+    static String candidateLine(Random random) {
+        return "candidate:" + random.nextInt(Integer.MAX_VALUE) + " 1 udp 2122260223 10.0." + random.nextInt(256)
+                + "." + random.nextInt(256) + " " + (40000 + random.nextInt(20000)) + " typ host generation 0";
+    }
+
+    static JSONObject candidate(int index, Random random) throws JSONException {
+        return SignalingPayloads.candidate(index % 2 == 0 ? "audio" : "video", index % 2, candidateLine(random));
+    }
+
+    @Benchmark
+    public String serialize() throws JSONException {
+        return SignalingPayloads.candidate(gathered.mid, gathered.mLineIndex, gathered.sdp).toString();
+    }
+
+    @Benchmark
+    public SignalingMessage decodeJson() {
+        json.decode(received, into);
+        return into;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A frame as WebRTCClient.onCommand hands it to the dispatcher: the
+ * JSONObject socket.io-client parsed, decoded, checked against the peer
+ * registry, timed and run through the command pipeline. Commands only look
+ * their peer up, so this is the signaling overhead per frame, not the socket
+ * parsing before it or the PeerConnection work behind it.
+ */
+@State(Scope.Thread)
+public class OnCommandBenchmark {
+    static final int BatchSize = 4;
+
+    @Param({"init", "offer", "answer", "candidate", "batch"})
+    public String type;
+
+    private final PeerRegistry<String> peers = new PeerRegistry<>(8);
+    private SignalingDispatcher dispatcher;
+    private JSONObject frame;
+
+    @Setup
+    public void setUp() throws JSONException {
+        SignalingTimings timings = new SignalingTimings();
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.add(timings);
+        dispatcher = new SignalingDispatcher(pipeline, timings, new SignalingDispatcher.Host() {
+            @Override
+            public boolean accept(SignalingMessage message) {
+                return peers.register(message.from, (id, endPoint) -> id) != null;
+            }
+
+            @Override
+            public void onIgnored(String reason) {
+                throw new IllegalStateException(reason);
+            }
+        });
+        Command command = (peerId, message) -> peers.get(peerId);
+        dispatcher.register(SignalingMessage.Init, command);
+        dispatcher.register(SignalingMessage.Offer, command);
+        dispatcher.register(SignalingMessage.Answer, command);
+        dispatcher.register(SignalingMessage.Candidate, command);
+        // parsed from text like socket.io does, so it holds the same value types
+        frame = new JSONObject(frame(type, new Random(42)).toString());
+    }
+
+    static JSONObject frame(String type, Random random) throws JSONException {
+        JSONObject frame;
+        switch (type) {
+            case SignalingMessage.Init:
+                frame = new JSONObject();
+                frame.put("type", type);
+                break;
+            case SignalingMessage.Offer:
+            case SignalingMessage.Answer:
+                frame = SignalingPayloads.message(type, SignalingPayloads.description(type,
+                        SignalingLoadGenerator.syntheticSdp(random)));
+                break;
+            case SignalingMessage.Candidate:
+                frame = SignalingPayloads.message(type, CandidateSerializationBenchmark.candidate(0, random));
+                break;
+            case SignalingMessage.Batch:
+                List<JSONObject> messages = new ArrayList<>();
+                for (int i = 0; i < BatchSize; i++) {
+                    messages.add(SignalingPayloads.message(SignalingMessage.Candidate,
+                            CandidateSerializationBenchmark.candidate(i, random)));
+                }
+                frame = SignalingPayloads.frame("local", messages);
+                frame.remove("to");
+                break;
+            default:
+                throw new IllegalArgumentException(type);
+        }
+        frame.put("from", "remote-1");
+        return frame;
+    }
+
+    @Benchmark
+    public int onCommand() throws JSONException {
+        return dispatcher.handle(frame);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.groupcall;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The peer bookkeeping behind CallSignaling.addPeer and removePeer in a full
+ * room: a participant leaves and another joins on the end point it freed, and
+ * the end point lookups made for every stream and stats update.
+ */
+@State(Scope.Thread)
+public class PeerRegistryBenchmark {
+
+    @Param({"2", "8", "32", "128"})
+    public int roomSize;
+
+    private PeerRegistry<String> peers;
+    private String[] ids;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        peers = new PeerRegistry<>(roomSize);
+        ids = new String[roomSize];
+        for (int i = 0; i < roomSize; i++) {
+            ids[i] = "remote-" + i;
+            peers.register(ids[i], (id, endPoint) -> id);
+        }
+    }
+
+    private String nextId() {
+        String id = ids[next];
+        next = (next + 1) % ids.length;
+        return id;
+    }
+
+    @Benchmark
+    public String removeAndAddPeer() {
+        String id = nextId();
+        peers.remove(id);
+        return peers.register(id, (peerId, endPoint) -> peerId);
+    }
+
+    @Benchmark
+    public int findEndPoint() {
+        return peers.endPointOf(nextId());
+    }
+
+    @Benchmark
+    public int peers() {
+        return peers.peers().size();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * WebRTCClient.sendMessage up to the text socket.io writes: the payload, the
+ * message around it and the frame the outbox emits for its destination.
+ */
+@State(Scope.Thread)
+public class SendMessageBenchmark {
+
+    @Param({"offer", "candidate"})
+    public String type;
+
+    private String sdp;
+    private String candidate;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        sdp = SignalingLoadGenerator.syntheticSdp(random);
+        candidate = CandidateSerializationBenchmark.candidateLine(random);
+    }
+
+    private JSONObject payload() throws JSONException {
+        return type.equals(SignalingMessage.Candidate)
+                ? SignalingPayloads.candidate("audio", 0, candidate)
+                : SignalingPayloads.description(type, sdp);
+    }
+
+    @Benchmark
+    public String single() throws JSONException {
+        JSONObject message = SignalingPayloads.message(type, payload());
+        return SignalingPayloads.frame("remote-1", Collections.singletonList(message)).toString();
+    }
+
+    // what a flushed outbox sends after OnCommandBenchmark.BatchSize messages
+    @Benchmark
+    public String batch() throws JSONException {
+        List<JSONObject> messages = new ArrayList<>(OnCommandBenchmark.BatchSize);
+        for (int i = 0; i < OnCommandBenchmark.BatchSize; i++) {
+            messages.add(SignalingPayloads.message(type, payload()));
+        }
+        return SignalingPayloads.frame("remote-1", messages).toString();
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.groupcall;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Compares a JMH JSON result file with a baseline recorded on the same
+ * machine. A benchmark regresses when its score gets worse by more than
+ * the allowed percentage (lower throughput, or higher time per operation for
+ * the time based modes), or when it allocates more per operation than the
+ * baseline did by more than the allowed percentage plus
+ * {@link #AllocationSlackBytes}, so a few bytes of noise on an allocation free
+ * path do not fail the build. Benchmarks missing on either side are reported
+ * and never fail. Regressions fail the run unless reportOnly is set.
+ *
+ * <pre>
+ * java BenchmarkComparison baseline.json results.json [maxScoreLossPercent] [maxAllocationRisePercent] [reportOnly]
+ * </pre>
+ */
+public class BenchmarkComparison {
+    public static final double DefaultMaxScoreLossPercent = 10;
+    public static final double DefaultMaxAllocationRisePercent = 10;
+    static final double AllocationSlackBytes = 8;
+    static final String AllocationMetric = "gc.alloc.rate.norm";
+
+    static final class Score {
+        final String mode;
+        final double score;
+        final String unit;
+        // bytes per operation, negative when measured without the gc profiler
+        final double allocated;
+
+        Score(String mode, double score, String unit, double allocated) {
+            this.mode = mode;
+            this.score = score;
+            this.unit = unit;
+            this.allocated = allocated;
+        }
+    }
+
+    private final double maxScoreLossPercent;
+    private final double maxAllocationRisePercent;
+    private final List<String> report = new ArrayList<>();
+    private final List<String> regressions = new ArrayList<>();
+
+    public BenchmarkComparison(double maxScoreLossPercent, double maxAllocationRisePercent) {
+        this.maxScoreLossPercent = maxScoreLossPercent;
+        this.maxAllocationRisePercent = maxAllocationRisePercent;
+    }
+
+    /** One line per benchmark of either file, in name order. */
+    public List<String> report() {
+        return report;
+    }
+
+    public List<String> regressions() {
+        return regressions;
+    }
+
+    public void compare(JSONArray baseline, JSONArray current) throws JSONException {
+        Map<String, Score> before = scores(baseline);
+        Map<String, Score> after = scores(current);
+        Set<String> names = new TreeSet<>(before.keySet());
+        names.addAll(after.keySet());
+        for (String name : names) {
+            Score old = before.get(name);
+            Score now = after.get(name);
+            if (old == null) {
+                report.add(name + ": new, " + format(now));
+            } else if (now == null) {
+                report.add(name + ": not run");
+            } else if (!old.mode.equals(now.mode)) {
+                report.add(name + ": mode changed from " + old.mode + " to " + now.mode + ", not compared");
+            } else {
+                compare(name, old, now);
+            }
+        }
+    }
+
+    private void compare(String name, Score old, Score now) {
+        // positive when it got worse
+        double loss = 100 * (old.mode.equals("thrpt") ? old.score - now.score : now.score - old.score) / old.score;
+        StringBuilder line = new StringBuilder(name).append(": ").append(format(now))
+                .append(String.format(" (%+.1f%% score", -loss));
+        boolean regressed = false;
+        if (loss > maxScoreLossPercent) {
+            regressed = true;
+            line.append(" > ").append(maxScoreLossPercent).append("% loss");
+        }
+        if (old.allocated >= 0 && now.allocated >= 0) {
+            line.append(String.format(", %+.0f B/op", now.allocated - old.allocated));
+            if (now.allocated > old.allocated * (1 + maxAllocationRisePercent / 100) + AllocationSlackBytes) {
+                regressed = true;
+                line.append(" > ").append(maxAllocationRisePercent).append("% rise");
+            }
+        }
+        line.append(')');
+        report.add(line.toString());
+        if (regressed) {
+            regressions.add(line.toString());
+        }
+    }
+
+    private static String format(Score score) {
+        String text = String.format("%.3f %s", score.score, score.unit);
+        return score.allocated >= 0 ? text + String.format(", %.0f B/op", score.allocated) : text;
+    }
+
+    // keyed by benchmark method and its parameters, as "Class.method{param=value}"
+    static Map<String, Score> scores(JSONArray results) throws JSONException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            String benchmark = result.getString("benchmark");
+            // drop the package, keep Class.method
+            int method = benchmark.lastIndexOf('.');
+            StringBuilder name = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', method - 1) + 1));
+            JSONObject params = result.optJSONObject("params");
+            if (params != null) {
+                Map<String, String> sorted = new TreeMap<>();
+                Iterator<String> keys = params.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    sorted.put(key, params.getString(key));
+                }
+                name.append(sorted.toString());
+            }
+            JSONObject primary = result.getJSONObject("primaryMetric");
+            double allocated = -1;
+            JSONObject secondary = result.optJSONObject("secondaryMetrics");
+            if (secondary != null) {
+                Iterator<String> keys = secondary.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    // the gc profiler prefixes its metrics with a middle dot
+                    if (key.endsWith(AllocationMetric)) {
+                        allocated = secondary.getJSONObject(key).getDouble("score");
+                    }
+                }
+            }
+            scores.put(name.toString(), new Score(result.getString("mode"), primary.getDouble("score"),
+                    primary.getString("scoreUnit"), allocated));
+        }
+        return scores;
+    }
+
+    private static JSONArray read(String path) throws IOException, JSONException {
+        return new JSONArray(new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8));
+    }
+
+    public static void main(String[] args) throws IOException, JSONException {
+        if (args.length < 2) {
+            System.err.println("usage: BenchmarkComparison baseline.json results.json [maxScoreLossPercent] [maxAllocationRisePercent] [reportOnly]");
+            System.exit(2);
+        }
+        BenchmarkComparison comparison = new BenchmarkComparison(
+                args.length > 2 ? Double.parseDouble(args[2]) : DefaultMaxScoreLossPercent,
+                args.length > 3 ? Double.parseDouble(args[3]) : DefaultMaxAllocationRisePercent);
+        boolean reportOnly = args.length > 4 && Boolean.parseBoolean(args[4]);
+        comparison.compare(read(args[0]), read(args[1]));
+        for (String line : comparison.report()) {
+            System.out.println(line);
+        }
+        if (!comparison.regressions().isEmpty()) {
+            System.err.println(comparison.regressions().size() + " benchmark(s) regressed against " + args[0] + ":");
+            for (String line : comparison.regressions()) {
+                System.err.println("  " + line);
+            }
+            if (reportOnly) {
+                System.err.println("reported only, reportOnly is set");
+                return;
+            }
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.groupcall;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BenchmarkComparisonTest {
+
+    private final BenchmarkComparison comparison = new BenchmarkComparison(10, 10);
+
+    private static JSONObject result(String benchmark, String mode, double score, double allocated, String... params)
+            throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("benchmark", "com.example.groupcall." + benchmark);
+        result.put("mode", mode);
+        JSONObject primary = new JSONObject();
+        primary.put("score", score);
+        primary.put("scoreUnit", mode.equals("thrpt") ? "ops/s" : "us/op");
+        result.put("primaryMetric", primary);
+        if (params.length > 0) {
+            JSONObject values = new JSONObject();
+            for (int i = 0; i < params.length; i += 2) {
+                values.put(params[i], params[i + 1]);
+            }
+            result.put("params", values);
+        }
+        if (allocated >= 0) {
+            JSONObject metric = new JSONObject();
+            metric.put("score", allocated);
+            metric.put("scoreUnit", "B/op");
+            JSONObject secondary = new JSONObject();
+            secondary.put("\u00b7gc.alloc.rate.norm", metric);
+            result.put("secondaryMetrics", secondary);
+        }
+        return result;
+    }
+
+    private static JSONArray results(JSONObject... results) {
+        JSONArray array = new JSONArray();
+        for (JSONObject result : results) {
+            array.put(result);
+        }
+        return array;
+    }
+
+    @Test
+    public void smallChangesPass() throws JSONException {
+        comparison.compare(results(result("A.run", "thrpt", 1000, 100)), results(result("A.run", "thrpt", 950, 105)));
+        assertTrue(comparison.regressions().isEmpty());
+        assertEquals(1, comparison.report().size());
+        assertTrue(comparison.report().get(0), comparison.report().get(0).startsWith("A.run: 950.000 ops/s, 105 B/op"));
+    }
+
+    @Test
+    public void throughputDropFails() throws JSONException {
+        comparison.compare(results(result("A.run", "thrpt", 1000, -1)), results(result("A.run", "thrpt", 850, -1)));
+        assertEquals(1, comparison.regressions().size());
+    }
+
+    @Test
+    public void slowerTimePerOperationFails() throws JSONException {
+        comparison.compare(results(result("A.run", "avgt", 10, -1)), results(result("A.run", "avgt", 12, -1)));
+        assertEquals(1, comparison.regressions().size());
+        comparison.regressions().clear();
+        comparison.compare(results(result("A.run", "avgt", 10, -1)), results(result("A.run", "avgt", 5, -1)));
+        assertTrue(comparison.regressions().isEmpty());
+    }
+
+    @Test
+    public void allocationRiseFails() throws JSONException {
+        comparison.compare(results(result("A.run", "thrpt", 1000, 200)), results(result("A.run", "thrpt", 1200, 240)));
+        assertEquals(1, comparison.regressions().size());
+    }
+
+    @Test
+    public void allocationFreePathsTolerateNoise() throws JSONException {
+        comparison.compare(results(result("A.run", "thrpt", 1000, 0)), results(result("A.run", "thrpt", 1000, 0.02)));
+        assertTrue(comparison.regressions().isEmpty());
+        comparison.compare(results(result("A.run", "thrpt", 1000, 0)), results(result("A.run", "thrpt", 1000, 24)));
+        assertEquals(1, comparison.regressions().size());
+    }
+
+    @Test
+    public void paramsAreComparedSeparately() throws JSONException {
+        comparison.compare(
+                results(result("A.run", "thrpt", 1000, -1, "size", "2"), result("A.run", "thrpt", 100, -1, "size", "128")),
+                results(result("A.run", "thrpt", 100, -1, "size", "128"), result("A.run", "thrpt", 1000, -1, "size", "2")));
+        assertTrue(comparison.regressions().isEmpty());
+        assertEquals(2, comparison.report().size());
+        assertTrue(comparison.report().get(0).startsWith("A.run{size=128}"));
+    }
+
+    @Test
+    public void missingAndNewBenchmarksAreReportedOnly() throws JSONException {
+        comparison.compare(results(result("A.gone", "thrpt", 1000, -1)), results(result("A.added", "thrpt", 1, -1)));
+        assertTrue(comparison.regressions().isEmpty());
+        assertTrue(comparison.report().get(0).startsWith("A.added: new"));
+        assertEquals("A.gone: not run", comparison.report().get(1));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.groupcall;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The answering side of an offer through {@link Negotiation}, on a
+ * {@link FakeMediaBackend} with callbacks run inline: the remote candidates
+ * arrive first, then the offer is set, answered, the answer set as the local
+ * description and sent along with the gathered candidates. Measures the
+ * signaling overhead around a negotiation, timings and payloads included,
+ * without any media.
+ */
+@State(Scope.Thread)
+public class NegotiationBenchmark implements Negotiation.Host, MediaBackend.Events {
+    private static final int Candidates = 4;
+
+    private final SignalingTimings timings = new SignalingTimings();
+    private final CallMetrics metrics = new CallMetrics();
+    private final SignalingMessage offer = new SignalingMessage();
+    private final SignalingMessage candidate = new SignalingMessage();
+    private FakeMediaBackend backend;
+    private Negotiation negotiation;
+    private int sent;
+
+    @Setup
+    public void setUp() {
+        String sdp = SignalingLoadGenerator.syntheticSdp(new Random(42));
+        backend = new FakeMediaBackend(Runnable::run, sdp, Candidates);
+        offer.from = "remote-1";
+        offer.type = SignalingMessage.Offer;
+        offer.sdpType = "offer";
+        offer.sdp = sdp;
+        candidate.from = "remote-1";
+        candidate.type = SignalingMessage.Candidate;
+        candidate.candidateId = "audio";
+        candidate.candidate = "candidate:0 1 udp 2122260223 10.0.0.9 50000 typ host generation 0";
+    }
+
+    @Benchmark
+    public int answerOffer() {
+        MediaBackend.Peer peer = backend.createPeer("remote-1", this);
+        negotiation = new Negotiation(peer, this, Runnable::run, timings, metrics, false);
+        for (int i = 0; i < Candidates; i++) {
+            negotiation.addRemoteCandidate(candidate);
+        }
+        negotiation.answer(offer);
+        peer.close();
+        return sent;
+    }
+
+    @Override
+    public boolean isCurrent() {
+        return true;
+    }
+
+    @Override
+    public void send(String type, JSONObject payload) {
+        sent++;
+    }
+
+    @Override
+    public String transformLocal(String sdp) {
+        return sdp;
+    }
+
+    @Override
+    public String transformRemote(String type, String sdp) {
+        return sdp;
+    }
+
+    @Override
+    public void onFailure(String error) {
+        throw new IllegalStateException(error);
+    }
+
+    @Override
+    public void onIceCandidate(MediaBackend.Candidate candidate) {
+        negotiation.onIceCandidate(candidate);
+    }
+
+    @Override
+    public void onIceConnectionChange(IceConnectionMonitor.Ice state) {
+    }
+
+    @Override
+    public void onAddStream(String label, List<String> audioTrackIds) {
+    }
+
+    @Override
+    public void onRemoveStream(String label) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.groupcall;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * The SDP rewrites WebRTCClient applies to every description: the local
+ * chain on what we create, followed by the parse and serialize that checks
+ * it, and the codec order and b=AS put on what the remote sends. Preferring
+ * VP9 and ISAC moves payload types on a description that lists VP8 and opus
+ * first, so every rewrite has work to do.
+ */
+@State(Scope.Thread)
+public class SdpTransformersBenchmark {
+    private final SdpTransformer codecPreference = SdpTransformers.chain(
+            SdpTransformers.preferCodec("video", "VP9"),
+            SdpTransformers.preferCodec("audio", "ISAC"));
+    private final SdpTransformer local = SdpTransformers.chain(
+            codecPreference,
+            SdpTransformers.opusDtxAndFec(),
+            SdpTransformers.videoStartBitrate("VP9", 800));
+    private final SdpTransformer remote = SdpTransformers.chain(codecPreference, SdpTransformers.bandwidth("video", 1500),
+            SdpTransformers.opusMaxAverageBitrate(32));
+    private String sdp;
+
+    @Setup
+    public void setUp() {
+        sdp = SignalingLoadGenerator.syntheticSdp(new Random(42));
+    }
+
+    @Benchmark
+    public String local() {
+        return local.transform(sdp);
+    }
+
+    @Benchmark
+    public String localChecked() {
+        return Sdp.parse(local.transform(sdp)).serialize();
+    }
+
+    @Benchmark
+    public String remote() {
+        return remote.transform(sdp);
+    }
+
+    @Benchmark
+    public String preferCodec() {
+        return codecPreference.transform(sdp);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Decoding what arrives on the "message" event, for every mesh message type,
+ * and parsing and framing what goes out. {@link #jsonObject} is what runs in
+ * the app, socket.io-client handing over a parsed JSONObject; {@link #jsonText}
+ * adds the parse a recorded frame needs. Run with the gc profiler, as the
+ * build does, for the allocations per decode.
+ */
+@State(Scope.Thread)
+public class SignalingCodecBenchmark {
+
+    /** One received message of each type, as text and as the JSONObject socket.io parses it into. */
+    @State(Scope.Thread)
+    public static class Frame {
+        @Param({"init", "offer", "answer", "candidate"})
+        public String type;
+
+        String text;
+        JSONObject object;
+
+        @Setup
+        public void setUp() throws JSONException {
+            for (SignalingRecording.Entry entry : SignalingLoadGenerator.synthesize(2, 1, 42).entries) {
+                if (entry.payload.contains("\"type\":\"" + type + "\"")) {
+                    text = entry.payload;
+                    break;
+                }
+            }
+            object = new JSONObject(text);
+        }
+    }
+
+    private final JsonSignalingCodec json = new JsonSignalingCodec();
+    private final SignalingMessage into = new SignalingMessage();
+    private final MessageFramer framer = new MessageFramer(16 * 1024);
+    private String sdp;
+    private ByteBuffer payload;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() {
+        sdp = SignalingLoadGenerator.syntheticSdp(new Random(42));
+        payload = ByteBuffer.wrap(sdp.getBytes(MessageFramer.Utf8));
+        encoded = framer.encode(1, "signaling", payload.duplicate()).get(0);
+    }
+
+    @Benchmark
+    public SignalingMessage jsonObject(Frame frame) {
+        json.decode(frame.object, into);
+        return into;
+    }
+
+    @Benchmark
+    public SignalingMessage jsonText(Frame frame) {
+        json.decode(frame.text, into);
+        return into;
+    }
+
+    @Benchmark
+    public String sdpParseSerialize() {
+        return Sdp.parse(sdp).serialize();
+    }
+
+    @Benchmark
+    public List<ByteBuffer> framerEncode() {
+        return framer.encode(1, "signaling", payload.duplicate());
+    }
+
+    @Benchmark
+    public MessageFramer.Frame framerDecode() {
+        return MessageFramer.decode(encoded);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A received frame through decode, the command pipeline and its timings, as
+ * WebRTCClient handles the JSONObject socket.io delivers on the signaling
+ * thread, and the histograms every
+ * timed stage and stats poll records into.
+ */
+@State(Scope.Thread)
+public class SignalingDispatchBenchmark {
+    private static final String Candidate = "{\"from\":\"remote-1\",\"type\":\"candidate\",\"payload\":{\"id\":\"audio\","
+            + "\"label\":0,\"candidate\":\"candidate:1 1 udp 2122260223 10.0.0.2 50000 typ host generation 0\"}}";
+
+    private final SignalingTimings timings = new SignalingTimings();
+    private final RingHistogram ring = new RingHistogram(256);
+    private final LatencyHistogram latency = new LatencyHistogram(LatencyHistogram.DefaultSubBucketBits,
+            LatencyHistogram.DefaultHighestTrackable);
+    private SignalingDispatcher dispatcher;
+    private JSONObject candidate;
+    private long value;
+
+    @Setup
+    public void setUp() throws JSONException {
+        candidate = new JSONObject(Candidate);
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.add(timings);
+        dispatcher = new SignalingDispatcher(pipeline, timings, new SignalingDispatcher.Host() {
+            @Override
+            public boolean accept(SignalingMessage message) {
+                return true;
+            }
+
+            @Override
+            public void onIgnored(String reason) {
+            }
+        });
+        dispatcher.register(SignalingMessage.Candidate, (peerId, message) -> { });
+    }
+
+    @Benchmark
+    public int dispatchCandidate() throws JSONException {
+        return dispatcher.handle(candidate);
+    }
+
+    @Benchmark
+    public long ringHistogramRecord() {
+        value = value * 6364136223846793005L + 1442695040888963407L;
+        ring.record((value >>> 40) & 0xfffff);
+        return ring.count();
+    }
+
+    @Benchmark
+    public long latencyHistogramRecord() {
+        value = value * 6364136223846793005L + 1442695040888963407L;
+        latency.record((value >>> 40) & 0xfffff);
+        return latency.count();
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.groupcall;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the active speaker from periodic remote audio levels. Each end point
+ * keeps a sliding window of its last levels and its energy is the mean square
+ * over that window. A challenger only takes over when it has been the
+ * loudest by {@code switchRatio} over the current speaker (or the current
+ * speaker went silent) for {@code holdMs}, so a cough or a crosstalk burst
+ * does not flip the layout.
+ */
+class ActiveSpeakerDetector {
+    static final int MaxAudioLevel = 32767;
+    static final int DefaultWindow = 6;
+    static final long DefaultHoldMs = 900;
+    static final double DefaultSwitchRatio = 1.5;
+    // normalized level below which a participant is considered silent
+    static final double DefaultSilenceLevel = 0.02;
+
+    private static final class Window {
+        final double[] levels;
+        int next;
+        int count;
+        double sumOfSquares;
+
+        Window(int size) {
+            levels = new double[size];
+        }
+
+        void add(double level) {
+            if (count == levels.length) {
+                sumOfSquares -= levels[next] * levels[next];
+            } else {
+                count++;
+            }
+            levels[next] = level;
+            sumOfSquares += level * level;
+            next = (next + 1) % levels.length;
+        }
+
+        double energy() {
+            // clamp rounding drift from the running sum
+            return count == 0 ? 0 : Math.max(0, sumOfSquares / count);
+        }
+    }
+
+    private final int windowSize;
+    private final long holdMs;
+    private final double switchRatio;
+    private final double silenceEnergy;
+    private final Map<Integer, Window> windows = new HashMap<>();
+    private int speaker = -1;
+    private int challenger = -1;
+    private long challengerSinceMs;
+
+    ActiveSpeakerDetector(int windowSize, long holdMs, double switchRatio, double silenceLevel) {
+        this.windowSize = windowSize;
+        this.holdMs = holdMs;
+        this.switchRatio = switchRatio;
+        this.silenceEnergy = silenceLevel * silenceLevel;
+    }
+
+    /** Normalized 0..1 audio level of a received audio ssrc report, or -1 for any other report. */
+    static double audioLevel(String type, Map<String, String> values) {
+        if (!"ssrc".equals(type)) {
+            return -1;
+        }
+        String level = values.get("audioOutputLevel");
+        if (level == null || level.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Math.min(1, Math.max(0, Integer.parseInt(level) / (double) MaxAudioLevel));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    void onAudioLevel(int endPoint, double level) {
+        Window window = windows.get(endPoint);
+        if (window == null) {
+            window = new Window(windowSize);
+            windows.put(endPoint, window);
+        }
+        window.add(level);
+    }
+
+    // returns true when the speaker changed
+    boolean remove(int endPoint) {
+        windows.remove(endPoint);
+        if (challenger == endPoint) {
+            challenger = -1;
+        }
+        if (speaker != endPoint) {
+            return false;
+        }
+        speaker = -1;
+        return true;
+    }
+
+    /** Re-evaluates after a round of levels; returns true when the speaker changed. */
+    boolean evaluate(long nowMs) {
+        int loudest = -1;
+        double loudestEnergy = silenceEnergy;
+        for (Map.Entry<Integer, Window> entry : windows.entrySet()) {
+            double energy = entry.getValue().energy();
+            if (energy > loudestEnergy) {
+                loudest = entry.getKey();
+                loudestEnergy = energy;
+            }
+        }
+        if (loudest < 0 || loudest == speaker) {
+            challenger = -1;
+            return false;
+        }
+        double speakerEnergy = energy(speaker);
+        if (speaker >= 0 && speakerEnergy > silenceEnergy && loudestEnergy < speakerEnergy * switchRatio) {
+            challenger = -1;
+            return false;
+        }
+        if (challenger != loudest) {
+            challenger = loudest;
+            challengerSinceMs = nowMs;
+        }
+        // the first speaker of the call is taken without waiting
+        if (speaker >= 0 && nowMs - challengerSinceMs < holdMs) {
+            return false;
+        }
+        speaker = loudest;
+        challenger = -1;
+        return true;
+    }
+
+    int speaker() {
+        return speaker;
+    }
+
+    double energy(int endPoint) {
+        Window window = windows.get(endPoint);
+        return window == null ? 0 : window.energy();
+    }
+
+    /** End points loudest first, with the current speaker always at the head. */
+    List<Integer> ranking() {
+        List<Integer> ranking = new ArrayList<>(windows.keySet());
+        Collections.sort(ranking, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (a == speaker || b == speaker) {
+                    return a == speaker ? (b == speaker ? 0 : -1) : 1;
+                }
+                return Double.compare(energy(b), energy(a));
+            }
+        });
+        return ranking;
+    }
+}
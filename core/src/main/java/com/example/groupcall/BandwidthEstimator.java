@@ -0,0 +1,96 @@
+package com.example.groupcall;
+
+/**
+ * Loss and delay based estimate of the bandwidth available to one peer, fed
+ * with consecutive {@link StatsSample}s. Heavy loss cuts the estimate in
+ * proportion to the loss, a rising RTT or jitter cuts it by a fixed step, and
+ * a clean interval grows it multiplicatively, but never past
+ * {@link #MaxSendRateRatio} times what was actually sent: a sender that is
+ * not using the estimate tells nothing about whether the path could carry more.
+ */
+class BandwidthEstimator {
+    static final double HighLoss = 0.10;
+    static final double LowLoss = 0.02;
+    static final double IncreaseFactor = 1.08;
+    static final double MaxSendRateRatio = 1.5;
+    static final double DelayDecreaseFactor = 0.85;
+    static final int MaxJitterMs = 50;
+    private static final double Smoothing = 0.3;
+
+    private final int minKbps;
+    private final int maxKbps;
+    private double estimateKbps;
+    private StatsSample previous;
+    private double lossFraction;
+    private double smoothedRttMs = -1;
+    private double baseRttMs = -1;
+    private double smoothedJitterMs;
+    private double sendRateKbps;
+
+    BandwidthEstimator(int startKbps, int minKbps, int maxKbps) {
+        this.minKbps = minKbps;
+        this.maxKbps = maxKbps;
+        this.estimateKbps = clamp(startKbps);
+    }
+
+    double update(StatsSample sample) {
+        StatsSample last = previous;
+        previous = sample;
+        if (last == null || sample.timestampMs <= last.timestampMs) {
+            return estimateKbps;
+        }
+        long sent = Math.max(0, sample.packetsSent - last.packetsSent);
+        long lost = Math.max(0, sample.packetsLost - last.packetsLost);
+        lossFraction = sent + lost > 0 ? (double) lost / (sent + lost) : 0;
+        long bytes = Math.max(0, sample.bytesSent - last.bytesSent);
+        sendRateKbps = bytes * 8.0 / (sample.timestampMs - last.timestampMs);
+
+        if (sample.rttMs > 0) {
+            smoothedRttMs = smoothedRttMs < 0 ? sample.rttMs : smoothedRttMs + Smoothing * (sample.rttMs - smoothedRttMs);
+            baseRttMs = baseRttMs < 0 ? sample.rttMs : Math.min(baseRttMs, sample.rttMs);
+        }
+        smoothedJitterMs += Smoothing * (sample.jitterMs - smoothedJitterMs);
+
+        if (lossFraction > HighLoss) {
+            estimateKbps *= 1 - lossFraction / 2;
+        } else if (isDelayBuilding()) {
+            estimateKbps *= DelayDecreaseFactor;
+        } else if (lossFraction < LowLoss) {
+            // an estimate already above the ceiling is held, not cut
+            double ceiling = Math.max(estimateKbps, sendRateKbps * MaxSendRateRatio);
+            estimateKbps = Math.min(estimateKbps * IncreaseFactor + 1, ceiling);
+        }
+        estimateKbps = clamp(estimateKbps);
+        return estimateKbps;
+    }
+
+    // queues are filling up somewhere on the path
+    private boolean isDelayBuilding() {
+        boolean rttRising = baseRttMs > 0 && smoothedRttMs > 2 * baseRttMs + 50;
+        return rttRising || smoothedJitterMs > MaxJitterMs;
+    }
+
+    private double clamp(double kbps) {
+        return Math.max(minKbps, Math.min(maxKbps, kbps));
+    }
+
+    double getEstimateKbps() {
+        return estimateKbps;
+    }
+
+    double getLossFraction() {
+        return lossFraction;
+    }
+
+    double getSmoothedRttMs() {
+        return smoothedRttMs;
+    }
+
+    double getSmoothedJitterMs() {
+        return smoothedJitterMs;
+    }
+
+    double getSendRateKbps() {
+        return sendRateKbps;
+    }
+}
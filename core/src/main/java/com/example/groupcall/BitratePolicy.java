@@ -0,0 +1,102 @@
+package com.example.groupcall;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Maps a bandwidth estimate onto a send level: video layer, frame rate and max
+ * bitrate. Levels come from the {@link VideoLayers} ladder at full and half
+ * frame rate. Stepping down happens on the first sample that no longer fits;
+ * stepping up needs {@code upSamples} consecutive samples with headroom, so a
+ * single good interval does not make the encoder flap.
+ */
+class BitratePolicy {
+    static final double BitsPerPixel = 0.08;
+    static final double DownMargin = 0.9;
+    static final double UpMargin = 1.2;
+    static final int DefaultUpSamples = 3;
+
+    static final class Level {
+        final int layer;
+        final int fps;
+        final int requiredKbps;
+
+        Level(int layer, int fps, int requiredKbps) {
+            this.layer = layer;
+            this.fps = fps;
+            this.requiredKbps = requiredKbps;
+        }
+
+        @Override
+        public String toString() {
+            return "Level{layer=" + layer + ", fps=" + fps + ", requiredKbps=" + requiredKbps + "}";
+        }
+    }
+
+    private final List<Level> levels = new ArrayList<>();
+    private final int upSamples;
+    private int current;
+    private int samplesWithHeadroom;
+    private int maxBitrateKbps;
+
+    BitratePolicy(VideoLayers layers, int upSamples) {
+        for (int layer = 0; layer < layers.count(); layer++) {
+            int fps = layers.fps(layer);
+            levels.add(level(layers, layer, fps));
+            if (fps > 1) {
+                levels.add(level(layers, layer, fps / 2));
+            }
+        }
+        Collections.sort(levels, new Comparator<Level>() {
+            @Override
+            public int compare(Level a, Level b) {
+                return b.requiredKbps - a.requiredKbps;
+            }
+        });
+        this.upSamples = upSamples;
+        this.maxBitrateKbps = levels.get(0).requiredKbps;
+    }
+
+    private static Level level(VideoLayers layers, int layer, int fps) {
+        int required = (int) Math.max(1, layers.width(layer) * (long) layers.height(layer) * fps * BitsPerPixel / 1000);
+        return new Level(layer, fps, required);
+    }
+
+    // returns true when the level changed
+    boolean update(double estimateKbps) {
+        maxBitrateKbps = (int) estimateKbps;
+        if (estimateKbps < levels.get(current).requiredKbps * DownMargin && current < levels.size() - 1) {
+            int next = current + 1;
+            while (next < levels.size() - 1 && estimateKbps < levels.get(next).requiredKbps * DownMargin) {
+                next++;
+            }
+            current = next;
+            samplesWithHeadroom = 0;
+            return true;
+        }
+        if (current > 0 && estimateKbps >= levels.get(current - 1).requiredKbps * UpMargin) {
+            if (++samplesWithHeadroom >= upSamples) {
+                current--;
+                samplesWithHeadroom = 0;
+                return true;
+            }
+            return false;
+        }
+        samplesWithHeadroom = 0;
+        return false;
+    }
+
+    Level level() {
+        return levels.get(current);
+    }
+
+    List<Level> levels() {
+        return Collections.unmodifiableList(levels);
+    }
+
+    int maxBitrateKbps() {
+        return maxBitrateKbps;
+    }
+}
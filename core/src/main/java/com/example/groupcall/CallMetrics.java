@@ -0,0 +1,229 @@
+package com.example.groupcall;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class CallMetrics {
+    /** Call setup milestones, each recorded once relative to when the client was created. */
+    public enum Phase {FACTORY_INIT, SOCKET_CONNECTED, CAPTURER_READY, CALL_STARTED, FIRST_LOCAL_FRAME, FIRST_REMOTE_FRAME}
+
+    private final long originNanos;
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicLong candidatesQueued = new AtomicLong();
+    private final AtomicLong candidatesDrained = new AtomicLong();
+    private final AtomicLong candidatesDropped = new AtomicLong();
+    private final AtomicLong connectedPeers = new AtomicLong();
+    private final AtomicLong timeToFirstConnectedMs = new AtomicLong(-1);
+    private final AtomicLong lastTimeToConnectedMs = new AtomicLong(-1);
+    private final AtomicLong poolHits = new AtomicLong();
+    private final AtomicLong poolMisses = new AtomicLong();
+    private final AtomicLong poolEvictions = new AtomicLong();
+    private final AtomicLong poolReturns = new AtomicLong();
+    private final AtomicLong signalingResumes = new AtomicLong();
+    private final AtomicLong signalingSessionsLost = new AtomicLong();
+    private final AtomicLong lastSignalingRecoveryMs = new AtomicLong(-1);
+    private final AtomicLong iceRestarts = new AtomicLong();
+    private final AtomicLong iceRecoveries = new AtomicLong();
+    private final AtomicLong iceFailures = new AtomicLong();
+    private final AtomicLong lastIceRecoveryMs = new AtomicLong(-1);
+    private final AtomicLong captureStepsDown = new AtomicLong();
+    private final AtomicLong captureStepsUp = new AtomicLong();
+
+    CallMetrics() {
+        this(System.nanoTime());
+    }
+
+    CallMetrics(long originNanos) {
+        this.originNanos = originNanos;
+        for (int i = 0; i < phaseNanos.length(); i++) {
+            phaseNanos.set(i, -1);
+        }
+    }
+
+    void onPoolHit() {
+        poolHits.incrementAndGet();
+    }
+
+    void onPoolMiss() {
+        poolMisses.incrementAndGet();
+    }
+
+    void onPoolEvicted(int count) {
+        poolEvictions.addAndGet(count);
+    }
+
+    void onPoolReturned() {
+        poolReturns.incrementAndGet();
+    }
+
+    // time from a signaling drop until the session was resumed or replaced
+    void onSignalingRecovered(long downtimeMs, boolean resumed) {
+        (resumed ? signalingResumes : signalingSessionsLost).incrementAndGet();
+        lastSignalingRecoveryMs.set(downtimeMs);
+    }
+
+    void onIceRestart() {
+        iceRestarts.incrementAndGet();
+    }
+
+    // time from a peer dropping out until ICE connected again, with or without a restart
+    void onIceRecovered(long outageMs) {
+        iceRecoveries.incrementAndGet();
+        lastIceRecoveryMs.set(outageMs);
+    }
+
+    void onIceFailed() {
+        iceFailures.incrementAndGet();
+    }
+
+    void onCaptureStep(boolean down) {
+        (down ? captureStepsDown : captureStepsUp).incrementAndGet();
+    }
+
+    // returns true the first time the phase is reached, later calls are ignored
+    boolean markPhase(Phase phase) {
+        return markPhase(phase, System.nanoTime());
+    }
+
+    boolean markPhase(Phase phase, long nowNanos) {
+        return phaseNanos.compareAndSet(phase.ordinal(), -1, nowNanos);
+    }
+
+    void onCandidateQueued() {
+        candidatesQueued.incrementAndGet();
+    }
+
+    void onCandidatesDrained(int count) {
+        candidatesDrained.addAndGet(count);
+    }
+
+    void onCandidatesDropped(int count) {
+        candidatesDropped.addAndGet(count);
+    }
+
+    // time from peer creation until its first ICE CONNECTED state
+    void onPeerConnected(long elapsedMs) {
+        connectedPeers.incrementAndGet();
+        timeToFirstConnectedMs.compareAndSet(-1, elapsedMs);
+        lastTimeToConnectedMs.set(elapsedMs);
+    }
+
+    public long getCandidatesQueued() {
+        return candidatesQueued.get();
+    }
+
+    public long getCandidatesDrained() {
+        return candidatesDrained.get();
+    }
+
+    public long getCandidatesDropped() {
+        return candidatesDropped.get();
+    }
+
+    public long getConnectedPeers() {
+        return connectedPeers.get();
+    }
+
+    public long getTimeToFirstConnectedMs() {
+        return timeToFirstConnectedMs.get();
+    }
+
+    public long getLastTimeToConnectedMs() {
+        return lastTimeToConnectedMs.get();
+    }
+
+    public long getPoolHits() {
+        return poolHits.get();
+    }
+
+    public long getPoolMisses() {
+        return poolMisses.get();
+    }
+
+    public long getPoolEvictions() {
+        return poolEvictions.get();
+    }
+
+    public long getPoolReturns() {
+        return poolReturns.get();
+    }
+
+    public long getSignalingResumes() {
+        return signalingResumes.get();
+    }
+
+    public long getSignalingSessionsLost() {
+        return signalingSessionsLost.get();
+    }
+
+    public long getLastSignalingRecoveryMs() {
+        return lastSignalingRecoveryMs.get();
+    }
+
+    public long getIceRestarts() {
+        return iceRestarts.get();
+    }
+
+    public long getIceRecoveries() {
+        return iceRecoveries.get();
+    }
+
+    public long getIceFailures() {
+        return iceFailures.get();
+    }
+
+    public long getLastIceRecoveryMs() {
+        return lastIceRecoveryMs.get();
+    }
+
+    // times the CPU ladder lowered or raised the capture format
+    public long getCaptureStepsDown() {
+        return captureStepsDown.get();
+    }
+
+    public long getCaptureStepsUp() {
+        return captureStepsUp.get();
+    }
+
+    /** Milliseconds from client creation to the phase, -1 if not reached yet. */
+    public long getPhaseMs(Phase phase) {
+        long at = phaseNanos.get(phase.ordinal());
+        return at < 0 ? -1 : (at - originNanos) / 1000000;
+    }
+
+    /** Milliseconds from starting the call to the first remote video frame, -1 until both happened. */
+    public long getTimeToFirstFrameMs() {
+        long started = phaseNanos.get(Phase.CALL_STARTED.ordinal());
+        long firstFrame = phaseNanos.get(Phase.FIRST_REMOTE_FRAME.ordinal());
+        return started < 0 || firstFrame < 0 ? -1 : (firstFrame - started) / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return "CallMetrics{queued=" + getCandidatesQueued()
+                + ", drained=" + getCandidatesDrained()
+                + ", dropped=" + getCandidatesDropped()
+                + ", connectedPeers=" + getConnectedPeers()
+                + ", timeToFirstConnectedMs=" + getTimeToFirstConnectedMs()
+                + ", lastTimeToConnectedMs=" + getLastTimeToConnectedMs()
+                + ", pool={hits=" + getPoolHits() + ", misses=" + getPoolMisses()
+                + ", evictions=" + getPoolEvictions() + ", returns=" + getPoolReturns() + "}"
+                + ", signaling={resumes=" + getSignalingResumes() + ", sessionsLost=" + getSignalingSessionsLost()
+                + ", lastRecoveryMs=" + getLastSignalingRecoveryMs() + "}"
+                + ", ice={restarts=" + getIceRestarts() + ", recoveries=" + getIceRecoveries()
+                + ", failures=" + getIceFailures() + ", lastRecoveryMs=" + getLastIceRecoveryMs() + "}"
+                + ", phasesMs=" + phases()
+                + ", timeToFirstFrameMs=" + getTimeToFirstFrameMs() + "}";
+    }
+
+    private String phases() {
+        StringBuilder phases = new StringBuilder("{");
+        for (Phase phase : Phase.values()) {
+            if (phases.length() > 1) {
+                phases.append(", ");
+            }
+            phases.append(phase).append('=').append(getPhaseMs(phase));
+        }
+        return phases.append('}').toString();
+    }
+}
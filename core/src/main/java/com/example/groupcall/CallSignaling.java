@@ -0,0 +1,860 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The signaling side of a call on any {@link MediaBackend}: the resumable
+ * session, the outbox, the dispatcher, the peers with their
+ * {@link Negotiation}, ICE monitor and bitrate policy, warm peers, and how
+ * participants map onto connections, as a full mesh or as one upstream to a
+ * forwarding server. WebRTCClient runs it on libjingle behind socket.io, the
+ * load generator runs many of them on a {@link FakeMediaBackend} behind a
+ * {@link LocalSignalingServer}.
+ *
+ * Transport events may arrive on any thread, through {@link #on}; everything
+ * else is called on the signaling executor, which the caller starts and
+ * shuts down.
+ */
+class CallSignaling<M extends MediaBackend.Peer> implements LocalSignalingServer.Socket, SignalingDispatcher.Host {
+    static final int MinVideoBitrateKbps = 30;
+    static final int MaxVideoBitrateKbps = 2500;
+    static final int DefaultVideoStartBitrateKbps = 600;
+    // how often connection grace periods, restart timeouts and held back renegotiations are checked
+    static final long IceTickIntervalMs = 500;
+    // a new bitrate level goes out at most this often per peer, the latest one wins
+    static final long RenegotiationIntervalMs = 5000;
+
+    interface TransportFactory {
+        // the transport reports its events back through signaling.on
+        SignalingSession.Transport create(CallSignaling<?> signaling);
+    }
+
+    /** What the app does with the call; called on the signaling thread unless noted. */
+    interface Listener<M extends MediaBackend.Peer> {
+        default void onStatusChanged(String status) {
+        }
+
+        default void onPeerState(CallSignaling<M>.Peer peer, IceConnectionMonitor.State state) {
+        }
+
+        // before it makes or answers its first offer, e.g. to add negotiated data channels
+        default void onPeerCreated(CallSignaling<M>.Peer peer) {
+        }
+
+        // its connection is closed or back in the warm pool next
+        default void onPeerRemoved(CallSignaling<M>.Peer peer) {
+        }
+
+        // every stream that arrives, before the topology places it
+        default void onStreamReceived(CallSignaling<M>.Peer peer, String streamLabel) {
+        }
+
+        // remote streams are displayed from 1 to maxPeers, 0 is the local stream
+        default void onRemoteStream(CallSignaling<M>.Peer peer, String streamLabel, int endPoint) {
+        }
+
+        default void onRemoteStreamRemoved(int endPoint) {
+        }
+
+        default String transformLocal(CallSignaling<M>.Peer peer, String sdp) {
+            return sdp;
+        }
+
+        // throws IllegalArgumentException if the description is malformed
+        default String transformRemote(CallSignaling<M>.Peer peer, String type, String sdp) {
+            return sdp;
+        }
+
+        // every inbound frame, before it is decoded
+        default void onInbound(Object frame) {
+        }
+
+        default void onIgnored(String reason) {
+        }
+
+        default void onFailure(String error) {
+        }
+
+        // on a transport or scheduler thread
+        default void onSignalingRecovered(long downtimeMs, boolean resumed) {
+        }
+    }
+
+    private final MediaBackend<M> backend;
+    private final Listener<M> listener;
+    private final SignalingExecutor executor;
+    private final ScheduledExecutorService scheduler;
+    private final SignalingTimings timings;
+    private final CallMetrics metrics;
+    private final TelemetryCollector telemetry;
+    private final VideoLayers videoLayers;
+    private final int videoStartBitrateKbps;
+    private final SignalingSession session;
+    private final SignalingBatcher<JSONObject> outbox;
+    // only touched from the signaling thread
+    private final SignalingDispatcher dispatcher;
+    private final PeerRegistry<Peer> peers;
+    private final Topology topology;
+    // offering peers created ahead of the call, ICE gathering already running
+    private final PeerConnectionPool<Peer> peerPool;
+    private int warmPeerCount;
+    // false until the backend has what a connection needs, e.g. the local stream and ICE servers
+    private boolean warmPeersEnabled;
+    // name the call was started with, to announce ourselves again when signaling state is lost
+    private String callName;
+    // frames delivered to us, and of those handled or dropped as duplicates
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong handled = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    CallSignaling(TransportFactory transports, MediaBackend<M> backend, Listener<M> listener,
+                  P2PConnectionParameters parameters, SignalingExecutor executor, ScheduledExecutorService scheduler,
+                  CommandPipeline pipeline, SignalingTimings timings, CallMetrics metrics, TelemetryCollector telemetry) {
+        this.backend = backend;
+        this.listener = listener;
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.timings = timings;
+        this.metrics = metrics;
+        this.telemetry = telemetry;
+        this.videoLayers = new VideoLayers(parameters.videoWidth, parameters.videoHeight, parameters.videoFps, VideoLayers.DefaultCount);
+        this.videoStartBitrateKbps = parameters.videoStartBitrate >= MinVideoBitrateKbps ? parameters.videoStartBitrate
+                : DefaultVideoStartBitrateKbps;
+        this.peers = new PeerRegistry<>(parameters.maxPeers);
+        this.topology = parameters.topology == P2PConnectionParameters.Topology.SFU ? new SfuTopology(parameters.maxPeers)
+                : new MeshTopology();
+        this.session = new SignalingSession(transports.create(this), new SessionListener(), scheduler, new Random(),
+                SignalingSession.DefaultReplayCapacity, SignalingSession.DefaultBackoffBaseMs,
+                SignalingSession.DefaultBackoffMaxMs, SignalingSession.DefaultHandshakeTimeoutMs);
+        this.outbox = new SignalingBatcher<>(this::emitMessages, scheduler, SignalingBatcher.DefaultLingerMs,
+                SignalingBatcher.DefaultMaxBatch);
+        this.dispatcher = new SignalingDispatcher(pipeline, timings, this);
+        Negotiation.register(dispatcher, peerId -> peers.get(peerId).negotiation);
+        dispatcher.register(SfuSignaling.Participants, (peerId, message) -> topology.onParticipants(message));
+        this.peerPool = new PeerConnectionPool<>(new PeerConnectionPool.Factory<Peer>() {
+            @Override
+            public Peer create() {
+                Peer peer = new Peer("warm-" + (++warmPeerCount), -1, true);
+                peer.negotiation.createOffer(SignalingTimings.Local);
+                return peer;
+            }
+
+            @Override
+            public void dispose(Peer peer) {
+                peer.media.close();
+            }
+        }, PeerConnectionPool.DefaultMaxIdle, PeerConnectionPool.DefaultMaxAgeMs, metrics);
+    }
+
+    /** Connects the session and starts ticking the peers' ICE monitors. */
+    void connect() {
+        scheduler.scheduleAtFixedRate(() -> post(this::tickPeers), IceTickIntervalMs, IceTickIntervalMs,
+                TimeUnit.MILLISECONDS);
+        session.connect();
+    }
+
+    /** Announces us under {@code name} and opens the connections the topology starts with. */
+    void start(String name) throws JSONException {
+        callName = name;
+        topology.start(name);
+    }
+
+    // more commands, next to the negotiation and roster ones
+    void register(String type, Command command) {
+        dispatcher.register(type, command);
+    }
+
+    /** Keeps {@code count} warm peers once they are enabled. */
+    void warmUp(int count) {
+        peerPool.setTarget(count);
+        refillWarmPeers();
+    }
+
+    /** The backend can create connections worth keeping warm from now on. */
+    void enableWarmPeers() {
+        warmPeersEnabled = true;
+        refillWarmPeers();
+    }
+
+    /** Asks whoever sends the stream at this end point (0 based) for the given layer. */
+    void subscribe(int endPoint, int layer) throws JSONException {
+        topology.subscribe(endPoint, layer);
+    }
+
+    // end point (as passed to onRemoteStream) playing a received audio track, -1 if unknown
+    int endPointOfTrack(Peer peer, String trackId) {
+        return topology.endPointOf(peer, trackId);
+    }
+
+    // candidates are coalesced per destination, anything else flushes the destination right away
+    void sendMessage(String to, String type, JSONObject payload) throws JSONException {
+        outbox.enqueue(to, SignalingPayloads.message(type, payload), SignalingPayloads.flushes(type));
+    }
+
+    /** Leaves the call, flushes the outbox and closes every connection, then the session. */
+    void close() {
+        try {
+            topology.close();
+        } catch (JSONException e) {
+            fail("leave failed: " + e);
+        }
+        outbox.close();
+        for (Peer peer : peers.peers()) {
+            peer.media.close();
+        }
+        peerPool.clear();
+        session.close();
+    }
+
+    SignalingSession session() {
+        return session;
+    }
+
+    VideoLayers videoLayers() {
+        return videoLayers;
+    }
+
+    int videoStartBitrateKbps() {
+        return videoStartBitrateKbps;
+    }
+
+    Collection<Peer> peers() {
+        return peers.peers();
+    }
+
+    int peerCount() {
+        return peers.size();
+    }
+
+    int idleWarmPeers() {
+        return peerPool.idleCount();
+    }
+
+    boolean isOpen() {
+        return session.state() == SignalingSession.State.OPEN;
+    }
+
+    long received() {
+        return received.get();
+    }
+
+    long handled() {
+        return handled.get();
+    }
+
+    // commands that threw, failed negotiations and frames that could not be built
+    long failures() {
+        return failures.get();
+    }
+
+    // messages sent to peers, and the frames they went out in
+    long messagesSent() {
+        return outbox.getMessagesSent();
+    }
+
+    long framesSent() {
+        return outbox.getFramesSent();
+    }
+
+    @Override
+    public void on(String event, Object payload) {
+        switch (event) {
+            case "connect":
+                session.onTransportConnected();
+                break;
+            case "disconnect":
+                session.onTransportDisconnected();
+                break;
+            case "connect_error":
+                session.onConnectError();
+                break;
+            case SignalingSession.SessionEvent:
+                session.onSessionReply((JSONObject) payload);
+                break;
+            case SignalingSession.AckEvent:
+                session.onAck(((JSONObject) payload).optLong("seq"));
+                break;
+            case "message":
+                received.incrementAndGet();
+                if (!session.onInbound(payload)) {
+                    listener.onIgnored("replayed message " + payload);
+                    handled.incrementAndGet();
+                    return;
+                }
+                post(() -> handle(payload));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void handle(Object frame) {
+        listener.onInbound(frame);
+        try {
+            dispatcher.handle(frame);
+        } catch (JSONException | IllegalArgumentException e) {
+            fail("bad frame: " + e);
+        } finally {
+            handled.incrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean accept(SignalingMessage message) {
+        if (topology.peerFor(message) == null) {
+            listener.onIgnored(message.type + " from " + message.from);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void onIgnored(String reason) {
+        listener.onIgnored(reason);
+    }
+
+    // dropped once the executor is shut down
+    private void post(Runnable task) {
+        if (!executor.post(task)) {
+            listener.onIgnored("signaling event after shutdown");
+        }
+    }
+
+    private void fail(String error) {
+        failures.incrementAndGet();
+        listener.onFailure(error);
+    }
+
+    // returns null when every end point is taken; a peer that will send the offer reuses a warm one if there is any
+    private Peer addPeer(String id, boolean offering) {
+        Peer peer = peers.register(id, (peerId, endPoint) -> {
+            Peer warm = offering ? adoptWarmPeer(peerId, endPoint) : null;
+            return warm != null ? warm : new Peer(peerId, endPoint, false);
+        });
+        if (peer != null && peer.telemetry == null) {
+            peer.telemetry = telemetry.register(id);
+            peer.telemetry.setIceState(peer.monitor.state());
+        }
+        refillWarmPeers();
+        return peer;
+    }
+
+    private Peer adoptWarmPeer(String id, int endPoint) {
+        Peer peer = peerPool.lease(System.nanoTime());
+        if (peer != null) {
+            peer.adopt(id, endPoint);
+        }
+        return peer;
+    }
+
+    // warm peers never take more than the end points that are still free
+    private void refillWarmPeers() {
+        if (warmPeersEnabled) {
+            peerPool.fill(System.nanoTime(), peers.capacity() - peers.size());
+        }
+    }
+
+    private boolean removePeer(String id) {
+        Peer peer = peers.remove(id);
+        if (peer == null) {
+            return false;
+        }
+        peer.negotiation.clear();
+        telemetry.remove(id);
+        peer.telemetry = null;
+        listener.onPeerRemoved(peer);
+        // an offer nobody answered can go to the next participant
+        boolean reusable = peer.negotiation.hasUnansweredOffer();
+        if (reusable) {
+            peer.rewarm("warm-" + (++warmPeerCount));
+        }
+        peerPool.release(peer, reusable, System.nanoTime());
+        refillWarmPeers();
+        return true;
+    }
+
+    private void emitMessages(String to, List<JSONObject> messages) {
+        try {
+            session.send("message", SignalingPayloads.frame(to, messages));
+        } catch (JSONException e) {
+            fail("frame to " + to + " failed: " + e);
+        }
+    }
+
+    private void tickPeers() {
+        long nowMs = System.nanoTime() / 1000000;
+        for (Peer peer : peers.peers()) {
+            peer.monitor.tick(nowMs);
+            peer.applyBitrate(nowMs);
+        }
+    }
+
+    private class SessionListener implements SignalingSession.Listener {
+        @Override
+        public void onSessionResumed(long downtimeMs, int replayed) {
+            metrics.onSignalingRecovered(downtimeMs, true);
+            listener.onSignalingRecovered(downtimeMs, true);
+        }
+
+        // media can outlive signaling, but the ICE path may have changed with the network too
+        @Override
+        public void onSessionLost(long downtimeMs) {
+            metrics.onSignalingRecovered(downtimeMs, false);
+            listener.onSignalingRecovered(downtimeMs, false);
+            post(() -> {
+                if (callName == null) {
+                    return;
+                }
+                try {
+                    topology.onSessionLost();
+                } catch (JSONException e) {
+                    fail("rejoin failed: " + e);
+                }
+            });
+        }
+    }
+
+    // how remote participants map onto connections; only called on the signaling thread
+    private abstract class Topology {
+        abstract void start(String name) throws JSONException;
+
+        // peer that handles this message, null to ignore it
+        abstract Peer peerFor(SignalingMessage message);
+
+        abstract void onAddStream(Peer peer, String label, List<String> audioTrackIds);
+
+        abstract void onRemoveStream(Peer peer, String label);
+
+        abstract void onPeerLost(Peer peer);
+
+        abstract void onParticipants(SignalingMessage message) throws JSONException;
+
+        abstract void subscribe(int endPoint, int layer) throws JSONException;
+
+        abstract int endPointOf(Peer peer, String trackId);
+
+        // the server forgot us while signaling was down; only called once the call was started
+        abstract void onSessionLost() throws JSONException;
+
+        abstract void close() throws JSONException;
+    }
+
+    private class MeshTopology extends Topology {
+        @Override
+        void start(String name) throws JSONException {
+            JSONObject message = new JSONObject();
+            message.put("name", name);
+            session.send("readyToStream", message);
+        }
+
+        @Override
+        void onSessionLost() throws JSONException {
+            start(callName);
+            for (Peer peer : peers.peers()) {
+                peer.restartIce();
+            }
+        }
+
+        // an unknown peer is only added by init or offer; once every end point is taken the call is ignored
+        @Override
+        Peer peerFor(SignalingMessage message) {
+            Peer peer = peers.get(message.from);
+            if (peer != null || !message.opensPeer()) {
+                return peer;
+            }
+            // init asks us to send the offer
+            return addPeer(message.from, SignalingMessage.Init.equals(message.type));
+        }
+
+        @Override
+        void onAddStream(Peer peer, String label, List<String> audioTrackIds) {
+            listener.onRemoteStream(peer, label, peer.endPoint + 1);
+        }
+
+        @Override
+        void onRemoveStream(Peer peer, String label) {
+            remove(peer);
+        }
+
+        @Override
+        void onPeerLost(Peer peer) {
+            remove(peer);
+            listener.onStatusChanged("DISCONNECTED");
+        }
+
+        private void remove(Peer peer) {
+            // rewarming takes the end point away
+            int endPoint = peer.endPoint;
+            if (removePeer(peer.id)) {
+                listener.onRemoteStreamRemoved(endPoint + 1);
+            }
+        }
+
+        @Override
+        void onParticipants(SignalingMessage message) {
+            listener.onIgnored("SFU roster in mesh mode");
+        }
+
+        @Override
+        void subscribe(int endPoint, int layer) throws JSONException {
+            for (Peer peer : peers.peers()) {
+                if (peer.endPoint == endPoint) {
+                    JSONObject payload = new JSONObject();
+                    payload.put("layer", layer);
+                    sendMessage(peer.id, "layer", payload);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        int endPointOf(Peer peer, String trackId) {
+            // one remote stream per connection
+            return peer.endPoint + 1;
+        }
+
+        @Override
+        void close() {
+        }
+    }
+
+    /**
+     * Single upstream connection to a forwarding server. Local media is sent
+     * once; every other participant arrives as its own stream on the same
+     * connection and is mapped to an end point through the roster.
+     */
+    private class SfuTopology extends Topology implements SfuRoster.Listener {
+        private final SfuRoster roster;
+        // audio track ids of the streams that arrived before the roster entry naming them, by label
+        private final HashMap<String, List<String>> unassignedStreams = new HashMap<>();
+        private final HashMap<String, List<String>> streams = new HashMap<>();
+        // received audio track id -> end point, for speaker detection
+        private final HashMap<String, Integer> audioTracks = new HashMap<>();
+
+        SfuTopology(int maxPeers) {
+            this.roster = new SfuRoster(maxPeers);
+        }
+
+        @Override
+        void start(String name) throws JSONException {
+            join(name);
+        }
+
+        // the upstream is only opened here, with our offer; the server never opens one
+        private void join(String name) throws JSONException {
+            Peer upstream = addPeer(SfuSignaling.ServerId, true);
+            sendMessage(SfuSignaling.ServerId, SfuSignaling.Join, SfuSignaling.join(name));
+            upstream.negotiation.offer(SignalingTimings.Local);
+        }
+
+        // a lost upstream is opened again, a live one keeps its media and only restarts ICE
+        @Override
+        void onSessionLost() throws JSONException {
+            Peer upstream = peers.get(SfuSignaling.ServerId);
+            if (upstream == null) {
+                join(callName);
+                return;
+            }
+            sendMessage(SfuSignaling.ServerId, SfuSignaling.Join, SfuSignaling.join(callName));
+            upstream.restartIce();
+        }
+
+        // without an upstream, e.g. before start or after it failed, the server's messages are dropped
+        @Override
+        Peer peerFor(SignalingMessage message) {
+            return SfuSignaling.ServerId.equals(message.from) ? peers.get(message.from) : null;
+        }
+
+        @Override
+        void onAddStream(Peer peer, String label, List<String> audioTrackIds) {
+            int endPoint = roster.endPointOf(label);
+            if (endPoint < 0) {
+                unassignedStreams.put(label, audioTrackIds);
+                return;
+            }
+            streams.put(label, audioTrackIds);
+            place(peer, label, audioTrackIds, endPoint + 1);
+        }
+
+        private void place(Peer peer, String label, List<String> audioTrackIds, int endPoint) {
+            for (String trackId : audioTrackIds) {
+                audioTracks.put(trackId, endPoint);
+            }
+            listener.onRemoteStream(peer, label, endPoint);
+        }
+
+        @Override
+        void onRemoveStream(Peer peer, String label) {
+            unassignedStreams.remove(label);
+            streams.remove(label);
+        }
+
+        @Override
+        void onPeerLost(Peer peer) {
+            roster.clear(this);
+            unassignedStreams.clear();
+            audioTracks.clear();
+            removePeer(peer.id);
+            listener.onStatusChanged("DISCONNECTED");
+        }
+
+        @Override
+        void onParticipants(SignalingMessage message) throws JSONException {
+            roster.update(SfuSignaling.parseParticipants(message.payload), this);
+        }
+
+        @Override
+        void subscribe(int endPoint, int layer) throws JSONException {
+            String streamLabel = roster.streamLabelAt(endPoint);
+            if (streamLabel != null) {
+                sendMessage(SfuSignaling.ServerId, SfuSignaling.Subscribe, SfuSignaling.subscribe(streamLabel, layer));
+            }
+        }
+
+        @Override
+        public void onParticipantJoined(String participantId, String streamLabel, int endPoint) {
+            List<String> audioTrackIds = unassignedStreams.remove(streamLabel);
+            Peer upstream = peers.get(SfuSignaling.ServerId);
+            if (audioTrackIds != null && upstream != null) {
+                streams.put(streamLabel, audioTrackIds);
+                place(upstream, streamLabel, audioTrackIds, endPoint + 1);
+            }
+        }
+
+        @Override
+        public void onParticipantLeft(String participantId, String streamLabel, int endPoint) {
+            List<String> audioTrackIds = streams.remove(streamLabel);
+            if (audioTrackIds != null) {
+                for (String trackId : audioTrackIds) {
+                    audioTracks.remove(trackId);
+                }
+                listener.onRemoteStreamRemoved(endPoint + 1);
+            }
+        }
+
+        @Override
+        int endPointOf(Peer peer, String trackId) {
+            Integer endPoint = trackId == null ? null : audioTracks.get(trackId);
+            return endPoint == null ? -1 : endPoint;
+        }
+
+        @Override
+        void close() throws JSONException {
+            if (peers.contains(SfuSignaling.ServerId)) {
+                sendMessage(SfuSignaling.ServerId, SfuSignaling.Leave, SfuSignaling.leave());
+            }
+        }
+    }
+
+    /** One remote, or the forwarding server, over one backend connection. */
+    final class Peer implements Negotiation.Host, MediaBackend.Events, IceConnectionMonitor.Listener {
+        private final M media;
+        // offer/answer, candidates and warm offers, over media
+        private final Negotiation negotiation;
+        private String id;
+        private int endPoint;
+        private long createdAt = System.nanoTime();
+        private boolean connected;
+        private final IceConnectionMonitor monitor = new IceConnectionMonitor(IceConnectionMonitor.DefaultConnectTimeoutMs,
+                IceConnectionMonitor.DefaultGraceMs, IceConnectionMonitor.DefaultRestartTimeoutMs,
+                IceConnectionMonitor.DefaultMaxRestarts, this, System.nanoTime() / 1000000);
+        private final BandwidthEstimator bandwidthEstimator = new BandwidthEstimator(videoStartBitrateKbps,
+                MinVideoBitrateKbps, MaxVideoBitrateKbps);
+        private final BitratePolicy bitratePolicy = new BitratePolicy(videoLayers, BitratePolicy.DefaultUpSamples);
+        // null while warm or pooled; read on the stats thread
+        private volatile PeerTelemetry telemetry;
+        // a level change the remote has not answered for yet, held back until nextRenegotiationMs
+        private boolean renegotiationPending;
+        private long nextRenegotiationMs = Long.MIN_VALUE;
+
+        // created by warmUp: the offer and candidates are held back until it is adopted
+        private Peer(String id, int endPoint, boolean warm) {
+            this.id = id;
+            this.endPoint = endPoint;
+            this.media = backend.createPeer(id, this);
+            this.negotiation = new Negotiation(media, this, CallSignaling.this::post, timings, metrics, warm);
+            listener.onPeerCreated(this);
+            if (!warm) {
+                listener.onStatusChanged("CONNECTING");
+            }
+        }
+
+        String id() {
+            return id;
+        }
+
+        // 0 based, -1 while warm
+        int endPoint() {
+            return endPoint;
+        }
+
+        M media() {
+            return media;
+        }
+
+        PeerTelemetry telemetry() {
+            return telemetry;
+        }
+
+        BitratePolicy.Level level() {
+            return bitratePolicy.level();
+        }
+
+        int maxBitrateKbps() {
+            return bitratePolicy.maxBitrateKbps();
+        }
+
+        /**
+         * Feeds a video stats sample to the estimate; true if the bitrate
+         * policy moved to another level, which is then renegotiated.
+         */
+        boolean onVideoSample(StatsSample sample) {
+            if (!bitratePolicy.update(bandwidthEstimator.update(sample))) {
+                return false;
+            }
+            renegotiationPending = true;
+            applyBitrate(System.nanoTime() / 1000000);
+            return true;
+        }
+
+        // the cap reaches the encoder as b=AS in the answer to a new offer, libjingle has no RtpSender to set it on
+        private void applyBitrate(long nowMs) {
+            if (!renegotiationPending || nowMs < nextRenegotiationMs) {
+                return;
+            }
+            // else an offer or answer is under way; tried again on the next tick
+            if (negotiation.renegotiate()) {
+                renegotiationPending = false;
+                nextRenegotiationMs = nowMs + RenegotiationIntervalMs;
+            }
+        }
+
+        // called from the registry factory, before the peer is visible under its new id
+        private void adopt(String id, int endPoint) {
+            this.id = id;
+            this.endPoint = endPoint;
+            this.createdAt = System.nanoTime();
+            monitor.reset(createdAt / 1000000);
+            listener.onStatusChanged("CONNECTING");
+        }
+
+        // back to the pool after its remote left without answering
+        private void rewarm(String warmId) {
+            this.id = warmId;
+            this.endPoint = -1;
+            this.connected = false;
+            negotiation.rewarm();
+        }
+
+        // new ICE credentials on the same connection; a pending offer is left to complete
+        private void restartIce() {
+            if (!negotiation.restartIce()) {
+                listener.onIgnored("ICE restart for " + id + " in " + media.signalingState());
+            }
+        }
+
+        // false once this peer was removed, possibly replaced by a new one with the same id
+        @Override
+        public boolean isCurrent() {
+            return peers.get(id) == this;
+        }
+
+        @Override
+        public void send(String type, JSONObject payload) throws JSONException {
+            sendMessage(id, type, payload);
+        }
+
+        @Override
+        public String transformLocal(String sdp) {
+            return listener.transformLocal(this, sdp);
+        }
+
+        @Override
+        public String transformRemote(String type, String sdp) {
+            return listener.transformRemote(this, type, sdp);
+        }
+
+        @Override
+        public void onFailure(String error) {
+            fail("negotiation with " + id + " failed: " + error);
+        }
+
+        @Override
+        public void onIceCandidate(MediaBackend.Candidate candidate) {
+            negotiation.onIceCandidate(candidate);
+        }
+
+        @Override
+        public void onIceConnectionChange(IceConnectionMonitor.Ice state) {
+            post(() -> {
+                if (isCurrent()) {
+                    monitor.onIceState(state, System.nanoTime() / 1000000);
+                }
+            });
+        }
+
+        @Override
+        public void onAddStream(String label, List<String> audioTrackIds) {
+            post(() -> {
+                if (isCurrent()) {
+                    listener.onStreamReceived(this, label);
+                    topology.onAddStream(this, label, audioTrackIds);
+                }
+            });
+        }
+
+        @Override
+        public void onRemoveStream(String label) {
+            post(() -> {
+                if (isCurrent()) {
+                    topology.onRemoveStream(this, label);
+                }
+            });
+        }
+
+        @Override
+        public void onStateChanged(IceConnectionMonitor.State from, IceConnectionMonitor.State to) {
+            PeerTelemetry peerTelemetry = telemetry;
+            if (peerTelemetry != null) {
+                peerTelemetry.setIceState(to);
+            }
+            listener.onPeerState(this, to);
+            if (to == IceConnectionMonitor.State.CONNECTED && !connected) {
+                connected = true;
+                metrics.onPeerConnected((System.nanoTime() - createdAt) / 1000000);
+            }
+            if (to == IceConnectionMonitor.State.FAILED) {
+                metrics.onIceFailed();
+                topology.onPeerLost(this);
+            }
+        }
+
+        // the answering side waits for the offerer's restart
+        @Override
+        public void onRestartIce(int attempt) {
+            metrics.onIceRestart();
+            if (negotiation.isOfferer()) {
+                restartIce();
+            }
+        }
+
+        @Override
+        public void onRecovered(long outageMs, int restarts) {
+            metrics.onIceRecovered(outageMs);
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.groupcall;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caps the capture format while the encoder cannot keep up. Steps come from
+ * the {@link VideoLayers} ladder at full and half frame rate, ordered by pixel
+ * rate. {@code DownSamples} overused samples in a row step one down; stepping
+ * back up needs {@code upSamples} underused samples, and that number doubles
+ * whenever a step up is followed by overuse right away, so a device that sits
+ * on the edge settles instead of flapping.
+ */
+class CaptureLadder {
+    // share of the frame interval spent encoding
+    static final int HighUsagePercent = 85;
+    static final int LowUsagePercent = 50;
+    // share of captured frames that never reached the encoder output
+    static final double MaxDropRatio = 0.2;
+    static final int DownSamples = 2;
+    static final int DefaultUpSamples = 5;
+    static final int MaxUpSamples = 80;
+
+    static final class Step {
+        final int layer;
+        final int width;
+        final int height;
+        final int fps;
+
+        Step(int layer, int width, int height, int fps) {
+            this.layer = layer;
+            this.width = width;
+            this.height = height;
+            this.fps = fps;
+        }
+
+        long pixelRate() {
+            return (long) width * height * fps;
+        }
+
+        @Override
+        public String toString() {
+            return "Step{" + width + "x" + height + "@" + fps + ", layer=" + layer + "}";
+        }
+    }
+
+    /** Encoder load of one outgoing video stream, from the same ssrc report as {@link StatsSample}. */
+    static final class Load {
+        final int encodeUsagePercent;
+        final double frameRateInput;
+        final double frameRateSent;
+
+        Load(int encodeUsagePercent, double frameRateInput, double frameRateSent) {
+            this.encodeUsagePercent = encodeUsagePercent;
+            this.frameRateInput = frameRateInput;
+            this.frameRateSent = frameRateSent;
+        }
+
+        double dropRatio() {
+            return frameRateInput > 0 ? Math.max(0, 1 - frameRateSent / frameRateInput) : 0;
+        }
+
+        /**
+         * Reads the load from the name/value pairs of a StatsReport, or returns
+         * null if the report is not the outgoing video ssrc. Without
+         * googEncodeUsagePercent the usage is derived from googAvgEncodeMs.
+         */
+        static Load fromReport(String type, Map<String, String> values) {
+            if (!"ssrc".equals(type) || !values.containsKey("googFrameRateInput")) {
+                return null;
+            }
+            double input = parseDouble(values.get("googFrameRateInput"));
+            double sent = parseDouble(values.get("googFrameRateSent"));
+            int usage;
+            if (values.containsKey("googEncodeUsagePercent")) {
+                usage = (int) parseDouble(values.get("googEncodeUsagePercent"));
+            } else {
+                usage = (int) (parseDouble(values.get("googAvgEncodeMs")) * input / 10);
+            }
+            return new Load(usage, input, sent);
+        }
+
+        /** The heavier of two loads, each measure taken separately; either may be null. */
+        static Load worst(Load a, Load b) {
+            if (a == null || b == null) {
+                return a == null ? b : a;
+            }
+            double input = Math.max(a.frameRateInput, b.frameRateInput);
+            double dropRatio = Math.max(a.dropRatio(), b.dropRatio());
+            return new Load(Math.max(a.encodeUsagePercent, b.encodeUsagePercent), input, input * (1 - dropRatio));
+        }
+
+        private static double parseDouble(String value) {
+            if (value == null || value.isEmpty()) {
+                return 0;
+            }
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Load{usage=" + encodeUsagePercent + "%, input=" + frameRateInput + ", sent=" + frameRateSent + "}";
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+    private final int initialUpSamples;
+    private int upSamples;
+    private int current;
+    private int overused;
+    private int underused;
+    // samples since the last step up, -1 if the last change was a step down
+    private int sinceStepUp = -1;
+    private int stepsDown;
+    private int stepsUp;
+
+    CaptureLadder(VideoLayers layers, int upSamples) {
+        for (int layer = 0; layer < layers.count(); layer++) {
+            int fps = layers.fps(layer);
+            steps.add(new Step(layer, layers.width(layer), layers.height(layer), fps));
+            if (fps > 1) {
+                steps.add(new Step(layer, layers.width(layer), layers.height(layer), fps / 2));
+            }
+        }
+        Collections.sort(steps, new Comparator<Step>() {
+            @Override
+            public int compare(Step a, Step b) {
+                return Long.compare(b.pixelRate(), a.pixelRate());
+            }
+        });
+        this.initialUpSamples = upSamples;
+        this.upSamples = upSamples;
+    }
+
+    // returns true when the step changed
+    boolean update(Load load) {
+        if (sinceStepUp >= 0) {
+            sinceStepUp++;
+        }
+        boolean over = load.encodeUsagePercent >= HighUsagePercent || load.dropRatio() >= MaxDropRatio;
+        boolean under = load.encodeUsagePercent <= LowUsagePercent && load.dropRatio() < MaxDropRatio / 2;
+        overused = over ? overused + 1 : 0;
+        underused = under ? underused + 1 : 0;
+        if (overused >= DownSamples && current < steps.size() - 1) {
+            if (sinceStepUp >= 0 && sinceStepUp <= upSamples) {
+                upSamples = Math.min(MaxUpSamples, upSamples * 2);
+            }
+            current++;
+            stepsDown++;
+            overused = 0;
+            underused = 0;
+            sinceStepUp = -1;
+            return true;
+        }
+        if (underused >= upSamples && current > 0) {
+            current--;
+            stepsUp++;
+            underused = 0;
+            sinceStepUp = 0;
+            return true;
+        }
+        if (sinceStepUp > upSamples * 2 && upSamples > initialUpSamples) {
+            // held the step up long enough: trust the device a little more again
+            upSamples = Math.max(initialUpSamples, upSamples / 2);
+            sinceStepUp = 0;
+        }
+        return false;
+    }
+
+    Step step() {
+        return steps.get(current);
+    }
+
+    /** The smallest frame rate any step asks for, the floor the capturer must allow. */
+    int minFps() {
+        int min = Integer.MAX_VALUE;
+        for (Step step : steps) {
+            min = Math.min(min, step.fps);
+        }
+        return min;
+    }
+
+    int steps() {
+        return steps.size();
+    }
+
+    int upSamples() {
+        return upSamples;
+    }
+
+    int stepsDown() {
+        return stepsDown;
+    }
+
+    int stepsUp() {
+        return stepsUp;
+    }
+}
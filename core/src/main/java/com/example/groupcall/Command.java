@@ -0,0 +1,8 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+
+/** Handles one type of inbound signaling message, on the signaling thread. */
+interface Command {
+    void execute(String peerId, SignalingMessage message) throws JSONException;
+}
@@ -0,0 +1,21 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+
+/**
+ * Wraps the execution of a {@link Command}, e.g. to time, trace or filter it.
+ * An interceptor either calls {@link Chain#proceed()} exactly once or skips
+ * the command by not calling it at all.
+ */
+interface CommandInterceptor {
+    interface Chain {
+        String peerId();
+
+        // only valid until the interceptor returns, the message is reused afterwards
+        SignalingMessage message();
+
+        void proceed() throws JSONException;
+    }
+
+    void intercept(Chain chain) throws JSONException;
+}
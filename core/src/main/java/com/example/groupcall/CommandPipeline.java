@@ -0,0 +1,76 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Runs commands through the registered {@link CommandInterceptor}s, first
+ * added outermost. Interceptors can be added and removed from any thread;
+ * a command that is running keeps the chain it started with.
+ */
+class CommandPipeline {
+    private final CopyOnWriteArrayList<CommandInterceptor> interceptors = new CopyOnWriteArrayList<>();
+
+    void add(CommandInterceptor interceptor) {
+        interceptors.add(interceptor);
+    }
+
+    void remove(CommandInterceptor interceptor) {
+        interceptors.remove(interceptor);
+    }
+
+    int size() {
+        return interceptors.size();
+    }
+
+    void execute(Command command, String peerId, SignalingMessage message) throws JSONException {
+        Object[] chain = interceptors.toArray();
+        if (chain.length == 0) {
+            command.execute(peerId, message);
+            return;
+        }
+        new Link(chain, 0, command, peerId, message).proceed();
+    }
+
+    private static final class Link implements CommandInterceptor.Chain {
+        private final Object[] interceptors;
+        private final int index;
+        private final Command command;
+        private final String peerId;
+        private final SignalingMessage message;
+        private boolean proceeded;
+
+        Link(Object[] interceptors, int index, Command command, String peerId, SignalingMessage message) {
+            this.interceptors = interceptors;
+            this.index = index;
+            this.command = command;
+            this.peerId = peerId;
+            this.message = message;
+        }
+
+        @Override
+        public String peerId() {
+            return peerId;
+        }
+
+        @Override
+        public SignalingMessage message() {
+            return message;
+        }
+
+        @Override
+        public void proceed() throws JSONException {
+            if (proceeded) {
+                throw new IllegalStateException("Chain for " + message.type + " proceeded twice");
+            }
+            proceeded = true;
+            if (index == interceptors.length) {
+                command.execute(peerId, message);
+                return;
+            }
+            CommandInterceptor interceptor = (CommandInterceptor) interceptors[index];
+            interceptor.intercept(new Link(interceptors, index + 1, command, peerId, message));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.groupcall;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Flow control in front of one DataChannel. Frames go straight to the
+ * channel while its {@code bufferedAmount} is under the high watermark;
+ * above it they wait here until the channel drains below the low watermark.
+ * The wait queue is bounded as well, and a message that does not fit is
+ * refused whole, so the caller learns about backpressure instead of the
+ * process buffering without limit. The channel is only called outside the
+ * lock, since libjingle delivers its buffered amount callbacks on the thread
+ * a send may be waiting for; one caller at a time drains the queue.
+ */
+class DataChannelSender {
+    static final long DefaultHighWatermark = 256 * 1024;
+    static final long DefaultLowWatermark = 64 * 1024;
+    static final long DefaultMaxQueuedBytes = 1024 * 1024;
+
+    interface Channel {
+        long bufferedAmount();
+
+        // false if the channel is not open
+        boolean send(ByteBuffer frame);
+    }
+
+    private final Channel channel;
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final long maxQueuedBytes;
+    private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    // over the high watermark, waiting for the channel to drain below the low one
+    private boolean paused;
+    // a thread is sending from the queue; others leave the work to it
+    private boolean draining;
+    // something changed while draining, so the drainer looks again before it stops
+    private boolean again;
+    private long framesSent;
+    private long messagesRefused;
+
+    DataChannelSender(Channel channel, long highWatermark, long lowWatermark, long maxQueuedBytes) {
+        this.channel = channel;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    /** Queues all frames of one message, or none of them; returns false when they do not fit. */
+    boolean offer(List<ByteBuffer> frames) {
+        long bytes = 0;
+        for (ByteBuffer frame : frames) {
+            bytes += frame.remaining();
+        }
+        synchronized (this) {
+            if (queuedBytes + bytes > maxQueuedBytes) {
+                messagesRefused++;
+                return false;
+            }
+            queue.addAll(frames);
+            queuedBytes += bytes;
+        }
+        drain();
+        return true;
+    }
+
+    /** Called when the channel opened or its buffered amount went down, on any thread. */
+    void onWritable() {
+        long buffered = channel.bufferedAmount();
+        synchronized (this) {
+            if (paused && buffered > lowWatermark) {
+                return;
+            }
+            paused = false;
+        }
+        drain();
+    }
+
+    synchronized void clear() {
+        queue.clear();
+        queuedBytes = 0;
+    }
+
+    synchronized long queuedBytes() {
+        return queuedBytes;
+    }
+
+    synchronized long framesSent() {
+        return framesSent;
+    }
+
+    synchronized long messagesRefused() {
+        return messagesRefused;
+    }
+
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                again = true;
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            ByteBuffer frame;
+            synchronized (this) {
+                again = false;
+                frame = paused ? null : queue.peekFirst();
+                if (frame == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            int length = frame.remaining();
+            boolean full = channel.bufferedAmount() >= highWatermark;
+            // a false send means not open yet; onWritable tries again
+            boolean sent = !full && channel.send(frame);
+            synchronized (this) {
+                if (sent) {
+                    // clear() may have run while the frame was in the channel
+                    if (queue.peekFirst() == frame) {
+                        queue.pollFirst();
+                        queuedBytes -= length;
+                    }
+                    framesSent++;
+                } else if (!again) {
+                    paused = full;
+                    draining = false;
+                    return;
+                }
+            }
+        }
+    }
+}
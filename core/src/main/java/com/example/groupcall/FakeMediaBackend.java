@@ -0,0 +1,210 @@
+package com.example.groupcall;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PeerConnections without media, to run the signaling logic on a plain JVM.
+ * Every SDP operation completes on the callback executor, in the order the
+ * operations were started, creating the configured description and moving
+ * through the signaling states as a PeerConnection does; setting a
+ * local description then gathers host candidates and reports the connection
+ * as CHECKING and CONNECTED. A single threaded executor behaves like
+ * libjingle's signaling thread, a queue lets tests step through callbacks.
+ * {@link #submitted()} and {@link #isIdle()} tell when every operation
+ * started so far has called back.
+ */
+class FakeMediaBackend implements MediaBackend<FakeMediaBackend.FakePeer> {
+    private final Executor callbacks;
+    private final String sdp;
+    private final int candidates;
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    FakeMediaBackend(Executor callbacks, String sdp, int candidates) {
+        this.callbacks = callbacks;
+        this.sdp = sdp;
+        this.candidates = candidates;
+    }
+
+    @Override
+    public FakePeer createPeer(String id, Events events) {
+        created.incrementAndGet();
+        open.incrementAndGet();
+        return new FakePeer(id, events);
+    }
+
+    int created() {
+        return created.get();
+    }
+
+    // created and not closed yet
+    int open() {
+        return open.get();
+    }
+
+    // operations started so far
+    long submitted() {
+        return submitted.get();
+    }
+
+    // every operation started so far has called back
+    boolean isIdle() {
+        return inFlight.get() == 0;
+    }
+
+    private void callBack(final Runnable callback) {
+        submitted.incrementAndGet();
+        inFlight.incrementAndGet();
+        callbacks.execute(() -> {
+            try {
+                callback.run();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    final class FakePeer implements Peer {
+        private final String id;
+        private final Events events;
+        private volatile boolean remoteDescription;
+        private volatile boolean localDescription;
+        private volatile String failNext;
+        private volatile boolean closed;
+        private volatile SignalingState state = SignalingState.STABLE;
+        private final AtomicInteger candidatesAdded = new AtomicInteger();
+
+        FakePeer(String id, Events events) {
+            this.id = id;
+            this.events = events;
+        }
+
+        // the next operation fails with this error
+        void failNext(String error) {
+            failNext = error;
+        }
+
+        // a remote stream arriving on this connection, as the backend thread reports it
+        void addStream(String label, List<String> audioTrackIds) {
+            events.onAddStream(label, audioTrackIds);
+        }
+
+        void removeStream(String label) {
+            events.onRemoveStream(label);
+        }
+
+        int candidatesAdded() {
+            return candidatesAdded.get();
+        }
+
+        boolean hasLocalDescription() {
+            return localDescription;
+        }
+
+        @Override
+        public void createOffer(SdpCallback callback, boolean iceRestart) {
+            create(callback, "offer", takeFailure());
+        }
+
+        @Override
+        public void createAnswer(SdpCallback callback) {
+            String error = takeFailure();
+            create(callback, "answer", error == null && !remoteDescription ? "createAnswer without a remote offer" : error);
+        }
+
+        @Override
+        public void setLocalDescription(SdpCallback callback, String type, String description) {
+            final String error = takeFailure();
+            callBack(() -> {
+                if (error != null) {
+                    callback.onSetFailure(error);
+                    return;
+                }
+                boolean first = !localDescription;
+                localDescription = true;
+                state = type.equals("offer") ? SignalingState.HAVE_LOCAL_OFFER : SignalingState.STABLE;
+                callback.onSetSuccess();
+                if (first) {
+                    gather();
+                }
+            });
+        }
+
+        @Override
+        public void setRemoteDescription(SdpCallback callback, String type, String description) {
+            final String error = takeFailure();
+            if (error == null) {
+                // known right away, as a createAnswer started behind it has to see it
+                remoteDescription = true;
+            }
+            callBack(() -> {
+                if (error != null) {
+                    callback.onSetFailure(error);
+                } else {
+                    state = type.equals("offer") ? SignalingState.HAVE_REMOTE_OFFER : SignalingState.STABLE;
+                    callback.onSetSuccess();
+                }
+            });
+        }
+
+        @Override
+        public void addIceCandidate(Candidate candidate) {
+            candidatesAdded.incrementAndGet();
+        }
+
+        @Override
+        public boolean hasRemoteDescription() {
+            return remoteDescription;
+        }
+
+        @Override
+        public SignalingState signalingState() {
+            return closed ? SignalingState.CLOSED : state;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                open.decrementAndGet();
+            }
+        }
+
+        private void create(final SdpCallback callback, final String type, final String error) {
+            callBack(() -> {
+                if (error != null) {
+                    callback.onCreateFailure(error);
+                } else {
+                    callback.onCreateSuccess(type, sdp);
+                }
+            });
+        }
+
+        // decided when an operation starts, like the checks a PeerConnection makes up front
+        private String takeFailure() {
+            String error = failNext;
+            failNext = null;
+            return closed ? "closed" : error;
+        }
+
+        private void gather() {
+            for (int i = 0; i < candidates; i++) {
+                events.onIceCandidate(new Candidate(i % 2 == 0 ? "audio" : "video", i % 2,
+                        "candidate:" + i + " 1 udp 2122260223 10.0.0." + (i % 250 + 2) + " " + (50000 + i)
+                                + " typ host generation 0"));
+            }
+            events.onIceConnectionChange(IceConnectionMonitor.Ice.CHECKING);
+            events.onIceConnectionChange(IceConnectionMonitor.Ice.CONNECTED);
+        }
+
+        @Override
+        public String toString() {
+            return "FakePeer{" + id + "}";
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.groupcall;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-tile frame accounting. Frames for a hidden tile are dropped before they
+ * reach the renderer. A frame that arrives less than one display interval after
+ * the previous one is counted as dropped too: the GL renderer skips a frame
+ * while the previous one has not been drawn yet, so this is an estimate of the
+ * renders lost to that, not an exact count. Frames held back on purpose,
+ * because the tile is paused or throttled to a lower rate, are counted as
+ * skipped. Frames are delivered on the decoder thread and read from any thread.
+ */
+class FrameCounter {
+    static final long DefaultDisplayIntervalNs = 1_000_000_000L / 60;
+
+    private final long displayIntervalNs;
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile long lastFrameNs = -1;
+
+    FrameCounter(long displayIntervalNs) {
+        this.displayIntervalNs = displayIntervalNs;
+    }
+
+    // returns whether the frame should be passed on to the renderer
+    boolean onFrame(long nowNs, boolean visible) {
+        return onFrame(nowNs, visible, 0);
+    }
+
+    // minIntervalNs < 0 pauses the tile, 0 renders every frame
+    boolean onFrame(long nowNs, boolean visible, long minIntervalNs) {
+        received.incrementAndGet();
+        if (!visible) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        long last = lastFrameNs;
+        if (minIntervalNs < 0 || (minIntervalNs > 0 && last >= 0 && nowNs - last < minIntervalNs)) {
+            skipped.incrementAndGet();
+            return false;
+        }
+        lastFrameNs = nowNs;
+        if (last >= 0 && nowNs - last < displayIntervalNs) {
+            dropped.incrementAndGet();
+        }
+        return true;
+    }
+
+    long received() {
+        return received.get();
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    long skipped() {
+        return skipped.get();
+    }
+
+    long rendered() {
+        return received.get() - dropped.get() - skipped.get();
+    }
+
+    void reset() {
+        received.set(0);
+        dropped.set(0);
+        skipped.set(0);
+        lastFrameNs = -1;
+    }
+
+    @Override
+    public String toString() {
+        return "received=" + received() + " dropped=" + dropped() + " skipped=" + skipped();
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.groupcall;
+
+/**
+ * Connection state of one peer, driven by its ICE connection state and by
+ * the clock. A DISCONNECTED peer gets {@code graceMs} to come back on its own
+ * (mobile networks drop for a moment all the time), then ICE is restarted up
+ * to {@code maxRestarts} times, each given {@code restartTimeoutMs}. Only when
+ * that runs out, or the peer never connects within {@code connectTimeoutMs},
+ * does it end in {@link State#FAILED}, which is when the peer is torn down.
+ * ICE FAILED skips the grace period and restarts straight away.
+ * Not thread safe; time is passed in so transitions can be tested exactly.
+ */
+class IceConnectionMonitor {
+    static final long DefaultConnectTimeoutMs = 30000;
+    static final long DefaultGraceMs = 3000;
+    static final long DefaultRestartTimeoutMs = 10000;
+    static final int DefaultMaxRestarts = 2;
+
+    /** Mirror of PeerConnection.IceConnectionState, so this class does not need the native library. */
+    enum Ice {NEW, CHECKING, CONNECTED, COMPLETED, DISCONNECTED, FAILED, CLOSED}
+
+    enum State {
+        CONNECTING,
+        CONNECTED,
+        // disconnected, waiting for ICE to recover by itself
+        UNSTABLE,
+        // an offer with new ICE credentials is out
+        RESTARTING,
+        FAILED,
+        CLOSED
+    }
+
+    interface Listener {
+        void onStateChanged(State from, State to);
+
+        // send an offer with new ICE credentials; attempt starts at 1
+        void onRestartIce(int attempt);
+
+        // connected again after an outage of outageMs
+        void onRecovered(long outageMs, int restarts);
+    }
+
+    private final long connectTimeoutMs;
+    private final long graceMs;
+    private final long restartTimeoutMs;
+    private final int maxRestarts;
+    private final Listener listener;
+    private State state;
+    private long deadlineMs;
+    private long outageSinceMs;
+    private int restarts;
+
+    IceConnectionMonitor(long connectTimeoutMs, long graceMs, long restartTimeoutMs, int maxRestarts,
+                         Listener listener, long nowMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.graceMs = graceMs;
+        this.restartTimeoutMs = restartTimeoutMs;
+        this.maxRestarts = maxRestarts;
+        this.listener = listener;
+        reset(nowMs);
+    }
+
+    /** Starts over in CONNECTING, e.g. when an idle connection is handed to a new participant. */
+    void reset(long nowMs) {
+        state = State.CONNECTING;
+        deadlineMs = nowMs + connectTimeoutMs;
+        outageSinceMs = -1;
+        restarts = 0;
+    }
+
+    void onIceState(Ice ice, long nowMs) {
+        if (state == State.FAILED || state == State.CLOSED) {
+            return;
+        }
+        switch (ice) {
+            case CONNECTED:
+            case COMPLETED:
+                if (state != State.CONNECTED) {
+                    connected(nowMs);
+                }
+                break;
+            case DISCONNECTED:
+                if (state == State.CONNECTED || state == State.CONNECTING) {
+                    outageSinceMs = nowMs;
+                    deadlineMs = nowMs + graceMs;
+                    moveTo(State.UNSTABLE);
+                }
+                break;
+            case FAILED:
+                if (outageSinceMs < 0) {
+                    outageSinceMs = nowMs;
+                }
+                restartOrFail(nowMs);
+                break;
+            case CLOSED:
+                moveTo(State.CLOSED);
+                break;
+            default:
+                // NEW and CHECKING change nothing, a restart goes through them
+                break;
+        }
+    }
+
+    /** Applies timeouts; call periodically and after the clock passes {@link #deadlineMs()}. */
+    void tick(long nowMs) {
+        if (deadlineMs < 0 || nowMs < deadlineMs) {
+            return;
+        }
+        switch (state) {
+            case CONNECTING:
+                moveTo(State.FAILED);
+                break;
+            case UNSTABLE:
+            case RESTARTING:
+                restartOrFail(nowMs);
+                break;
+            default:
+                break;
+        }
+    }
+
+    State state() {
+        return state;
+    }
+
+    /** Time at which {@link #tick} changes the state if nothing else happens, -1 if none. */
+    long deadlineMs() {
+        return deadlineMs;
+    }
+
+    int restarts() {
+        return restarts;
+    }
+
+    private void connected(long nowMs) {
+        int restartsUsed = restarts;
+        long outageMs = outageSinceMs < 0 ? -1 : nowMs - outageSinceMs;
+        deadlineMs = -1;
+        outageSinceMs = -1;
+        restarts = 0;
+        moveTo(State.CONNECTED);
+        if (outageMs >= 0) {
+            listener.onRecovered(outageMs, restartsUsed);
+        }
+    }
+
+    private void restartOrFail(long nowMs) {
+        if (restarts >= maxRestarts) {
+            moveTo(State.FAILED);
+            return;
+        }
+        restarts++;
+        deadlineMs = nowMs + restartTimeoutMs;
+        moveTo(State.RESTARTING);
+        listener.onRestartIce(restarts);
+    }
+
+    private void moveTo(State to) {
+        State from = state;
+        if (to == State.FAILED || to == State.CLOSED) {
+            deadlineMs = -1;
+        }
+        if (from == to) {
+            return;
+        }
+        state = to;
+        listener.onStateChanged(from, to);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.groupcall;
+
+/**
+ * One STUN or TURN server as configured by the app. TURN credentials handed
+ * out by a REST service are only valid for a while; {@code expiresAtMs} is
+ * the wall clock time they stop working, or -1 when they never expire.
+ */
+public class IceServerConfig {
+    public static final int DefaultPort = 3478;
+    public static final int DefaultTlsPort = 5349;
+
+    public final String uri;
+    public final String username;
+    public final String credential;
+    public final long expiresAtMs;
+
+    public IceServerConfig(String uri) {
+        this(uri, "", "", -1);
+    }
+
+    public IceServerConfig(String uri, String username, String credential, long expiresAtMs) {
+        if (uri == null || !(uri.startsWith("stun:") || uri.startsWith("turn:") || uri.startsWith("turns:"))) {
+            throw new IllegalArgumentException("Not a STUN or TURN uri: " + uri);
+        }
+        this.uri = uri;
+        this.username = username;
+        this.credential = credential;
+        this.expiresAtMs = expiresAtMs;
+    }
+
+    public boolean isTurn() {
+        return !uri.startsWith("stun:");
+    }
+
+    /** Reached over UDP, so it answers a STUN binding request we can time. */
+    boolean isUdp() {
+        return !uri.startsWith("turns:") && !uri.contains("transport=tcp");
+    }
+
+    String host() {
+        String address = address();
+        if (address.startsWith("[")) {
+            return address.substring(1, address.indexOf(']'));
+        }
+        int colon = address.lastIndexOf(':');
+        return colon < 0 ? address : address.substring(0, colon);
+    }
+
+    int port() {
+        String address = address();
+        int colon = address.lastIndexOf(':');
+        if (colon < 0 || colon < address.lastIndexOf(']')) {
+            return uri.startsWith("turns:") ? DefaultTlsPort : DefaultPort;
+        }
+        return Integer.parseInt(address.substring(colon + 1));
+    }
+
+    // host[:port] without the scheme and query
+    private String address() {
+        String address = uri.substring(uri.indexOf(':') + 1);
+        int query = address.indexOf('?');
+        return query < 0 ? address : address.substring(0, query);
+    }
+
+    @Override
+    public String toString() {
+        return uri + (username.isEmpty() ? "" : " (" + username + ")");
+    }
+}
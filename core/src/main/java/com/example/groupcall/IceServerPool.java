@@ -0,0 +1,110 @@
+package com.example.groupcall;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Current ICE servers, fetched from an {@link IceServerProvider} and ranked by
+ * measured round trip. UDP servers that do not answer a probe are left out so
+ * they do not hold up candidate gathering; TCP and TLS TURN servers cannot be
+ * probed this way and are kept, after the ranked ones, as the last resort. If
+ * nothing answers at all the probes themselves are likely blocked and the
+ * unranked list is kept. Only used from one background thread.
+ */
+class IceServerPool {
+    // fetch new credentials this long before the old ones expire
+    static final long DefaultRefreshMarginMs = 120000;
+
+    interface Prober {
+        // round trip in milliseconds, -1 if unreachable
+        long rttMs(IceServerConfig server);
+    }
+
+    private final IceServerProvider provider;
+    private final Prober prober;
+    private final long refreshMarginMs;
+    private List<IceServerConfig> fetched = Collections.emptyList();
+    private List<IceServerConfig> ranked = Collections.emptyList();
+    private long refreshAtMs = -1;
+    private int unreachable;
+
+    IceServerPool(IceServerProvider provider, Prober prober, long refreshMarginMs) {
+        this.provider = provider;
+        this.prober = prober;
+        this.refreshMarginMs = refreshMarginMs;
+    }
+
+    /**
+     * Asks the provider again if nothing was fetched yet or credentials are
+     * about to expire. Returns true when a new list was fetched; it is usable
+     * unranked right away through {@link #servers()} until {@link #rank()} ran.
+     */
+    boolean fetch(long nowMs) throws IOException {
+        if (refreshAtMs >= 0 && nowMs < refreshAtMs) {
+            return false;
+        }
+        List<IceServerConfig> servers = new ArrayList<>(provider.getIceServers());
+        long earliestExpiry = Long.MAX_VALUE;
+        for (IceServerConfig server : servers) {
+            if (server.expiresAtMs >= 0) {
+                earliestExpiry = Math.min(earliestExpiry, server.expiresAtMs);
+            }
+        }
+        refreshAtMs = earliestExpiry == Long.MAX_VALUE ? Long.MAX_VALUE : earliestExpiry - refreshMarginMs;
+        fetched = Collections.unmodifiableList(servers);
+        ranked = fetched;
+        return true;
+    }
+
+    /** Probes the fetched servers and returns them fastest first, without the unreachable ones. */
+    List<IceServerConfig> rank() {
+        final List<IceServerConfig> reachable = new ArrayList<>();
+        final List<Long> rtts = new ArrayList<>();
+        List<IceServerConfig> unprobed = new ArrayList<>();
+        for (IceServerConfig server : fetched) {
+            if (!server.isUdp()) {
+                unprobed.add(server);
+                continue;
+            }
+            long rtt = prober.rttMs(server);
+            if (rtt >= 0) {
+                reachable.add(server);
+                rtts.add(rtt);
+            }
+        }
+        unreachable = fetched.size() - unprobed.size() - reachable.size();
+        if (reachable.isEmpty()) {
+            ranked = fetched;
+            return ranked;
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < reachable.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(rtts.get(a), rtts.get(b));
+            }
+        });
+        List<IceServerConfig> servers = new ArrayList<>();
+        for (int i : order) {
+            servers.add(reachable.get(i));
+        }
+        servers.addAll(unprobed);
+        ranked = Collections.unmodifiableList(servers);
+        return ranked;
+    }
+
+    List<IceServerConfig> servers() {
+        return ranked;
+    }
+
+    // UDP servers left out by the last rank()
+    int unreachable() {
+        return unreachable;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.groupcall;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Supplies the STUN and TURN servers to gather candidates from. Called on a
+ * background thread, so an implementation may fetch short-lived TURN
+ * credentials over the network; it is called again shortly before the
+ * earliest {@link IceServerConfig#expiresAtMs} passes.
+ */
+public interface IceServerProvider {
+    IceServerProvider Default = of(new IceServerConfig("stun:stun.l.google.com:19302"));
+
+    List<IceServerConfig> getIceServers() throws IOException;
+
+    static IceServerProvider of(IceServerConfig... servers) {
+        final List<IceServerConfig> list = Collections.unmodifiableList(Arrays.asList(servers));
+        return () -> list;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * org.json based codec. Handles every message type, from the JSONObject
+ * socket.io parsed or from recorded text.
+ */
+class JsonSignalingCodec implements SignalingCodec {
+
+    @Override
+    public boolean decode(Object frame, SignalingMessage into) {
+        try {
+            JSONObject data;
+            if (frame instanceof JSONObject) {
+                data = (JSONObject) frame;
+            } else if (frame instanceof String) {
+                data = new JSONObject((String) frame);
+            } else {
+                return false;
+            }
+            into.clear();
+            into.from = data.getString("from");
+            decodeBody(data, into);
+            return true;
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Malformed signaling message", e);
+        }
+    }
+
+    // decodes type and payload, also used for the entries of a batch frame
+    void decodeBody(JSONObject data, SignalingMessage into) throws JSONException {
+        String type = data.getString("type");
+        String known = SignalingMessage.knownType(type);
+        into.type = known != null ? known : type;
+        if (SignalingMessage.Offer.equals(into.type) || SignalingMessage.Answer.equals(into.type)) {
+            JSONObject payload = data.getJSONObject("payload");
+            into.sdpType = payload.getString("type");
+            into.sdp = payload.getString("sdp");
+        } else if (SignalingMessage.Candidate.equals(into.type)) {
+            JSONObject payload = data.getJSONObject("payload");
+            into.candidateId = payload.getString("id");
+            into.candidateLabel = payload.getInt("label");
+            into.candidate = payload.getString("candidate");
+        } else if (!SignalingMessage.Init.equals(into.type)) {
+            into.payload = data.optJSONObject("payload");
+        }
+    }
+}
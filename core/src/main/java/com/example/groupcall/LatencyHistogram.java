@@ -0,0 +1,110 @@
+package com.example.groupcall;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency distribution in the style of HdrHistogram: buckets are linear
+ * within each power of two, so every recorded value is kept with a relative
+ * error of at most 1 / 2^{@code subBucketBits}, from single nanoseconds up to
+ * {@code highestTrackable}; larger values land in the top bucket. Recording
+ * is lock free and allocation free. Covers the whole lifetime, there is no
+ * window.
+ */
+class LatencyHistogram {
+    static final int DefaultSubBucketBits = 5;
+    // about 68s in nanoseconds
+    static final long DefaultHighestTrackable = 1L << 36;
+
+    private final int subBucketBits;
+    private final int subBucketCount;
+    private final long highestTrackable;
+    private final AtomicLongArray counts;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram(int subBucketBits, long highestTrackable) {
+        if (subBucketBits < 1 || subBucketBits > 16 || highestTrackable < 1L << subBucketBits) {
+            throw new IllegalArgumentException("Bad histogram range: " + subBucketBits + " bits, " + highestTrackable);
+        }
+        this.subBucketBits = subBucketBits;
+        this.subBucketCount = 1 << subBucketBits;
+        this.highestTrackable = highestTrackable;
+        this.counts = new AtomicLongArray(index(highestTrackable) + 1);
+    }
+
+    void record(long value) {
+        long clamped = Math.max(0, Math.min(value, highestTrackable));
+        counts.incrementAndGet(index(clamped));
+        count.incrementAndGet();
+        sum.addAndGet(clamped);
+        long seen;
+        while (clamped > (seen = max.get()) && !max.compareAndSet(seen, clamped)) {
+            // lost a race with a larger or concurrent value, look again
+        }
+    }
+
+    int index(long value) {
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - subBucketBits;
+        int subBucket = (int) (value >>> exponent);
+        return (exponent + 1) * subBucketCount + subBucket - subBucketCount;
+    }
+
+    // smallest value that falls into the bucket
+    long lowestEquivalent(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+        int exponent = index / subBucketCount - 1;
+        long subBucket = index % subBucketCount + subBucketCount;
+        return subBucket << exponent;
+    }
+
+    int buckets() {
+        return counts.length();
+    }
+
+    long count() {
+        return count.get();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    double mean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * The highest value of the bucket holding the given percentile, capped at
+     * the largest value seen; 0 without samples.
+     */
+    long valueAtPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                long highest = i + 1 < counts.length() ? lowestEquivalent(i + 1) - 1 : highestTrackable;
+                return Math.min(highest, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + count() + " p50=" + valueAtPercentile(50) / 1000 + "us p99=" + valueAtPercentile(99) / 1000
+                + "us max=" + max() / 1000 + "us";
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.groupcall;
+
+import java.util.HashMap;
+
+/**
+ * Layers requested by each subscriber of the local video. With a single
+ * camera source the encoder can only serve one size, so the largest
+ * requested layer (lowest index) wins.
+ */
+class LayerSubscriptions {
+    private final HashMap<String, Integer> requested = new HashMap<>();
+    private final int defaultLayer;
+    private int current;
+
+    LayerSubscriptions(int defaultLayer) {
+        this.defaultLayer = defaultLayer;
+        this.current = defaultLayer;
+    }
+
+    // returns true if the layer to send changed
+    boolean request(String subscriber, int layer) {
+        requested.put(subscriber, layer);
+        return recompute();
+    }
+
+    boolean remove(String subscriber) {
+        if (requested.remove(subscriber) == null) {
+            return false;
+        }
+        return recompute();
+    }
+
+    int current() {
+        return current;
+    }
+
+    private boolean recompute() {
+        int layer = Integer.MAX_VALUE;
+        for (int value : requested.values()) {
+            layer = Math.min(layer, value);
+        }
+        if (layer == Integer.MAX_VALUE) {
+            layer = defaultLayer;
+        }
+        boolean changed = layer != current;
+        current = layer;
+        return changed;
+    }
+}
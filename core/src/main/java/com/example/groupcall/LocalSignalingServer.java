@@ -0,0 +1,150 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the socket.io signaling server, for load tests. It
+ * answers the session handshake with a new session, acks every frame with a
+ * seq and routes "message" frames by their "to" field to the connected
+ * client of that id, with "from" set to the sender and a per recipient seq,
+ * the way the real server does. Frames are parsed again for every recipient,
+ * like crossing the wire. Each client gets its events in order on its own
+ * event thread, as with socket.io, so a slow client never blocks a sender.
+ */
+class LocalSignalingServer {
+
+    // receiving side of a connected client, events as socket.io would emit them
+    interface Socket {
+        void on(String event, Object payload);
+    }
+
+    private static final class Client {
+        final Socket socket;
+        final ExecutorService events;
+        long seq;
+
+        Client(String id, Socket socket) {
+            this.socket = socket;
+            this.events = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "socket-" + id));
+        }
+
+        void post(final String event, final Object payload) {
+            try {
+                events.execute(() -> socket.on(event, payload));
+            } catch (RejectedExecutionException e) {
+                // disconnected meanwhile, the event is lost as on a real socket
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<String, Client> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicLong routed = new AtomicLong();
+    private final AtomicLong unroutable = new AtomicLong();
+
+    /** Transport for the client with this id; nothing is delivered to it before connect. */
+    SignalingSession.Transport transport(final String id, final Socket socket) {
+        return new SignalingSession.Transport() {
+            @Override
+            public void connect() {
+                Client client = new Client(id, socket);
+                Client previous = clients.put(id, client);
+                if (previous != null) {
+                    previous.events.shutdown();
+                }
+                client.post("connect", null);
+            }
+
+            @Override
+            public void disconnect() {
+                Client client = clients.remove(id);
+                if (client != null) {
+                    client.post("disconnect", null);
+                    client.events.shutdown();
+                }
+            }
+
+            @Override
+            public void emit(String event, Object payload) {
+                Client client = clients.get(id);
+                if (client != null) {
+                    onEmit(id, client, event, payload);
+                }
+            }
+        };
+    }
+
+    /** A frame from a peer that is not simulated, e.g. replayed from a recording. */
+    void inject(String from, String to, JSONObject frame) {
+        try {
+            route(from, to, frame);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Malformed frame from " + from, e);
+        }
+    }
+
+    /** Disconnects everyone without telling them. */
+    void close() {
+        for (Client client : clients.values()) {
+            client.events.shutdownNow();
+        }
+        clients.clear();
+    }
+
+    long routed() {
+        return routed.get();
+    }
+
+    // "to" an id that is not connected
+    long unroutable() {
+        return unroutable.get();
+    }
+
+    private void onEmit(String from, Client sender, String event, Object payload) {
+        try {
+            if (SignalingSession.SessionEvent.equals(event)) {
+                JSONObject reply = new JSONObject();
+                reply.put("session", "local-" + sessions.incrementAndGet());
+                reply.put("resumed", false);
+                reply.put("seq", 0);
+                sender.post(SignalingSession.SessionEvent, reply);
+            } else if ("message".equals(event)) {
+                JSONObject frame = (JSONObject) payload;
+                long seq = frame.optLong("seq", -1);
+                route(from, frame.optString("to", null), frame);
+                if (seq >= 0) {
+                    JSONObject ack = new JSONObject();
+                    ack.put("seq", seq);
+                    sender.post(SignalingSession.AckEvent, ack);
+                }
+            }
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Malformed " + event + " from " + from, e);
+        }
+    }
+
+    private void route(String from, String to, JSONObject frame) throws JSONException {
+        Client client = to != null ? clients.get(to) : null;
+        if (client == null) {
+            unroutable.incrementAndGet();
+            return;
+        }
+        JSONObject delivered = new JSONObject(frame.toString());
+        delivered.remove("to");
+        delivered.put("from", from);
+        // seq and delivery in the same order for every recipient
+        synchronized (client) {
+            delivered.put("seq", ++client.seq);
+            client.post("message", delivered);
+        }
+        routed.incrementAndGet();
+    }
+}
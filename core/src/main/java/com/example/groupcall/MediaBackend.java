@@ -0,0 +1,68 @@
+package com.example.groupcall;
+
+import java.util.List;
+
+/**
+ * Creates the PeerConnections {@link CallSignaling} negotiates: libjingle in
+ * the app, {@link FakeMediaBackend} on a plain JVM. Only the negotiation
+ * surface is covered; remote streams are reported by label, their tracks and
+ * renderers stay with the backend's own peer type.
+ */
+interface MediaBackend<P extends MediaBackend.Peer> {
+
+    // as PeerConnection.SignalingState, without the provisional answers nobody here uses
+    enum SignalingState {STABLE, HAVE_LOCAL_OFFER, HAVE_REMOTE_OFFER, CLOSED}
+
+    final class Candidate {
+        final String mid;
+        final int mLineIndex;
+        final String sdp;
+
+        Candidate(String mid, int mLineIndex, String sdp) {
+            this.mid = mid;
+            this.mLineIndex = mLineIndex;
+            this.sdp = sdp;
+        }
+
+        @Override
+        public String toString() {
+            return mid + ":" + mLineIndex + ":" + sdp;
+        }
+    }
+
+    /**
+     * One PeerConnection. SDP operations run one at a time in the order they
+     * were started and report to their callback in that order.
+     */
+    interface Peer {
+        void createOffer(SdpCallback callback, boolean iceRestart);
+
+        void createAnswer(SdpCallback callback);
+
+        void setLocalDescription(SdpCallback callback, String type, String description);
+
+        void setRemoteDescription(SdpCallback callback, String type, String description);
+
+        void addIceCandidate(Candidate candidate);
+
+        boolean hasRemoteDescription();
+
+        SignalingState signalingState();
+
+        void close();
+    }
+
+    // called on a backend thread
+    interface Events {
+        void onIceCandidate(Candidate candidate);
+
+        void onIceConnectionChange(IceConnectionMonitor.Ice state);
+
+        // audioTrackIds as reported in the audio level stats
+        void onAddStream(String label, List<String> audioTrackIds);
+
+        void onRemoveStream(String label);
+    }
+
+    P createPeer(String id, Events events);
+}
@@ -0,0 +1,131 @@
+package com.example.groupcall;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary framing of app messages on a DataChannel. A message larger than
+ * one frame is split into fragments that share a message id; only the
+ * first fragment carries the topic. Frame layout, big endian:
+ * <pre>
+ *  u8  version
+ *  u32 message id
+ *  u16 fragment index
+ *  u16 fragment count
+ *  u16 topic length (0 after the first fragment)
+ *  ... topic (UTF-8), then this fragment's share of the payload
+ * </pre>
+ * Stateless and thread safe.
+ */
+class MessageFramer {
+    static final int Version = 1;
+    static final int HeaderLength = 11;
+    // SCTP messages above 16KB are not reliably delivered across implementations
+    static final int DefaultMaxFrameBytes = 16 * 1024;
+    static final int MaxFragments = 0xffff;
+    static final int MaxTopicBytes = 255;
+    static final Charset Utf8 = Charset.forName("UTF-8");
+
+    /** Decoded frame header; {@code chunk} is a view into the received frame. */
+    static final class Frame {
+        final int messageId;
+        final int index;
+        final int count;
+        final String topic;
+        final ByteBuffer chunk;
+
+        Frame(int messageId, int index, int count, String topic, ByteBuffer chunk) {
+            this.messageId = messageId;
+            this.index = index;
+            this.count = count;
+            this.topic = topic;
+            this.chunk = chunk;
+        }
+    }
+
+    private final int maxFrameBytes;
+
+    MessageFramer(int maxFrameBytes) {
+        if (maxFrameBytes <= HeaderLength + MaxTopicBytes) {
+            throw new IllegalArgumentException("Frames of " + maxFrameBytes + " bytes leave no room for payload");
+        }
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    /** Largest payload a single message can carry. */
+    long maxMessageBytes() {
+        return (long) MaxFragments * (maxFrameBytes - HeaderLength) - MaxTopicBytes;
+    }
+
+    /**
+     * Splits a message into frames ready to send, each a heap buffer
+     * positioned at 0.
+     *
+     * @throws IllegalArgumentException if the topic or the payload is too large
+     */
+    List<ByteBuffer> encode(int messageId, String topic, ByteBuffer payload) {
+        byte[] topicBytes = topic.getBytes(Utf8);
+        if (topicBytes.length > MaxTopicBytes) {
+            throw new IllegalArgumentException("Topic longer than " + MaxTopicBytes + " bytes: " + topic);
+        }
+        int remaining = payload.remaining();
+        int firstChunk = Math.min(remaining, maxFrameBytes - HeaderLength - topicBytes.length);
+        int chunk = maxFrameBytes - HeaderLength;
+        long count = 1 + (remaining - firstChunk + chunk - 1) / chunk;
+        if (count > MaxFragments) {
+            throw new IllegalArgumentException("Message of " + remaining + " bytes exceeds " + maxMessageBytes());
+        }
+        List<ByteBuffer> frames = new ArrayList<>((int) count);
+        ByteBuffer source = payload.duplicate();
+        for (int index = 0; index < count; index++) {
+            byte[] frameTopic = index == 0 ? topicBytes : new byte[0];
+            int length = Math.min(source.remaining(), index == 0 ? firstChunk : chunk);
+            ByteBuffer frame = ByteBuffer.allocate(HeaderLength + frameTopic.length + length);
+            frame.put((byte) Version);
+            frame.putInt(messageId);
+            frame.putShort((short) index);
+            frame.putShort((short) count);
+            frame.putShort((short) frameTopic.length);
+            frame.put(frameTopic);
+            ByteBuffer slice = source.duplicate();
+            slice.limit(slice.position() + length);
+            frame.put(slice);
+            source.position(source.position() + length);
+            frame.flip();
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    /**
+     * Reads a received frame without copying the payload.
+     *
+     * @throws IllegalArgumentException if the frame is truncated or of another version
+     */
+    static Frame decode(ByteBuffer frame) {
+        ByteBuffer in = frame.duplicate();
+        if (in.remaining() < HeaderLength) {
+            throw new IllegalArgumentException("Frame of " + in.remaining() + " bytes is shorter than its header");
+        }
+        int version = in.get() & 0xff;
+        if (version != Version) {
+            throw new IllegalArgumentException("Unknown frame version " + version);
+        }
+        int messageId = in.getInt();
+        int index = in.getShort() & 0xffff;
+        int count = in.getShort() & 0xffff;
+        int topicLength = in.getShort() & 0xffff;
+        if (count == 0 || index >= count || topicLength > in.remaining() || (index > 0 && topicLength > 0)) {
+            throw new IllegalArgumentException("Bad frame header: index=" + index + " count=" + count + " topic=" + topicLength);
+        }
+        String topic = null;
+        if (index == 0) {
+            byte[] topicBytes = new byte[topicLength];
+            in.get(topicBytes);
+            topic = new String(topicBytes, Utf8);
+        }
+        return new Frame(messageId, index, count, topic, in.slice());
+    }
+}
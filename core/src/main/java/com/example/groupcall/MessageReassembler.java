@@ -0,0 +1,142 @@
+package com.example.groupcall;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Puts fragmented app messages back together. Fragments may arrive in any
+ * order (unordered channels) and interleaved with other messages. Partial
+ * messages are bounded in number, size and age, so a sender that never
+ * finishes a message cannot grow the receiver without limit; whatever is
+ * given up on is counted as dropped. Received frames are copied, the
+ * buffers DataChannel hands out are only valid during the callback.
+ * One instance per channel, not thread safe.
+ */
+class MessageReassembler {
+    static final int DefaultMaxPending = 32;
+    static final int DefaultMaxMessageBytes = 4 * 1024 * 1024;
+    static final long DefaultTimeoutMs = 10000;
+
+    interface Sink {
+        void onMessage(String topic, ByteBuffer payload);
+    }
+
+    private static final class Partial {
+        final ByteBuffer[] chunks;
+        final long startedMs;
+        String topic;
+        int received;
+        int bytes;
+
+        Partial(int count, long startedMs) {
+            this.chunks = new ByteBuffer[count];
+            this.startedMs = startedMs;
+        }
+    }
+
+    private final int maxPending;
+    private final int maxMessageBytes;
+    private final long timeoutMs;
+    // by message id, oldest first
+    private final LinkedHashMap<Integer, Partial> pending = new LinkedHashMap<>();
+    private long completed;
+    private long dropped;
+
+    MessageReassembler(int maxPending, int maxMessageBytes, long timeoutMs) {
+        this.maxPending = maxPending;
+        this.maxMessageBytes = maxMessageBytes;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Takes one received frame and passes the message to {@code sink} once it
+     * is complete. Returns whether a message was completed.
+     *
+     * @throws IllegalArgumentException if the frame is malformed or contradicts earlier fragments
+     */
+    boolean onFrame(ByteBuffer frame, long nowMs, Sink sink) {
+        MessageFramer.Frame decoded = MessageFramer.decode(frame);
+        if (decoded.count == 1) {
+            if (decoded.chunk.remaining() > maxMessageBytes) {
+                dropped++;
+                return false;
+            }
+            completed++;
+            sink.onMessage(decoded.topic, copy(decoded.chunk));
+            return true;
+        }
+        expire(nowMs);
+        Partial partial = pending.get(decoded.messageId);
+        if (partial == null) {
+            if (pending.size() >= maxPending) {
+                Iterator<Partial> oldest = pending.values().iterator();
+                oldest.next();
+                oldest.remove();
+                dropped++;
+            }
+            partial = new Partial(decoded.count, nowMs);
+            pending.put(decoded.messageId, partial);
+        } else if (partial.chunks.length != decoded.count) {
+            pending.remove(decoded.messageId);
+            dropped++;
+            throw new IllegalArgumentException("Message " + decoded.messageId + " changed its fragment count");
+        }
+        if (partial.chunks[decoded.index] != null) {
+            // a duplicate, nothing new
+            return false;
+        }
+        partial.bytes += decoded.chunk.remaining();
+        if (partial.bytes > maxMessageBytes) {
+            pending.remove(decoded.messageId);
+            dropped++;
+            return false;
+        }
+        partial.chunks[decoded.index] = copy(decoded.chunk);
+        if (decoded.index == 0) {
+            partial.topic = decoded.topic;
+        }
+        if (++partial.received < partial.chunks.length) {
+            return false;
+        }
+        pending.remove(decoded.messageId);
+        ByteBuffer message = ByteBuffer.allocate(partial.bytes);
+        for (ByteBuffer chunk : partial.chunks) {
+            message.put(chunk);
+        }
+        message.flip();
+        completed++;
+        sink.onMessage(partial.topic, message);
+        return true;
+    }
+
+    int pending() {
+        return pending.size();
+    }
+
+    long completed() {
+        return completed;
+    }
+
+    long dropped() {
+        return dropped;
+    }
+
+    private void expire(long nowMs) {
+        Iterator<Partial> iterator = pending.values().iterator();
+        while (iterator.hasNext()) {
+            if (nowMs - iterator.next().startedMs < timeoutMs) {
+                return;
+            }
+            iterator.remove();
+            dropped++;
+        }
+    }
+
+    private static ByteBuffer copy(ByteBuffer chunk) {
+        ByteBuffer copy = ByteBuffer.allocate(chunk.remaining());
+        copy.put(chunk.duplicate());
+        copy.flip();
+        return copy;
+    }
+}
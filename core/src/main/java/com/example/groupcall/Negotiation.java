@@ -0,0 +1,269 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * The offer/answer exchange with one remote, on any {@link MediaBackend}:
+ * offers and answers are created, set as the local description and sent,
+ * remote candidates wait for the remote description, local ones go out as
+ * they are gathered. A warm negotiation made its offer ahead of the call and
+ * holds it back, with its candidates, until {@link #sendWarmOffer}.
+ * {@link CallSignaling} negotiates every peer through it, in the app and
+ * in the load generator.
+ *
+ * Only used on the signaling thread; backend callbacks are posted there.
+ */
+class Negotiation implements PendingIceCandidates.Sink<MediaBackend.Candidate> {
+    // command type the timings file renegotiation offers under
+    static final String Renegotiation = "renegotiation";
+
+    /** The remote end, called on the signaling thread. */
+    interface Host {
+        // false once the peer was removed, its late callbacks are dropped
+        boolean isCurrent();
+
+        // to the peer's current id
+        void send(String type, JSONObject payload) throws JSONException;
+
+        // applied to every description we create, before it is set and sent
+        String transformLocal(String sdp);
+
+        // applied to every received description; throws IllegalArgumentException if it is malformed
+        String transformRemote(String type, String sdp);
+
+        void onFailure(String error);
+    }
+
+    interface Lookup {
+        // the negotiation of a peer the dispatcher accepted
+        Negotiation of(String peerId);
+    }
+
+    private final MediaBackend.Peer media;
+    private final Host host;
+    private final Executor signaling;
+    private final SdpCallback callbacks = new SdpCallback() {
+        @Override
+        public void onCreateSuccess(String type, String description) {
+            String createdBy = sdp.createdBy();
+            signaling.execute(() -> onCreated(type, description, createdBy));
+        }
+
+        @Override
+        public void onSetSuccess() {
+            signaling.execute(Negotiation.this::onSet);
+        }
+
+        @Override
+        public void onCreateFailure(String error) {
+            signaling.execute(() -> host.onFailure("create failed: " + error));
+        }
+
+        @Override
+        public void onSetFailure(String error) {
+            signaling.execute(() -> host.onFailure("set failed: " + error));
+        }
+    };
+    // pass sdp.begin(...) to every SDP operation, so it gets timed
+    private final TimedSdpObserver sdp;
+    private final PendingIceCandidates<MediaBackend.Candidate> pendingCandidates;
+    // made the first offer, so it is the side that restarts ICE; the other one answers
+    private boolean offerer;
+    private boolean warm;
+    // offer held back while warm, null while it is still being created
+    private String warmOffer;
+    // last offer set as the local description, handed out again by rewarm
+    private String localOffer;
+    // every local candidate so far, resent when a returned offer goes to someone new
+    private final List<MediaBackend.Candidate> gatheredCandidates = new ArrayList<>();
+
+    /**
+     * @param signaling runs callbacks on the signaling thread, dropping them once it is shut down
+     */
+    Negotiation(MediaBackend.Peer media, Host host, Executor signaling, SignalingTimings timings, CallMetrics metrics,
+                boolean warm) {
+        this.media = media;
+        this.host = host;
+        this.signaling = signaling;
+        this.sdp = new TimedSdpObserver(callbacks, timings);
+        this.pendingCandidates = new PendingIceCandidates<>(PendingIceCandidates.DefaultCapacity, metrics);
+        this.warm = warm;
+    }
+
+    /** Registers init, offer, answer and candidate for the negotiations of accepted peers. */
+    static void register(SignalingDispatcher dispatcher, Lookup peers) {
+        dispatcher.register(SignalingMessage.Init, (peerId, message) -> peers.of(peerId).offer(message.type));
+        dispatcher.register(SignalingMessage.Offer, (peerId, message) -> peers.of(peerId).answer(message));
+        dispatcher.register(SignalingMessage.Answer, (peerId, message) -> peers.of(peerId).setRemote(message));
+        dispatcher.register(SignalingMessage.Candidate, (peerId, message) -> peers.of(peerId).addRemoteCandidate(message));
+    }
+
+    MediaBackend.Peer media() {
+        return media;
+    }
+
+    boolean isOfferer() {
+        return offerer;
+    }
+
+    boolean isWarm() {
+        return warm;
+    }
+
+    int pendingCandidates() {
+        return pendingCandidates.size();
+    }
+
+    /** What init asks for: sends the warm offer, or creates one on behalf of the command type. */
+    void offer(String commandType) throws JSONException {
+        if (!sendWarmOffer()) {
+            createOffer(commandType);
+        }
+    }
+
+    void createOffer(String commandType) {
+        media.createOffer(sdp.begin(SignalingTimings.Stage.CREATE_OFFER, commandType), false);
+    }
+
+    /** Sets a received offer as the remote description and answers it. */
+    void answer(SignalingMessage offer) {
+        setRemote(offer);
+        media.createAnswer(sdp.begin(SignalingTimings.Stage.CREATE_ANSWER, offer.type));
+    }
+
+    void setRemote(SignalingMessage description) {
+        String remote = host.transformRemote(description.sdpType, description.sdp);
+        media.setRemoteDescription(sdp.begin(SignalingTimings.Stage.SET_REMOTE, description.type),
+                description.sdpType, remote);
+    }
+
+    // candidates may arrive ahead of the offer/answer; false if it was dropped
+    boolean addRemoteCandidate(SignalingMessage candidate) {
+        return pendingCandidates.add(new MediaBackend.Candidate(candidate.candidateId, candidate.candidateLabel,
+                candidate.candidate), this);
+    }
+
+    /**
+     * Sends the offer made while warm, followed by the candidates gathered
+     * since. Returns false if this negotiation was not warm, in which case the
+     * caller has to create the offer itself.
+     */
+    boolean sendWarmOffer() throws JSONException {
+        if (!warm) {
+            return false;
+        }
+        warm = false;
+        if (warmOffer != null) {
+            sendDescription("offer", warmOffer);
+            for (MediaBackend.Candidate candidate : gatheredCandidates) {
+                sendCandidate(candidate);
+            }
+        }
+        // else the offer is still being created and goes out once it is
+        warmOffer = null;
+        return true;
+    }
+
+    /** New ICE credentials on the same connection; false if an offer is pending, which is left to complete. */
+    boolean restartIce() {
+        if (media.signalingState() != MediaBackend.SignalingState.STABLE) {
+            return false;
+        }
+        media.createOffer(sdp.begin(SignalingTimings.Stage.CREATE_OFFER, SignalingTimings.Local), true);
+        return true;
+    }
+
+    /**
+     * A new offer on the same ICE credentials, so the answer goes through
+     * {@link Host#transformRemote} again; false unless the connection is
+     * stable with a remote description. Unlike an ICE restart it does not
+     * make us the side that restarts ICE.
+     */
+    boolean renegotiate() {
+        if (media.signalingState() != MediaBackend.SignalingState.STABLE || !media.hasRemoteDescription()) {
+            return false;
+        }
+        media.createOffer(sdp.begin(SignalingTimings.Stage.CREATE_OFFER, Renegotiation), false);
+        return true;
+    }
+
+    // a first offer nobody answered yet, which can go to the next participant
+    boolean hasUnansweredOffer() {
+        return media.signalingState() == MediaBackend.SignalingState.HAVE_LOCAL_OFFER && !media.hasRemoteDescription();
+    }
+
+    /** Warm again after the remote left without answering; the unanswered offer goes to whoever adopts it. */
+    void rewarm() {
+        warm = true;
+        warmOffer = localOffer;
+        // candidates the old remote sent ahead of its answer
+        pendingCandidates.clear();
+    }
+
+    // the remote is gone
+    void clear() {
+        pendingCandidates.clear();
+    }
+
+    /** A candidate the backend gathered, from any thread. */
+    void onIceCandidate(MediaBackend.Candidate candidate) {
+        signaling.execute(() -> {
+            gatheredCandidates.add(candidate);
+            if (warm) {
+                return;
+            }
+            try {
+                sendCandidate(candidate);
+            } catch (JSONException e) {
+                host.onFailure(e.toString());
+            }
+        });
+    }
+
+    @Override
+    public void addIceCandidate(MediaBackend.Candidate candidate) {
+        media.addIceCandidate(candidate);
+    }
+
+    private void onCreated(String type, String description, String createdBy) {
+        if (!warm && !host.isCurrent()) {
+            return;
+        }
+        try {
+            String local = host.transformLocal(description);
+            if (type.equals("offer") && !Renegotiation.equals(createdBy)) {
+                offerer = true;
+                localOffer = local;
+            }
+            if (warm) {
+                // setting it starts ICE gathering; the offer goes out on adoption
+                warmOffer = local;
+            } else {
+                sendDescription(type, local);
+            }
+            media.setLocalDescription(sdp.begin(SignalingTimings.Stage.SET_LOCAL, createdBy), type, local);
+        } catch (JSONException | IllegalArgumentException e) {
+            host.onFailure(e.toString());
+        }
+    }
+
+    private void onSet() {
+        if (host.isCurrent() && media.hasRemoteDescription() && !pendingCandidates.isRemoteDescriptionSet()) {
+            pendingCandidates.onRemoteDescriptionSet(this);
+        }
+    }
+
+    private void sendDescription(String type, String description) throws JSONException {
+        host.send(type, SignalingPayloads.description(type, description));
+    }
+
+    private void sendCandidate(MediaBackend.Candidate candidate) throws JSONException {
+        host.send(SignalingMessage.Candidate,
+                SignalingPayloads.candidate(candidate.mid, candidate.mLineIndex, candidate.sdp));
+    }
+}
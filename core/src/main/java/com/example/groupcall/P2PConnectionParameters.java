@@ -0,0 +1,80 @@
+package com.example.groupcall;
+
+public class P2PConnectionParameters {
+    public static final int DefaultMaxPeers = 2;
+
+    public enum Topology {
+        // one PeerConnection per remote participant
+        MESH,
+        // one upstream PeerConnection to a forwarding server carrying every participant
+        SFU
+    }
+
+    public final boolean videoCallEnabled;
+    public final boolean loopback;
+    public final int videoWidth;
+    public final int videoHeight;
+    public final int videoFps;
+    public final int videoStartBitrate;
+    public final String videoCodec;
+    public final boolean videoCodecHwAcceleration;
+    public final int audioStartBitrate;
+    public final String audioCodec;
+    public final boolean cpuOveruseDetection;
+    public final int maxPeers;
+    public final Topology topology;
+    public final IceServerProvider iceServerProvider;
+    public P2PConnectionParameters(
+            boolean videoCallEnabled, boolean loopback,
+            int videoWidth, int videoHeight, int videoFps, int videoStartBitrate,
+            String videoCodec, boolean videoCodecHwAcceleration,
+            int audioStartBitrate, String audioCodec,
+            boolean cpuOveruseDetection) {
+        this.videoCallEnabled = videoCallEnabled;
+        this.loopback = loopback;
+        this.videoWidth = videoWidth;
+        this.videoHeight = videoHeight;
+        this.videoFps = videoFps;
+        this.videoStartBitrate = videoStartBitrate;
+        this.videoCodec = videoCodec;
+        this.videoCodecHwAcceleration = videoCodecHwAcceleration;
+        this.audioStartBitrate = audioStartBitrate;
+        this.audioCodec = audioCodec;
+        this.cpuOveruseDetection = cpuOveruseDetection;
+        this.maxPeers = DefaultMaxPeers;
+        this.topology = Topology.MESH;
+        this.iceServerProvider = IceServerProvider.Default;
+    }
+
+    private P2PConnectionParameters(P2PConnectionParameters from, int maxPeers, Topology topology,
+                                    IceServerProvider iceServerProvider) {
+        this.videoCallEnabled = from.videoCallEnabled;
+        this.loopback = from.loopback;
+        this.videoWidth = from.videoWidth;
+        this.videoHeight = from.videoHeight;
+        this.videoFps = from.videoFps;
+        this.videoStartBitrate = from.videoStartBitrate;
+        this.videoCodec = from.videoCodec;
+        this.videoCodecHwAcceleration = from.videoCodecHwAcceleration;
+        this.audioStartBitrate = from.audioStartBitrate;
+        this.audioCodec = from.audioCodec;
+        this.cpuOveruseDetection = from.cpuOveruseDetection;
+        this.maxPeers = maxPeers;
+        this.topology = topology;
+        this.iceServerProvider = iceServerProvider;
+    }
+
+    // the settings below default to a two party mesh call on the default ICE servers
+
+    public P2PConnectionParameters withMaxPeers(int maxPeers) {
+        return new P2PConnectionParameters(this, maxPeers, topology, iceServerProvider);
+    }
+
+    public P2PConnectionParameters withTopology(Topology topology) {
+        return new P2PConnectionParameters(this, maxPeers, topology, iceServerProvider);
+    }
+
+    public P2PConnectionParameters withIceServerProvider(IceServerProvider iceServerProvider) {
+        return new P2PConnectionParameters(this, maxPeers, topology, iceServerProvider);
+    }
+}
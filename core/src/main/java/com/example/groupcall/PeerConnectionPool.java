@@ -0,0 +1,159 @@
+package com.example.groupcall;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+/**
+ * Bounded pool of idle connections that already made an offer and are
+ * gathering ICE candidates. A connection leaves the pool when it is leased
+ * for an outgoing offer and may come back when its remote left before
+ * answering: an unanswered offer is not bound to anyone yet. Idle connections
+ * are evicted once older than {@code maxAgeMs} (their candidates may no longer
+ * match the network) or when returning one would exceed {@code maxIdle}.
+ * Hits, misses and evictions are reported to {@link CallMetrics}.
+ * Only used from the signaling thread.
+ */
+class PeerConnectionPool<C> {
+    static final int DefaultMaxIdle = 2;
+    static final long DefaultMaxAgeMs = 30000;
+
+    interface Factory<C> {
+        // a new connection with its offer under way
+        C create();
+
+        void dispose(C connection);
+    }
+
+    private static final class Entry<C> {
+        final C connection;
+        final long createdNanos;
+
+        Entry(C connection, long createdNanos) {
+            this.connection = connection;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    private final Factory<C> factory;
+    private final int maxIdle;
+    private final long maxAgeNanos;
+    private final CallMetrics metrics;
+    // oldest first
+    private final LinkedList<Entry<C>> idle = new LinkedList<>();
+    // creation time of leased connections, so a returned one keeps its age
+    private final IdentityHashMap<C, Long> leased = new IdentityHashMap<>();
+    private int target;
+
+    PeerConnectionPool(Factory<C> factory, int maxIdle, long maxAgeMs, CallMetrics metrics) {
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+        this.maxAgeNanos = maxAgeMs * 1000000;
+        this.metrics = metrics;
+    }
+
+    /** Number of idle connections {@link #fill} keeps ready, capped at maxIdle. */
+    void setTarget(int target) {
+        this.target = Math.max(0, Math.min(target, maxIdle));
+    }
+
+    /** An idle connection, youngest first, or null on a miss. */
+    C lease(long nowNanos) {
+        evictExpired(nowNanos);
+        Entry<C> entry = idle.pollLast();
+        if (entry == null) {
+            metrics.onPoolMiss();
+            return null;
+        }
+        metrics.onPoolHit();
+        leased.put(entry.connection, entry.createdNanos);
+        return entry.connection;
+    }
+
+    /**
+     * Takes a connection back once its remote is gone. Only connections whose
+     * offer was never answered can be reused; anything else, or anything too
+     * old or beyond maxIdle, is disposed. Returns whether it was kept.
+     */
+    boolean release(C connection, boolean reusable, long nowNanos) {
+        Long created = leased.remove(connection);
+        long createdNanos = created != null ? created : nowNanos;
+        if (!reusable) {
+            factory.dispose(connection);
+            return false;
+        }
+        if (nowNanos - createdNanos >= maxAgeNanos) {
+            metrics.onPoolEvicted(1);
+            factory.dispose(connection);
+            return false;
+        }
+        insertByAge(new Entry<>(connection, createdNanos));
+        metrics.onPoolReturned();
+        // too many idle: drop the oldest
+        while (idle.size() > maxIdle) {
+            metrics.onPoolEvicted(1);
+            factory.dispose(idle.pollFirst().connection);
+        }
+        return isIdle(connection);
+    }
+
+    /** Evicts expired connections and creates new ones up to the target, at most {@code limit} idle. */
+    int fill(long nowNanos, int limit) {
+        evictExpired(nowNanos);
+        int created = 0;
+        int wanted = Math.min(target, limit);
+        while (idle.size() < wanted) {
+            idle.addLast(new Entry<>(factory.create(), nowNanos));
+            created++;
+        }
+        return created;
+    }
+
+    int evictExpired(long nowNanos) {
+        int evicted = 0;
+        Entry<C> oldest;
+        while ((oldest = idle.peekFirst()) != null && nowNanos - oldest.createdNanos >= maxAgeNanos) {
+            idle.pollFirst();
+            factory.dispose(oldest.connection);
+            evicted++;
+        }
+        if (evicted > 0) {
+            metrics.onPoolEvicted(evicted);
+        }
+        return evicted;
+    }
+
+    int idleCount() {
+        return idle.size();
+    }
+
+    /** Disposes every idle connection; leased ones belong to their peers. */
+    void clear() {
+        Entry<C> entry;
+        while ((entry = idle.pollFirst()) != null) {
+            factory.dispose(entry.connection);
+        }
+        leased.clear();
+    }
+
+    // a returned connection keeps its age, so it may belong in front of younger ones
+    private void insertByAge(Entry<C> entry) {
+        ListIterator<Entry<C>> iterator = idle.listIterator(idle.size());
+        while (iterator.hasPrevious()) {
+            if (iterator.previous().createdNanos <= entry.createdNanos) {
+                iterator.next();
+                break;
+            }
+        }
+        iterator.add(entry);
+    }
+
+    private boolean isIdle(C connection) {
+        for (Entry<C> entry : idle) {
+            if (entry.connection == connection) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.groupcall;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread safe map of remote peers to render slots (end points). Lookups are
+ * lock free; registering and removing take a short lock so a slot and its
+ * peer always change together. Free slots are kept in a bitset, so finding
+ * the lowest free slot is a word scan rather than a walk over every peer.
+ * The lock only reserves the slot: the peer is created outside of it, so a
+ * slow factory does not hold up other joins and leaves.
+ */
+class PeerRegistry<P> {
+    interface Factory<P> {
+        P create(String id, int endPoint);
+    }
+
+    // a reserved end point, with its peer once the factory returned
+    private static final class Entry<P> {
+        final int endPoint;
+        private volatile P peer;
+        private boolean created;
+
+        Entry(int endPoint) {
+            this.endPoint = endPoint;
+        }
+
+        synchronized void created(P peer) {
+            this.peer = peer;
+            created = true;
+            notifyAll();
+        }
+
+        synchronized P await() {
+            boolean interrupted = false;
+            while (!created) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return peer;
+        }
+    }
+
+    private final int capacity;
+    private final BitSet usedEndPoints;
+    private final ConcurrentHashMap<String, Entry<P>> peers = new ConcurrentHashMap<>();
+
+    PeerRegistry(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.usedEndPoints = new BitSet(capacity);
+    }
+
+    /**
+     * Returns the peer registered under {@code id}, creating it on the lowest
+     * free end point if needed. Returns null when the room is full. A caller
+     * registering an id whose peer is still being created waits for it.
+     */
+    P register(String id, Factory<P> factory) {
+        Entry<P> existing = peers.get(id);
+        if (existing != null) {
+            return existing.await();
+        }
+        Entry<P> entry = null;
+        synchronized (usedEndPoints) {
+            existing = peers.get(id);
+            if (existing == null) {
+                int endPoint = usedEndPoints.nextClearBit(0);
+                if (endPoint >= capacity) {
+                    return null;
+                }
+                usedEndPoints.set(endPoint);
+                entry = new Entry<>(endPoint);
+                peers.put(id, entry);
+            }
+        }
+        if (entry == null) {
+            return existing.await();
+        }
+        P peer = null;
+        try {
+            peer = factory.create(id, entry.endPoint);
+        } finally {
+            if (peer == null) {
+                release(id, entry);
+            }
+            entry.created(peer);
+        }
+        return peer;
+    }
+
+    // gives back the end point of a peer the factory failed to create
+    private void release(String id, Entry<P> entry) {
+        synchronized (usedEndPoints) {
+            if (peers.remove(id, entry)) {
+                usedEndPoints.clear(entry.endPoint);
+            }
+        }
+    }
+
+    /**
+     * Releases the peer's end point and returns the peer, for the caller to
+     * close; null if it was not registered. A peer still being created is
+     * waited for, so it is never dropped without anyone holding it.
+     */
+    P remove(String id) {
+        Entry<P> entry = peers.get(id);
+        if (entry == null) {
+            return null;
+        }
+        P peer = entry.await();
+        synchronized (usedEndPoints) {
+            // its create failed, or someone else removed it meanwhile
+            if (!peers.remove(id, entry)) {
+                return null;
+            }
+            usedEndPoints.clear(entry.endPoint);
+        }
+        return peer;
+    }
+
+    // null while the peer is still being created
+    P get(String id) {
+        Entry<P> entry = peers.get(id);
+        return entry != null ? entry.peer : null;
+    }
+
+    boolean contains(String id) {
+        return peers.containsKey(id);
+    }
+
+    int endPointOf(String id) {
+        Entry<P> entry = peers.get(id);
+        return entry != null ? entry.endPoint : -1;
+    }
+
+    // snapshot, safe to iterate while peers come and go
+    Collection<P> peers() {
+        List<P> snapshot = new ArrayList<>(peers.size());
+        for (Entry<P> entry : peers.values()) {
+            P peer = entry.peer;
+            if (peer != null) {
+                snapshot.add(peer);
+            }
+        }
+        return snapshot;
+    }
+
+    int size() {
+        return peers.size();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int freeEndPoints() {
+        synchronized (usedEndPoints) {
+            return capacity - usedEndPoints.cardinality();
+        }
+    }
+}
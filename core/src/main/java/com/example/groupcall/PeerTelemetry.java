@@ -0,0 +1,162 @@
+package com.example.groupcall;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Turns the StatsReports of one peer's polls into {@link RingHistogram}
+ * samples. A poll is fed as {@link #begin}, one {@link #onReport} per report
+ * and {@link #end}; cumulative counters are diffed against the previous poll
+ * to get rates and loss. Feeding a poll does not allocate. Polls come from one
+ * thread at a time, snapshots may be taken from any thread.
+ */
+class PeerTelemetry {
+    private final RingHistogram[] histograms = new RingHistogram[TelemetrySnapshot.Metric.values().length];
+    private volatile IceConnectionMonitor.State iceState = IceConnectionMonitor.State.CONNECTING;
+
+    // totals of the poll being fed
+    private long bytesSent;
+    private long packetsSent;
+    private long packetsLostSent;
+    private long bytesReceived;
+    private long packetsReceived;
+    private long packetsLostReceived;
+    private long rttMs;
+    private long jitterMs;
+    private long framesDecoded;
+    private long framesDropped;
+    private boolean receivingVideo;
+
+    // totals of the previous poll, lastMs < 0 before the first one
+    private long lastMs = -1;
+    private long lastBytesSent;
+    private long lastPacketsSent;
+    private long lastPacketsLostSent;
+    private long lastBytesReceived;
+    private long lastPacketsReceived;
+    private long lastPacketsLostReceived;
+
+    PeerTelemetry(int window) {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new RingHistogram(window);
+        }
+    }
+
+    void setIceState(IceConnectionMonitor.State state) {
+        iceState = state;
+    }
+
+    void begin() {
+        bytesSent = 0;
+        packetsSent = 0;
+        packetsLostSent = 0;
+        bytesReceived = 0;
+        packetsReceived = 0;
+        packetsLostReceived = 0;
+        rttMs = -1;
+        jitterMs = -1;
+        framesDecoded = 0;
+        framesDropped = 0;
+        receivingVideo = false;
+    }
+
+    // only ssrc reports count, summed over audio and video
+    void onReport(String type, Map<String, String> values) {
+        if (!"ssrc".equals(type)) {
+            return;
+        }
+        String sent = values.get("bytesSent");
+        if (sent != null) {
+            bytesSent += count(sent);
+            packetsSent += count(values.get("packetsSent"));
+            packetsLostSent += count(values.get("packetsLost"));
+            rttMs = Math.max(rttMs, parseLong(values.get("googRtt")));
+        }
+        String received = values.get("bytesReceived");
+        if (received != null) {
+            bytesReceived += count(received);
+            packetsReceived += count(values.get("packetsReceived"));
+            packetsLostReceived += count(values.get("packetsLost"));
+            String decoded = values.get("googFrameRateDecoded");
+            if (decoded != null) {
+                long decodedFps = count(decoded);
+                receivingVideo = true;
+                framesDecoded += decodedFps;
+                framesDropped += Math.max(0, parseLong(values.get("googFrameRateReceived")) - decodedFps);
+            }
+        }
+        jitterMs = Math.max(jitterMs, parseLong(values.get("googJitterReceived")));
+    }
+
+    void end(long nowMs) {
+        if (rttMs > 0) {
+            record(TelemetrySnapshot.Metric.RTT_MS, rttMs);
+        }
+        if (jitterMs >= 0) {
+            record(TelemetrySnapshot.Metric.JITTER_MS, jitterMs);
+        }
+        if (receivingVideo) {
+            record(TelemetrySnapshot.Metric.FRAMES_DECODED_PER_S, framesDecoded);
+            record(TelemetrySnapshot.Metric.FRAMES_DROPPED_PER_S, framesDropped);
+        }
+        long elapsedMs = nowMs - lastMs;
+        // counters restart when ssrcs change, e.g. after an ICE restart or renegotiation
+        boolean continuous = lastMs >= 0 && elapsedMs > 0
+                && bytesSent >= lastBytesSent && packetsSent >= lastPacketsSent && packetsLostSent >= lastPacketsLostSent
+                && bytesReceived >= lastBytesReceived && packetsReceived >= lastPacketsReceived
+                && packetsLostReceived >= lastPacketsLostReceived;
+        if (continuous) {
+            record(TelemetrySnapshot.Metric.SEND_KBPS, (bytesSent - lastBytesSent) * 8 / elapsedMs);
+            record(TelemetrySnapshot.Metric.RECEIVE_KBPS, (bytesReceived - lastBytesReceived) * 8 / elapsedMs);
+            long sentPackets = packetsSent - lastPacketsSent;
+            if (sentPackets > 0) {
+                record(TelemetrySnapshot.Metric.SEND_LOSS_PERMILLE, (packetsLostSent - lastPacketsLostSent) * 1000 / sentPackets);
+            }
+            long lostPackets = packetsLostReceived - lastPacketsLostReceived;
+            long expectedPackets = packetsReceived - lastPacketsReceived + lostPackets;
+            if (expectedPackets > 0) {
+                record(TelemetrySnapshot.Metric.RECEIVE_LOSS_PERMILLE, lostPackets * 1000 / expectedPackets);
+            }
+        }
+        lastMs = nowMs;
+        lastBytesSent = bytesSent;
+        lastPacketsSent = packetsSent;
+        lastPacketsLostSent = packetsLostSent;
+        lastBytesReceived = bytesReceived;
+        lastPacketsReceived = packetsReceived;
+        lastPacketsLostReceived = packetsLostReceived;
+    }
+
+    void record(TelemetrySnapshot.Metric metric, long value) {
+        histograms[metric.ordinal()].record(value);
+    }
+
+    RingHistogram histogram(TelemetrySnapshot.Metric metric) {
+        return histograms[metric.ordinal()];
+    }
+
+    TelemetrySnapshot.PeerStats snapshot(String peerId) {
+        Map<TelemetrySnapshot.Metric, TelemetrySnapshot.Summary> metrics = new EnumMap<>(TelemetrySnapshot.Metric.class);
+        for (TelemetrySnapshot.Metric metric : TelemetrySnapshot.Metric.values()) {
+            metrics.put(metric, histograms[metric.ordinal()].summary());
+        }
+        return new TelemetrySnapshot.PeerStats(peerId, iceState.name(), metrics);
+    }
+
+    // counters and rates, missing or garbled ones count as 0
+    private static long count(String value) {
+        return Math.max(0, parseLong(value));
+    }
+
+    // -1 when missing or garbled
+    private static long parseLong(String value) {
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
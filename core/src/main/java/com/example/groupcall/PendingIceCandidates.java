@@ -0,0 +1,72 @@
+package com.example.groupcall;
+
+import java.util.ArrayDeque;
+
+/**
+ * Holds remote ICE candidates that arrive before the remote description is set,
+ * and hands them to the peer connection in arrival order once it is.
+ */
+class PendingIceCandidates<T> {
+    static final int DefaultCapacity = 64;
+
+    interface Sink<T> {
+        void addIceCandidate(T candidate);
+    }
+
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+    private final int capacity;
+    private final CallMetrics metrics;
+    private boolean remoteDescriptionSet;
+
+    PendingIceCandidates(int capacity, CallMetrics metrics) {
+        this.capacity = capacity;
+        this.metrics = metrics;
+    }
+
+    // applies the candidate right away if possible, otherwise queues it
+    synchronized boolean add(T candidate, Sink<T> sink) {
+        if (remoteDescriptionSet) {
+            sink.addIceCandidate(candidate);
+            return true;
+        }
+        if (queue.size() >= capacity) {
+            metrics.onCandidatesDropped(1);
+            return false;
+        }
+        queue.add(candidate);
+        metrics.onCandidateQueued();
+        return true;
+    }
+
+    synchronized int onRemoteDescriptionSet(Sink<T> sink) {
+        remoteDescriptionSet = true;
+        int drained = 0;
+        T candidate;
+        while ((candidate = queue.poll()) != null) {
+            sink.addIceCandidate(candidate);
+            drained++;
+        }
+        if (drained > 0) {
+            metrics.onCandidatesDrained(drained);
+        }
+        return drained;
+    }
+
+    synchronized boolean isRemoteDescriptionSet() {
+        return remoteDescriptionSet;
+    }
+
+    synchronized int size() {
+        return queue.size();
+    }
+
+    // called when the peer goes away, whatever is still queued is lost
+    synchronized int clear() {
+        int dropped = queue.size();
+        queue.clear();
+        if (dropped > 0) {
+            metrics.onCandidatesDropped(dropped);
+        }
+        return dropped;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.groupcall;
+
+/**
+ * What a call holds on to at one moment, taken on the signaling thread by
+ * WebRTCClient.getResourceSnapshot(). Meant for checking that
+ * background mode really lets go of video, and for leak hunting across
+ * joins and leaves.
+ */
+public class ResourceSnapshot {
+    public final boolean background;
+    // connected or connecting peers, plus warm ones waiting in the pool
+    public final int peerConnections;
+    public final int pooledPeerConnections;
+    // local tracks that are enabled, i.e. still fed to the encoders
+    public final int localVideoTracks;
+    public final int localAudioTracks;
+    public final int remoteVideoTracks;
+    public final int remoteAudioTracks;
+    // renderers the app has on remote tracks, see PeerListener#attachedRenderers
+    public final int renderers;
+    public final int openDataChannels;
+    // the signaling socket; media sockets belong to the PeerConnections above
+    public final int sockets;
+    public final boolean capturing;
+
+    public ResourceSnapshot(boolean background, int peerConnections, int pooledPeerConnections,
+                            int localVideoTracks, int localAudioTracks, int remoteVideoTracks, int remoteAudioTracks,
+                            int renderers, int openDataChannels, int sockets, boolean capturing) {
+        this.background = background;
+        this.peerConnections = peerConnections;
+        this.pooledPeerConnections = pooledPeerConnections;
+        this.localVideoTracks = localVideoTracks;
+        this.localAudioTracks = localAudioTracks;
+        this.remoteVideoTracks = remoteVideoTracks;
+        this.remoteAudioTracks = remoteAudioTracks;
+        this.renderers = renderers;
+        this.openDataChannels = openDataChannels;
+        this.sockets = sockets;
+        this.capturing = capturing;
+    }
+
+    /** True once nothing video related runs anymore: no camera, no enabled local or remote video, no renderer. */
+    public boolean isVideoReleased() {
+        return !capturing && localVideoTracks == 0 && remoteVideoTracks == 0 && renderers == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceSnapshot{background=" + background + ", peerConnections=" + peerConnections
+                + " (" + pooledPeerConnections + " pooled), localTracks=" + localVideoTracks + "v/" + localAudioTracks
+                + "a, remoteTracks=" + remoteVideoTracks + "v/" + remoteAudioTracks + "a, renderers=" + renderers
+                + ", dataChannels=" + openDataChannels + ", sockets=" + sockets + ", capturing=" + capturing + "}";
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.groupcall;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Recent values of one measure plus a lifetime distribution, lock free and
+ * allocation free to record. The ring keeps the last {@code capacity} values
+ * for window percentiles; next to it every value is counted in a power of two
+ * bucket. Any thread may record; readers see a window that can be off by the
+ * values recorded while they copy it, which is fine for telemetry.
+ */
+class RingHistogram {
+    static final int DefaultCapacity = 64;
+    // bucket i counts values in [2^(i-1), 2^i), bucket 0 counts zero and below
+    static final int Buckets = 64;
+
+    static final TelemetrySnapshot.Summary Empty = new TelemetrySnapshot.Summary(0, 0, 0, 0, 0, 0, 0);
+
+    private final AtomicLongArray ring;
+    private final int mask;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(Buckets);
+
+    // capacity is rounded up to a power of two
+    RingHistogram(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        ring = new AtomicLongArray(size);
+        mask = size - 1;
+    }
+
+    void record(long value) {
+        long index = count.getAndIncrement();
+        ring.lazySet((int) (index & mask), value);
+        buckets.incrementAndGet(bucket(value));
+    }
+
+    static int bucket(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    // every value ever recorded, not just the window
+    long count() {
+        return count.get();
+    }
+
+    long bucketCount(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /** Copies the window, oldest first; allocates, so call it off the hot path. */
+    long[] window() {
+        long end = count.get();
+        int size = (int) Math.min(end, ring.length());
+        long[] values = new long[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = ring.get((int) ((end - size + i) & mask));
+        }
+        return values;
+    }
+
+    TelemetrySnapshot.Summary summary() {
+        long[] values = window();
+        if (values.length == 0) {
+            return Empty;
+        }
+        long last = values[values.length - 1];
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        Arrays.sort(values);
+        return new TelemetrySnapshot.Summary(values.length, last, values[0], values[values.length - 1], (double) sum / values.length,
+                percentile(values, 50), percentile(values, 95));
+    }
+
+    // nearest rank on sorted values
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
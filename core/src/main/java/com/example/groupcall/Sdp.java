@@ -0,0 +1,433 @@
+package com.example.groupcall;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, typed view of a session description. Session and media lines are
+ * kept verbatim so serializing a parsed description gives back the same text
+ * (with CRLF line endings); the typed fields (codecs, candidates, fingerprint)
+ * are derived once at parse time.
+ */
+final class Sdp {
+    static final String LineSeparator = "\r\n";
+
+    final List<String> sessionLines;
+    final List<Media> media;
+    final Fingerprint fingerprint;
+
+    private Sdp(List<String> sessionLines, List<Media> media) {
+        this.sessionLines = Collections.unmodifiableList(sessionLines);
+        this.media = Collections.unmodifiableList(media);
+        this.fingerprint = fingerprintOf(sessionLines);
+    }
+
+    /** First media section of the given type, or null. */
+    Media media(String type) {
+        for (Media section : media) {
+            if (section.type.equals(type)) {
+                return section;
+            }
+        }
+        return null;
+    }
+
+    /** Session level fingerprint, falling back to the first media section that has one. */
+    Fingerprint fingerprint() {
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+        for (Media section : media) {
+            if (section.fingerprint != null) {
+                return section.fingerprint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses an SDP blob. Accepts LF or CRLF line endings and ignores blank
+     * lines. Throws IllegalArgumentException if it does not start with v= or a
+     * line is not of the form {@code x=value}.
+     */
+    static Sdp parse(String sdp) {
+        if (sdp == null) {
+            throw new IllegalArgumentException("SDP is null");
+        }
+        List<String> sessionLines = new ArrayList<>();
+        List<Media> media = new ArrayList<>();
+        String mediaLine = null;
+        List<String> mediaLines = null;
+        int length = sdp.length();
+        int start = 0;
+        while (start < length) {
+            int newline = sdp.indexOf('\n', start);
+            int end = newline < 0 ? length : newline;
+            int next = newline < 0 ? length : newline + 1;
+            if (end > start && sdp.charAt(end - 1) == '\r') {
+                end--;
+            }
+            if (end > start) {
+                if (end - start < 2 || sdp.charAt(start + 1) != '=') {
+                    throw new IllegalArgumentException("Malformed SDP line: " + sdp.substring(start, end));
+                }
+                String line = sdp.substring(start, end);
+                if (sessionLines.isEmpty() && !line.startsWith("v=")) {
+                    throw new IllegalArgumentException("SDP does not start with v=");
+                }
+                if (line.charAt(0) == 'm') {
+                    if (mediaLine != null) {
+                        media.add(Media.parse(mediaLine, mediaLines));
+                    }
+                    mediaLine = line;
+                    mediaLines = new ArrayList<>();
+                } else if (mediaLines != null) {
+                    mediaLines.add(line);
+                } else {
+                    sessionLines.add(line);
+                }
+            }
+            start = next;
+        }
+        if (sessionLines.isEmpty()) {
+            throw new IllegalArgumentException("Empty SDP");
+        }
+        if (mediaLine != null) {
+            media.add(Media.parse(mediaLine, mediaLines));
+        }
+        return new Sdp(sessionLines, media);
+    }
+
+    /** Wire form: every line terminated by CRLF. */
+    String serialize() {
+        StringBuilder out = new StringBuilder(256 * (media.size() + 1));
+        for (String line : sessionLines) {
+            out.append(line).append(LineSeparator);
+        }
+        for (Media section : media) {
+            section.appendTo(out);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Sdp)) {
+            return false;
+        }
+        Sdp other = (Sdp) o;
+        return sessionLines.equals(other.sessionLines) && media.equals(other.media);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sessionLines.hashCode() + media.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return serialize();
+    }
+
+    private static Fingerprint fingerprintOf(List<String> lines) {
+        for (String line : lines) {
+            if (line.startsWith("a=fingerprint:")) {
+                return Fingerprint.parse(line.substring("a=fingerprint:".length()));
+            }
+        }
+        return null;
+    }
+
+    /** One m= section and the lines that follow it. */
+    static final class Media {
+        final String type;
+        final int port;
+        // number of ports from the <port>/<count> form, 0 when absent
+        final int portCount;
+        final String protocol;
+        final List<String> formats;
+        final String mid;
+        final String direction;
+        final List<Codec> codecs;
+        final List<Candidate> candidates;
+        final Fingerprint fingerprint;
+        final List<String> lines;
+
+        private Media(String type, int port, int portCount, String protocol, List<String> formats, List<String> lines) {
+            this.type = type;
+            this.port = port;
+            this.portCount = portCount;
+            this.protocol = protocol;
+            this.formats = Collections.unmodifiableList(formats);
+            this.lines = Collections.unmodifiableList(lines);
+
+            String mid = null;
+            String direction = "sendrecv";
+            List<Codec.Builder> builders = new ArrayList<>();
+            List<Candidate> candidates = new ArrayList<>();
+            for (String line : lines) {
+                if (!line.startsWith("a=")) {
+                    continue;
+                }
+                if (line.startsWith("a=rtpmap:")) {
+                    Codec.Builder builder = Codec.Builder.fromRtpmap(line.substring("a=rtpmap:".length()));
+                    if (builder != null) {
+                        builders.add(builder);
+                    }
+                } else if (line.startsWith("a=fmtp:")) {
+                    Codec.Builder builder = find(builders, line, "a=fmtp:".length());
+                    if (builder != null) {
+                        builder.fmtp = line.substring(line.indexOf(' ') + 1);
+                    }
+                } else if (line.startsWith("a=rtcp-fb:")) {
+                    Codec.Builder builder = find(builders, line, "a=rtcp-fb:".length());
+                    if (builder != null) {
+                        builder.feedback.add(line.substring(line.indexOf(' ') + 1));
+                    }
+                } else if (line.startsWith("a=candidate:")) {
+                    Candidate candidate = Candidate.parse(line.substring(2));
+                    if (candidate != null) {
+                        candidates.add(candidate);
+                    }
+                } else if (line.startsWith("a=mid:")) {
+                    mid = line.substring("a=mid:".length());
+                } else if (line.equals("a=sendrecv") || line.equals("a=sendonly")
+                        || line.equals("a=recvonly") || line.equals("a=inactive")) {
+                    direction = line.substring(2);
+                }
+            }
+            // codecs in m= line (preference) order
+            List<Codec> codecs = new ArrayList<>(builders.size());
+            for (String format : formats) {
+                for (Codec.Builder builder : builders) {
+                    if (format.equals(builder.payloadType)) {
+                        codecs.add(builder.build());
+                        break;
+                    }
+                }
+            }
+            this.mid = mid;
+            this.direction = direction;
+            this.codecs = Collections.unmodifiableList(codecs);
+            this.candidates = Collections.unmodifiableList(candidates);
+            this.fingerprint = fingerprintOf(lines);
+        }
+
+        // builder for the payload type that follows the prefix, up to the first space
+        private static Codec.Builder find(List<Codec.Builder> builders, String line, int from) {
+            int space = line.indexOf(' ', from);
+            if (space < 0) {
+                return null;
+            }
+            for (Codec.Builder builder : builders) {
+                if (line.regionMatches(from, builder.payloadType, 0, space - from) && builder.payloadType.length() == space - from) {
+                    return builder;
+                }
+            }
+            return null;
+        }
+
+        static Media parse(String mediaLine, List<String> lines) {
+            // m=<media> <port>[/<count>] <proto> <fmt> ...
+            String[] fields = mediaLine.substring(2).split(" ");
+            if (fields.length < 3) {
+                throw new IllegalArgumentException("Malformed media line: " + mediaLine);
+            }
+            int port;
+            int portCount;
+            try {
+                int slash = fields[1].indexOf('/');
+                port = Integer.parseInt(slash < 0 ? fields[1] : fields[1].substring(0, slash));
+                portCount = slash < 0 ? 0 : Integer.parseInt(fields[1].substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed media port: " + mediaLine);
+            }
+            List<String> formats = new ArrayList<>(fields.length - 3);
+            for (int i = 3; i < fields.length; i++) {
+                formats.add(fields[i]);
+            }
+            return new Media(fields[0], port, portCount, fields[2], formats, lines);
+        }
+
+        Codec codec(String name) {
+            for (Codec codec : codecs) {
+                if (codec.name.equalsIgnoreCase(name)) {
+                    return codec;
+                }
+            }
+            return null;
+        }
+
+        private void appendTo(StringBuilder out) {
+            out.append("m=").append(type).append(' ').append(port);
+            if (portCount > 0) {
+                out.append('/').append(portCount);
+            }
+            out.append(' ').append(protocol);
+            for (String format : formats) {
+                out.append(' ').append(format);
+            }
+            out.append(LineSeparator);
+            for (String line : lines) {
+                out.append(line).append(LineSeparator);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Media)) {
+                return false;
+            }
+            Media other = (Media) o;
+            return type.equals(other.type) && port == other.port && portCount == other.portCount && protocol.equals(other.protocol)
+                    && formats.equals(other.formats) && lines.equals(other.lines);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((type.hashCode() * 31 + port) * 31 + formats.hashCode()) * 31 + lines.hashCode();
+        }
+    }
+
+    /** An a=rtpmap entry with its a=fmtp parameters and a=rtcp-fb lines. */
+    static final class Codec {
+        final String payloadType;
+        final String name;
+        final int clockRate;
+        final int channels;
+        final String fmtp;
+        final List<String> feedback;
+
+        Codec(String payloadType, String name, int clockRate, int channels, String fmtp, List<String> feedback) {
+            this.payloadType = payloadType;
+            this.name = name;
+            this.clockRate = clockRate;
+            this.channels = channels;
+            this.fmtp = fmtp;
+            this.feedback = Collections.unmodifiableList(new ArrayList<>(feedback));
+        }
+
+        @Override
+        public String toString() {
+            return payloadType + " " + name + "/" + clockRate + (channels > 1 ? "/" + channels : "");
+        }
+
+        // collects the lines of one payload type while a media section is scanned
+        private static final class Builder {
+            final String payloadType;
+            final String name;
+            final int clockRate;
+            final int channels;
+            String fmtp;
+            final List<String> feedback = new ArrayList<>();
+
+            private Builder(String payloadType, String name, int clockRate, int channels) {
+                this.payloadType = payloadType;
+                this.name = name;
+                this.clockRate = clockRate;
+                this.channels = channels;
+            }
+
+            // <pt> <name>/<clock>[/<channels>]
+            static Builder fromRtpmap(String value) {
+                int space = value.indexOf(' ');
+                if (space <= 0) {
+                    return null;
+                }
+                String[] encoding = value.substring(space + 1).split("/");
+                try {
+                    int clockRate = encoding.length > 1 ? Integer.parseInt(encoding[1]) : 0;
+                    int channels = encoding.length > 2 ? Integer.parseInt(encoding[2]) : 1;
+                    return new Builder(value.substring(0, space), encoding[0], clockRate, channels);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+
+            Codec build() {
+                return new Codec(payloadType, name, clockRate, channels, fmtp, feedback);
+            }
+        }
+    }
+
+    /** a=candidate / the candidate field of a trickled ICE candidate. */
+    static final class Candidate {
+        final String foundation;
+        final int component;
+        final String transport;
+        final long priority;
+        final String address;
+        final int port;
+        final String type;
+
+        Candidate(String foundation, int component, String transport, long priority, String address, int port, String type) {
+            this.foundation = foundation;
+            this.component = component;
+            this.transport = transport;
+            this.priority = priority;
+            this.address = address;
+            this.port = port;
+            this.type = type;
+        }
+
+        /**
+         * Parses {@code candidate:<foundation> <component> <transport> <priority>
+         * <address> <port> typ <type> ...}; returns null if it is malformed.
+         */
+        static Candidate parse(String value) {
+            if (value.startsWith("a=")) {
+                value = value.substring(2);
+            }
+            if (!value.startsWith("candidate:")) {
+                return null;
+            }
+            String[] fields = value.substring("candidate:".length()).split(" ");
+            if (fields.length < 8 || !fields[6].equals("typ")) {
+                return null;
+            }
+            try {
+                return new Candidate(fields[0], Integer.parseInt(fields[1]), fields[2],
+                        Long.parseLong(fields[3]), fields[4], Integer.parseInt(fields[5]), fields[7]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "candidate:" + foundation + " " + component + " " + transport + " " + priority
+                    + " " + address + " " + port + " typ " + type;
+        }
+    }
+
+    /** a=fingerprint:<algorithm> <hex> */
+    static final class Fingerprint {
+        final String algorithm;
+        final String value;
+
+        Fingerprint(String algorithm, String value) {
+            this.algorithm = algorithm;
+            this.value = value;
+        }
+
+        static Fingerprint parse(String value) {
+            int space = value.indexOf(' ');
+            if (space <= 0) {
+                return null;
+            }
+            return new Fingerprint(value.substring(0, space), value.substring(space + 1));
+        }
+
+        @Override
+        public String toString() {
+            return algorithm + " " + value;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.groupcall;
+
+/**
+ * Outcome of an SDP operation on a {@link MediaBackend.Peer}, as libjingle's
+ * SdpObserver reports it, with the description as its canonical type
+ * ("offer", "answer") and text. Called on a backend thread.
+ */
+interface SdpCallback {
+    void onCreateSuccess(String type, String description);
+
+    void onSetSuccess();
+
+    void onCreateFailure(String error);
+
+    void onSetFailure(String error);
+}
@@ -0,0 +1,10 @@
+package com.example.groupcall;
+
+/**
+ * Rewrites a session description before it is applied or sent. Implementations
+ * are pure string processing and must return the input unchanged when there
+ * is nothing to do.
+ */
+interface SdpTransformer {
+    String transform(String sdp);
+}
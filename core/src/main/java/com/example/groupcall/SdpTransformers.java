@@ -0,0 +1,280 @@
+package com.example.groupcall;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SDP rewrites applied to every offer and answer: codec preference,
+ * bandwidth limits and codec parameters. Each rewrite only touches the media
+ * sections of its own type and keeps the line separator of the input.
+ */
+final class SdpTransformers {
+
+    private SdpTransformers() {
+    }
+
+    static SdpTransformer chain(final SdpTransformer... transformers) {
+        return new SdpTransformer() {
+            @Override
+            public String transform(String sdp) {
+                for (SdpTransformer transformer : transformers) {
+                    sdp = transformer.transform(sdp);
+                }
+                return sdp;
+            }
+        };
+    }
+
+    /** Moves the payload types of {@code codec} to the front of the m= line. */
+    static SdpTransformer preferCodec(final String mediaType, final String codec) {
+        return new SdpTransformer() {
+            @Override
+            public String transform(String sdp) {
+                Lines lines = new Lines(sdp);
+                for (int m = lines.nextMedia(mediaType, 0); m >= 0; m = lines.nextMedia(mediaType, m + 1)) {
+                    List<String> preferred = lines.payloadTypes(m, codec);
+                    if (preferred.isEmpty()) {
+                        continue;
+                    }
+                    String[] fields = lines.get(m).split(" ");
+                    if (fields.length <= 3) {
+                        continue;
+                    }
+                    StringBuilder mLine = new StringBuilder(fields[0]).append(' ').append(fields[1]).append(' ').append(fields[2]);
+                    for (String payloadType : preferred) {
+                        mLine.append(' ').append(payloadType);
+                    }
+                    for (int i = 3; i < fields.length; i++) {
+                        if (!preferred.contains(fields[i])) {
+                            mLine.append(' ').append(fields[i]);
+                        }
+                    }
+                    lines.set(m, mLine.toString());
+                }
+                return lines.toString();
+            }
+        };
+    }
+
+    /** Sets b=AS, the application specific maximum in kbps, for every section of the type. */
+    static SdpTransformer bandwidth(final String mediaType, final int kbps) {
+        return new SdpTransformer() {
+            @Override
+            public String transform(String sdp) {
+                if (kbps <= 0) {
+                    return sdp;
+                }
+                Lines lines = new Lines(sdp);
+                for (int m = lines.nextMedia(mediaType, 0); m >= 0; m = lines.nextMedia(mediaType, m + 1)) {
+                    int end = lines.sectionEnd(m);
+                    // b= follows i= and c= in the section
+                    int insertAt = m + 1;
+                    for (int i = m + 1; i < end; ) {
+                        String line = lines.get(i);
+                        if (line.startsWith("b=AS:")) {
+                            lines.remove(i);
+                            end--;
+                            continue;
+                        }
+                        if (line.startsWith("i=") || line.startsWith("c=")) {
+                            insertAt = i + 1;
+                        }
+                        i++;
+                    }
+                    lines.insert(insertAt, "b=AS:" + kbps);
+                }
+                return lines.toString();
+            }
+        };
+    }
+
+    /** Sets one fmtp parameter on every payload type of {@code codec}. */
+    static SdpTransformer codecParameter(final String mediaType, final String codec, final String name, final String value) {
+        return new SdpTransformer() {
+            @Override
+            public String transform(String sdp) {
+                Lines lines = new Lines(sdp);
+                for (int m = lines.nextMedia(mediaType, 0); m >= 0; m = lines.nextMedia(mediaType, m + 1)) {
+                    for (String payloadType : lines.payloadTypes(m, codec)) {
+                        lines.setFmtpParameter(m, payloadType, name, value);
+                    }
+                }
+                return lines.toString();
+            }
+        };
+    }
+
+    /** Starting estimate for the video sender, understood by the webrtc.org encoder. */
+    static SdpTransformer videoStartBitrate(String codec, int kbps) {
+        if (kbps <= 0) {
+            return chain();
+        }
+        return codecParameter("video", codec, "x-google-start-bitrate", Integer.toString(kbps));
+    }
+
+    /** Discontinuous transmission and in-band FEC for opus. */
+    static SdpTransformer opusDtxAndFec() {
+        return chain(codecParameter("audio", "opus", "usedtx", "1"),
+                codecParameter("audio", "opus", "useinbandfec", "1"));
+    }
+
+    /**
+     * Caps the opus encoder at the given average bitrate. The fmtp parameter
+     * limits what the other side sends, so it goes on the remote description
+     * to cap our own encoder; the SDP value is in bits per second.
+     */
+    static SdpTransformer opusMaxAverageBitrate(int kbps) {
+        if (kbps <= 0) {
+            return chain();
+        }
+        return codecParameter("audio", "opus", "maxaveragebitrate", Integer.toString(kbps * 1000));
+    }
+
+    /** SDP split into lines, remembering the separator so output matches input. */
+    private static final class Lines {
+        private final ArrayList<String> lines;
+        private final String separator;
+        private final boolean trailingSeparator;
+
+        Lines(String sdp) {
+            separator = sdp.contains("\r\n") ? "\r\n" : "\n";
+            trailingSeparator = sdp.endsWith(separator);
+            String body = trailingSeparator ? sdp.substring(0, sdp.length() - separator.length()) : sdp;
+            lines = new ArrayList<>(Arrays.asList(body.split(separator, -1)));
+        }
+
+        String get(int index) {
+            return lines.get(index);
+        }
+
+        void set(int index, String line) {
+            lines.set(index, line);
+        }
+
+        void insert(int index, String line) {
+            lines.add(index, line);
+        }
+
+        void remove(int index) {
+            lines.remove(index);
+        }
+
+        int nextMedia(String mediaType, int from) {
+            String prefix = "m=" + mediaType + " ";
+            for (int i = from; i < lines.size(); i++) {
+                if (lines.get(i).startsWith(prefix)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int sectionEnd(int mediaLine) {
+            for (int i = mediaLine + 1; i < lines.size(); i++) {
+                if (lines.get(i).startsWith("m=")) {
+                    return i;
+                }
+            }
+            return lines.size();
+        }
+
+        // payload types whose a=rtpmap names the codec, in m= line order
+        List<String> payloadTypes(int mediaLine, String codec) {
+            Map<String, Boolean> found = new LinkedHashMap<>();
+            String[] fields = lines.get(mediaLine).split(" ");
+            for (int i = 3; i < fields.length; i++) {
+                found.put(fields[i], false);
+            }
+            int end = sectionEnd(mediaLine);
+            for (int i = mediaLine + 1; i < end; i++) {
+                String line = lines.get(i);
+                if (!line.startsWith("a=rtpmap:")) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                int slash = line.indexOf('/', space);
+                if (space < 0) {
+                    continue;
+                }
+                String name = line.substring(space + 1, slash < 0 ? line.length() : slash);
+                String payloadType = line.substring("a=rtpmap:".length(), space);
+                if (name.equalsIgnoreCase(codec) && found.containsKey(payloadType)) {
+                    found.put(payloadType, true);
+                }
+            }
+            List<String> matching = new ArrayList<>();
+            for (Map.Entry<String, Boolean> entry : found.entrySet()) {
+                if (entry.getValue()) {
+                    matching.add(entry.getKey());
+                }
+            }
+            return matching;
+        }
+
+        void setFmtpParameter(int mediaLine, String payloadType, String name, String value) {
+            int end = sectionEnd(mediaLine);
+            String fmtp = "a=fmtp:" + payloadType + " ";
+            int rtpmap = -1;
+            for (int i = mediaLine + 1; i < end; i++) {
+                String line = lines.get(i);
+                if (line.startsWith(fmtp)) {
+                    lines.set(i, fmtp + withParameter(line.substring(fmtp.length()), name, value));
+                    return;
+                }
+                if (line.startsWith("a=rtpmap:" + payloadType + " ")) {
+                    rtpmap = i;
+                }
+            }
+            if (rtpmap >= 0) {
+                insert(rtpmap + 1, fmtp + name + "=" + value);
+            }
+        }
+
+        private static String withParameter(String parameters, String name, String value) {
+            StringBuilder result = new StringBuilder();
+            boolean replaced = false;
+            for (String parameter : parameters.split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                if (result.length() > 0) {
+                    result.append(';');
+                }
+                int equals = trimmed.indexOf('=');
+                String key = equals < 0 ? trimmed : trimmed.substring(0, equals);
+                if (key.equalsIgnoreCase(name)) {
+                    result.append(name).append('=').append(value);
+                    replaced = true;
+                } else {
+                    result.append(trimmed);
+                }
+            }
+            if (!replaced) {
+                if (result.length() > 0) {
+                    result.append(';');
+                }
+                result.append(name).append('=').append(value);
+            }
+            return result.toString();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sdp = new StringBuilder();
+            for (int i = 0; i < lines.size(); i++) {
+                if (i > 0) {
+                    sdp.append(separator);
+                }
+                sdp.append(lines.get(i));
+            }
+            if (trailingSeparator) {
+                sdp.append(separator);
+            }
+            return sdp.toString();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.groupcall;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the participants forwarded by the SFU and gives each of them a render
+ * end point. Roster updates are full lists; they are diffed against the
+ * current state so listeners only hear about actual joins and leaves.
+ */
+class SfuRoster {
+    interface Listener {
+        void onParticipantJoined(String participantId, String streamLabel, int endPoint);
+
+        void onParticipantLeft(String participantId, String streamLabel, int endPoint);
+    }
+
+    private final PeerRegistry<String> participants;
+    private final HashMap<String, String> streamLabels = new HashMap<>();
+
+    SfuRoster(int capacity) {
+        this.participants = new PeerRegistry<>(capacity);
+    }
+
+    // stream label -> participant id; participants beyond capacity are not rendered
+    void update(Map<String, String> roster, Listener listener) {
+        List<String> left = new ArrayList<>();
+        for (String streamLabel : streamLabels.keySet()) {
+            String participantId = roster.get(streamLabel);
+            if (participantId == null || !participantId.equals(streamLabels.get(streamLabel))) {
+                left.add(streamLabel);
+            }
+        }
+        for (String streamLabel : left) {
+            int endPoint = participants.endPointOf(streamLabel);
+            String participantId = participants.remove(streamLabel);
+            streamLabels.remove(streamLabel);
+            listener.onParticipantLeft(participantId, streamLabel, endPoint);
+        }
+        for (Map.Entry<String, String> entry : roster.entrySet()) {
+            final String streamLabel = entry.getKey();
+            final String participantId = entry.getValue();
+            if (participants.contains(streamLabel)) {
+                continue;
+            }
+            String registered = participants.register(streamLabel, new PeerRegistry.Factory<String>() {
+                @Override
+                public String create(String id, int endPoint) {
+                    return participantId;
+                }
+            });
+            if (registered == null) {
+                continue;
+            }
+            streamLabels.put(streamLabel, participantId);
+            listener.onParticipantJoined(participantId, streamLabel, participants.endPointOf(streamLabel));
+        }
+    }
+
+    void clear(Listener listener) {
+        update(new HashMap<String, String>(), listener);
+    }
+
+    int endPointOf(String streamLabel) {
+        return participants.endPointOf(streamLabel);
+    }
+
+    String streamLabelAt(int endPoint) {
+        for (String streamLabel : streamLabels.keySet()) {
+            if (participants.endPointOf(streamLabel) == endPoint) {
+                return streamLabel;
+            }
+        }
+        return null;
+    }
+
+    String participantOf(String streamLabel) {
+        return participants.get(streamLabel);
+    }
+
+    int size() {
+        return participants.size();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.groupcall;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Message types spoken with a selective forwarding server. SDP and candidates
+ * use the regular offer/answer/candidate messages addressed to {@link #ServerId};
+ * these types carry the room membership on top of that.
+ *
+ * <pre>
+ * client -> sfu   sfu-join          {"name": "..."}
+ * client -> sfu   sfu-leave         {}
+ * client -> sfu   sfu-subscribe     {"stream": "...", "layer": 0}
+ * sfu -> client   sfu-participants  {"participants": [{"id": "...", "stream": "..."}]}
+ * </pre>
+ *
+ * The participant list is always the full roster, keyed by the label of the
+ * MediaStream the server forwards for that participant.
+ */
+final class SfuSignaling {
+    static final String ServerId = "sfu";
+    static final String Join = "sfu-join";
+    static final String Leave = "sfu-leave";
+    static final String Participants = "sfu-participants";
+    static final String Subscribe = "sfu-subscribe";
+
+    private SfuSignaling() {
+    }
+
+    static JSONObject join(String name) throws JSONException {
+        JSONObject payload = new JSONObject();
+        payload.put("name", name);
+        return payload;
+    }
+
+    static JSONObject leave() {
+        return new JSONObject();
+    }
+
+    // asks the server to forward the given simulcast layer of a participant's stream
+    static JSONObject subscribe(String streamLabel, int layer) throws JSONException {
+        JSONObject payload = new JSONObject();
+        payload.put("stream", streamLabel);
+        payload.put("layer", layer);
+        return payload;
+    }
+
+    // stream label -> participant id
+    static JSONObject participants(Map<String, String> roster) throws JSONException {
+        JSONArray participants = new JSONArray();
+        for (Map.Entry<String, String> entry : roster.entrySet()) {
+            JSONObject participant = new JSONObject();
+            participant.put("id", entry.getValue());
+            participant.put("stream", entry.getKey());
+            participants.put(participant);
+        }
+        JSONObject payload = new JSONObject();
+        payload.put("participants", participants);
+        return payload;
+    }
+
+    static LinkedHashMap<String, String> parseParticipants(JSONObject payload) throws JSONException {
+        JSONArray participants = payload.getJSONArray("participants");
+        LinkedHashMap<String, String> roster = new LinkedHashMap<>();
+        for (int i = 0; i < participants.length(); i++) {
+            JSONObject participant = participants.getJSONObject(i);
+            roster.put(participant.getString("stream"), participant.getString("id"));
+        }
+        return roster;
+    }
+}
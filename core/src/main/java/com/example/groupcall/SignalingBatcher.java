@@ -0,0 +1,101 @@
+package com.example.groupcall;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers outgoing signaling messages per destination and hands them to the
+ * transport as one frame, either after {@code lingerMs} or once {@code maxBatch}
+ * messages are waiting. Urgent messages flush the destination immediately so
+ * offers and answers are never held back behind a burst of candidates.
+ */
+class SignalingBatcher<T> {
+    static final long DefaultLingerMs = 5;
+    static final int DefaultMaxBatch = 16;
+
+    interface Transport<T> {
+        void send(String to, List<T> messages);
+    }
+
+    private final Transport<T> transport;
+    private final ScheduledExecutorService scheduler;
+    private final long lingerMs;
+    private final int maxBatch;
+    private final HashMap<String, List<T>> pending = new HashMap<>();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private boolean closed;
+
+    SignalingBatcher(Transport<T> transport, ScheduledExecutorService scheduler, long lingerMs, int maxBatch) {
+        this.transport = transport;
+        this.scheduler = scheduler;
+        this.lingerMs = lingerMs;
+        this.maxBatch = maxBatch;
+    }
+
+    synchronized void enqueue(final String to, T message, boolean urgent) {
+        if (closed) {
+            return;
+        }
+        List<T> buffer = pending.get(to);
+        if (buffer == null) {
+            buffer = new ArrayList<>();
+            pending.put(to, buffer);
+            if (!urgent) {
+                final List<T> lingering = buffer;
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushIfPending(to, lingering);
+                    }
+                }, lingerMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        buffer.add(message);
+        if (urgent || buffer.size() >= maxBatch) {
+            flush(to);
+        }
+    }
+
+    synchronized void flush(String to) {
+        List<T> buffer = pending.remove(to);
+        if (buffer == null || buffer.isEmpty()) {
+            return;
+        }
+        messagesSent.addAndGet(buffer.size());
+        framesSent.incrementAndGet();
+        transport.send(to, buffer);
+    }
+
+    // a linger timer only flushes the buffer it was started for; once that one
+    // went out early, a newer buffer for the same destination gets its own timer
+    private synchronized void flushIfPending(String to, List<T> buffer) {
+        if (pending.get(to) == buffer) {
+            flush(to);
+        }
+    }
+
+    synchronized void flushAll() {
+        for (String to : new ArrayList<>(pending.keySet())) {
+            flush(to);
+        }
+    }
+
+    // flushes what is left; later messages are ignored
+    synchronized void close() {
+        flushAll();
+        closed = true;
+    }
+
+    long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    long getFramesSent() {
+        return framesSent.get();
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.groupcall;
+
+/**
+ * Turns a frame received on the "message" event into a {@link SignalingMessage}.
+ */
+interface SignalingCodec {
+    /**
+     * @return false if this codec does not handle the frame, so the next codec can try
+     * @throws IllegalArgumentException if the frame is meant for this codec but malformed
+     */
+    boolean decode(Object frame, SignalingMessage into);
+}
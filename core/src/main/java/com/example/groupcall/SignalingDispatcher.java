@@ -0,0 +1,93 @@
+package com.example.groupcall;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.HashMap;
+
+/**
+ * Decodes inbound signaling frames, unwraps batches and runs the command of
+ * every message through the {@link CommandPipeline}, recording decode times
+ * in the given {@link SignalingTimings}. Only used from the signaling thread.
+ */
+class SignalingDispatcher {
+    static final String Undecodable = "undecodable";
+
+    interface Host {
+        // false to drop a decoded message, e.g. from an unknown peer
+        boolean accept(SignalingMessage message);
+
+        void onIgnored(String reason);
+    }
+
+    private final HashMap<String, Command> commandMap = new HashMap<>();
+    private final JsonSignalingCodec jsonCodec = new JsonSignalingCodec();
+    // socket.io hands over a parsed JSONObject, there is no text frame for a streaming codec to save a parse on
+    private final SignalingCodec[] codecs = {jsonCodec};
+    private final SignalingMessage message = new SignalingMessage();
+    private final CommandPipeline pipeline;
+    private final SignalingTimings timings;
+    private final Host host;
+
+    SignalingDispatcher(CommandPipeline pipeline, SignalingTimings timings, Host host) {
+        this.pipeline = pipeline;
+        this.timings = timings;
+        this.host = host;
+    }
+
+    void register(String type, Command command) {
+        commandMap.put(type, command);
+    }
+
+    /**
+     * Returns how many commands ran.
+     *
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    int handle(Object frame) throws JSONException {
+        long start = timings.now();
+        boolean decoded = decode(frame);
+        timings.record(decoded ? message.type : Undecodable, SignalingTimings.Stage.DECODE, timings.now() - start);
+        if (!decoded) {
+            host.onIgnored("undecodable message " + frame);
+            return 0;
+        }
+        if (message.type != SignalingMessage.Batch) {
+            return dispatch() ? 1 : 0;
+        }
+        String from = message.from;
+        JSONArray messages = message.payload.getJSONArray("messages");
+        int dispatched = 0;
+        for (int i = 0; i < messages.length(); i++) {
+            message.clear();
+            message.from = from;
+            start = timings.now();
+            jsonCodec.decodeBody(messages.getJSONObject(i), message);
+            timings.record(message.type, SignalingTimings.Stage.DECODE, timings.now() - start);
+            dispatched += dispatch() ? 1 : 0;
+        }
+        return dispatched;
+    }
+
+    private boolean decode(Object frame) {
+        for (SignalingCodec codec : codecs) {
+            if (codec.decode(frame, message)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean dispatch() throws JSONException {
+        Command command = commandMap.get(message.type);
+        if (command == null) {
+            host.onIgnored("unknown message type " + message.type);
+            return false;
+        }
+        if (!host.accept(message)) {
+            return false;
+        }
+        pipeline.execute(command, message.from, message);
+        return true;
+    }
+}
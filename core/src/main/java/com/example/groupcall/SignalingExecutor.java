@@ -0,0 +1,216 @@
+package com.example.groupcall;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single thread that owns all peer and signaling state. Socket.io, native
+ * PeerConnection and UI callbacks post events here instead of touching the
+ * state themselves, so state transitions run one at a time in arrival order
+ * without locks.
+ *
+ * Posting never blocks and never runs an event out of turn: native WebRTC
+ * threads post from callbacks the signaling thread may be waiting on through
+ * a synchronous PeerConnection call, and running an event inline would
+ * overtake the ones queued before it. So the queue is unbounded; events posted
+ * while more than {@code overflowThreshold} are waiting are only counted in
+ * {@link #getOverflowed()}, which shows a signaling thread that fell behind.
+ *
+ * After {@link #shutdown()} the events already queued still run and later
+ * ones are refused: {@link #execute} throws, {@link #post} drops them, which
+ * suits callbacks that may still fire while the owner is torn down.
+ *
+ * Tests can leave the executor unstarted and call {@link #runPending()} to run
+ * queued events on the calling thread in a fixed order.
+ */
+public class SignalingExecutor implements Executor {
+    public static final int DefaultOverflowThreshold = 1024;
+
+    private static final class Event {
+        final Runnable task;
+        final long enqueuedAt;
+
+        Event(Runnable task, long enqueuedAt) {
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    // queued by shutdown() behind everything accepted before it, ends the loop
+    private static final Event Stop = new Event(null, 0);
+
+    private final BlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+    // held while checking shutdown and enqueueing, so nothing is accepted behind Stop
+    private final Object enqueueLock = new Object();
+    private final int overflowThreshold;
+    private final AtomicLong eventsPosted = new AtomicLong();
+    private final AtomicLong eventsProcessed = new AtomicLong();
+    private final AtomicLong eventsFailed = new AtomicLong();
+    private final AtomicLong totalLatencyNs = new AtomicLong();
+    private final AtomicLong maxLatencyNs = new AtomicLong();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private volatile Thread thread;
+    private boolean shutdown;
+
+    public SignalingExecutor(int overflowThreshold) {
+        this.overflowThreshold = overflowThreshold;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "signaling");
+        thread.start();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!post(task)) {
+            throw new RejectedExecutionException("Signaling executor is shut down");
+        }
+    }
+
+    /** Queues the task; false, and the task is dropped, once the executor is shut down. */
+    public boolean post(Runnable task) {
+        Event event = new Event(task, System.nanoTime());
+        synchronized (enqueueLock) {
+            if (shutdown) {
+                return false;
+            }
+            eventsPosted.incrementAndGet();
+            queue.offer(event);
+        }
+        int depth = queue.size();
+        if (depth > overflowThreshold) {
+            overflowed.incrementAndGet();
+        }
+        updateMaxQueueDepth(depth);
+        return true;
+    }
+
+    public boolean isSignalingThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    // runs whatever is queued on the calling thread, for executors that were never started
+    public int runPending() {
+        int ran = 0;
+        Event event;
+        while ((event = queue.poll()) != null && event != Stop) {
+            run(event);
+            ran++;
+        }
+        return ran;
+    }
+
+    // queued events still run, new ones are rejected
+    public void shutdown() {
+        synchronized (enqueueLock) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+            queue.offer(Stop);
+        }
+    }
+
+    /** Waits for the thread to finish after {@link #shutdown()}; false if it is still running. */
+    public boolean awaitTermination(long timeoutMs) throws InterruptedException {
+        Thread current = thread;
+        if (current != null) {
+            current.join(timeoutMs);
+            return !current.isAlive();
+        }
+        return true;
+    }
+
+    private void loop() {
+        while (true) {
+            Event event;
+            try {
+                event = queue.take();
+            } catch (InterruptedException e) {
+                // only Stop ends the loop; an event that interrupted us does not
+                continue;
+            }
+            if (event == Stop) {
+                return;
+            }
+            run(event);
+        }
+    }
+
+    private void run(Event event) {
+        long latency = System.nanoTime() - event.enqueuedAt;
+        totalLatencyNs.addAndGet(latency);
+        long max;
+        while (latency > (max = maxLatencyNs.get()) && !maxLatencyNs.compareAndSet(max, latency)) {
+            // retry
+        }
+        try {
+            event.task.run();
+        } catch (RuntimeException e) {
+            // one bad event must not take the signaling thread down with it
+            eventsFailed.incrementAndGet();
+            e.printStackTrace();
+        }
+        eventsProcessed.incrementAndGet();
+    }
+
+    private void updateMaxQueueDepth(int depth) {
+        long max;
+        while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)) {
+            // retry
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    // events posted while more than overflowThreshold were already waiting
+    public long getOverflowed() {
+        return overflowed.get();
+    }
+
+    // every event posted so far has run
+    public boolean isIdle() {
+        return eventsProcessed.get() == eventsPosted.get();
+    }
+
+    public long getEventsPosted() {
+        return eventsPosted.get();
+    }
+
+    public long getEventsProcessed() {
+        return eventsProcessed.get();
+    }
+
+    public long getEventsFailed() {
+        return eventsFailed.get();
+    }
+
+    // time between posting an event and it starting to run
+    public long getMeanEventLatencyNs() {
+        long processed = eventsProcessed.get();
+        return processed == 0 ? 0 : totalLatencyNs.get() / processed;
+    }
+
+    public long getMaxEventLatencyNs() {
+        return maxLatencyNs.get();
+    }
+}
@@ -0,0 +1,341 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Finds how much inbound signaling the client's handling sustains: replays
+ * the inbound frames of a recording, real or {@link #synthesize synthesized},
+ * to the {@link CallSignaling} of every one of many simulated clients through
+ * a {@link LocalSignalingServer}. Frames go out at their recorded times
+ * divided by the speed factor; an infinite speed sends them as fast as the
+ * clients take them. The simulated clients run the same signaling as
+ * WebRTCClient, as mesh calls on a {@link FakeMediaBackend}, so their
+ * outbound path is loaded too. Their replies go to
+ * the replayed peers, which are not connected, so the server counts every
+ * reply frame as unroutable; a run waits for the negotiations the frames set
+ * off, so both counts are complete.
+ */
+public class SignalingLoadGenerator {
+    public static final int DefaultCandidatesPerPeer = 4;
+    static final int MaxPeers = 256;
+    static final long PollIntervalNanos = 1000000;
+    static final long StopTimeoutMs = 5000;
+    static final P2PConnectionParameters Parameters = new P2PConnectionParameters(false, false, 640, 480, 30, 0, null,
+            false, 0, null, false).withMaxPeers(MaxPeers);
+
+    public static final class Result {
+        public final int clients;
+        public final long frames;
+        public final long failed;
+        public final long elapsedNanos;
+        public final int maxQueueDepth;
+        public final long maxEventLatencyNs;
+        // messages the clients sent back, and the frames they were batched into
+        public final long replies;
+        public final long replyFrames;
+        // frames the server had nobody to route to: every reply frame, as replayed peers are not connected
+        public final long unroutable;
+        public final SignalingTimings timings;
+
+        Result(int clients, long frames, long failed, long elapsedNanos, int maxQueueDepth, long maxEventLatencyNs,
+               long replies, long replyFrames, long unroutable, SignalingTimings timings) {
+            this.clients = clients;
+            this.frames = frames;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+            this.maxQueueDepth = maxQueueDepth;
+            this.maxEventLatencyNs = maxEventLatencyNs;
+            this.replies = replies;
+            this.replyFrames = replyFrames;
+            this.unroutable = unroutable;
+            this.timings = timings;
+        }
+
+        public double framesPerSecond() {
+            return elapsedNanos == 0 ? 0 : frames * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{clients=" + clients + ", frames=" + frames + ", failed=" + failed + ", "
+                    + elapsedNanos / 1000000 + "ms, " + (long) framesPerSecond() + " frames/s, maxQueue=" + maxQueueDepth
+                    + ", maxLatency=" + maxEventLatencyNs / 1000 + "us, replies=" + replies + " in " + replyFrames
+                    + " frames, unroutable=" + unroutable + "}";
+        }
+    }
+
+    // one simulated participant: a call's signaling on its own executor
+    private static final class Client {
+        final String id;
+        final SignalingExecutor executor = new SignalingExecutor(SignalingExecutor.DefaultOverflowThreshold);
+        final CallSignaling<FakeMediaBackend.FakePeer> signaling;
+
+        Client(String id, LocalSignalingServer server, ScheduledExecutorService scheduler, CommandPipeline pipeline,
+               SignalingTimings timings, FakeMediaBackend backend) {
+            this.id = id;
+            this.signaling = new CallSignaling<>(s -> server.transport(id, s), backend,
+                    new CallSignaling.Listener<FakeMediaBackend.FakePeer>() {
+                    }, Parameters, executor, scheduler, pipeline, timings, new CallMetrics(),
+                    new TelemetryCollector(TelemetryCollector.DefaultWindow));
+        }
+    }
+
+    private final int clients;
+    private final double speed;
+    private final int candidatesPerPeer;
+
+    /** candidatesPerPeer is how many each simulated client gathers per connection. */
+    public SignalingLoadGenerator(int clients, double speed, int candidatesPerPeer) {
+        if (clients < 1 || !(speed > 0)) {
+            throw new IllegalArgumentException("Need at least one client and a positive speed: " + clients + ", " + speed);
+        }
+        this.clients = clients;
+        this.speed = speed;
+        this.candidatesPerPeer = candidatesPerPeer;
+    }
+
+    /**
+     * Replays the recording and waits until every client handled every frame
+     * and finished the negotiations they started.
+     *
+     * @throws TimeoutException if that takes longer than timeoutMs
+     */
+    public Result run(SignalingRecording recording, long timeoutMs) throws TimeoutException {
+        List<JSONObject> frames = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        for (SignalingRecording.Entry entry : recording.inbound()) {
+            if (!"message".equals(entry.event)) {
+                continue;
+            }
+            try {
+                JSONObject frame = new JSONObject(entry.payload);
+                frame.remove("seq");
+                frames.add(frame);
+                times.add(entry.atMicros);
+            } catch (JSONException e) {
+                throw new IllegalArgumentException("Malformed recorded frame " + entry.payload, e);
+            }
+        }
+        long deadline = System.nanoTime() + timeoutMs * 1000000;
+        LocalSignalingServer server = new LocalSignalingServer();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        // plays libjingle's signaling thread for every simulated PeerConnection
+        ExecutorService media = Executors.newSingleThreadExecutor();
+        FakeMediaBackend backend = new FakeMediaBackend(media, syntheticSdp(new Random(clients)), candidatesPerPeer);
+        SignalingTimings timings = new SignalingTimings();
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.add(timings);
+        List<Client> simulated = new ArrayList<>();
+        try {
+            for (int i = 0; i < clients; i++) {
+                Client client = new Client("sim-" + i, server, scheduler, pipeline, timings, backend);
+                simulated.add(client);
+                client.executor.start();
+                client.signaling.connect();
+            }
+            for (Client client : simulated) {
+                while (!client.signaling.isOpen()) {
+                    await(deadline);
+                }
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < frames.size(); i++) {
+                if (speed != Double.POSITIVE_INFINITY) {
+                    long due = start + (long) (times.get(i) * 1000 / speed);
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                JSONObject frame = frames.get(i);
+                String from = frame.optString("from", "remote");
+                for (Client client : simulated) {
+                    server.inject(from, client.id, frame);
+                }
+            }
+            long expected = (long) frames.size() * clients;
+            while (handled(simulated) < expected) {
+                await(deadline);
+            }
+            long elapsed = System.nanoTime() - start;
+            awaitQuiet(backend, simulated, deadline);
+            // flushes the candidates still lingering in the outboxes
+            stop(media, simulated);
+            int maxQueueDepth = 0;
+            long maxLatency = 0;
+            long failed = 0;
+            long replies = 0;
+            long replyFrames = 0;
+            for (Client client : simulated) {
+                maxQueueDepth = (int) Math.max(maxQueueDepth, client.executor.getMaxQueueDepth());
+                maxLatency = Math.max(maxLatency, client.executor.getMaxEventLatencyNs());
+                failed += client.signaling.failures();
+                replies += client.signaling.messagesSent();
+                replyFrames += client.signaling.framesSent();
+            }
+            return new Result(clients, expected, failed, elapsed, maxQueueDepth, maxLatency, replies, replyFrames,
+                    server.unroutable(), timings);
+        } finally {
+            stop(media, simulated);
+            server.close();
+            scheduler.shutdownNow();
+        }
+    }
+
+    // producers first: media callbacks post signaling events, and those enqueue on the scheduler's timers
+    private static void stop(ExecutorService media, List<Client> clients) {
+        media.shutdownNow();
+        try {
+            media.awaitTermination(StopTimeoutMs, TimeUnit.MILLISECONDS);
+            // what is still queued runs first, then the outbox flushes
+            for (Client client : clients) {
+                client.executor.post(client.signaling::close);
+                client.executor.shutdown();
+            }
+            for (Client client : clients) {
+                client.executor.awaitTermination(StopTimeoutMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Until no media operation and no signaling event is outstanding. Work only
+     * starts from other work, so once each was seen idle with nothing submitted
+     * meanwhile, all of it is done.
+     */
+    private static void awaitQuiet(FakeMediaBackend backend, List<Client> clients, long deadline)
+            throws TimeoutException {
+        while (true) {
+            long submitted = submitted(backend, clients);
+            boolean idle = backend.isIdle();
+            for (Client client : clients) {
+                idle &= client.executor.isIdle();
+            }
+            if (idle && submitted(backend, clients) == submitted) {
+                return;
+            }
+            await(deadline);
+        }
+    }
+
+    private static long submitted(FakeMediaBackend backend, List<Client> clients) {
+        long submitted = backend.submitted();
+        for (Client client : clients) {
+            submitted += client.executor.getEventsPosted();
+        }
+        return submitted;
+    }
+
+    private static long handled(List<Client> clients) {
+        long handled = 0;
+        for (Client client : clients) {
+            handled += client.signaling.handled();
+        }
+        return handled;
+    }
+
+    private static void await(long deadline) throws TimeoutException {
+        if (System.nanoTime() > deadline) {
+            throw new TimeoutException("Simulated clients did not keep up");
+        }
+        LockSupport.parkNanos(PollIntervalNanos);
+    }
+
+    /**
+     * What one client of a mesh call sees while the other participants join
+     * one after another: every other joiner tells us to offer (init, then its
+     * answer), the rest offer to us; each description is followed by its
+     * candidates a few milliseconds apart.
+     */
+    public static SignalingRecording synthesize(int remotes, int candidatesPerPeer, long seed) {
+        Random random = new Random(seed);
+        String sdp = syntheticSdp(random);
+        List<SignalingRecording.Entry> entries = new ArrayList<>();
+        try {
+            for (int k = 0; k < remotes; k++) {
+                String from = "remote-" + k;
+                long at = k * 200000L + random.nextInt(50000);
+                if (k % 2 == 0) {
+                    entries.add(message(at, from, SignalingMessage.Init, null));
+                    at += 40000 + random.nextInt(80000);
+                    entries.add(message(at, from, SignalingMessage.Answer, SignalingPayloads.description("answer", sdp)));
+                } else {
+                    entries.add(message(at, from, SignalingMessage.Offer, SignalingPayloads.description("offer", sdp)));
+                }
+                for (int i = 0; i < candidatesPerPeer; i++) {
+                    at += 2000 + random.nextInt(20000);
+                    entries.add(message(at, from, SignalingMessage.Candidate, candidate(i, random)));
+                }
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        Collections.sort(entries, (a, b) -> Long.compare(a.atMicros, b.atMicros));
+        return new SignalingRecording(System.currentTimeMillis(), entries);
+    }
+
+    private static SignalingRecording.Entry message(long atMicros, String from, String type, JSONObject payload)
+            throws JSONException {
+        JSONObject frame = new JSONObject();
+        frame.put("from", from);
+        frame.put("type", type);
+        if (payload != null) {
+            frame.put("payload", payload);
+        }
+        return new SignalingRecording.Entry(true, atMicros, "message", frame.toString());
+    }
+
+    private static JSONObject candidate(int index, Random random) throws JSONException {
+        return SignalingPayloads.candidate(index % 2 == 0 ? "audio" : "video", index % 2, "candidate:"
+                + random.nextInt(Integer.MAX_VALUE) + " 1 udp 2122260223 10.0." + random.nextInt(256) + "."
+                + random.nextInt(256) + " " + (40000 + random.nextInt(20000)) + " typ host generation 0");
+    }
+
+    // audio and video section of about the size Chrome and libjingle produce
+    static String syntheticSdp(Random random) {
+        StringBuilder sdp = new StringBuilder();
+        sdp.append("v=0\r\no=- ").append(random.nextLong() & Long.MAX_VALUE).append(" 2 IN IP4 127.0.0.1\r\ns=-\r\nt=0 0\r\n");
+        sdp.append("a=group:BUNDLE audio video\r\na=msid-semantic: WMS stream\r\n");
+        String[] kinds = {"audio", "video"};
+        for (String kind : kinds) {
+            boolean audio = kind.equals("audio");
+            sdp.append("m=").append(kind).append(" 9 UDP/TLS/RTP/SAVPF ").append(audio ? "111 103 9 0 8 126" : "100 101 116 117 96")
+                    .append("\r\nc=IN IP4 0.0.0.0\r\na=rtcp:9 IN IP4 0.0.0.0\r\n");
+            sdp.append("a=ice-ufrag:").append(Long.toString(random.nextLong() & 0xFFFFFFFFL, 36)).append("\r\n");
+            sdp.append("a=ice-pwd:").append(Long.toHexString(random.nextLong())).append(Long.toHexString(random.nextLong())).append("\r\n");
+            sdp.append("a=fingerprint:sha-256 ");
+            for (int i = 0; i < 32; i++) {
+                sdp.append(i == 0 ? "" : ":").append(String.format("%02X", random.nextInt(256)));
+            }
+            sdp.append("\r\na=setup:actpass\r\na=mid:").append(kind).append("\r\na=sendrecv\r\na=rtcp-mux\r\n");
+            if (audio) {
+                sdp.append("a=rtpmap:111 opus/48000/2\r\na=fmtp:111 minptime=10;useinbandfec=1\r\n")
+                        .append("a=rtpmap:103 ISAC/16000\r\na=rtpmap:9 G722/8000\r\na=rtpmap:0 PCMU/8000\r\n")
+                        .append("a=rtpmap:8 PCMA/8000\r\na=rtpmap:126 telephone-event/8000\r\n");
+            } else {
+                sdp.append("a=rtpmap:100 VP8/90000\r\na=rtcp-fb:100 ccm fir\r\na=rtcp-fb:100 nack\r\n")
+                        .append("a=rtcp-fb:100 nack pli\r\na=rtcp-fb:100 goog-remb\r\na=rtpmap:101 VP9/90000\r\n")
+                        .append("a=rtpmap:116 red/90000\r\na=rtpmap:117 ulpfec/90000\r\na=rtpmap:96 rtx/90000\r\n")
+                        .append("a=fmtp:96 apt=100\r\n");
+            }
+            long ssrc = random.nextInt(Integer.MAX_VALUE);
+            sdp.append("a=ssrc:").append(ssrc).append(" cname:").append(Long.toHexString(random.nextLong())).append("\r\n");
+            sdp.append("a=ssrc:").append(ssrc).append(" msid:stream ").append(kind).append("0\r\n");
+        }
+        return sdp.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.groupcall;
+
+import org.json.JSONObject;
+
+/**
+ * Decoded inbound signaling message. Instances are reused between messages,
+ * so only the fields that belong to {@link #type} are meaningful.
+ */
+class SignalingMessage {
+    static final String Init = "init";
+    static final String Offer = "offer";
+    static final String Answer = "answer";
+    static final String Candidate = "candidate";
+    static final String Batch = "batch";
+
+    String from;
+    String type;
+    // offer / answer
+    String sdpType;
+    String sdp;
+    // candidate
+    String candidateId;
+    int candidateLabel;
+    String candidate;
+    // raw payload, only kept by codecs that produce one for types without typed fields
+    JSONObject payload;
+
+    void clear() {
+        from = null;
+        type = null;
+        sdpType = null;
+        sdp = null;
+        candidateId = null;
+        candidateLabel = 0;
+        candidate = null;
+        payload = null;
+    }
+
+    // init and offer start a negotiation; every other type is for a peer we already have
+    boolean opensPeer() {
+        return Init.equals(type) || Offer.equals(type);
+    }
+
+    // maps a decoded type onto the shared constant, or null if it is not a known type
+    static String knownType(String type) {
+        if (Candidate.equals(type)) return Candidate;
+        if (Offer.equals(type)) return Offer;
+        if (Answer.equals(type)) return Answer;
+        if (Init.equals(type)) return Init;
+        if (Batch.equals(type)) return Batch;
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "SignalingMessage{from=" + from + ", type=" + type + ", sdpType=" + sdpType
+                + ", candidateId=" + candidateId + ", candidateLabel=" + candidateLabel
+                + ", candidate=" + candidate + "}";
+    }
+}
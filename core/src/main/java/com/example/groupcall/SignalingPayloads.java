@@ -0,0 +1,65 @@
+package com.example.groupcall;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * What goes out on the "message" event for the mesh message types.
+ *
+ * <pre>
+ * offer / answer   {"type": "offer", "payload": {"type": "offer", "sdp": "..."}}
+ * candidate        {"type": "candidate", "payload": {"label": 0, "id": "audio", "candidate": "..."}}
+ * batch            {"type": "batch", "payload": {"messages": [...]}, "to": "..."}
+ * </pre>
+ */
+final class SignalingPayloads {
+
+    private SignalingPayloads() {
+    }
+
+    static JSONObject description(String type, String sdp) throws JSONException {
+        JSONObject payload = new JSONObject();
+        payload.put("sdp", sdp);
+        payload.put("type", type);
+        return payload;
+    }
+
+    static JSONObject candidate(String mid, int mLineIndex, String sdp) throws JSONException {
+        JSONObject payload = new JSONObject();
+        payload.put("label", mLineIndex);
+        payload.put("id", mid);
+        payload.put("candidate", sdp);
+        return payload;
+    }
+
+    static JSONObject message(String type, JSONObject payload) throws JSONException {
+        JSONObject message = new JSONObject();
+        message.put("type", type);
+        message.put("payload", payload);
+        return message;
+    }
+
+    // only candidates wait to be coalesced, anything else flushes its destination
+    static boolean flushes(String type) {
+        return !type.equals(SignalingMessage.Candidate);
+    }
+
+    /** One frame for the messages queued for a destination, a batch if there is more than one. */
+    static JSONObject frame(String to, List<JSONObject> messages) throws JSONException {
+        JSONObject frame;
+        if (messages.size() == 1) {
+            frame = messages.get(0);
+        } else {
+            JSONObject payload = new JSONObject();
+            payload.put("messages", new JSONArray(messages));
+            frame = new JSONObject();
+            frame.put("type", SignalingMessage.Batch);
+            frame.put("payload", payload);
+        }
+        frame.put("to", to);
+        return frame;
+    }
+}
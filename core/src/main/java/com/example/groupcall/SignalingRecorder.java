@@ -0,0 +1,141 @@
+package com.example.groupcall;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Append-only binary trace of signaling in and out, written to a memory
+ * mapped file so a crash loses nothing that was recorded. After a 16 byte
+ * header (magic, version, start time) each record is a direction byte, the
+ * microseconds since the previous record, the event name and the payload,
+ * the last three as varints and length prefixed UTF-8. The direction byte
+ * is written last, so a record cut short by a crash reads as the end of the
+ * trace. Once the file is full further records are only counted.
+ * Thread safe. Read it back with {@link SignalingRecording}.
+ */
+public class SignalingRecorder implements Closeable {
+    static final int Magic = 0x53475452;
+    static final int Version = 1;
+    static final int HeaderBytes = 16;
+    static final byte In = 1;
+    static final byte Out = 2;
+    public static final int DefaultCapacityBytes = 8 << 20;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final long startedAtNanos;
+    private long lastMicros;
+    private long records;
+    private long dropped;
+    private boolean closed;
+
+    private SignalingRecorder(RandomAccessFile file, MappedByteBuffer buffer, long startedAtNanos) {
+        this.file = file;
+        this.buffer = buffer;
+        this.startedAtNanos = startedAtNanos;
+    }
+
+    /** Creates or truncates the file and maps capacityBytes of it. */
+    public static SignalingRecorder create(File path, int capacityBytes) throws IOException {
+        return create(path, capacityBytes, System.nanoTime());
+    }
+
+    static SignalingRecorder create(File path, int capacityBytes, long startedAtNanos) throws IOException {
+        if (capacityBytes <= HeaderBytes) {
+            throw new IllegalArgumentException("Recording capacity too small: " + capacityBytes);
+        }
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            // zero filled, so everything past the last record reads as the end
+            file.setLength(0);
+            file.setLength(capacityBytes);
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacityBytes);
+            buffer.putInt(Magic);
+            buffer.put((byte) Version);
+            buffer.position(8);
+            buffer.putLong(System.currentTimeMillis());
+            return new SignalingRecorder(file, buffer, startedAtNanos);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public void recordInbound(String event, Object payload) {
+        record(In, event, payload, System.nanoTime());
+    }
+
+    public void recordOutbound(String event, Object payload) {
+        record(Out, event, payload, System.nanoTime());
+    }
+
+    synchronized void record(byte direction, String event, Object payload, long nowNanos) {
+        if (closed) {
+            return;
+        }
+        long micros = Math.max(lastMicros, (nowNanos - startedAtNanos) / 1000);
+        byte[] name = event.getBytes(StandardCharsets.UTF_8);
+        byte[] body = String.valueOf(payload).getBytes(StandardCharsets.UTF_8);
+        int start = buffer.position();
+        int size = 1 + varintSize(micros - lastMicros) + varintSize(name.length) + name.length
+                + varintSize(body.length) + body.length;
+        if (size > buffer.remaining()) {
+            dropped++;
+            return;
+        }
+        buffer.position(start + 1);
+        putVarint(buffer, micros - lastMicros);
+        putVarint(buffer, name.length);
+        buffer.put(name);
+        putVarint(buffer, body.length);
+        buffer.put(body);
+        buffer.put(start, direction);
+        lastMicros = micros;
+        records++;
+    }
+
+    public synchronized long records() {
+        return records;
+    }
+
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    public synchronized int sizeBytes() {
+        return buffer.position();
+    }
+
+    /** Flushes the mapping to disk; the file keeps its full capacity. */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer.force();
+        file.close();
+    }
+
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
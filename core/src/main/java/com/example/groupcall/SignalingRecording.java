@@ -0,0 +1,118 @@
+package com.example.groupcall;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** A trace written by {@link SignalingRecorder}, or synthesized for load tests. */
+public class SignalingRecording {
+
+    public static final class Entry {
+        public final boolean inbound;
+        // since the start of the recording
+        public final long atMicros;
+        public final String event;
+        public final String payload;
+
+        public Entry(boolean inbound, long atMicros, String event, String payload) {
+            this.inbound = inbound;
+            this.atMicros = atMicros;
+            this.event = event;
+            this.payload = payload;
+        }
+
+        @Override
+        public String toString() {
+            return (inbound ? "in " : "out ") + atMicros + "us " + event + " " + payload;
+        }
+    }
+
+    public final long startedAtMillis;
+    public final List<Entry> entries;
+
+    public SignalingRecording(long startedAtMillis, List<Entry> entries) {
+        this.startedAtMillis = startedAtMillis;
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    public List<Entry> inbound() {
+        List<Entry> inbound = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.inbound) {
+                inbound.add(entry);
+            }
+        }
+        return inbound;
+    }
+
+    /**
+     * Reads every complete record of a trace file.
+     *
+     * @throws IOException if it is not a trace or of another version
+     */
+    public static SignalingRecording read(File path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            return read(buffer);
+        }
+    }
+
+    static SignalingRecording read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < SignalingRecorder.HeaderBytes || buffer.getInt() != SignalingRecorder.Magic) {
+            throw new IOException("Not a signaling recording");
+        }
+        int version = buffer.get();
+        if (version != SignalingRecorder.Version) {
+            throw new IOException("Unknown recording version " + version);
+        }
+        buffer.position(8);
+        long startedAtMillis = buffer.getLong();
+        List<Entry> entries = new ArrayList<>();
+        long micros = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                byte direction = buffer.get();
+                if (direction != SignalingRecorder.In && direction != SignalingRecorder.Out) {
+                    // zero fill past the last record
+                    break;
+                }
+                micros += getVarint(buffer);
+                String event = getString(buffer);
+                String payload = getString(buffer);
+                entries.add(new Entry(direction == SignalingRecorder.In, micros, event, payload));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated recording after " + entries.size() + " records", e);
+        }
+        return new SignalingRecording(startedAtMillis, entries);
+    }
+
+    private static String getString(ByteBuffer buffer) throws IOException {
+        long length = getVarint(buffer);
+        if (length > buffer.remaining()) {
+            throw new IOException("Record longer than the recording: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static long getVarint(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
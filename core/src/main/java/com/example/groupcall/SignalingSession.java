@@ -0,0 +1,392 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps signaling alive across socket drops. Every outbound JSON frame gets a
+ * {@code seq} and stays in a bounded replay buffer until the server acks it.
+ * A dropped socket is reconnected with exponential backoff and jitter; on
+ * every connect the session announces itself on the {@link #SessionEvent}
+ * event with the last inbound seq it saw, and the server either resumes it
+ * (we replay what it did not ack, it replays what we missed) or starts a new
+ * one. Only a new session after a drop, or a resume the replay buffer can no
+ * longer cover, is reported as lost, which is when media has to restart ICE.
+ * Servers that never answer the handshake get plain at-most-once delivery:
+ * once the handshake timed out, or a frame without a seq arrived during it,
+ * later connects open right away, sending what was queued while down, and a
+ * reconnect only counts as lost when the buffer overflowed or the drop was
+ * longer than {@link #LegacyLossGapMs}.
+ * Transport events may arrive on any thread.
+ */
+class SignalingSession {
+    static final String SessionEvent = "session";
+    static final String AckEvent = "ack";
+    static final int DefaultReplayCapacity = 256;
+    static final long DefaultBackoffBaseMs = 250;
+    static final long DefaultBackoffMaxMs = 8000;
+    static final long DefaultHandshakeTimeoutMs = 2000;
+    // a legacy server keeps nothing for us while we are away; a shorter drop is left to the peers' ICE monitoring
+    static final long LegacyLossGapMs = 5000;
+
+    enum State {DISCONNECTED, HANDSHAKE, OPEN, CLOSED}
+
+    interface Transport {
+        void connect();
+
+        void disconnect();
+
+        void emit(String event, Object payload);
+    }
+
+    interface Listener {
+        // the session survived a drop; nothing was lost
+        void onSessionResumed(long downtimeMs, int replayed);
+
+        // the server does not know us any more, so remote state has to be rebuilt
+        void onSessionLost(long downtimeMs);
+    }
+
+    private static final class Outbound {
+        final long seq;
+        final String event;
+        final JSONObject frame;
+
+        Outbound(long seq, String event, JSONObject frame) {
+            this.seq = seq;
+            this.event = event;
+            this.frame = frame;
+        }
+    }
+
+    private final Transport transport;
+    private final Listener listener;
+    private final ScheduledExecutorService scheduler;
+    private final Random random;
+    private final int replayCapacity;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final long handshakeTimeoutMs;
+    // sent but not acked yet, oldest first
+    private final ArrayDeque<Outbound> replay = new ArrayDeque<>();
+    private State state = State.DISCONNECTED;
+    private String sessionId;
+    // the server never answered a handshake: no seq, no acks, the replay buffer only holds frames until the next connect
+    private boolean legacy;
+    // a legacy frame was pushed out of the full replay buffer while down
+    private boolean legacyDropped;
+    private long nextSeq = 1;
+    private long lastAcked;
+    // seq of the server's stream to us, one for the session whatever the sender
+    private long lastInbound;
+    // last frame pushed out of a full replay buffer before the server acked it
+    private long droppedSeq;
+    private int attempt;
+    private long disconnectedAtNanos = -1;
+    private ScheduledFuture<?> timer;
+    private int reconnects;
+    private long lastRecoveryMs = -1;
+
+    SignalingSession(Transport transport, Listener listener, ScheduledExecutorService scheduler, Random random,
+                     int replayCapacity, long backoffBaseMs, long backoffMaxMs, long handshakeTimeoutMs) {
+        this.transport = transport;
+        this.listener = listener;
+        this.scheduler = scheduler;
+        this.random = random;
+        this.replayCapacity = replayCapacity;
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.handshakeTimeoutMs = handshakeTimeoutMs;
+    }
+
+    synchronized void connect() {
+        if (state == State.DISCONNECTED && timer == null) {
+            transport.connect();
+        }
+    }
+
+    /**
+     * Sends a frame in order with everything sent before. While the socket is
+     * down or the handshake is running it only goes to the replay buffer.
+     */
+    synchronized void send(String event, JSONObject frame) throws JSONException {
+        if (state == State.CLOSED) {
+            return;
+        }
+        if (legacy) {
+            if (state == State.OPEN) {
+                transport.emit(event, frame);
+                return;
+            }
+            if (replay.size() == replayCapacity) {
+                replay.pollFirst();
+                legacyDropped = true;
+            }
+            replay.addLast(new Outbound(0, event, frame));
+            return;
+        }
+        Outbound outbound = new Outbound(nextSeq++, event, frame);
+        frame.put("seq", outbound.seq);
+        if (replay.size() == replayCapacity) {
+            droppedSeq = replay.pollFirst().seq;
+        }
+        replay.addLast(outbound);
+        if (state == State.OPEN) {
+            transport.emit(event, frame);
+        }
+    }
+
+    /** Called for every inbound "message" frame; false for a duplicate that was already handled. */
+    synchronized boolean onInbound(Object frame) {
+        if (!(frame instanceof JSONObject)) {
+            return true;
+        }
+        long seq = ((JSONObject) frame).optLong("seq", -1);
+        if (seq < 0) {
+            if (state == State.HANDSHAKE) {
+                // a session server answers the handshake before it delivers anything, and stamps every frame
+                cancelTimer();
+                openLegacy();
+            }
+            return true;
+        }
+        // a legacy server relays whatever seq the sender put there
+        if (legacy) {
+            return true;
+        }
+        if (seq <= lastInbound) {
+            return false;
+        }
+        lastInbound = seq;
+        return true;
+    }
+
+    /** The server is known not to answer the handshake, e.g. from an earlier call; connects open right away. */
+    synchronized void assumeLegacy() {
+        if (sessionId == null) {
+            legacy = true;
+        }
+    }
+
+    synchronized boolean isLegacy() {
+        return legacy;
+    }
+
+    synchronized void onTransportConnected() {
+        if (state != State.DISCONNECTED) {
+            return;
+        }
+        cancelTimer();
+        if (legacy) {
+            // it did not answer last time, waiting for it again only delays what was queued
+            openLegacy();
+            return;
+        }
+        state = State.HANDSHAKE;
+        try {
+            JSONObject hello = new JSONObject();
+            if (sessionId != null) {
+                hello.put("session", sessionId);
+            }
+            hello.put("seq", lastInbound);
+            transport.emit(SessionEvent, hello);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        timer = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                onHandshakeTimeout();
+            }
+        }, handshakeTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Server answer to the handshake: {@code {session, resumed, seq}}, seq being the last frame it got from us. */
+    synchronized void onSessionReply(JSONObject reply) {
+        if (state != State.HANDSHAKE) {
+            return;
+        }
+        cancelTimer();
+        String id = reply.optString("session", null);
+        boolean resumed = reply.optBoolean("resumed", false) && id != null && id.equals(sessionId);
+        long acked = reply.optLong("seq", 0);
+        boolean wasConnected = sessionId != null || legacy;
+        long downtimeMs = downtimeMs();
+        sessionId = id;
+        legacy = false;
+        state = State.OPEN;
+        attempt = 0;
+        disconnectedAtNanos = -1;
+        // a gap between what the server got and what we still hold cannot be replayed
+        if (resumed && acked < droppedSeq) {
+            resumed = false;
+        }
+        if (!wasConnected) {
+            // first session: whatever was queued before the socket came up goes out now
+            for (Outbound outbound : replay) {
+                transport.emit(outbound.event, outbound.frame);
+            }
+            return;
+        }
+        if (!resumed) {
+            // frames for the old session mean nothing to the new one
+            replay.clear();
+            droppedSeq = 0;
+            nextSeq = 1;
+            lastAcked = 0;
+            lastInbound = 0;
+            recovered(downtimeMs);
+            listener.onSessionLost(downtimeMs);
+            return;
+        }
+        trim(acked);
+        for (Outbound outbound : replay) {
+            transport.emit(outbound.event, outbound.frame);
+        }
+        recovered(downtimeMs);
+        listener.onSessionResumed(downtimeMs, replay.size());
+    }
+
+    /** The server received every frame up to {@code seq}. */
+    synchronized void onAck(long seq) {
+        trim(seq);
+    }
+
+    synchronized void onTransportDisconnected() {
+        if (state == State.CLOSED || state == State.DISCONNECTED) {
+            return;
+        }
+        cancelTimer();
+        state = State.DISCONNECTED;
+        disconnectedAtNanos = System.nanoTime();
+        scheduleReconnect();
+    }
+
+    // a connect attempt failed before the socket came up
+    synchronized void onConnectError() {
+        if (state == State.DISCONNECTED && timer == null) {
+            if (disconnectedAtNanos < 0) {
+                disconnectedAtNanos = System.nanoTime();
+            }
+            scheduleReconnect();
+        }
+    }
+
+    synchronized void close() {
+        state = State.CLOSED;
+        cancelTimer();
+        replay.clear();
+        transport.disconnect();
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    synchronized int replaySize() {
+        return replay.size();
+    }
+
+    synchronized int reconnects() {
+        return reconnects;
+    }
+
+    /** Milliseconds the last drop took to recover from, -1 if there was none. */
+    synchronized long lastRecoveryMs() {
+        return lastRecoveryMs;
+    }
+
+    /** Delay before reconnect attempt {@code attempt} (0 based): base * 2^attempt capped at max, with up to 50% jitter off. */
+    long backoffMs(int attempt) {
+        long delay = backoffBaseMs << Math.min(attempt, 20);
+        delay = Math.min(delay, backoffMaxMs);
+        return delay - (long) (random.nextDouble() * delay / 2);
+    }
+
+    private void scheduleReconnect() {
+        long delayMs = backoffMs(attempt++);
+        timer = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                reconnect();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void reconnect() {
+        timer = null;
+        if (state == State.DISCONNECTED) {
+            transport.connect();
+        }
+    }
+
+    private synchronized void onHandshakeTimeout() {
+        timer = null;
+        if (state == State.HANDSHAKE) {
+            openLegacy();
+        }
+    }
+
+    private void openLegacy() {
+        boolean wasConnected = sessionId != null || legacy;
+        long downtimeMs = downtimeMs();
+        // a session server that stopped answering took what it kept for us with it
+        boolean lost = sessionId != null || legacyDropped || downtimeMs > LegacyLossGapMs;
+        int replayed = replay.size();
+        legacy = true;
+        legacyDropped = false;
+        sessionId = null;
+        state = State.OPEN;
+        attempt = 0;
+        disconnectedAtNanos = -1;
+        for (Outbound outbound : replay) {
+            // frames queued while down still go out once
+            outbound.frame.remove("seq");
+            transport.emit(outbound.event, outbound.frame);
+        }
+        replay.clear();
+        if (!wasConnected) {
+            return;
+        }
+        recovered(downtimeMs);
+        if (lost) {
+            listener.onSessionLost(downtimeMs);
+        } else {
+            listener.onSessionResumed(downtimeMs, replayed);
+        }
+    }
+
+    private void trim(long seq) {
+        if (seq <= lastAcked) {
+            return;
+        }
+        lastAcked = seq;
+        Iterator<Outbound> iterator = replay.iterator();
+        while (iterator.hasNext() && iterator.next().seq <= seq) {
+            iterator.remove();
+        }
+    }
+
+    private void recovered(long downtimeMs) {
+        reconnects++;
+        lastRecoveryMs = downtimeMs;
+    }
+
+    private long downtimeMs() {
+        return disconnectedAtNanos < 0 ? 0 : (System.nanoTime() - disconnectedAtNanos) / 1000000;
+    }
+
+    private void cancelTimer() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Latency histograms of the signaling path per message type: how long a
+ * frame took to decode, its command to run, and each SDP operation the
+ * command started to call back. SDP operations started outside a command
+ * (warm offers, ICE restarts, the SFU upstream) count under {@link #Local}.
+ * Recording is safe from any thread.
+ */
+public class SignalingTimings implements CommandInterceptor {
+    public static final String Local = "local";
+
+    public enum Stage {
+        DECODE,
+        DISPATCH,
+        CREATE_OFFER,
+        CREATE_ANSWER,
+        SET_LOCAL,
+        SET_REMOTE,
+        // any SDP operation that ended in onCreateFailure / onSetFailure
+        SDP_FAILURE
+    }
+
+    /** Sees every recorded value, e.g. to write a trace. */
+    interface Listener {
+        void onTiming(String type, Stage stage, long nanos);
+    }
+
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, AtomicReferenceArray<LatencyHistogram>> histograms = new ConcurrentHashMap<>();
+    private volatile Listener listener;
+
+    public SignalingTimings() {
+        this(System::nanoTime);
+    }
+
+    SignalingTimings(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    long now() {
+        return clock.getAsLong();
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void intercept(Chain chain) throws JSONException {
+        String type = chain.message().type;
+        long start = clock.getAsLong();
+        try {
+            chain.proceed();
+        } finally {
+            record(type, Stage.DISPATCH, clock.getAsLong() - start);
+        }
+    }
+
+    void record(String type, Stage stage, long nanos) {
+        String key = type != null ? type : Local;
+        histogram(key, stage, true).record(nanos);
+        Listener current = listener;
+        if (current != null) {
+            current.onTiming(key, stage, nanos);
+        }
+    }
+
+    // null if nothing was recorded yet and create is false
+    LatencyHistogram histogram(String type, Stage stage, boolean create) {
+        AtomicReferenceArray<LatencyHistogram> stages = histograms.get(type);
+        if (stages == null) {
+            if (!create) {
+                return null;
+            }
+            AtomicReferenceArray<LatencyHistogram> created = new AtomicReferenceArray<>(Stage.values().length);
+            stages = histograms.putIfAbsent(type, created);
+            if (stages == null) {
+                stages = created;
+            }
+        }
+        LatencyHistogram histogram = stages.get(stage.ordinal());
+        if (histogram == null && create) {
+            stages.compareAndSet(stage.ordinal(), null,
+                    new LatencyHistogram(LatencyHistogram.DefaultSubBucketBits, LatencyHistogram.DefaultHighestTrackable));
+            histogram = stages.get(stage.ordinal());
+        }
+        return histogram;
+    }
+
+    public long count(String type, Stage stage) {
+        LatencyHistogram histogram = histogram(type, stage, false);
+        return histogram != null ? histogram.count() : 0;
+    }
+
+    /** In nanoseconds; 0 without samples. */
+    public long percentile(String type, Stage stage, double percentile) {
+        LatencyHistogram histogram = histogram(type, stage, false);
+        return histogram != null ? histogram.valueAtPercentile(percentile) : 0;
+    }
+
+    public List<String> types() {
+        List<String> types = new ArrayList<>(histograms.keySet());
+        Collections.sort(types);
+        return types;
+    }
+
+    /** One line per type and stage with samples. */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (String type : types()) {
+            for (Stage stage : Stage.values()) {
+                LatencyHistogram histogram = histogram(type, stage, false);
+                if (histogram != null && histogram.count() > 0) {
+                    report.append(type).append(' ').append(stage).append(' ').append(histogram).append('\n');
+                }
+            }
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.function.LongSupplier;
+
+/**
+ * Optional trace of the signaling path as JSON lines: every inbound frame and
+ * every timing, each stamped with nanoseconds since the trace started. A
+ * trace can be read back with {@link #replay} to feed the frames through a
+ * decoder again or to rebuild the histograms offline. Writing stops at the
+ * first I/O error.
+ */
+public class SignalingTraceLog implements SignalingTimings.Listener {
+    public interface Replay {
+        void onInbound(long atNanos, String frame);
+
+        void onTiming(long atNanos, String type, SignalingTimings.Stage stage, long nanos);
+    }
+
+    private final Writer writer;
+    private final LongSupplier clock;
+    private final long startedAt;
+    private boolean closed;
+
+    public SignalingTraceLog(Writer writer) {
+        this(writer, System::nanoTime);
+    }
+
+    SignalingTraceLog(Writer writer, LongSupplier clock) {
+        this.writer = writer;
+        this.clock = clock;
+        this.startedAt = clock.getAsLong();
+    }
+
+    public void onInbound(Object frame) {
+        try {
+            JSONObject line = new JSONObject();
+            line.put("t", clock.getAsLong() - startedAt);
+            line.put("in", String.valueOf(frame));
+            write(line);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void onTiming(String type, SignalingTimings.Stage stage, long nanos) {
+        try {
+            JSONObject line = new JSONObject();
+            line.put("t", clock.getAsLong() - startedAt);
+            line.put("type", type);
+            line.put("stage", stage.name());
+            line.put("ns", nanos);
+            write(line);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private synchronized void write(JSONObject line) {
+        if (closed) {
+            return;
+        }
+        try {
+            writer.write(line.toString());
+            writer.write('\n');
+        } catch (IOException e) {
+            e.printStackTrace();
+            close();
+        }
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads a trace back in order. Blank lines are skipped.
+     *
+     * @throws JSONException if a line is not a trace entry
+     */
+    public static void replay(Reader trace, Replay replay) throws IOException, JSONException {
+        BufferedReader lines = new BufferedReader(trace);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            JSONObject entry = new JSONObject(line);
+            long at = entry.getLong("t");
+            if (entry.has("in")) {
+                replay.onInbound(at, entry.getString("in"));
+            } else {
+                SignalingTimings.Stage stage;
+                try {
+                    stage = SignalingTimings.Stage.valueOf(entry.getString("stage"));
+                } catch (IllegalArgumentException e) {
+                    throw new JSONException("Unknown stage in " + line);
+                }
+                replay.onTiming(at, entry.getString("type"), stage, entry.getLong("ns"));
+            }
+        }
+    }
+
+    /** Rebuilds the histograms a trace was written from. */
+    public static SignalingTimings replayTimings(Reader trace) throws IOException, JSONException {
+        final SignalingTimings timings = new SignalingTimings();
+        replay(trace, new Replay() {
+            @Override
+            public void onInbound(long atNanos, String frame) {
+            }
+
+            @Override
+            public void onTiming(long atNanos, String type, SignalingTimings.Stage stage, long nanos) {
+                timings.record(type, stage, nanos);
+            }
+        });
+        return timings;
+    }
+}
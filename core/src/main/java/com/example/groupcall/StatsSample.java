@@ -0,0 +1,62 @@
+package com.example.groupcall;
+
+import java.util.Map;
+
+/**
+ * Counters from one video send ssrc report of PeerConnection.getStats.
+ * Cumulative counters are kept as reported; consumers diff consecutive samples.
+ */
+class StatsSample {
+    final long timestampMs;
+    final long bytesSent;
+    final long packetsSent;
+    final long packetsLost;
+    final int rttMs;
+    final int jitterMs;
+
+    StatsSample(long timestampMs, long bytesSent, long packetsSent, long packetsLost, int rttMs, int jitterMs) {
+        this.timestampMs = timestampMs;
+        this.bytesSent = bytesSent;
+        this.packetsSent = packetsSent;
+        this.packetsLost = packetsLost;
+        this.rttMs = rttMs;
+        this.jitterMs = jitterMs;
+    }
+
+    /**
+     * Builds a sample from the name/value pairs of a StatsReport, or returns null
+     * if the report is not the outgoing video ssrc.
+     */
+    static StatsSample fromReport(String type, Map<String, String> values, long timestampMs) {
+        if (!"ssrc".equals(type) || !values.containsKey("bytesSent")) {
+            return null;
+        }
+        String mediaType = values.get("mediaType");
+        if (mediaType != null ? !mediaType.equals("video") : !values.containsKey("googFrameWidthSent")) {
+            return null;
+        }
+        return new StatsSample(timestampMs,
+                parseLong(values.get("bytesSent")),
+                parseLong(values.get("packetsSent")),
+                Math.max(0, parseLong(values.get("packetsLost"))),
+                (int) parseLong(values.get("googRtt")),
+                (int) parseLong(values.get("googJitterReceived")));
+    }
+
+    private static long parseLong(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StatsSample{t=" + timestampMs + ", bytesSent=" + bytesSent + ", packetsSent=" + packetsSent
+                + ", packetsLost=" + packetsLost + ", rttMs=" + rttMs + ", jitterMs=" + jitterMs + "}";
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.groupcall;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+/**
+ * Measures the round trip to a STUN or TURN server with a single RFC 5389
+ * binding request over UDP. TURN servers answer binding requests too, so
+ * both can be ranked the same way. Blocks for up to {@code timeoutMs}.
+ */
+class StunProber implements IceServerPool.Prober {
+    static final int DefaultTimeoutMs = 1000;
+
+    static final int HeaderLength = 20;
+    static final int BindingRequest = 0x0001;
+    static final int BindingSuccess = 0x0101;
+    static final int MagicCookie = 0x2112A442;
+
+    private final int timeoutMs;
+    private final Random random;
+
+    StunProber(int timeoutMs, Random random) {
+        this.timeoutMs = timeoutMs;
+        this.random = random;
+    }
+
+    @Override
+    public long rttMs(IceServerConfig server) {
+        try {
+            return rttMs(InetAddress.getByName(server.host()), server.port());
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /** Round trip in milliseconds, or -1 if nothing answered in time. */
+    long rttMs(InetAddress address, int port) throws IOException {
+        byte[] request = new byte[HeaderLength];
+        writeShort(request, 0, BindingRequest);
+        writeShort(request, 2, 0);
+        writeInt(request, 4, MagicCookie);
+        byte[] transactionId = new byte[12];
+        random.nextBytes(transactionId);
+        System.arraycopy(transactionId, 0, request, 8, transactionId.length);
+
+        try (DatagramSocket socket = new DatagramSocket()) {
+            byte[] buffer = new byte[512];
+            DatagramPacket response = new DatagramPacket(buffer, buffer.length);
+            long start = System.nanoTime();
+            long deadline = start + timeoutMs * 1000000L;
+            socket.send(new DatagramPacket(request, request.length, address, port));
+            while (true) {
+                long leftMs = (deadline - System.nanoTime()) / 1000000;
+                if (leftMs <= 0) {
+                    return -1;
+                }
+                socket.setSoTimeout((int) leftMs);
+                try {
+                    socket.receive(response);
+                } catch (SocketTimeoutException e) {
+                    return -1;
+                }
+                // ignore anything that is not the answer to this request
+                if (isSuccessFor(buffer, response.getLength(), transactionId)) {
+                    return (System.nanoTime() - start) / 1000000;
+                }
+            }
+        }
+    }
+
+    static boolean isSuccessFor(byte[] message, int length, byte[] transactionId) {
+        if (length < HeaderLength || readShort(message, 0) != BindingSuccess || readInt(message, 4) != MagicCookie) {
+            return false;
+        }
+        for (int i = 0; i < transactionId.length; i++) {
+            if (message[8 + i] != transactionId[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void writeShort(byte[] into, int offset, int value) {
+        into[offset] = (byte) (value >> 8);
+        into[offset + 1] = (byte) value;
+    }
+
+    static void writeInt(byte[] into, int offset, int value) {
+        writeShort(into, offset, value >>> 16);
+        writeShort(into, offset + 2, value);
+    }
+
+    static int readShort(byte[] from, int offset) {
+        return ((from[offset] & 0xff) << 8) | (from[offset + 1] & 0xff);
+    }
+
+    static int readInt(byte[] from, int offset) {
+        return (readShort(from, offset) << 16) | readShort(from, offset + 2);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.groupcall;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The {@link PeerTelemetry} of every peer in the call, and the listeners
+ * that get a {@link TelemetrySnapshot} whenever one is published. Thread safe.
+ */
+public class TelemetryCollector {
+    static final int DefaultWindow = 64;
+
+    public interface Listener {
+        // called on the thread that publishes, keep it short
+        void onTelemetry(TelemetrySnapshot snapshot);
+    }
+
+    private final int window;
+    private final ConcurrentHashMap<String, PeerTelemetry> peers = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    TelemetryCollector(int window) {
+        this.window = window;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /** Starts collecting for a peer, or returns what is already collected under that id. */
+    PeerTelemetry register(String peerId) {
+        PeerTelemetry telemetry = peers.get(peerId);
+        if (telemetry == null) {
+            PeerTelemetry created = new PeerTelemetry(window);
+            telemetry = peers.putIfAbsent(peerId, created);
+            if (telemetry == null) {
+                telemetry = created;
+            }
+        }
+        return telemetry;
+    }
+
+    void remove(String peerId) {
+        peers.remove(peerId);
+    }
+
+    int size() {
+        return peers.size();
+    }
+
+    public TelemetrySnapshot snapshot(long nowMs) {
+        List<TelemetrySnapshot.PeerStats> stats = new ArrayList<>(peers.size());
+        for (Map.Entry<String, PeerTelemetry> entry : peers.entrySet()) {
+            stats.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        return new TelemetrySnapshot(nowMs, stats);
+    }
+
+    // returns the snapshot handed to the listeners, null when nobody listens
+    TelemetrySnapshot publish(long nowMs) {
+        if (listeners.isEmpty()) {
+            return null;
+        }
+        TelemetrySnapshot snapshot = snapshot(nowMs);
+        for (Listener listener : listeners) {
+            listener.onTelemetry(snapshot);
+        }
+        return snapshot;
+    }
+}
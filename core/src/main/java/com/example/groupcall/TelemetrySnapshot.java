@@ -0,0 +1,215 @@
+package com.example.groupcall;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Call telemetry at one moment: per peer, the ICE state and a window summary
+ * of every {@link Metric}. Exported as JSON for humans and logs, or as a
+ * compact binary record (at most about 250 bytes per peer) for shipping in bulk.
+ */
+public class TelemetrySnapshot {
+    static final int BinaryVersion = 1;
+
+    public enum Metric {
+        RTT_MS,
+        JITTER_MS,
+        // of what we sent, as reported back by the remote side
+        SEND_LOSS_PERMILLE,
+        RECEIVE_LOSS_PERMILLE,
+        SEND_KBPS,
+        RECEIVE_KBPS,
+        FRAMES_DECODED_PER_S,
+        // received but never decoded
+        FRAMES_DROPPED_PER_S
+    }
+
+    /** Statistics over the recent window of one metric; all 0 without samples. */
+    public static final class Summary {
+        public final long count;
+        public final long last;
+        public final long min;
+        public final long max;
+        public final double mean;
+        public final long p50;
+        public final long p95;
+
+        public Summary(long count, long last, long min, long max, double mean, long p50, long p95) {
+            this.count = count;
+            this.last = last;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p95 = p95;
+        }
+
+        @Override
+        public String toString() {
+            return "Summary{count=" + count + ", last=" + last + ", p50=" + p50 + ", p95=" + p95 + ", max=" + max + "}";
+        }
+    }
+
+    public static final class PeerStats {
+        public final String peerId;
+        public final String iceState;
+        private final Map<Metric, Summary> metrics;
+
+        public PeerStats(String peerId, String iceState, Map<Metric, Summary> metrics) {
+            this.peerId = peerId;
+            this.iceState = iceState;
+            this.metrics = new EnumMap<>(Metric.class);
+            this.metrics.putAll(metrics);
+        }
+
+        public Summary get(Metric metric) {
+            Summary summary = metrics.get(metric);
+            return summary != null ? summary : RingHistogram.Empty;
+        }
+
+        @Override
+        public String toString() {
+            return "PeerStats{" + peerId + ", ice=" + iceState + ", " + metrics + "}";
+        }
+    }
+
+    public final long timestampMs;
+    public final List<PeerStats> peers;
+
+    public TelemetrySnapshot(long timestampMs, List<PeerStats> peers) {
+        this.timestampMs = timestampMs;
+        this.peers = Collections.unmodifiableList(new ArrayList<>(peers));
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONArray peerArray = new JSONArray();
+        for (PeerStats peer : peers) {
+            JSONObject metrics = new JSONObject();
+            for (Metric metric : Metric.values()) {
+                Summary summary = peer.get(metric);
+                if (summary.count == 0) {
+                    continue;
+                }
+                JSONObject json = new JSONObject();
+                json.put("n", summary.count);
+                json.put("last", summary.last);
+                json.put("min", summary.min);
+                json.put("max", summary.max);
+                json.put("mean", Math.round(summary.mean * 10) / 10.0);
+                json.put("p50", summary.p50);
+                json.put("p95", summary.p95);
+                metrics.put(metric.name().toLowerCase(), json);
+            }
+            JSONObject json = new JSONObject();
+            json.put("id", peer.peerId);
+            json.put("ice", peer.iceState);
+            json.put("metrics", metrics);
+            peerArray.put(json);
+        }
+        JSONObject json = new JSONObject();
+        json.put("t", timestampMs);
+        json.put("peers", peerArray);
+        return json;
+    }
+
+    /**
+     * Binary layout, big endian: u8 version, i64 timestamp, u16 peer count,
+     * then per peer the UTF id and ICE state, u8 metric count and per metric
+     * u8 ordinal, i32 count, last, min, max, p50, p95 and f32 mean. Metrics
+     * without samples are left out; values beyond an int are clamped.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + peers.size() * 240);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(BinaryVersion);
+            out.writeLong(timestampMs);
+            out.writeShort(peers.size());
+            for (PeerStats peer : peers) {
+                out.writeUTF(peer.peerId);
+                out.writeUTF(peer.iceState);
+                int present = 0;
+                for (Metric metric : Metric.values()) {
+                    present += peer.get(metric).count > 0 ? 1 : 0;
+                }
+                out.writeByte(present);
+                for (Metric metric : Metric.values()) {
+                    Summary summary = peer.get(metric);
+                    if (summary.count == 0) {
+                        continue;
+                    }
+                    out.writeByte(metric.ordinal());
+                    out.writeInt(clamp(summary.count));
+                    out.writeInt(clamp(summary.last));
+                    out.writeInt(clamp(summary.min));
+                    out.writeInt(clamp(summary.max));
+                    out.writeInt(clamp(summary.p50));
+                    out.writeInt(clamp(summary.p95));
+                    out.writeFloat((float) summary.mean);
+                }
+            }
+        } catch (IOException e) {
+            // a ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads what {@link #toBytes()} wrote.
+     *
+     * @throws IOException if the record is truncated, of another version or names an unknown metric
+     */
+    public static TelemetrySnapshot fromBytes(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        int version = in.readUnsignedByte();
+        if (version != BinaryVersion) {
+            throw new IOException("Unknown telemetry version " + version);
+        }
+        long timestampMs = in.readLong();
+        int peerCount = in.readUnsignedShort();
+        List<PeerStats> peers = new ArrayList<>(peerCount);
+        for (int i = 0; i < peerCount; i++) {
+            String peerId = in.readUTF();
+            String iceState = in.readUTF();
+            int present = in.readUnsignedByte();
+            Map<Metric, Summary> metrics = new EnumMap<>(Metric.class);
+            for (int j = 0; j < present; j++) {
+                int ordinal = in.readUnsignedByte();
+                if (ordinal >= Metric.values().length) {
+                    throw new IOException("Unknown telemetry metric " + ordinal);
+                }
+                long count = in.readInt();
+                long last = in.readInt();
+                long min = in.readInt();
+                long max = in.readInt();
+                long p50 = in.readInt();
+                long p95 = in.readInt();
+                metrics.put(Metric.values()[ordinal], new Summary(count, last, min, max, in.readFloat(), p50, p95));
+            }
+            peers.add(new PeerStats(peerId, iceState, metrics));
+        }
+        return new TelemetrySnapshot(timestampMs, peers);
+    }
+
+    private static int clamp(long value) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+
+    @Override
+    public String toString() {
+        return "TelemetrySnapshot{t=" + timestampMs + ", " + peers + "}";
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.groupcall;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tile rectangles for the remote participants, in the 0..100 percentages
+ * VideoRendererGui works with. GRID tiles the screen in the smallest square-ish
+ * grid that fits everyone, centring an incomplete last row; SPEAKER gives one
+ * participant the top of the screen and puts the others in a strip below.
+ * Rectangles are only recomputed when the participant set, mode or speaker
+ * changes.
+ */
+class TileLayout {
+    static final int SpeakerStripPercent = 25;
+
+    enum Mode {GRID, SPEAKER}
+
+    static final class Tile {
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+
+        Tile(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Tile)) {
+                return false;
+            }
+            Tile other = (Tile) o;
+            return x == other.x && y == other.y && width == other.width && height == other.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((x * 31 + y) * 31 + width) * 31 + height;
+        }
+
+        @Override
+        public String toString() {
+            return "Tile{" + x + "," + y + " " + width + "x" + height + "}";
+        }
+    }
+
+    // participants in join order
+    private final LinkedHashSet<Integer> endPoints = new LinkedHashSet<>();
+    private final Map<Integer, Tile> tiles = new HashMap<>();
+    private Mode mode;
+    private int speaker = -1;
+    private int layouts;
+
+    TileLayout(Mode mode) {
+        this.mode = mode;
+    }
+
+    // each returns true when tile rectangles were recomputed
+
+    boolean add(int endPoint) {
+        return endPoints.add(endPoint) && relayout();
+    }
+
+    boolean remove(int endPoint) {
+        if (!endPoints.remove(endPoint)) {
+            return false;
+        }
+        if (speaker == endPoint) {
+            speaker = -1;
+        }
+        return relayout();
+    }
+
+    boolean setMode(Mode mode) {
+        if (this.mode == mode) {
+            return false;
+        }
+        this.mode = mode;
+        return relayout();
+    }
+
+    boolean setSpeaker(int endPoint) {
+        if (speaker == endPoint || !endPoints.contains(endPoint)) {
+            return false;
+        }
+        speaker = endPoint;
+        return mode == Mode.SPEAKER && relayout();
+    }
+
+    /** Rectangle of a participant, or null if it has no tile. */
+    Tile tile(int endPoint) {
+        return tiles.get(endPoint);
+    }
+
+    Map<Integer, Tile> tiles() {
+        return Collections.unmodifiableMap(tiles);
+    }
+
+    int size() {
+        return endPoints.size();
+    }
+
+    Mode mode() {
+        return mode;
+    }
+
+    int speaker() {
+        return speaker;
+    }
+
+    /** Number of times rectangles were recomputed. */
+    int layoutCount() {
+        return layouts;
+    }
+
+    private boolean relayout() {
+        layouts++;
+        tiles.clear();
+        List<Integer> order = new ArrayList<>(endPoints);
+        if (order.isEmpty()) {
+            return true;
+        }
+        if (mode == Mode.SPEAKER && order.size() > 1) {
+            int main = speaker >= 0 ? speaker : order.get(0);
+            order.remove(Integer.valueOf(main));
+            tiles.put(main, new Tile(0, 0, 100, 100 - SpeakerStripPercent));
+            row(order, 0, order.size(), 100 - SpeakerStripPercent, SpeakerStripPercent, order.size());
+            return true;
+        }
+        int columns = (int) Math.ceil(Math.sqrt(order.size()));
+        int rows = (order.size() + columns - 1) / columns;
+        for (int row = 0; row < rows; row++) {
+            int from = row * columns;
+            int to = Math.min(order.size(), from + columns);
+            row(order, from, to, split(100, rows, row), split(100, rows, row + 1) - split(100, rows, row), columns);
+        }
+        return true;
+    }
+
+    // lays order[from, to) out in one row of a grid with the given number of columns, centred
+    private void row(List<Integer> order, int from, int to, int y, int height, int columns) {
+        int count = to - from;
+        int width = 100 / columns;
+        int offset = (100 - (count == columns ? 100 : width * count)) / 2;
+        for (int i = 0; i < count; i++) {
+            int x = count == columns ? split(100, columns, i) : offset + width * i;
+            int right = count == columns ? split(100, columns, i + 1) : x + width;
+            tiles.put(order.get(from + i), new Tile(x, y, right - x, height));
+        }
+    }
+
+    // boundary i of total split into parts, so that the parts add up exactly
+    private static int split(int total, int parts, int i) {
+        return total * i / parts;
+    }
+}
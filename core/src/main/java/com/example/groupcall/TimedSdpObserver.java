@@ -0,0 +1,93 @@
+package com.example.groupcall;
+
+/**
+ * Stands in for a peer's {@link SdpCallback} and times each SDP operation
+ * from the call that started it to its callback. A PeerConnection runs its
+ * SDP operations one at a time and calls back in the order they were started,
+ * so every callback completes the oldest pending operation. Pass
+ * {@link #begin} as the callback of each createOffer / createAnswer /
+ * setLocalDescription / setRemoteDescription.
+ */
+class TimedSdpObserver implements SdpCallback {
+    static final int MaxPending = 16;
+
+    private final SdpCallback delegate;
+    private final SignalingTimings timings;
+    // ring of pending operations, oldest at head
+    private final SignalingTimings.Stage[] stages = new SignalingTimings.Stage[MaxPending];
+    private final String[] types = new String[MaxPending];
+    private final long[] startedAt = new long[MaxPending];
+    private int head;
+    private int size;
+    // command type of the offer / answer being delivered to onCreateSuccess
+    private String createdBy = SignalingTimings.Local;
+
+    TimedSdpObserver(SdpCallback delegate, SignalingTimings timings) {
+        this.delegate = delegate;
+        this.timings = timings;
+    }
+
+    /** Notes an operation about to start on behalf of a command type and returns the callback to pass along. */
+    synchronized SdpCallback begin(SignalingTimings.Stage stage, String type) {
+        if (size == MaxPending) {
+            // callbacks went missing, the oldest one will not be timed
+            head = (head + 1) % MaxPending;
+            size--;
+        }
+        int tail = (head + size) % MaxPending;
+        stages[tail] = stage;
+        types[tail] = type;
+        startedAt[tail] = timings.now();
+        size++;
+        return this;
+    }
+
+    synchronized int pending() {
+        return size;
+    }
+
+    /** Type the delivered description was created for; only meaningful inside the delegate's onCreateSuccess. */
+    String createdBy() {
+        return createdBy;
+    }
+
+    // records the oldest pending operation and returns its type, null if nothing was pending
+    private synchronized String complete(boolean failed) {
+        if (size == 0) {
+            return null;
+        }
+        SignalingTimings.Stage stage = stages[head];
+        String type = types[head];
+        long nanos = timings.now() - startedAt[head];
+        types[head] = null;
+        head = (head + 1) % MaxPending;
+        size--;
+        timings.record(type, failed ? SignalingTimings.Stage.SDP_FAILURE : stage, nanos);
+        return type;
+    }
+
+    @Override
+    public void onCreateSuccess(String type, String description) {
+        String commandType = complete(false);
+        createdBy = commandType != null ? commandType : SignalingTimings.Local;
+        delegate.onCreateSuccess(type, description);
+    }
+
+    @Override
+    public void onSetSuccess() {
+        complete(false);
+        delegate.onSetSuccess();
+    }
+
+    @Override
+    public void onCreateFailure(String error) {
+        complete(true);
+        delegate.onCreateFailure(error);
+    }
+
+    @Override
+    public void onSetFailure(String error) {
+        complete(true);
+        delegate.onSetFailure(error);
+    }
+}
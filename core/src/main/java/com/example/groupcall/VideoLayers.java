@@ -0,0 +1,68 @@
+package com.example.groupcall;
+
+/**
+ * Resolution ladder for the outgoing video: layer 0 is the full capture size
+ * and every following layer halves both dimensions. The lowest layer also
+ * halves the frame rate.
+ */
+class VideoLayers {
+    static final int Full = 0;
+    static final int Half = 1;
+    static final int Quarter = 2;
+    static final int DefaultCount = 3;
+
+    private final int[] widths;
+    private final int[] heights;
+    private final int[] fps;
+
+    VideoLayers(int width, int height, int frameRate, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive: " + count);
+        }
+        widths = new int[count];
+        heights = new int[count];
+        fps = new int[count];
+        for (int i = 0; i < count; i++) {
+            widths[i] = Math.max(1, width >> i);
+            heights[i] = Math.max(1, height >> i);
+            fps[i] = i > 0 && i == count - 1 ? Math.max(1, frameRate / 2) : frameRate;
+        }
+    }
+
+    int count() {
+        return widths.length;
+    }
+
+    int width(int layer) {
+        return widths[layer];
+    }
+
+    int height(int layer) {
+        return heights[layer];
+    }
+
+    int fps(int layer) {
+        return fps[layer];
+    }
+
+    // smallest layer that still covers a tile of the given size, the full layer if none does
+    int select(int tileWidth, int tileHeight) {
+        for (int layer = widths.length - 1; layer > Full; layer--) {
+            if (widths[layer] >= tileWidth && heights[layer] >= tileHeight) {
+                return layer;
+            }
+        }
+        return Full;
+    }
+
+    // tile size given in percent of the display, as passed to VideoRendererGui.update
+    int selectForViewport(int displayWidth, int displayHeight, int widthPercent, int heightPercent) {
+        int tileWidth = (int) Math.ceil(displayWidth * clampPercent(widthPercent) / 100.0);
+        int tileHeight = (int) Math.ceil(displayHeight * clampPercent(heightPercent) / 100.0);
+        return select(tileWidth, tileHeight);
+    }
+
+    private static int clampPercent(int percent) {
+        return Math.max(0, Math.min(100, percent));
+    }
+}
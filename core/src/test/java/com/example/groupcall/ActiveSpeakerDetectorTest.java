@@ -0,0 +1,124 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ActiveSpeakerDetectorTest {
+    private static final long Interval = 300;
+
+    private final ActiveSpeakerDetector detector = new ActiveSpeakerDetector(ActiveSpeakerDetector.DefaultWindow,
+            ActiveSpeakerDetector.DefaultHoldMs, ActiveSpeakerDetector.DefaultSwitchRatio, ActiveSpeakerDetector.DefaultSilenceLevel);
+    private long now;
+    private int changes;
+
+    // one polling round: a level per end point, in end point order starting at 1
+    private void round(double... levels) {
+        for (int i = 0; i < levels.length; i++) {
+            detector.onAudioLevel(i + 1, levels[i]);
+        }
+        now += Interval;
+        if (detector.evaluate(now)) {
+            changes++;
+        }
+    }
+
+    @Test
+    public void silenceHasNoSpeaker() {
+        for (int i = 0; i < 20; i++) {
+            round(0.0, 0.01, 0.005);
+        }
+        assertEquals(-1, detector.speaker());
+        assertEquals(0, changes);
+    }
+
+    @Test
+    public void firstSpeakerIsTakenImmediately() {
+        round(0.0, 0.4, 0.0);
+        assertEquals(2, detector.speaker());
+        assertEquals(1, changes);
+    }
+
+    @Test
+    public void switchesAfterHoldWhenSomeoneElseTalks() {
+        for (int i = 0; i < 10; i++) {
+            round(0.5, 0.0, 0.0);
+        }
+        assertEquals(1, detector.speaker());
+        int rounds = 0;
+        while (detector.speaker() == 1) {
+            round(0.0, 0.6, 0.0);
+            rounds++;
+            assertTrue(rounds < 20);
+        }
+        assertEquals(2, detector.speaker());
+        // the window has to turn over and the challenger has to hold for DefaultHoldMs
+        assertTrue(rounds * Interval >= ActiveSpeakerDetector.DefaultHoldMs);
+        assertEquals(2, changes);
+    }
+
+    @Test
+    public void shortBurstDoesNotSwitch() {
+        for (int i = 0; i < 10; i++) {
+            round(0.4, 0.0, 0.0);
+        }
+        // a cough: one loud sample from participant 3
+        round(0.4, 0.0, 1.0);
+        for (int i = 0; i < 10; i++) {
+            round(0.4, 0.0, 0.0);
+        }
+        assertEquals(1, detector.speaker());
+        assertEquals(1, changes);
+    }
+
+    @Test
+    public void crosstalkOfSimilarLoudnessDoesNotFlap() {
+        Random random = new Random(12);
+        for (int i = 0; i < 200; i++) {
+            round(0.3 + random.nextDouble() * 0.1, 0.3 + random.nextDouble() * 0.1, 0.0);
+        }
+        assertEquals(1, changes);
+    }
+
+    @Test
+    public void speakerLeavingClearsIt() {
+        round(0.5, 0.1, 0.0);
+        assertEquals(1, detector.speaker());
+        assertFalse(detector.remove(3));
+        assertTrue(detector.remove(1));
+        assertEquals(-1, detector.speaker());
+        round(0.0, 0.3);
+        assertEquals(2, detector.speaker());
+    }
+
+    @Test
+    public void rankingKeepsSpeakerFirst() {
+        for (int i = 0; i < 10; i++) {
+            round(0.5, 0.0, 0.0, 0.0);
+        }
+        // 3 is now louder but still within the hold time
+        round(0.2, 0.1, 0.9, 0.05);
+        assertEquals(1, detector.speaker());
+        assertEquals(Arrays.asList(1, 3, 2, 4), detector.ranking());
+    }
+
+    @Test
+    public void parsesReceivedAudioLevel() {
+        Map<String, String> values = new HashMap<>();
+        values.put("audioOutputLevel", "16384");
+        values.put("googTrackId", "ARDAMSa0");
+        assertEquals(0.5, ActiveSpeakerDetector.audioLevel("ssrc", values), 0.001);
+        assertEquals(-1, ActiveSpeakerDetector.audioLevel("googCandidatePair", values), 0);
+
+        Map<String, String> sent = new HashMap<>();
+        sent.put("audioInputLevel", "16384");
+        assertEquals(-1, ActiveSpeakerDetector.audioLevel("ssrc", sent), 0);
+        values.put("audioOutputLevel", "junk");
+        assertEquals(-1, ActiveSpeakerDetector.audioLevel("ssrc", values), 0);
+    }
+}
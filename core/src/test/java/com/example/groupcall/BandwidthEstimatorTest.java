@@ -0,0 +1,151 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BandwidthEstimatorTest {
+
+    /** Synthetic stats trace: cumulative counters advanced one polling interval at a time. */
+    private static final class Trace {
+        long t;
+        long bytes;
+        long sent;
+        long lost;
+
+        StatsSample next(int kbps, double loss, int rttMs, int jitterMs) {
+            t += 2000;
+            long packets = 200;
+            long lostNow = Math.round(packets * loss);
+            sent += packets - lostNow;
+            lost += lostNow;
+            bytes += kbps * 2000L / 8;
+            return new StatsSample(t, bytes, sent, lost, rttMs, jitterMs);
+        }
+    }
+
+    @Test
+    public void cleanNetworkGrowsUpToMaxWhileTheSenderKeepsUp() {
+        BandwidthEstimator estimator = new BandwidthEstimator(300, 30, 1000);
+        Trace trace = new Trace();
+        estimator.update(trace.next(300, 0, 40, 2));
+        double previous = estimator.getEstimateKbps();
+        for (int i = 0; i < 100; i++) {
+            // the encoder follows the estimate
+            double estimate = estimator.update(trace.next((int) previous, 0, 40, 2));
+            assertTrue(estimate >= previous);
+            previous = estimate;
+        }
+        assertEquals(1000, estimator.getEstimateKbps(), 0.001);
+    }
+
+    @Test
+    public void growthStopsAboveWhatIsActuallySent() {
+        BandwidthEstimator estimator = new BandwidthEstimator(300, 30, 2000);
+        Trace trace = new Trace();
+        estimator.update(trace.next(300, 0, 40, 2));
+        for (int i = 0; i < 100; i++) {
+            estimator.update(trace.next(300, 0, 40, 2));
+        }
+        assertEquals(300, estimator.getSendRateKbps(), 1);
+        assertEquals(300 * BandwidthEstimator.MaxSendRateRatio, estimator.getEstimateKbps(), 1);
+    }
+
+    @Test
+    public void idleSenderHoldsTheEstimate() {
+        BandwidthEstimator estimator = new BandwidthEstimator(800, 30, 2000);
+        Trace trace = new Trace();
+        estimator.update(trace.next(0, 0, 40, 2));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(800, estimator.update(trace.next(0, 0, 40, 2)), 0.001);
+        }
+    }
+
+    @Test
+    public void heavyLossCutsProportionally() {
+        BandwidthEstimator estimator = new BandwidthEstimator(1000, 30, 2000);
+        Trace trace = new Trace();
+        estimator.update(trace.next(1000, 0, 40, 2));
+        double estimate = estimator.update(trace.next(1000, 0.3, 40, 2));
+        assertEquals(0.3, estimator.getLossFraction(), 0.01);
+        assertEquals(1000 * (1 - 0.15), estimate, 5);
+    }
+
+    @Test
+    public void moderateLossHoldsEstimate() {
+        BandwidthEstimator estimator = new BandwidthEstimator(800, 30, 2000);
+        Trace trace = new Trace();
+        estimator.update(trace.next(800, 0, 40, 2));
+        assertEquals(800, estimator.update(trace.next(800, 0.05, 40, 2)), 0.001);
+    }
+
+    @Test
+    public void risingRttBacksOffWithoutLoss() {
+        BandwidthEstimator estimator = new BandwidthEstimator(800, 30, 2000);
+        Trace trace = new Trace();
+        estimator.update(trace.next(800, 0, 40, 2));
+        estimator.update(trace.next(800, 0, 40, 2));
+        double before = estimator.getEstimateKbps();
+        double after = before;
+        for (int i = 0; i < 5; i++) {
+            after = estimator.update(trace.next(800, 0, 400, 2));
+        }
+        assertTrue(after < before);
+        assertTrue(estimator.getSmoothedRttMs() > 130);
+    }
+
+    @Test
+    public void highJitterBacksOff() {
+        BandwidthEstimator estimator = new BandwidthEstimator(800, 30, 2000);
+        Trace trace = new Trace();
+        estimator.update(trace.next(800, 0, 40, 2));
+        double after = 0;
+        for (int i = 0; i < 6; i++) {
+            after = estimator.update(trace.next(800, 0, 40, 200));
+        }
+        assertTrue(after < 800);
+    }
+
+    @Test
+    public void neverDropsBelowMinimum() {
+        BandwidthEstimator estimator = new BandwidthEstimator(100, 30, 2000);
+        Trace trace = new Trace();
+        estimator.update(trace.next(100, 0, 40, 2));
+        for (int i = 0; i < 50; i++) {
+            estimator.update(trace.next(100, 0.9, 40, 2));
+        }
+        assertEquals(30, estimator.getEstimateKbps(), 0.001);
+    }
+
+    @Test
+    public void ignoresStaleSamples() {
+        BandwidthEstimator estimator = new BandwidthEstimator(500, 30, 2000);
+        StatsSample sample = new StatsSample(1000, 100, 10, 0, 40, 2);
+        estimator.update(sample);
+        assertEquals(500, estimator.update(sample), 0.001);
+    }
+
+    @Test
+    public void parsesVideoSendReportOnly() {
+        Map<String, String> video = new HashMap<>();
+        video.put("bytesSent", "12345");
+        video.put("packetsSent", "100");
+        video.put("packetsLost", "-1");
+        video.put("googRtt", "87");
+        video.put("googJitterReceived", "4");
+        video.put("googFrameWidthSent", "640");
+        StatsSample sample = StatsSample.fromReport("ssrc", video, 42);
+        assertNotNull(sample);
+        assertEquals(12345, sample.bytesSent);
+        assertEquals(0, sample.packetsLost);
+        assertEquals(87, sample.rttMs);
+
+        Map<String, String> audio = new HashMap<>(video);
+        audio.put("mediaType", "audio");
+        assertNull(StatsSample.fromReport("ssrc", audio, 42));
+        assertNull(StatsSample.fromReport("googCandidatePair", video, 42));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BitratePolicyTest {
+    private final VideoLayers layers = new VideoLayers(1280, 720, 30, VideoLayers.DefaultCount);
+
+    @Test
+    public void levelsAreOrderedByRequiredBitrate() {
+        List<BitratePolicy.Level> levels = new BitratePolicy(layers, 3).levels();
+        assertEquals(6, levels.size());
+        for (int i = 1; i < levels.size(); i++) {
+            assertTrue(levels.get(i - 1).requiredKbps >= levels.get(i).requiredKbps);
+        }
+        assertEquals(VideoLayers.Full, levels.get(0).layer);
+        assertEquals(30, levels.get(0).fps);
+        assertEquals(VideoLayers.Quarter, levels.get(levels.size() - 1).layer);
+    }
+
+    @Test
+    public void stepsDownImmediatelyToALevelThatFits() {
+        BitratePolicy policy = new BitratePolicy(layers, 3);
+        assertTrue(policy.update(400));
+        BitratePolicy.Level level = policy.level();
+        assertTrue(level.requiredKbps * BitratePolicy.DownMargin <= 400);
+        assertEquals(VideoLayers.Half, level.layer);
+        assertEquals(15, level.fps);
+        assertEquals(400, policy.maxBitrateKbps());
+    }
+
+    @Test
+    public void stepsUpOnlyAfterSustainedHeadroom() {
+        BitratePolicy policy = new BitratePolicy(layers, 3);
+        policy.update(400);
+        BitratePolicy.Level low = policy.level();
+
+        // enough for the next level up, but only for two intervals
+        assertFalse(policy.update(800));
+        assertFalse(policy.update(800));
+        assertFalse(policy.update(500));
+        assertSame(low, policy.level());
+
+        assertFalse(policy.update(800));
+        assertFalse(policy.update(800));
+        assertTrue(policy.update(800));
+        assertEquals(VideoLayers.Half, policy.level().layer);
+        assertEquals(30, policy.level().fps);
+    }
+
+    @Test
+    public void oscillatingEstimateDoesNotFlap() {
+        BitratePolicy policy = new BitratePolicy(layers, 3);
+        policy.update(600);
+        int changes = 0;
+        for (int i = 0; i < 40; i++) {
+            if (policy.update(i % 2 == 0 ? 600 : 700)) {
+                changes++;
+            }
+        }
+        assertEquals(0, changes);
+    }
+
+    @Test
+    public void bottomLevelIsTheFloor() {
+        BitratePolicy policy = new BitratePolicy(layers, 3);
+        policy.update(1);
+        BitratePolicy.Level floor = policy.level();
+        assertFalse(policy.update(1));
+        assertSame(floor, policy.level());
+        assertEquals(VideoLayers.Quarter, floor.layer);
+    }
+}
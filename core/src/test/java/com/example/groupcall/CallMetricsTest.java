@@ -0,0 +1,38 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CallMetricsTest {
+    private static final long Ms = 1000000;
+
+    @Test
+    public void phasesAreRelativeToCreation() {
+        CallMetrics metrics = new CallMetrics(1000 * Ms);
+        for (CallMetrics.Phase phase : CallMetrics.Phase.values()) {
+            assertEquals(-1, metrics.getPhaseMs(phase));
+        }
+        assertTrue(metrics.markPhase(CallMetrics.Phase.FACTORY_INIT, 1120 * Ms));
+        assertEquals(120, metrics.getPhaseMs(CallMetrics.Phase.FACTORY_INIT));
+    }
+
+    @Test
+    public void onlyTheFirstMarkCounts() {
+        CallMetrics metrics = new CallMetrics(0);
+        assertTrue(metrics.markPhase(CallMetrics.Phase.FIRST_REMOTE_FRAME, 300 * Ms));
+        assertFalse(metrics.markPhase(CallMetrics.Phase.FIRST_REMOTE_FRAME, 900 * Ms));
+        assertEquals(300, metrics.getPhaseMs(CallMetrics.Phase.FIRST_REMOTE_FRAME));
+    }
+
+    @Test
+    public void timeToFirstFrameNeedsStartAndFrame() {
+        CallMetrics metrics = new CallMetrics(0);
+        assertEquals(-1, metrics.getTimeToFirstFrameMs());
+        metrics.markPhase(CallMetrics.Phase.CALL_STARTED, 5000 * Ms);
+        assertEquals(-1, metrics.getTimeToFirstFrameMs());
+        metrics.markPhase(CallMetrics.Phase.FIRST_REMOTE_FRAME, 5750 * Ms);
+        assertEquals(750, metrics.getTimeToFirstFrameMs());
+        assertTrue(metrics.toString().contains("FIRST_REMOTE_FRAME=5750"));
+    }
+}
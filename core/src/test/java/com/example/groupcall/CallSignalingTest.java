@@ -0,0 +1,218 @@
+package com.example.groupcall;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+
+public class CallSignalingTest {
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    // never started, runPending steps through it
+    private final SignalingExecutor executor = new SignalingExecutor(SignalingExecutor.DefaultOverflowThreshold);
+    private final FakeMediaBackend backend = new FakeMediaBackend(Runnable::run, "v=0", 0);
+    private final List<String> events = new ArrayList<>();
+    // the send cap each remote description was transformed with
+    private final List<String> remoteCaps = new ArrayList<>();
+    private final CallSignaling.Listener<FakeMediaBackend.FakePeer> listener = new CallSignaling.Listener<FakeMediaBackend.FakePeer>() {
+        @Override
+        public void onRemoteStream(CallSignaling<FakeMediaBackend.FakePeer>.Peer peer, String streamLabel, int endPoint) {
+            events.add("stream " + streamLabel + " at " + endPoint);
+        }
+
+        @Override
+        public void onRemoteStreamRemoved(int endPoint) {
+            events.add("removed " + endPoint);
+        }
+
+        @Override
+        public void onPeerRemoved(CallSignaling<FakeMediaBackend.FakePeer>.Peer peer) {
+            events.add("peer removed " + peer.id());
+        }
+
+        @Override
+        public String transformRemote(CallSignaling<FakeMediaBackend.FakePeer>.Peer peer, String type, String sdp) {
+            remoteCaps.add(type + " " + peer.maxBitrateKbps());
+            return sdp;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private CallSignaling<FakeMediaBackend.FakePeer> signaling(P2PConnectionParameters.Topology topology) {
+        P2PConnectionParameters parameters = new P2PConnectionParameters(false, false, 640, 480, 30, 0, null, false, 0,
+                null, false).withTopology(topology);
+        return new CallSignaling<>(s -> new SignalingSession.Transport() {
+            @Override
+            public void connect() {
+            }
+
+            @Override
+            public void disconnect() {
+            }
+
+            @Override
+            public void emit(String event, Object payload) {
+            }
+        }, backend, listener, parameters, executor, scheduler, new CommandPipeline(), new SignalingTimings(),
+                new CallMetrics(), new TelemetryCollector(TelemetryCollector.DefaultWindow));
+    }
+
+    private static SignalingMessage message(String from, String type) {
+        SignalingMessage message = new SignalingMessage();
+        message.from = from;
+        message.type = type;
+        return message;
+    }
+
+    private static JSONObject description(String from, String type) throws Exception {
+        return new JSONObject().put("from", from).put("type", type).put("payload", SignalingPayloads.description(type, "v=0"));
+    }
+
+    private void runAll() {
+        while (executor.runPending() > 0) {
+        }
+    }
+
+    @Test
+    public void onlyInitAndOfferAddAMeshPeer() {
+        CallSignaling<FakeMediaBackend.FakePeer> signaling = signaling(P2PConnectionParameters.Topology.MESH);
+
+        assertFalse(signaling.accept(message("a", SignalingMessage.Candidate)));
+        assertFalse(signaling.accept(message("a", "layer")));
+        assertEquals(0, signaling.peerCount());
+
+        assertTrue(signaling.accept(message("a", SignalingMessage.Offer)));
+        assertTrue(signaling.accept(message("a", "layer")));
+        assertTrue(signaling.accept(message("b", SignalingMessage.Init)));
+        assertEquals(2, signaling.peerCount());
+        assertFalse(signaling.accept(message("c", SignalingMessage.Offer)));
+    }
+
+    @Test
+    public void meshStreamRemovalFreesItsEndPoint() {
+        CallSignaling<FakeMediaBackend.FakePeer> signaling = signaling(P2PConnectionParameters.Topology.MESH);
+        signaling.accept(message("a", SignalingMessage.Offer));
+        signaling.accept(message("b", SignalingMessage.Offer));
+        CallSignaling<FakeMediaBackend.FakePeer>.Peer b = null;
+        for (CallSignaling<FakeMediaBackend.FakePeer>.Peer peer : signaling.peers()) {
+            if (peer.id().equals("b")) {
+                b = peer;
+            }
+        }
+
+        b.media().addStream("stream-b", Collections.singletonList("audio-b"));
+        runAll();
+        assertEquals(2, signaling.endPointOfTrack(b, "audio-b"));
+        b.media().removeStream("stream-b");
+        runAll();
+
+        assertEquals(1, signaling.peerCount());
+        assertEquals(1, backend.open());
+        assertEquals("[stream stream-b at 2, peer removed b, removed 2]", events.toString());
+        assertTrue(signaling.accept(message("c", SignalingMessage.Offer)));
+        assertEquals(2, signaling.peerCount());
+    }
+
+    @Test
+    public void sfuStreamWaitsForTheRosterToPlaceIt() throws Exception {
+        CallSignaling<FakeMediaBackend.FakePeer> signaling = signaling(P2PConnectionParameters.Topology.SFU);
+        signaling.start("me");
+        runAll();
+        assertEquals(1, signaling.peerCount());
+        CallSignaling<FakeMediaBackend.FakePeer>.Peer upstream = signaling.peers().iterator().next();
+        assertEquals(SfuSignaling.ServerId, upstream.id());
+
+        upstream.media().addStream("stream-alice", Collections.singletonList("audio-alice"));
+        runAll();
+        assertTrue(events.isEmpty());
+        assertEquals(-1, signaling.endPointOfTrack(upstream, "audio-alice"));
+
+        LinkedHashMap<String, String> roster = new LinkedHashMap<>();
+        roster.put("stream-alice", "alice");
+        signaling.on("message", new JSONObject()
+                .put("from", SfuSignaling.ServerId)
+                .put("type", SfuSignaling.Participants)
+                .put("payload", SfuSignaling.participants(roster)));
+        runAll();
+        assertEquals("[stream stream-alice at 1]", events.toString());
+        assertEquals(1, signaling.endPointOfTrack(upstream, "audio-alice"));
+
+        roster.clear();
+        signaling.on("message", new JSONObject()
+                .put("from", SfuSignaling.ServerId)
+                .put("type", SfuSignaling.Participants)
+                .put("payload", SfuSignaling.participants(roster)));
+        runAll();
+        assertEquals("[stream stream-alice at 1, removed 1]", events.toString());
+        assertEquals(-1, signaling.endPointOfTrack(upstream, "audio-alice"));
+        assertEquals(0, signaling.failures());
+    }
+
+    @Test
+    public void sfuServerMessagesWithoutAnUpstreamAreDropped() throws Exception {
+        CallSignaling<FakeMediaBackend.FakePeer> signaling = signaling(P2PConnectionParameters.Topology.SFU);
+        assertFalse(signaling.accept(message(SfuSignaling.ServerId, SignalingMessage.Offer)));
+        assertEquals(0, signaling.peerCount());
+
+        signaling.start("me");
+        runAll();
+        CallSignaling<FakeMediaBackend.FakePeer>.Peer upstream = signaling.peers().iterator().next();
+        assertTrue(signaling.accept(message(SfuSignaling.ServerId, SfuSignaling.Participants)));
+
+        // ICE fails on every restart until the monitor gives up
+        for (int i = 0; i <= IceConnectionMonitor.DefaultMaxRestarts; i++) {
+            upstream.onIceConnectionChange(IceConnectionMonitor.Ice.FAILED);
+            runAll();
+        }
+        assertEquals(0, signaling.peerCount());
+        assertFalse(signaling.accept(message(SfuSignaling.ServerId, SfuSignaling.Participants)));
+        assertFalse(signaling.accept(message(SfuSignaling.ServerId, SignalingMessage.Candidate)));
+        assertEquals(0, signaling.peerCount());
+        // nothing was opened for the server's messages
+        assertEquals(1, backend.created());
+    }
+
+    @Test
+    public void bitrateLevelChangeRenegotiatesWithoutARemoteOffer() throws Exception {
+        CallSignaling<FakeMediaBackend.FakePeer> signaling = signaling(P2PConnectionParameters.Topology.MESH);
+        signaling.on("message", description("a", SignalingMessage.Offer));
+        runAll();
+        CallSignaling<FakeMediaBackend.FakePeer>.Peer a = signaling.peers().iterator().next();
+        assertEquals(MediaBackend.SignalingState.STABLE, a.media().signalingState());
+        assertEquals(1, remoteCaps.size());
+
+        // half of every packet lost pulls the estimate down, the policy drops a level, then another
+        long sent = 0;
+        int changes = 0;
+        for (int i = 1; i < 50 && changes < 2; i++) {
+            sent += 100;
+            if (a.onVideoSample(new StatsSample(i * 1000L, sent * 1000, sent, sent, 100, 10))) {
+                changes++;
+                runAll();
+                // the first change went out right away, the second waits for its answer
+                assertEquals(MediaBackend.SignalingState.HAVE_LOCAL_OFFER, a.media().signalingState());
+            }
+        }
+        assertEquals(2, changes);
+
+        signaling.on("message", description("a", SignalingMessage.Answer));
+        runAll();
+        assertEquals(2, remoteCaps.size());
+        assertEquals("answer " + a.maxBitrateKbps(), remoteCaps.get(1));
+        assertTrue(a.maxBitrateKbps() < CallSignaling.DefaultVideoStartBitrateKbps);
+        // the second level is held back for the interval, not offered on the answer's heels
+        assertEquals(MediaBackend.SignalingState.STABLE, a.media().signalingState());
+        assertEquals(0, signaling.failures());
+    }
+}
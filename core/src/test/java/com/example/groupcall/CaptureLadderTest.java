@@ -0,0 +1,151 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CaptureLadderTest {
+    private final VideoLayers layers = new VideoLayers(1280, 720, 30, VideoLayers.DefaultCount);
+
+    private static final CaptureLadder.Load Hot = new CaptureLadder.Load(95, 30, 30);
+    private static final CaptureLadder.Load Dropping = new CaptureLadder.Load(60, 30, 20);
+    private static final CaptureLadder.Load Busy = new CaptureLadder.Load(70, 30, 30);
+    private static final CaptureLadder.Load Idle = new CaptureLadder.Load(20, 30, 30);
+
+    @Test
+    public void stepsAreOrderedByPixelRate() {
+        CaptureLadder ladder = new CaptureLadder(layers, 5);
+        assertEquals(6, ladder.steps());
+        assertEquals(7, ladder.minFps());
+        long previous = Long.MAX_VALUE;
+        for (int i = 0; i < ladder.steps(); i++) {
+            CaptureLadder.Step step = ladder.step();
+            assertTrue(step.pixelRate() < previous);
+            previous = step.pixelRate();
+            ladder.update(Hot);
+            ladder.update(Hot);
+        }
+        assertEquals(VideoLayers.Quarter, ladder.step().layer);
+        assertEquals(7, ladder.step().fps);
+    }
+
+    @Test
+    public void stepsDownAfterSustainedOveruse() {
+        CaptureLadder ladder = new CaptureLadder(layers, 5);
+        assertFalse(ladder.update(Hot));
+        assertFalse(ladder.update(Busy));
+        assertFalse(ladder.update(Hot));
+        assertTrue(ladder.update(Hot));
+        assertEquals(VideoLayers.Full, ladder.step().layer);
+        assertEquals(15, ladder.step().fps);
+        assertEquals(1, ladder.stepsDown());
+    }
+
+    @Test
+    public void frameDropsCountAsOveruse() {
+        CaptureLadder ladder = new CaptureLadder(layers, 5);
+        assertFalse(ladder.update(Dropping));
+        assertTrue(ladder.update(Dropping));
+    }
+
+    @Test
+    public void stepsUpOnlyWhenIdleLongEnough() {
+        CaptureLadder ladder = new CaptureLadder(layers, 3);
+        ladder.update(Hot);
+        ladder.update(Hot);
+        CaptureLadder.Step low = ladder.step();
+        // busy but not overloaded: hold the step
+        for (int i = 0; i < 21; i++) {
+            assertFalse(ladder.update(i % 3 == 2 ? Busy : Idle));
+        }
+        assertSame(low, ladder.step());
+        assertFalse(ladder.update(Idle));
+        assertFalse(ladder.update(Idle));
+        assertTrue(ladder.update(Idle));
+        assertEquals(30, ladder.step().fps);
+        // already at the top
+        for (int i = 0; i < 10; i++) {
+            assertFalse(ladder.update(Idle));
+        }
+    }
+
+    @Test
+    public void backsOffAfterAFailedStepUp() {
+        CaptureLadder ladder = new CaptureLadder(layers, 3);
+        ladder.update(Hot);
+        ladder.update(Hot);
+        for (int i = 0; i < 3; i++) {
+            ladder.update(Idle);
+        }
+        // overloaded again right after stepping up
+        ladder.update(Hot);
+        assertTrue(ladder.update(Hot));
+        assertEquals(6, ladder.upSamples());
+        for (int i = 0; i < 5; i++) {
+            assertFalse(ladder.update(Idle));
+        }
+        assertTrue(ladder.update(Idle));
+    }
+
+    @Test
+    public void upSamplesAreCappedAndRecover() {
+        CaptureLadder ladder = new CaptureLadder(layers, 3);
+        for (int round = 0; round < 10; round++) {
+            ladder.update(Hot);
+            ladder.update(Hot);
+            while (!ladder.update(Idle)) {
+            }
+        }
+        assertEquals(CaptureLadder.MaxUpSamples, ladder.upSamples());
+        // a long stable stretch at the raised step earns trust back
+        for (int i = 0; i < 2000; i++) {
+            ladder.update(Busy);
+        }
+        assertEquals(3, ladder.upSamples());
+    }
+
+    @Test
+    public void alternatingLoadDoesNotFlap() {
+        CaptureLadder ladder = new CaptureLadder(layers, CaptureLadder.DefaultUpSamples);
+        int changes = 0;
+        for (int i = 0; i < 200; i++) {
+            if (ladder.update(i % 2 == 0 ? Hot : Idle)) {
+                changes++;
+            }
+        }
+        assertEquals(0, changes);
+    }
+
+    @Test
+    public void readsLoadFromSsrcReports() {
+        Map<String, String> values = new HashMap<>();
+        values.put("googFrameRateInput", "30");
+        values.put("googFrameRateSent", "24");
+        values.put("googEncodeUsagePercent", "91");
+        CaptureLadder.Load load = CaptureLadder.Load.fromReport("ssrc", values);
+        assertEquals(91, load.encodeUsagePercent);
+        assertEquals(0.2, load.dropRatio(), 1e-9);
+
+        values.remove("googEncodeUsagePercent");
+        values.put("googAvgEncodeMs", "20");
+        assertEquals(60, CaptureLadder.Load.fromReport("ssrc", values).encodeUsagePercent);
+
+        assertNull(CaptureLadder.Load.fromReport("VideoBwe", values));
+        values.clear();
+        values.put("audioInputLevel", "100");
+        assertNull(CaptureLadder.Load.fromReport("ssrc", values));
+    }
+
+    @Test
+    public void worstCombinesEachMeasure() {
+        CaptureLadder.Load worst = CaptureLadder.Load.worst(new CaptureLadder.Load(90, 30, 30), new CaptureLadder.Load(40, 15, 10));
+        assertEquals(90, worst.encodeUsagePercent);
+        assertEquals(30, worst.frameRateInput, 1e-9);
+        assertEquals(1.0 / 3, worst.dropRatio(), 1e-9);
+        assertSame(Idle, CaptureLadder.Load.worst(null, Idle));
+        assertNull(CaptureLadder.Load.worst(null, null));
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CommandPipelineTest {
+
+    private static SignalingMessage message(String type) {
+        SignalingMessage message = new SignalingMessage();
+        message.type = type;
+        message.from = "peer-1";
+        return message;
+    }
+
+    private static CommandInterceptor recording(final String name, final List<String> calls) {
+        return chain -> {
+            calls.add(name + " before " + chain.message().type);
+            chain.proceed();
+            calls.add(name + " after");
+        };
+    }
+
+    @Test
+    public void withoutInterceptorsTheCommandRunsDirectly() throws JSONException {
+        List<String> calls = new ArrayList<>();
+        new CommandPipeline().execute((peerId, message) -> calls.add(peerId + " " + message.type), "peer-1", message("offer"));
+        assertEquals(1, calls.size());
+        assertEquals("peer-1 offer", calls.get(0));
+    }
+
+    @Test
+    public void firstAddedInterceptorIsOutermost() throws JSONException {
+        List<String> calls = new ArrayList<>();
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.add(recording("outer", calls));
+        pipeline.add(recording("inner", calls));
+        pipeline.execute((peerId, message) -> calls.add("command"), "peer-1", message("answer"));
+        String[] expected = {"outer before answer", "inner before answer", "command", "inner after", "outer after"};
+        assertArrayEquals(expected, calls.toArray());
+    }
+
+    @Test
+    public void anInterceptorCanSkipTheCommand() throws JSONException {
+        List<String> calls = new ArrayList<>();
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.add(chain -> {
+            if (!chain.message().type.equals("candidate")) {
+                chain.proceed();
+            }
+        });
+        pipeline.execute((peerId, message) -> calls.add(message.type), "peer-1", message("candidate"));
+        pipeline.execute((peerId, message) -> calls.add(message.type), "peer-1", message("offer"));
+        assertEquals(1, calls.size());
+        assertEquals("offer", calls.get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void proceedingTwiceIsAnError() throws JSONException {
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.add(chain -> {
+            chain.proceed();
+            chain.proceed();
+        });
+        pipeline.execute((peerId, message) -> { }, "peer-1", message("offer"));
+    }
+
+    @Test
+    public void removedInterceptorsStopRunning() throws JSONException {
+        List<String> calls = new ArrayList<>();
+        CommandPipeline pipeline = new CommandPipeline();
+        CommandInterceptor interceptor = recording("only", calls);
+        pipeline.add(interceptor);
+        pipeline.remove(interceptor);
+        assertEquals(0, pipeline.size());
+        pipeline.execute((peerId, message) -> calls.add("command"), "peer-1", message("offer"));
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    public void commandFailuresPassThroughTheChain() {
+        List<String> calls = new ArrayList<>();
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.add(chain -> {
+            try {
+                chain.proceed();
+            } finally {
+                calls.add("finally");
+            }
+        });
+        try {
+            pipeline.execute((peerId, message) -> {
+                throw new JSONException("bad payload");
+            }, "peer-1", message("offer"));
+            fail();
+        } catch (JSONException e) {
+            assertEquals("bad payload", e.getMessage());
+        }
+        assertEquals(1, calls.size());
+    }
+}
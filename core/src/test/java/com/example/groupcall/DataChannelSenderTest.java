@@ -0,0 +1,156 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DataChannelSenderTest {
+
+    // a DataChannel whose buffer only empties when the test says so
+    private static final class FakeChannel implements DataChannelSender.Channel {
+        final List<Integer> sent = new ArrayList<>();
+        boolean open = true;
+        volatile long buffered;
+        // runs inside send, as libjingle callbacks can
+        Runnable duringSend;
+
+        @Override
+        public long bufferedAmount() {
+            return buffered;
+        }
+
+        @Override
+        public boolean send(ByteBuffer frame) {
+            if (!open) {
+                return false;
+            }
+            if (duringSend != null) {
+                duringSend.run();
+            }
+            sent.add(frame.get(0) & 0xff);
+            buffered += frame.remaining();
+            return true;
+        }
+    }
+
+    private static List<ByteBuffer> frames(int... ids) {
+        List<ByteBuffer> frames = new ArrayList<>();
+        for (int id : ids) {
+            ByteBuffer frame = ByteBuffer.allocate(100);
+            frame.put(0, (byte) id);
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    @Test
+    public void sendsDirectlyUnderTheHighWatermark() {
+        FakeChannel channel = new FakeChannel();
+        DataChannelSender sender = new DataChannelSender(channel, 1000, 200, 10000);
+        assertTrue(sender.offer(frames(1, 2, 3)));
+        assertEquals(Arrays.asList(1, 2, 3), channel.sent);
+        assertEquals(0, sender.queuedBytes());
+    }
+
+    @Test
+    public void pausesAtHighAndResumesBelowLow() {
+        FakeChannel channel = new FakeChannel();
+        DataChannelSender sender = new DataChannelSender(channel, 300, 100, 10000);
+        assertTrue(sender.offer(frames(1, 2, 3, 4, 5)));
+        assertEquals(Arrays.asList(1, 2, 3), channel.sent);
+        assertEquals(200, sender.queuedBytes());
+
+        // drained a little, still above the low watermark
+        channel.buffered = 150;
+        sender.onWritable();
+        assertEquals(3, channel.sent.size());
+        // later messages wait behind the queue, keeping order
+        assertTrue(sender.offer(frames(6)));
+        assertEquals(3, channel.sent.size());
+
+        channel.buffered = 100;
+        sender.onWritable();
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), channel.sent);
+        channel.buffered = 0;
+        sender.onWritable();
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), channel.sent);
+        assertEquals(6, sender.framesSent());
+    }
+
+    @Test
+    public void refusesWholeMessagesBeyondTheQueueLimit() {
+        FakeChannel channel = new FakeChannel();
+        channel.buffered = 1000;
+        DataChannelSender sender = new DataChannelSender(channel, 1000, 100, 250);
+        assertTrue(sender.offer(frames(1, 2)));
+        assertFalse(sender.offer(frames(3, 4)));
+        assertEquals(200, sender.queuedBytes());
+        assertEquals(1, sender.messagesRefused());
+        channel.buffered = 0;
+        sender.onWritable();
+        assertEquals(Arrays.asList(1, 2), channel.sent);
+        assertTrue(sender.offer(frames(3, 4)));
+    }
+
+    @Test
+    public void waitsForTheChannelToOpen() {
+        FakeChannel channel = new FakeChannel();
+        channel.open = false;
+        DataChannelSender sender = new DataChannelSender(channel, 1000, 100, 1000);
+        assertTrue(sender.offer(frames(1)));
+        assertTrue(channel.sent.isEmpty());
+        channel.open = true;
+        sender.onWritable();
+        assertEquals(Arrays.asList(1), channel.sent);
+    }
+
+    // a native send waits on the libjingle thread, which may be delivering onBufferedAmountChange right then
+    @Test(timeout = 5000)
+    public void onWritableFromTheChannelThreadDuringSendDoesNotDeadlock() {
+        FakeChannel channel = new FakeChannel();
+        DataChannelSender sender = new DataChannelSender(channel, 250, 100, 10000);
+        channel.duringSend = () -> {
+            Thread callback = new Thread(sender::onWritable);
+            callback.start();
+            try {
+                callback.join();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        };
+        assertTrue(sender.offer(frames(1, 2, 3, 4)));
+        assertEquals(Arrays.asList(1, 2, 3), channel.sent);
+        channel.buffered = 0;
+        sender.onWritable();
+        assertEquals(Arrays.asList(1, 2, 3, 4), channel.sent);
+        assertEquals(0, sender.queuedBytes());
+    }
+
+    @Test
+    public void onWritableFromInsideSendKeepsOrder() {
+        FakeChannel channel = new FakeChannel();
+        DataChannelSender sender = new DataChannelSender(channel, 1000, 100, 10000);
+        channel.duringSend = sender::onWritable;
+        assertTrue(sender.offer(frames(1, 2, 3)));
+        assertEquals(Arrays.asList(1, 2, 3), channel.sent);
+        assertEquals(3, sender.framesSent());
+    }
+
+    @Test
+    public void clearDropsQueuedFrames() {
+        FakeChannel channel = new FakeChannel();
+        channel.buffered = 1000;
+        DataChannelSender sender = new DataChannelSender(channel, 1000, 100, 1000);
+        sender.offer(frames(1, 2));
+        sender.clear();
+        channel.buffered = 0;
+        sender.onWritable();
+        assertTrue(channel.sent.isEmpty());
+        assertEquals(0, sender.queuedBytes());
+    }
+}
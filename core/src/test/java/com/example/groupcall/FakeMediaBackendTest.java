@@ -0,0 +1,113 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FakeMediaBackendTest {
+
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    private final FakeMediaBackend backend = new FakeMediaBackend(queue::add, "v=0", 3);
+    private final List<String> seen = new ArrayList<>();
+
+    private final SdpCallback callback = new SdpCallback() {
+        @Override
+        public void onCreateSuccess(String type, String description) {
+            seen.add("created " + type);
+        }
+
+        @Override
+        public void onSetSuccess() {
+            seen.add("set");
+        }
+
+        @Override
+        public void onCreateFailure(String error) {
+            seen.add(error);
+        }
+
+        @Override
+        public void onSetFailure(String error) {
+            seen.add(error);
+        }
+    };
+
+    private final MediaBackend.Events events = new MediaBackend.Events() {
+        @Override
+        public void onIceCandidate(MediaBackend.Candidate candidate) {
+            seen.add("candidate " + candidate.mid);
+        }
+
+        @Override
+        public void onIceConnectionChange(IceConnectionMonitor.Ice state) {
+            seen.add(state.toString());
+        }
+
+        @Override
+        public void onAddStream(String label, List<String> audioTrackIds) {
+            seen.add("stream " + label);
+        }
+
+        @Override
+        public void onRemoveStream(String label) {
+            seen.add("removed " + label);
+        }
+    };
+
+    private void drain() {
+        while (!queue.isEmpty()) {
+            queue.poll().run();
+        }
+    }
+
+    @Test
+    public void callsBackInOrderAndGathersOnTheFirstLocalDescription() {
+        FakeMediaBackend.FakePeer peer = backend.createPeer("a", events);
+        peer.setRemoteDescription(callback, "offer", "v=0");
+        peer.createAnswer(callback);
+        assertTrue(seen.isEmpty());
+        drain();
+        peer.setLocalDescription(callback, "answer", "v=0");
+        drain();
+        assertArrayEquals(new Object[]{"set", "created answer", "set", "candidate audio", "candidate video",
+                "candidate audio", "CHECKING", "CONNECTED"}, seen.toArray());
+        assertTrue(peer.hasLocalDescription());
+        assertTrue(peer.hasRemoteDescription());
+    }
+
+    @Test
+    public void answerNeedsARemoteOffer() {
+        backend.createPeer("a", events).createAnswer(callback);
+        drain();
+        assertEquals("createAnswer without a remote offer", seen.get(0));
+    }
+
+    @Test
+    public void failNextFailsTheNextOperationOnly() {
+        FakeMediaBackend.FakePeer peer = backend.createPeer("a", events);
+        peer.createOffer(callback, false);
+        peer.failNext("boom");
+        peer.setLocalDescription(callback, "offer", "v=0");
+        peer.createOffer(callback, true);
+        drain();
+        assertArrayEquals(new Object[]{"created offer", "boom", "created offer"}, seen.toArray());
+        assertFalse(peer.hasLocalDescription());
+    }
+
+    @Test
+    public void closedPeersFailAndAreCounted() {
+        FakeMediaBackend.FakePeer peer = backend.createPeer("a", events);
+        backend.createPeer("b", events);
+        peer.close();
+        peer.close();
+        assertEquals(2, backend.created());
+        assertEquals(1, backend.open());
+        peer.createOffer(callback, false);
+        drain();
+        assertEquals("closed", seen.get(0));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameCounterTest {
+    private static final long Interval = FrameCounter.DefaultDisplayIntervalNs;
+
+    @Test
+    public void framesAtDisplayRateAreAllRendered() {
+        FrameCounter counter = new FrameCounter(Interval);
+        for (int i = 0; i < 30; i++) {
+            assertTrue(counter.onFrame(i * 2 * Interval, true));
+        }
+        assertEquals(30, counter.received());
+        assertEquals(0, counter.dropped());
+        assertEquals(30, counter.rendered());
+    }
+
+    @Test
+    public void framesFasterThanDisplayCountAsDropped() {
+        FrameCounter counter = new FrameCounter(Interval);
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            counter.onFrame(now, true);
+            counter.onFrame(now + Interval / 4, true);
+            now += 3 * Interval;
+        }
+        assertEquals(20, counter.received());
+        assertEquals(10, counter.dropped());
+    }
+
+    @Test
+    public void throttledAndPausedFramesAreSkipped() {
+        FrameCounter counter = new FrameCounter(Interval);
+        long fiveFps = 1_000_000_000L / 5;
+        int forwarded = 0;
+        // 30 fps for one second
+        for (int i = 0; i < 30; i++) {
+            if (counter.onFrame(i * (1_000_000_000L / 30), true, fiveFps)) {
+                forwarded++;
+            }
+        }
+        assertEquals(5, forwarded);
+        assertEquals(25, counter.skipped());
+        assertEquals(0, counter.dropped());
+
+        assertFalse(counter.onFrame(2_000_000_000L, true, -1));
+        assertEquals(26, counter.skipped());
+        assertEquals(5, counter.rendered());
+    }
+
+    @Test
+    public void hiddenTileDropsWithoutForwarding() {
+        FrameCounter counter = new FrameCounter(Interval);
+        assertFalse(counter.onFrame(0, false));
+        assertTrue(counter.onFrame(10 * Interval, true));
+        assertEquals(2, counter.received());
+        assertEquals(1, counter.dropped());
+
+        counter.reset();
+        assertEquals(0, counter.received());
+        assertTrue(counter.onFrame(10 * Interval + 1, true));
+        assertEquals(0, counter.dropped());
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.groupcall;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.groupcall.IceConnectionMonitor.Ice;
+import static com.example.groupcall.IceConnectionMonitor.State;
+import static org.junit.Assert.*;
+
+public class IceConnectionMonitorTest {
+    private static final long ConnectTimeoutMs = 1000;
+    private static final long GraceMs = 100;
+    private static final long RestartTimeoutMs = 500;
+    private static final int MaxRestarts = 2;
+
+    private static final class Recorder implements IceConnectionMonitor.Listener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onStateChanged(State from, State to) {
+            events.add(from + "->" + to);
+        }
+
+        @Override
+        public void onRestartIce(int attempt) {
+            events.add("restart " + attempt);
+        }
+
+        @Override
+        public void onRecovered(long outageMs, int restarts) {
+            events.add("recovered " + outageMs + "ms " + restarts);
+        }
+    }
+
+    private Recorder recorder;
+    private IceConnectionMonitor monitor;
+
+    @Before
+    public void setUp() {
+        recorder = new Recorder();
+        monitor = new IceConnectionMonitor(ConnectTimeoutMs, GraceMs, RestartTimeoutMs, MaxRestarts, recorder, 0);
+    }
+
+    // a fresh monitor driven into the given state at time 0..10
+    private IceConnectionMonitor in(State state) {
+        recorder = new Recorder();
+        IceConnectionMonitor monitor = new IceConnectionMonitor(ConnectTimeoutMs, GraceMs, RestartTimeoutMs, MaxRestarts, recorder, 0);
+        switch (state) {
+            case CONNECTING:
+                break;
+            case CONNECTED:
+                monitor.onIceState(Ice.CONNECTED, 0);
+                break;
+            case UNSTABLE:
+                monitor.onIceState(Ice.CONNECTED, 0);
+                monitor.onIceState(Ice.DISCONNECTED, 10);
+                break;
+            case RESTARTING:
+                monitor.onIceState(Ice.CONNECTED, 0);
+                monitor.onIceState(Ice.FAILED, 10);
+                break;
+            case FAILED:
+                monitor.tick(ConnectTimeoutMs);
+                break;
+            case CLOSED:
+                monitor.onIceState(Ice.CLOSED, 0);
+                break;
+        }
+        assertEquals(state, monitor.state());
+        recorder.events.clear();
+        return monitor;
+    }
+
+    private static Map<Ice, State> row(State newOrChecking, State connected, State disconnected, State failed, State closed) {
+        Map<Ice, State> row = new EnumMap<>(Ice.class);
+        row.put(Ice.NEW, newOrChecking);
+        row.put(Ice.CHECKING, newOrChecking);
+        row.put(Ice.CONNECTED, connected);
+        row.put(Ice.COMPLETED, connected);
+        row.put(Ice.DISCONNECTED, disconnected);
+        row.put(Ice.FAILED, failed);
+        row.put(Ice.CLOSED, closed);
+        return row;
+    }
+
+    @Test
+    public void everyStateAndIceInput() {
+        Map<State, Map<Ice, State>> expected = new EnumMap<>(State.class);
+        expected.put(State.CONNECTING, row(State.CONNECTING, State.CONNECTED, State.UNSTABLE, State.RESTARTING, State.CLOSED));
+        expected.put(State.CONNECTED, row(State.CONNECTED, State.CONNECTED, State.UNSTABLE, State.RESTARTING, State.CLOSED));
+        expected.put(State.UNSTABLE, row(State.UNSTABLE, State.CONNECTED, State.UNSTABLE, State.RESTARTING, State.CLOSED));
+        // the first restart used one attempt, FAILED uses the second
+        expected.put(State.RESTARTING, row(State.RESTARTING, State.CONNECTED, State.RESTARTING, State.RESTARTING, State.CLOSED));
+        expected.put(State.FAILED, row(State.FAILED, State.FAILED, State.FAILED, State.FAILED, State.FAILED));
+        expected.put(State.CLOSED, row(State.CLOSED, State.CLOSED, State.CLOSED, State.CLOSED, State.CLOSED));
+        for (State state : State.values()) {
+            for (Ice ice : Ice.values()) {
+                IceConnectionMonitor monitor = in(state);
+                monitor.onIceState(ice, 20);
+                assertEquals(state + " + " + ice, expected.get(state).get(ice), monitor.state());
+            }
+        }
+    }
+
+    @Test
+    public void everyStateOnTimeout() {
+        Map<State, State> expected = new EnumMap<>(State.class);
+        expected.put(State.CONNECTING, State.FAILED);
+        expected.put(State.CONNECTED, State.CONNECTED);
+        expected.put(State.UNSTABLE, State.RESTARTING);
+        expected.put(State.RESTARTING, State.RESTARTING);
+        expected.put(State.FAILED, State.FAILED);
+        expected.put(State.CLOSED, State.CLOSED);
+        for (State state : State.values()) {
+            IceConnectionMonitor monitor = in(state);
+            monitor.tick(Long.MAX_VALUE / 2);
+            assertEquals(state + " timed out", expected.get(state), monitor.state());
+        }
+    }
+
+    @Test
+    public void transientDisconnectRecoversWithoutRestart() {
+        monitor.onIceState(Ice.CHECKING, 10);
+        monitor.onIceState(Ice.CONNECTED, 50);
+        monitor.onIceState(Ice.DISCONNECTED, 200);
+        assertEquals(300, monitor.deadlineMs());
+        monitor.tick(299);
+        assertEquals(State.UNSTABLE, monitor.state());
+        monitor.onIceState(Ice.CONNECTED, 260);
+        assertEquals(-1, monitor.deadlineMs());
+        assertEquals(Arrays.asList("CONNECTING->CONNECTED", "CONNECTED->UNSTABLE",
+                "UNSTABLE->CONNECTED", "recovered 60ms 0"), recorder.events);
+    }
+
+    @Test
+    public void graceExpiryRestartsAndRecovers() {
+        monitor.onIceState(Ice.CONNECTED, 0);
+        monitor.onIceState(Ice.DISCONNECTED, 1000);
+        monitor.tick(1100);
+        assertEquals(State.RESTARTING, monitor.state());
+        assertEquals(1600, monitor.deadlineMs());
+        // a restart goes back through checking
+        monitor.onIceState(Ice.CHECKING, 1200);
+        monitor.onIceState(Ice.DISCONNECTED, 1250);
+        assertEquals(State.RESTARTING, monitor.state());
+        monitor.onIceState(Ice.COMPLETED, 1400);
+        assertEquals(Arrays.asList("CONNECTING->CONNECTED", "CONNECTED->UNSTABLE",
+                "UNSTABLE->RESTARTING", "restart 1", "RESTARTING->CONNECTED", "recovered 400ms 1"), recorder.events);
+        assertEquals(0, monitor.restarts());
+    }
+
+    @Test
+    public void restartsRunOutThenFail() {
+        monitor.onIceState(Ice.CONNECTED, 0);
+        monitor.onIceState(Ice.DISCONNECTED, 0);
+        monitor.tick(GraceMs);
+        monitor.tick(GraceMs + RestartTimeoutMs - 1);
+        assertEquals(1, monitor.restarts());
+        monitor.tick(GraceMs + RestartTimeoutMs);
+        assertEquals(2, monitor.restarts());
+        monitor.tick(GraceMs + 2 * RestartTimeoutMs);
+        assertEquals(State.FAILED, monitor.state());
+        assertEquals(-1, monitor.deadlineMs());
+        assertEquals(Arrays.asList("CONNECTING->CONNECTED", "CONNECTED->UNSTABLE",
+                "UNSTABLE->RESTARTING", "restart 1", "restart 2", "RESTARTING->FAILED"), recorder.events);
+    }
+
+    @Test
+    public void failedSkipsGracePeriod() {
+        monitor.onIceState(Ice.CONNECTED, 0);
+        monitor.onIceState(Ice.FAILED, 40);
+        assertEquals(Arrays.asList("CONNECTING->CONNECTED", "CONNECTED->RESTARTING", "restart 1"), recorder.events);
+    }
+
+    @Test
+    public void neverConnectingTimesOut() {
+        monitor.onIceState(Ice.CHECKING, 10);
+        monitor.tick(ConnectTimeoutMs - 1);
+        assertEquals(State.CONNECTING, monitor.state());
+        monitor.tick(ConnectTimeoutMs);
+        assertEquals(State.FAILED, monitor.state());
+    }
+
+    @Test
+    public void recoveryResetsRestartBudget() {
+        monitor.onIceState(Ice.CONNECTED, 0);
+        for (int outage = 0; outage < 5; outage++) {
+            long start = outage * 10000;
+            monitor.onIceState(Ice.FAILED, start);
+            monitor.onIceState(Ice.FAILED, start + 1);
+            assertEquals(State.RESTARTING, monitor.state());
+            monitor.onIceState(Ice.CONNECTED, start + 2);
+        }
+        assertEquals(State.CONNECTED, monitor.state());
+    }
+
+    @Test
+    public void resetStartsOver() {
+        monitor.onIceState(Ice.CLOSED, 0);
+        monitor.reset(5000);
+        assertEquals(State.CONNECTING, monitor.state());
+        assertEquals(5000 + ConnectTimeoutMs, monitor.deadlineMs());
+        monitor.onIceState(Ice.CONNECTED, 5100);
+        assertEquals(State.CONNECTED, monitor.state());
+    }
+}
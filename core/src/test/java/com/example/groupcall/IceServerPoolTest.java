@@ -0,0 +1,145 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class IceServerPoolTest {
+    private static final long Margin = 1000;
+
+    private static final class FakeProber implements IceServerPool.Prober {
+        final Map<String, Long> rtts = new HashMap<>();
+        final List<String> probed = new ArrayList<>();
+
+        @Override
+        public long rttMs(IceServerConfig server) {
+            probed.add(server.uri);
+            Long rtt = rtts.get(server.uri);
+            return rtt == null ? -1 : rtt;
+        }
+    }
+
+    private static final class CountingProvider implements IceServerProvider {
+        List<IceServerConfig> servers = new ArrayList<>();
+        int calls;
+
+        @Override
+        public List<IceServerConfig> getIceServers() {
+            calls++;
+            return servers;
+        }
+    }
+
+    private static List<String> uris(List<IceServerConfig> servers) {
+        List<String> uris = new ArrayList<>();
+        for (IceServerConfig server : servers) {
+            uris.add(server.uri);
+        }
+        return uris;
+    }
+
+    @Test
+    public void ranksByRoundTripAndDropsUnreachable() throws IOException {
+        FakeProber prober = new FakeProber();
+        prober.rtts.put("stun:a", 80L);
+        prober.rtts.put("turn:b?transport=udp", 20L);
+        IceServerPool pool = new IceServerPool(IceServerProvider.of(
+                new IceServerConfig("stun:a"),
+                new IceServerConfig("stun:dead"),
+                new IceServerConfig("turns:c", "user", "secret", -1),
+                new IceServerConfig("turn:b?transport=udp", "user", "secret", -1)), prober, Margin);
+        assertTrue(pool.fetch(0));
+        assertEquals(4, pool.servers().size());
+        assertEquals(Arrays.asList("turn:b?transport=udp", "stun:a", "turns:c"), uris(pool.rank()));
+        assertEquals(1, pool.unreachable());
+        // TLS is never probed
+        assertFalse(prober.probed.contains("turns:c"));
+    }
+
+    @Test
+    public void keepsEverythingWhenNothingAnswers() throws IOException {
+        IceServerPool pool = new IceServerPool(IceServerProvider.of(
+                new IceServerConfig("stun:a"), new IceServerConfig("stun:b")), new FakeProber(), Margin);
+        pool.fetch(0);
+        assertEquals(Arrays.asList("stun:a", "stun:b"), uris(pool.rank()));
+    }
+
+    @Test
+    public void refetchesBeforeCredentialsExpire() throws IOException {
+        CountingProvider provider = new CountingProvider();
+        provider.servers.add(new IceServerConfig("turn:t", "u1", "p1", 10000));
+        provider.servers.add(new IceServerConfig("turn:u", "u1", "p1", 20000));
+        IceServerPool pool = new IceServerPool(provider, new FakeProber(), Margin);
+        assertTrue(pool.fetch(0));
+        assertFalse(pool.fetch(10000 - Margin - 1));
+        provider.servers = Arrays.asList(new IceServerConfig("turn:t", "u2", "p2", 50000));
+        assertTrue(pool.fetch(10000 - Margin));
+        assertEquals("u2", pool.servers().get(0).username);
+        assertEquals(2, provider.calls);
+    }
+
+    @Test
+    public void staticServersAreFetchedOnce() throws IOException {
+        CountingProvider provider = new CountingProvider();
+        provider.servers.add(new IceServerConfig("stun:s"));
+        IceServerPool pool = new IceServerPool(provider, new FakeProber(), Margin);
+        assertTrue(pool.fetch(0));
+        assertFalse(pool.fetch(Long.MAX_VALUE - 1));
+        assertEquals(1, provider.calls);
+    }
+
+    @Test
+    public void failedFetchIsRetried() {
+        final int[] calls = {0};
+        IceServerPool pool = new IceServerPool(() -> {
+            calls[0]++;
+            throw new IOException("offline");
+        }, new FakeProber(), Margin);
+        for (int i = 0; i < 2; i++) {
+            try {
+                pool.fetch(i);
+                fail();
+            } catch (IOException expected) {
+            }
+        }
+        assertEquals(2, calls[0]);
+        assertTrue(pool.servers().isEmpty());
+        assertTrue(pool.rank().isEmpty());
+    }
+
+    @Test
+    public void parsesServerUris() {
+        IceServerConfig stun = new IceServerConfig("stun:stun.l.google.com:19302");
+        assertEquals("stun.l.google.com", stun.host());
+        assertEquals(19302, stun.port());
+        assertFalse(stun.isTurn());
+        assertTrue(stun.isUdp());
+
+        IceServerConfig turn = new IceServerConfig("turn:turn.example.com?transport=tcp", "u", "p", -1);
+        assertEquals("turn.example.com", turn.host());
+        assertEquals(IceServerConfig.DefaultPort, turn.port());
+        assertTrue(turn.isTurn());
+        assertFalse(turn.isUdp());
+
+        IceServerConfig tls = new IceServerConfig("turns:turn.example.com", "u", "p", -1);
+        assertEquals(IceServerConfig.DefaultTlsPort, tls.port());
+        assertFalse(tls.isUdp());
+
+        IceServerConfig v6 = new IceServerConfig("stun:[::1]:3479");
+        assertEquals("::1", v6.host());
+        assertEquals(3479, v6.port());
+        assertEquals(IceServerConfig.DefaultPort, new IceServerConfig("stun:[::1]").port());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherSchemes() {
+        new IceServerConfig("http://example.com");
+    }
+}
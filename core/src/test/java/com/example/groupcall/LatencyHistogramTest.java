@@ -0,0 +1,100 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private static LatencyHistogram histogram() {
+        return new LatencyHistogram(LatencyHistogram.DefaultSubBucketBits, LatencyHistogram.DefaultHighestTrackable);
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        LatencyHistogram histogram = histogram();
+        for (int i = 0; i + 1 < histogram.buckets(); i++) {
+            long lowest = histogram.lowestEquivalent(i);
+            assertEquals(i, histogram.index(lowest));
+            assertEquals(i, histogram.index(histogram.lowestEquivalent(i + 1) - 1));
+        }
+        assertEquals(histogram.buckets() - 1, histogram.index(LatencyHistogram.DefaultHighestTrackable));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsARangeSmallerThanOneBucketRow() {
+        new LatencyHistogram(5, 16);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = histogram();
+        for (long value = 1; value <= 20; value++) {
+            histogram.record(value);
+        }
+        assertEquals(20, histogram.count());
+        assertEquals(10, histogram.valueAtPercentile(50));
+        assertEquals(20, histogram.valueAtPercentile(100));
+        assertEquals(10.5, histogram.mean(), 1e-9);
+    }
+
+    @Test
+    public void percentilesStayWithinTheBucketPrecision() {
+        LatencyHistogram histogram = histogram();
+        Random random = new Random(7);
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1000 + (long) (random.nextDouble() * 50000000);
+            histogram.record(values[i]);
+        }
+        java.util.Arrays.sort(values);
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long measured = histogram.valueAtPercentile(percentile);
+            assertTrue(percentile + ": " + measured + " vs " + exact, measured >= exact);
+            assertTrue(percentile + ": " + measured + " vs " + exact, measured <= exact + exact / 32);
+        }
+        assertEquals(values[values.length - 1], histogram.max());
+    }
+
+    @Test
+    public void outOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = histogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.count());
+        assertEquals(0, histogram.valueAtPercentile(50));
+        assertEquals(LatencyHistogram.DefaultHighestTrackable, histogram.max());
+        assertEquals(LatencyHistogram.DefaultHighestTrackable, histogram.valueAtPercentile(100));
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = histogram();
+        assertEquals(0, histogram.valueAtPercentile(99));
+        assertEquals(0, histogram.mean(), 0);
+        assertEquals("n=0 p50=0us p99=0us max=0us", histogram.toString());
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        final LatencyHistogram histogram = histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long base = (t + 1) * 1000;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    histogram.record(base + i % 100);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, histogram.count());
+        assertEquals(4099, histogram.max());
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MessageFramerTest {
+    private static final int FrameBytes = 1024;
+
+    private final MessageFramer framer = new MessageFramer(FrameBytes);
+
+    private static final class Collector implements MessageReassembler.Sink {
+        final List<String> topics = new ArrayList<>();
+        final List<byte[]> payloads = new ArrayList<>();
+
+        @Override
+        public void onMessage(String topic, ByteBuffer payload) {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            topics.add(topic);
+            payloads.add(bytes);
+        }
+    }
+
+    private static byte[] random(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static MessageReassembler reassembler() {
+        return new MessageReassembler(4, 64 * 1024, 1000);
+    }
+
+    @Test
+    public void smallMessageIsOneFrame() {
+        List<ByteBuffer> frames = framer.encode(7, "chat", ByteBuffer.wrap("hi".getBytes()));
+        assertEquals(1, frames.size());
+        assertEquals(MessageFramer.HeaderLength + 4 + 2, frames.get(0).remaining());
+        MessageFramer.Frame frame = MessageFramer.decode(frames.get(0));
+        assertEquals(7, frame.messageId);
+        assertEquals(0, frame.index);
+        assertEquals(1, frame.count);
+        assertEquals("chat", frame.topic);
+        assertEquals(ByteBuffer.wrap("hi".getBytes()), frame.chunk);
+    }
+
+    @Test
+    public void emptyPayloadAndUnicodeTopic() {
+        Collector collector = new Collector();
+        ByteBuffer frame = framer.encode(1, "réaction-👍", ByteBuffer.allocate(0)).get(0);
+        assertTrue(reassembler().onFrame(frame, 0, collector));
+        assertEquals("réaction-👍", collector.topics.get(0));
+        assertEquals(0, collector.payloads.get(0).length);
+    }
+
+    @Test
+    public void framesNeverExceedTheLimit() {
+        Random random = new Random(1);
+        for (int length : new int[]{0, 1, FrameBytes - MessageFramer.HeaderLength - 6, FrameBytes, 10 * FrameBytes + 3}) {
+            for (ByteBuffer frame : framer.encode(length, "cursor", ByteBuffer.wrap(random(random, length)))) {
+                assertTrue(frame.remaining() <= FrameBytes);
+            }
+        }
+        // exactly filling the first frame still fits in one
+        assertEquals(1, framer.encode(0, "cursor", ByteBuffer.allocate(FrameBytes - MessageFramer.HeaderLength - 6)).size());
+        assertEquals(2, framer.encode(0, "cursor", ByteBuffer.allocate(FrameBytes - MessageFramer.HeaderLength - 5)).size());
+    }
+
+    @Test
+    public void encodingLeavesThePayloadUntouched() {
+        ByteBuffer payload = ByteBuffer.wrap(new byte[5000]);
+        payload.position(10);
+        framer.encode(0, "t", payload);
+        assertEquals(10, payload.position());
+    }
+
+    @Test
+    public void fragmentsReassembleInAnyOrder() {
+        Random random = new Random(2);
+        for (int round = 0; round < 50; round++) {
+            byte[] payload = random(random, random.nextInt(20 * FrameBytes));
+            List<ByteBuffer> frames = new ArrayList<>(framer.encode(round, "file", ByteBuffer.wrap(payload)));
+            Collections.shuffle(frames, random);
+            Collector collector = new Collector();
+            MessageReassembler reassembler = reassembler();
+            for (int i = 0; i < frames.size(); i++) {
+                assertEquals(i == frames.size() - 1, reassembler.onFrame(frames.get(i), 0, collector));
+            }
+            assertArrayEquals(payload, collector.payloads.get(0));
+            assertEquals("file", collector.topics.get(0));
+            assertEquals(0, reassembler.pending());
+        }
+    }
+
+    @Test
+    public void interleavedMessagesAndDuplicates() {
+        Collector collector = new Collector();
+        MessageReassembler reassembler = reassembler();
+        List<ByteBuffer> a = framer.encode(1, "a", ByteBuffer.wrap(new byte[3 * FrameBytes]));
+        List<ByteBuffer> b = framer.encode(2, "b", ByteBuffer.wrap(new byte[2 * FrameBytes]));
+        reassembler.onFrame(a.get(0), 0, collector);
+        reassembler.onFrame(b.get(1), 0, collector);
+        reassembler.onFrame(a.get(0), 0, collector);
+        reassembler.onFrame(a.get(1), 0, collector);
+        reassembler.onFrame(b.get(0), 0, collector);
+        reassembler.onFrame(b.get(2), 0, collector);
+        assertEquals(Arrays.asList("b"), collector.topics);
+        for (int i = 2; i < a.size(); i++) {
+            reassembler.onFrame(a.get(i), 0, collector);
+        }
+        assertEquals(Arrays.asList("b", "a"), collector.topics);
+        assertEquals(3 * FrameBytes, collector.payloads.get(1).length);
+    }
+
+    @Test
+    public void stalePartialsAreDropped() {
+        Collector collector = new Collector();
+        MessageReassembler reassembler = reassembler();
+        List<ByteBuffer> frames = framer.encode(1, "a", ByteBuffer.wrap(new byte[2 * FrameBytes]));
+        reassembler.onFrame(frames.get(0), 0, collector);
+        // the rest arrives after the timeout and starts a new partial instead
+        reassembler.onFrame(frames.get(1), 1000, collector);
+        reassembler.onFrame(frames.get(2), 1000, collector);
+        assertTrue(collector.topics.isEmpty());
+        assertEquals(1, reassembler.dropped());
+        assertEquals(1, reassembler.pending());
+    }
+
+    @Test
+    public void pendingMessagesAreBounded() {
+        Collector collector = new Collector();
+        MessageReassembler reassembler = reassembler();
+        for (int id = 0; id < 10; id++) {
+            reassembler.onFrame(framer.encode(id, "a", ByteBuffer.wrap(new byte[2 * FrameBytes])).get(0), 0, collector);
+        }
+        assertEquals(4, reassembler.pending());
+        assertEquals(6, reassembler.dropped());
+    }
+
+    @Test
+    public void oversizedMessagesAreDropped() {
+        Collector collector = new Collector();
+        MessageReassembler reassembler = new MessageReassembler(4, 2 * FrameBytes, 1000);
+        for (ByteBuffer frame : framer.encode(1, "a", ByteBuffer.wrap(new byte[4 * FrameBytes]))) {
+            reassembler.onFrame(frame, 0, collector);
+        }
+        assertTrue(collector.topics.isEmpty());
+        assertTrue(reassembler.dropped() >= 1);
+        // fragments after the cut start over and are only cleared by the timeout
+        reassembler.onFrame(framer.encode(2, "b", ByteBuffer.wrap(new byte[FrameBytes])).get(0), 1000, collector);
+        assertEquals(1, reassembler.pending());
+        assertTrue(collector.topics.isEmpty());
+    }
+
+    @Test
+    public void malformedFramesAreRejected() {
+        ByteBuffer good = framer.encode(1, "topic", ByteBuffer.wrap(new byte[2 * FrameBytes])).get(1);
+        List<ByteBuffer> bad = new ArrayList<>();
+        bad.add(ByteBuffer.allocate(MessageFramer.HeaderLength - 1));
+        ByteBuffer version = ByteBuffer.wrap(good.array().clone());
+        version.put(0, (byte) 9);
+        bad.add(version);
+        ByteBuffer index = ByteBuffer.wrap(good.array().clone());
+        index.putShort(5, (short) 7);
+        bad.add(index);
+        ByteBuffer topic = ByteBuffer.wrap(good.array().clone());
+        topic.putShort(9, (short) 3);
+        bad.add(topic);
+        for (ByteBuffer frame : bad) {
+            try {
+                MessageFramer.decode(frame);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLongTopics() {
+        char[] topic = new char[MessageFramer.MaxTopicBytes + 1];
+        Arrays.fill(topic, 't');
+        framer.encode(0, new String(topic), ByteBuffer.allocate(1));
+    }
+
+    @Test
+    public void rejectsPayloadsBeyondMaxFragments() {
+        MessageFramer small = new MessageFramer(MessageFramer.HeaderLength + MessageFramer.MaxTopicBytes + 1);
+        try {
+            small.encode(0, "t", ByteBuffer.allocate((int) small.maxMessageBytes() + MessageFramer.MaxTopicBytes + 1));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    // many small messages and a few large ones through the default frame size
+    @Test
+    public void framesAndReassemblesAMixedStream() {
+        MessageFramer framer = new MessageFramer(MessageFramer.DefaultMaxFrameBytes);
+        MessageReassembler reassembler = new MessageReassembler(MessageReassembler.DefaultMaxPending,
+                MessageReassembler.DefaultMaxMessageBytes, MessageReassembler.DefaultTimeoutMs);
+        final long[] received = {0};
+        MessageReassembler.Sink sink = (topic, payload) -> received[0] += payload.remaining();
+        ByteBuffer small = ByteBuffer.wrap(new byte[64]);
+        ByteBuffer large = ByteBuffer.wrap(random(new Random(3), 256 * 1024));
+        int smallMessages = 2000;
+        int largeMessages = 8;
+
+        for (int i = 0; i < smallMessages; i++) {
+            for (ByteBuffer frame : framer.encode(i, "cursor", small)) {
+                reassembler.onFrame(frame, 0, sink);
+            }
+        }
+        for (int i = 0; i < largeMessages; i++) {
+            for (ByteBuffer frame : framer.encode(i, "file", large)) {
+                reassembler.onFrame(frame, 0, sink);
+            }
+        }
+        assertEquals(smallMessages * 64L + largeMessages * 256 * 1024L, received[0]);
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NegotiationTest {
+
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    private final FakeMediaBackend backend = new FakeMediaBackend(queue::add, "v=0", 2);
+    private final SignalingTimings timings = new SignalingTimings();
+    private final CallMetrics metrics = new CallMetrics();
+    private final List<String> sent = new ArrayList<>();
+    private final List<String> failures = new ArrayList<>();
+    private boolean current = true;
+
+    private final Negotiation.Host host = new Negotiation.Host() {
+        @Override
+        public boolean isCurrent() {
+            return current;
+        }
+
+        @Override
+        public void send(String type, JSONObject payload) {
+            sent.add(type);
+        }
+
+        @Override
+        public String transformLocal(String sdp) {
+            return sdp + " local";
+        }
+
+        @Override
+        public String transformRemote(String type, String sdp) {
+            if (sdp.isEmpty()) {
+                throw new IllegalArgumentException("empty " + type);
+            }
+            return sdp;
+        }
+
+        @Override
+        public void onFailure(String error) {
+            failures.add(error);
+        }
+    };
+
+    private FakeMediaBackend.FakePeer peer;
+    private Negotiation negotiation;
+
+    private final MediaBackend.Events events = new MediaBackend.Events() {
+        @Override
+        public void onIceCandidate(MediaBackend.Candidate candidate) {
+            negotiation.onIceCandidate(candidate);
+        }
+
+        @Override
+        public void onIceConnectionChange(IceConnectionMonitor.Ice state) {
+        }
+
+        @Override
+        public void onAddStream(String label, List<String> audioTrackIds) {
+        }
+
+        @Override
+        public void onRemoveStream(String label) {
+        }
+    };
+
+    private Negotiation negotiation(boolean warm) {
+        peer = backend.createPeer("a", events);
+        negotiation = new Negotiation(peer, host, queue::add, timings, metrics, warm);
+        return negotiation;
+    }
+
+    private void drain() {
+        while (!queue.isEmpty()) {
+            queue.poll().run();
+        }
+    }
+
+    private static SignalingMessage description(String type, String sdp) {
+        SignalingMessage message = new SignalingMessage();
+        message.from = "a";
+        message.type = type;
+        message.sdpType = type;
+        message.sdp = sdp;
+        return message;
+    }
+
+    private static SignalingMessage candidate() {
+        SignalingMessage message = new SignalingMessage();
+        message.from = "a";
+        message.type = SignalingMessage.Candidate;
+        message.candidateId = "audio";
+        message.candidate = "candidate:0 1 udp 2122260223 10.0.0.9 50000 typ host generation 0";
+        return message;
+    }
+
+    @Test
+    public void offersAndSendsItsCandidates() throws JSONException {
+        Negotiation negotiation = negotiation(false);
+        negotiation.offer(SignalingMessage.Init);
+        drain();
+        assertEquals(Arrays.asList("offer", "candidate", "candidate"), sent);
+        assertTrue(negotiation.isOfferer());
+        assertTrue(negotiation.hasUnansweredOffer());
+        assertEquals(1, timings.count(SignalingMessage.Init, SignalingTimings.Stage.CREATE_OFFER));
+        assertEquals(1, timings.count(SignalingMessage.Init, SignalingTimings.Stage.SET_LOCAL));
+    }
+
+    @Test
+    public void answersAndAddsCandidatesThatCameFirst() {
+        Negotiation negotiation = negotiation(false);
+        assertTrue(negotiation.addRemoteCandidate(candidate()));
+        negotiation.answer(description(SignalingMessage.Offer, "v=0"));
+        assertEquals(1, negotiation.pendingCandidates());
+        drain();
+        assertEquals(Arrays.asList("answer", "candidate", "candidate"), sent);
+        assertEquals(0, negotiation.pendingCandidates());
+        assertEquals(1, peer.candidatesAdded());
+        assertFalse(negotiation.isOfferer());
+        assertFalse(negotiation.hasUnansweredOffer());
+        negotiation.addRemoteCandidate(candidate());
+        assertEquals(2, peer.candidatesAdded());
+    }
+
+    @Test
+    public void warmHoldsTheOfferAndCandidatesUntilSent() throws JSONException {
+        Negotiation negotiation = negotiation(true);
+        negotiation.createOffer(SignalingTimings.Local);
+        drain();
+        assertTrue(sent.isEmpty());
+        assertTrue(negotiation.sendWarmOffer());
+        drain();
+        assertEquals(Arrays.asList("offer", "candidate", "candidate"), sent);
+        assertFalse(negotiation.isWarm());
+        assertFalse(negotiation.sendWarmOffer());
+    }
+
+    @Test
+    public void adoptedBeforeTheWarmOfferExistsSendsItWhenCreated() throws JSONException {
+        Negotiation negotiation = negotiation(true);
+        negotiation.createOffer(SignalingTimings.Local);
+        negotiation.offer(SignalingMessage.Init);
+        drain();
+        assertEquals(Arrays.asList("offer", "candidate", "candidate"), sent);
+        assertEquals(0, timings.count(SignalingMessage.Init, SignalingTimings.Stage.CREATE_OFFER));
+    }
+
+    @Test
+    public void rewarmHandsTheUnansweredOfferToTheNextRemote() throws JSONException {
+        Negotiation negotiation = negotiation(false);
+        negotiation.offer(SignalingMessage.Init);
+        drain();
+        negotiation.addRemoteCandidate(candidate());
+        negotiation.rewarm();
+        assertEquals(0, negotiation.pendingCandidates());
+        sent.clear();
+        negotiation.offer(SignalingMessage.Init);
+        drain();
+        assertEquals(Arrays.asList("offer", "candidate", "candidate"), sent);
+        assertEquals(1, backend.created());
+    }
+
+    @Test
+    public void restartsIceOnlyWhenStable() throws JSONException {
+        Negotiation negotiation = negotiation(false);
+        negotiation.offer(SignalingMessage.Init);
+        drain();
+        assertFalse(negotiation.restartIce());
+        negotiation.setRemote(description(SignalingMessage.Answer, "v=0"));
+        drain();
+        sent.clear();
+        assertTrue(negotiation.restartIce());
+        drain();
+        assertEquals(Arrays.asList("offer"), sent);
+    }
+
+    @Test
+    public void renegotiatesOnlyWhenStableAfterAnAnswerAndStaysTheAnsweringSide() {
+        Negotiation negotiation = negotiation(false);
+        assertFalse(negotiation.renegotiate());
+        negotiation.answer(description(SignalingMessage.Offer, "v=0"));
+        drain();
+        sent.clear();
+        assertTrue(negotiation.renegotiate());
+        drain();
+        assertEquals(Arrays.asList("offer"), sent);
+        assertFalse(negotiation.isOfferer());
+        assertFalse(negotiation.hasUnansweredOffer());
+        assertFalse(negotiation.renegotiate());
+        assertEquals(1, timings.count(Negotiation.Renegotiation, SignalingTimings.Stage.CREATE_OFFER));
+    }
+
+    @Test
+    public void dropsCallbacksOnceNoLongerCurrent() throws JSONException {
+        Negotiation negotiation = negotiation(false);
+        negotiation.offer(SignalingMessage.Init);
+        current = false;
+        drain();
+        assertTrue(sent.isEmpty());
+        assertFalse(peer.hasLocalDescription());
+    }
+
+    @Test
+    public void reportsFailures() throws JSONException {
+        Negotiation negotiation = negotiation(false);
+        peer.failNext("boom");
+        negotiation.offer(SignalingMessage.Init);
+        drain();
+        try {
+            negotiation.setRemote(description(SignalingMessage.Answer, ""));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(Arrays.asList("create failed: boom"), failures);
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void registersTheNegotiationCommands() throws JSONException {
+        Negotiation negotiation = negotiation(false);
+        SignalingDispatcher dispatcher = new SignalingDispatcher(new CommandPipeline(), timings,
+                new SignalingDispatcher.Host() {
+                    @Override
+                    public boolean accept(SignalingMessage message) {
+                        return true;
+                    }
+
+                    @Override
+                    public void onIgnored(String reason) {
+                        fail(reason);
+                    }
+                });
+        Negotiation.register(dispatcher, peerId -> negotiation);
+        dispatcher.handle("{\"from\":\"a\",\"type\":\"candidate\",\"payload\":{\"label\":0,\"id\":\"audio\",\"candidate\":\"candidate:0\"}}");
+        dispatcher.handle("{\"from\":\"a\",\"type\":\"offer\",\"payload\":{\"type\":\"offer\",\"sdp\":\"v=0\"}}");
+        drain();
+        assertEquals(Arrays.asList("answer", "candidate", "candidate"), sent);
+        assertEquals(1, peer.candidatesAdded());
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class P2PConnectionParametersTest {
+    private static P2PConnectionParameters parameters() {
+        return new P2PConnectionParameters(true, false, 640, 480, 30, 600, "VP8", true, 32, "opus", true);
+    }
+
+    @Test
+    public void defaultsToATwoPartyMesh() {
+        P2PConnectionParameters parameters = parameters();
+        assertEquals(P2PConnectionParameters.DefaultMaxPeers, parameters.maxPeers);
+        assertEquals(P2PConnectionParameters.Topology.MESH, parameters.topology);
+        assertSame(IceServerProvider.Default, parameters.iceServerProvider);
+    }
+
+    @Test
+    public void withCopiesKeepEverythingElse() {
+        P2PConnectionParameters base = parameters();
+        P2PConnectionParameters sfu = base.withMaxPeers(9).withTopology(P2PConnectionParameters.Topology.SFU);
+        assertEquals(9, sfu.maxPeers);
+        assertEquals(P2PConnectionParameters.Topology.SFU, sfu.topology);
+        assertSame(IceServerProvider.Default, sfu.iceServerProvider);
+        assertEquals(640, sfu.videoWidth);
+        assertEquals("opus", sfu.audioCodec);
+        assertEquals(32, sfu.audioStartBitrate);
+        // the original is untouched
+        assertEquals(P2PConnectionParameters.DefaultMaxPeers, base.maxPeers);
+        assertEquals(P2PConnectionParameters.Topology.MESH, base.topology);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.groupcall;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PeerConnectionPoolTest {
+    private static final long Ms = 1000000;
+
+    // stands in for a native PeerConnection: creating one costs setup plus ICE gathering
+    private static final class FakeFactory implements PeerConnectionPool.Factory<String> {
+        final List<String> disposed = new ArrayList<>();
+        final long setupMicros;
+        int created;
+
+        FakeFactory(long setupMicros) {
+            this.setupMicros = setupMicros;
+        }
+
+        @Override
+        public String create() {
+            long until = System.nanoTime() + setupMicros * 1000;
+            while (System.nanoTime() < until) {
+                // spin, like a blocking native call
+            }
+            return "pc" + (++created);
+        }
+
+        @Override
+        public void dispose(String connection) {
+            disposed.add(connection);
+        }
+    }
+
+    private FakeFactory factory;
+    private CallMetrics metrics;
+    private PeerConnectionPool<String> pool;
+
+    @Before
+    public void setUp() {
+        factory = new FakeFactory(0);
+        metrics = new CallMetrics(0);
+        pool = new PeerConnectionPool<>(factory, 2, 1000, metrics);
+        pool.setTarget(2);
+    }
+
+    @Test
+    public void leaseHitsAfterFillAndMissesWhenEmpty() {
+        assertEquals(2, pool.fill(0, 8));
+        assertEquals("pc2", pool.lease(10 * Ms));
+        assertEquals("pc1", pool.lease(10 * Ms));
+        assertNull(pool.lease(10 * Ms));
+        assertEquals(2, metrics.getPoolHits());
+        assertEquals(1, metrics.getPoolMisses());
+    }
+
+    @Test
+    public void fillRespectsTargetAndLimit() {
+        assertEquals(1, pool.fill(0, 1));
+        assertEquals(1, pool.fill(0, 8));
+        assertEquals(0, pool.fill(0, 8));
+        pool.setTarget(5);
+        // never above maxIdle
+        assertEquals(0, pool.fill(0, 8));
+        assertEquals(2, factory.created);
+    }
+
+    @Test
+    public void expiredConnectionsAreEvicted() {
+        pool.fill(0, 8);
+        assertNull(pool.lease(1000 * Ms));
+        assertEquals(2, metrics.getPoolEvictions());
+        assertEquals(2, factory.disposed.size());
+        assertEquals(2, pool.fill(1000 * Ms, 8));
+    }
+
+    @Test
+    public void returnedConnectionKeepsItsAge() {
+        pool.fill(0, 8);
+        String leased = pool.lease(0);
+        pool.fill(500 * Ms, 8);
+        assertTrue(pool.release(leased, true, 600 * Ms));
+        // too many idle: the oldest goes, which is pc1 and not the returned pc2
+        assertEquals(1, factory.disposed.size());
+        assertEquals("pc1", factory.disposed.get(0));
+        assertEquals(1, metrics.getPoolReturns());
+        // pc2 expires first
+        assertEquals(1, pool.evictExpired(1000 * Ms));
+        assertEquals("pc2", factory.disposed.get(1));
+        assertEquals("pc3", pool.lease(1000 * Ms));
+    }
+
+    @Test
+    public void unusableOrStaleReturnsAreDisposed() {
+        pool.fill(0, 8);
+        String answered = pool.lease(0);
+        assertFalse(pool.release(answered, false, 0));
+        String stale = pool.lease(0);
+        assertFalse(pool.release(stale, true, 1000 * Ms));
+        assertEquals(2, factory.disposed.size());
+        assertEquals(0, metrics.getPoolReturns());
+        assertEquals(0, pool.idleCount());
+    }
+
+    @Test
+    public void clearDisposesIdleOnly() {
+        pool.fill(0, 8);
+        String leased = pool.lease(0);
+        pool.clear();
+        assertEquals(1, factory.disposed.size());
+        assertFalse(factory.disposed.contains(leased));
+    }
+
+    // join latency under churn: with pooling the setup runs off the join path
+    @Test
+    public void churnJoinLatency() {
+        int joins = 200;
+        long setupMicros = 200;
+        long coldNs = churn(new FakeFactory(setupMicros), 0, joins);
+        long pooledNs = churn(new FakeFactory(setupMicros), 2, joins);
+        assertTrue(pooledNs < coldNs);
+    }
+
+    // time spent between a join and having a connection with an offer, refills excluded
+    private static long churn(FakeFactory factory, int target, int joins) {
+        PeerConnectionPool<String> pool = new PeerConnectionPool<>(factory, 2, 30000, new CallMetrics(0));
+        pool.setTarget(target);
+        pool.fill(System.nanoTime(), 4);
+        long joinNs = 0;
+        for (int i = 0; i < joins; i++) {
+            long start = System.nanoTime();
+            String connection = pool.lease(start);
+            if (connection == null) {
+                connection = factory.create();
+            }
+            joinNs += System.nanoTime() - start;
+            // every other participant leaves before answering
+            pool.release(connection, i % 2 == 0, System.nanoTime());
+            pool.fill(System.nanoTime(), 4);
+        }
+        return joinNs;
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+public class PeerRegistryTest {
+
+    private static final PeerRegistry.Factory<String> Factory = new PeerRegistry.Factory<String>() {
+        @Override
+        public String create(String id, int endPoint) {
+            return id + "@" + endPoint;
+        }
+    };
+
+    @Test
+    public void assignsLowestFreeEndPoint() {
+        PeerRegistry<String> registry = new PeerRegistry<>(3);
+        assertEquals("a@0", registry.register("a", Factory));
+        assertEquals("b@1", registry.register("b", Factory));
+        assertEquals("c@2", registry.register("c", Factory));
+        assertNull(registry.register("d", Factory));
+
+        assertEquals("b@1", registry.remove("b"));
+        assertEquals("d@1", registry.register("d", Factory));
+        assertEquals(0, registry.freeEndPoints());
+    }
+
+    @Test
+    public void registeringKnownPeerReturnsExisting() {
+        PeerRegistry<String> registry = new PeerRegistry<>(2);
+        String first = registry.register("a", Factory);
+        assertSame(first, registry.register("a", Factory));
+        assertEquals(1, registry.size());
+        assertEquals(0, registry.endPointOf("a"));
+        assertEquals(-1, registry.endPointOf("b"));
+    }
+
+    @Test
+    public void removingUnknownPeerIsNoop() {
+        PeerRegistry<String> registry = new PeerRegistry<>(2);
+        assertNull(registry.remove("ghost"));
+        assertEquals(2, registry.freeEndPoints());
+    }
+
+    // a factory run under the lock would block the second register for good
+    @Test(timeout = 5000)
+    public void createsPeersOutsideTheLock() throws InterruptedException {
+        final PeerRegistry<String> registry = new PeerRegistry<>(2);
+        final CountDownLatch creating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread slow = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                registry.register("a", new PeerRegistry.Factory<String>() {
+                    @Override
+                    public String create(String id, int endPoint) {
+                        creating.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return Factory.create(id, endPoint);
+                    }
+                });
+            }
+        });
+        slow.start();
+        assertTrue(creating.await(1, TimeUnit.SECONDS));
+
+        assertEquals("b@1", registry.register("b", Factory));
+        assertEquals("b@1", registry.remove("b"));
+        assertNull(registry.get("a"));
+        assertEquals(1, registry.size());
+        release.countDown();
+        slow.join(1000);
+        assertEquals("a@0", registry.get("a"));
+    }
+
+    @Test
+    public void registeringAPeerBeingCreatedWaitsForIt() throws InterruptedException {
+        final PeerRegistry<String> registry = new PeerRegistry<>(2);
+        final CountDownLatch creating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger created = new AtomicInteger();
+        final PeerRegistry.Factory<String> factory = new PeerRegistry.Factory<String>() {
+            @Override
+            public String create(String id, int endPoint) {
+                created.incrementAndGet();
+                creating.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Factory.create(id, endPoint);
+            }
+        };
+        final String[] second = new String[1];
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                registry.register("a", factory);
+            }
+        });
+        Thread waiting = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                second[0] = registry.register("a", factory);
+            }
+        });
+        first.start();
+        assertTrue(creating.await(1, TimeUnit.SECONDS));
+        waiting.start();
+        release.countDown();
+        first.join(1000);
+        waiting.join(1000);
+        assertEquals("a@0", second[0]);
+        assertEquals(1, created.get());
+    }
+
+    @Test(timeout = 5000)
+    public void removeDuringCreateReturnsThePeerOnceCreated() throws InterruptedException {
+        final PeerRegistry<String> registry = new PeerRegistry<>(1);
+        final CountDownLatch creating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final String[] registered = new String[1];
+        final String[] removed = new String[1];
+        Thread create = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                registered[0] = registry.register("a", new PeerRegistry.Factory<String>() {
+                    @Override
+                    public String create(String id, int endPoint) {
+                        creating.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return Factory.create(id, endPoint);
+                    }
+                });
+            }
+        });
+        Thread remove = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                removed[0] = registry.remove("a");
+            }
+        });
+        create.start();
+        assertTrue(creating.await(1, TimeUnit.SECONDS));
+        remove.start();
+        // the remover waits for the peer instead of freeing its end point under it
+        remove.join(100);
+        assertTrue(remove.isAlive());
+        assertEquals(0, registry.freeEndPoints());
+
+        release.countDown();
+        create.join();
+        remove.join();
+        assertEquals("a@0", registered[0]);
+        assertSame(registered[0], removed[0]);
+        assertEquals(0, registry.size());
+        assertEquals(1, registry.freeEndPoints());
+        assertEquals("b@0", registry.register("b", Factory));
+    }
+
+    @Test
+    public void failedCreateGivesBackTheEndPoint() {
+        PeerRegistry<String> registry = new PeerRegistry<>(1);
+        try {
+            registry.register("a", new PeerRegistry.Factory<String>() {
+                @Override
+                public String create(String id, int endPoint) {
+                    throw new IllegalStateException("boom");
+                }
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertFalse(registry.contains("a"));
+        assertEquals("b@0", registry.register("b", Factory));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveCapacity() {
+        new PeerRegistry<String>(0);
+    }
+
+    @Test
+    public void concurrentJoinLeaveDoesNotLeakEndPoints() throws InterruptedException {
+        final int capacity = 4;
+        final int threads = 6;
+        final int cycles = 500;
+        final PeerRegistry<String> registry = new PeerRegistry<>(capacity);
+        // counts how many live peers hold each end point, must never exceed one
+        final AtomicIntegerArray holders = new AtomicIntegerArray(capacity);
+        final AtomicInteger conflicts = new AtomicInteger();
+        final AtomicInteger joins = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < cycles; i++) {
+                            String id = "peer-" + thread + "-" + (i % 3);
+                            if (registry.register(id, Factory) == null) {
+                                rejected.incrementAndGet();
+                                continue;
+                            }
+                            int endPoint = registry.endPointOf(id);
+                            if (holders.incrementAndGet(endPoint) > 1) {
+                                conflicts.incrementAndGet();
+                            }
+                            joins.incrementAndGet();
+                            holders.decrementAndGet(endPoint);
+                            registry.remove(id);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        start.countDown();
+        done.await();
+        assertEquals(0, conflicts.get());
+        assertEquals(0, registry.size());
+        assertEquals(capacity, registry.freeEndPoints());
+        assertEquals(threads * cycles, joins.get() + rejected.get());
+    }
+}
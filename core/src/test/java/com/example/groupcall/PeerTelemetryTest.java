@@ -0,0 +1,136 @@
+package com.example.groupcall;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PeerTelemetryTest {
+    // not an ssrc report, must be ignored
+    private static final Map<String, String> CandidatePair = send(1, 1, 1, 999, 999);
+
+    private static Map<String, String> send(long bytes, long packets, long lost, long rtt, long jitter) {
+        Map<String, String> values = new HashMap<>();
+        values.put("bytesSent", Long.toString(bytes));
+        values.put("packetsSent", Long.toString(packets));
+        values.put("packetsLost", Long.toString(lost));
+        values.put("googRtt", Long.toString(rtt));
+        values.put("googJitterReceived", Long.toString(jitter));
+        return values;
+    }
+
+    private static Map<String, String> receiveVideo(long bytes, long packets, long lost, long receivedFps, long decodedFps) {
+        Map<String, String> values = new HashMap<>();
+        values.put("bytesReceived", Long.toString(bytes));
+        values.put("packetsReceived", Long.toString(packets));
+        values.put("packetsLost", Long.toString(lost));
+        values.put("googFrameRateReceived", Long.toString(receivedFps));
+        values.put("googFrameRateDecoded", Long.toString(decodedFps));
+        values.put("googJitterReceived", "4");
+        return values;
+    }
+
+    private static void poll(PeerTelemetry telemetry, long nowMs, List<Map<String, String>> reports) {
+        telemetry.begin();
+        for (int i = 0; i < reports.size(); i++) {
+            telemetry.onReport("ssrc", reports.get(i));
+        }
+        telemetry.onReport("googCandidatePair", CandidatePair);
+        telemetry.end(nowMs);
+    }
+
+    private static TelemetrySnapshot.Summary summary(PeerTelemetry telemetry, TelemetrySnapshot.Metric metric) {
+        return telemetry.histogram(metric).summary();
+    }
+
+    @Test
+    public void firstPollRecordsOnlyGauges() {
+        PeerTelemetry telemetry = new PeerTelemetry(8);
+        poll(telemetry, 0, Arrays.asList(send(1000, 10, 0, 80, 12), receiveVideo(5000, 50, 0, 30, 28)));
+        assertEquals(80, summary(telemetry, TelemetrySnapshot.Metric.RTT_MS).last);
+        assertEquals(12, summary(telemetry, TelemetrySnapshot.Metric.JITTER_MS).last);
+        assertEquals(28, summary(telemetry, TelemetrySnapshot.Metric.FRAMES_DECODED_PER_S).last);
+        assertEquals(2, summary(telemetry, TelemetrySnapshot.Metric.FRAMES_DROPPED_PER_S).last);
+        assertEquals(0, summary(telemetry, TelemetrySnapshot.Metric.SEND_KBPS).count);
+        assertEquals(0, summary(telemetry, TelemetrySnapshot.Metric.RECEIVE_LOSS_PERMILLE).count);
+    }
+
+    @Test
+    public void ratesAndLossComeFromCounterDeltas() {
+        PeerTelemetry telemetry = new PeerTelemetry(8);
+        poll(telemetry, 0, Arrays.asList(send(0, 0, 0, 80, 12), send(0, 0, 0, 60, 3), receiveVideo(0, 0, 0, 30, 30)));
+        // 2s later: 500kbps sent over two ssrcs, 1000kbps received, 20 of 1000 sent and 10 of 500 received lost
+        poll(telemetry, 2000, Arrays.asList(send(100000, 600, 10, 90, 12), send(25000, 400, 10, 60, 3),
+                receiveVideo(250000, 490, 10, 30, 30)));
+        assertEquals(500, summary(telemetry, TelemetrySnapshot.Metric.SEND_KBPS).last);
+        assertEquals(1000, summary(telemetry, TelemetrySnapshot.Metric.RECEIVE_KBPS).last);
+        assertEquals(20, summary(telemetry, TelemetrySnapshot.Metric.SEND_LOSS_PERMILLE).last);
+        assertEquals(20, summary(telemetry, TelemetrySnapshot.Metric.RECEIVE_LOSS_PERMILLE).last);
+        assertEquals(90, summary(telemetry, TelemetrySnapshot.Metric.RTT_MS).last);
+    }
+
+    @Test
+    public void countersThatGoBackwardsSkipOneInterval() {
+        PeerTelemetry telemetry = new PeerTelemetry(8);
+        poll(telemetry, 0, Arrays.asList(send(100000, 1000, 0, 80, 1)));
+        poll(telemetry, 1000, Arrays.asList(send(200000, 2000, 0, 80, 1)));
+        // new ssrc after an ICE restart
+        poll(telemetry, 2000, Arrays.asList(send(5000, 50, 0, 80, 1)));
+        poll(telemetry, 3000, Arrays.asList(send(105000, 1050, 0, 80, 1)));
+        assertArrayEquals(new long[]{800, 800}, telemetry.histogram(TelemetrySnapshot.Metric.SEND_KBPS).window());
+    }
+
+    @Test
+    public void missingOrGarbledValuesAreIgnored() {
+        PeerTelemetry telemetry = new PeerTelemetry(8);
+        Map<String, String> values = new HashMap<>();
+        values.put("bytesSent", "n/a");
+        values.put("googRtt", "");
+        poll(telemetry, 0, Arrays.asList(values));
+        poll(telemetry, 1000, Arrays.asList(values));
+        assertEquals(0, summary(telemetry, TelemetrySnapshot.Metric.RTT_MS).count);
+        assertEquals(0, summary(telemetry, TelemetrySnapshot.Metric.SEND_KBPS).last);
+        assertEquals(0, summary(telemetry, TelemetrySnapshot.Metric.SEND_LOSS_PERMILLE).count);
+    }
+
+    @Test
+    public void snapshotCarriesTheIceState() {
+        PeerTelemetry telemetry = new PeerTelemetry(8);
+        assertEquals("CONNECTING", telemetry.snapshot("a").iceState);
+        telemetry.setIceState(IceConnectionMonitor.State.UNSTABLE);
+        TelemetrySnapshot.PeerStats stats = telemetry.snapshot("a");
+        assertEquals("a", stats.peerId);
+        assertEquals("UNSTABLE", stats.iceState);
+        assertEquals(0, stats.get(TelemetrySnapshot.Metric.RTT_MS).count);
+    }
+
+    // a stats poll of a peer with audio and video both ways, as libjingle reports it every 2s
+    @Test
+    public void pollDoesNotAllocate() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+        List<Map<String, String>> reports = Arrays.asList(send(123456, 1000, 3, 80, 5), send(23456, 500, 1, 80, 2),
+                receiveVideo(654321, 2000, 7, 30, 29), receiveVideo(54321, 500, 0, 30, 30));
+        PeerTelemetry telemetry = new PeerTelemetry(TelemetryCollector.DefaultWindow);
+        int polls = 200000;
+        for (int i = 0; i < polls; i++) {
+            poll(telemetry, i, reports);
+        }
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = allocations.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < polls; i++) {
+            poll(telemetry, polls + i, reports);
+        }
+        long allocated = allocations.getThreadAllocatedBytes(thread) - allocatedBefore;
+        assertTrue(allocated / polls < 8);
+    }
+}
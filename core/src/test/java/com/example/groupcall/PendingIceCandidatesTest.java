@@ -0,0 +1,88 @@
+package com.example.groupcall;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PendingIceCandidatesTest {
+    private CallMetrics metrics;
+    private PendingIceCandidates<String> pending;
+    private List<String> applied;
+    private PendingIceCandidates.Sink<String> sink;
+
+    @Before
+    public void setUp() {
+        metrics = new CallMetrics();
+        pending = new PendingIceCandidates<>(4, metrics);
+        applied = new ArrayList<>();
+        sink = applied::add;
+    }
+
+    // replays signaling messages the way the command map sees them
+    private void deliver(String... messages) {
+        for (String message : messages) {
+            if (message.startsWith("candidate:")) {
+                pending.add(message, sink);
+            } else if (message.equals("offer") || message.equals("answer")) {
+                pending.onRemoteDescriptionSet(sink);
+            }
+        }
+    }
+
+    @Test
+    public void candidatesBeforeOfferAreDrainedInOrder() {
+        deliver("candidate:1", "candidate:2", "candidate:3");
+        assertTrue(applied.isEmpty());
+        assertEquals(3, pending.size());
+
+        deliver("offer");
+        assertEquals(Arrays.asList("candidate:1", "candidate:2", "candidate:3"), applied);
+        assertEquals(0, pending.size());
+        assertEquals(3, metrics.getCandidatesQueued());
+        assertEquals(3, metrics.getCandidatesDrained());
+        assertEquals(0, metrics.getCandidatesDropped());
+    }
+
+    @Test
+    public void candidatesAfterAnswerAreAppliedDirectly() {
+        deliver("candidate:1", "answer", "candidate:2", "candidate:3");
+        assertEquals(Arrays.asList("candidate:1", "candidate:2", "candidate:3"), applied);
+        assertEquals(1, metrics.getCandidatesQueued());
+        assertEquals(1, metrics.getCandidatesDrained());
+    }
+
+    @Test
+    public void overflowIsDroppedAndCounted() {
+        deliver("candidate:1", "candidate:2", "candidate:3", "candidate:4", "candidate:5", "candidate:6");
+        assertEquals(4, pending.size());
+        assertEquals(2, metrics.getCandidatesDropped());
+
+        deliver("offer");
+        assertEquals(Arrays.asList("candidate:1", "candidate:2", "candidate:3", "candidate:4"), applied);
+    }
+
+    @Test
+    public void clearCountsQueuedCandidatesAsDropped() {
+        deliver("candidate:1", "candidate:2");
+        assertEquals(2, pending.clear());
+        assertEquals(2, metrics.getCandidatesDropped());
+
+        deliver("offer");
+        assertTrue(applied.isEmpty());
+    }
+
+    @Test
+    public void timeToFirstConnectedKeepsFirstValue() {
+        assertEquals(-1, metrics.getTimeToFirstConnectedMs());
+        metrics.onPeerConnected(120);
+        metrics.onPeerConnected(80);
+        assertEquals(120, metrics.getTimeToFirstConnectedMs());
+        assertEquals(80, metrics.getLastTimeToConnectedMs());
+        assertEquals(2, metrics.getConnectedPeers());
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResourceSnapshotTest {
+
+    @Test
+    public void foregroundCallHoldsVideo() {
+        ResourceSnapshot snapshot = new ResourceSnapshot(false, 3, 1, 1, 1, 2, 2, 2, 4, 1, true);
+        assertFalse(snapshot.isVideoReleased());
+        assertEquals("ResourceSnapshot{background=false, peerConnections=3 (1 pooled), localTracks=1v/1a, "
+                + "remoteTracks=2v/2a, renderers=2, dataChannels=4, sockets=1, capturing=true}", snapshot.toString());
+    }
+
+    @Test
+    public void backgroundKeepsOnlyAudio() {
+        assertTrue(new ResourceSnapshot(true, 3, 1, 0, 1, 0, 2, 0, 4, 1, false).isVideoReleased());
+    }
+
+    @Test
+    public void anyVideoLeftIsReported() {
+        assertFalse(new ResourceSnapshot(true, 3, 1, 0, 1, 0, 2, 1, 4, 1, false).isVideoReleased());
+        assertFalse(new ResourceSnapshot(true, 3, 1, 0, 1, 1, 2, 0, 4, 1, false).isVideoReleased());
+        assertFalse(new ResourceSnapshot(true, 3, 1, 1, 1, 0, 2, 0, 4, 1, false).isVideoReleased());
+        assertFalse(new ResourceSnapshot(true, 3, 1, 0, 1, 0, 2, 0, 4, 1, true).isVideoReleased());
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.groupcall;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RingHistogramTest {
+
+    @Test
+    public void capacityIsRoundedToAPowerOfTwo() {
+        assertEquals(64, new RingHistogram(64).capacity());
+        assertEquals(64, new RingHistogram(33).capacity());
+        assertEquals(1, new RingHistogram(1).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyRings() {
+        new RingHistogram(0);
+    }
+
+    @Test
+    public void emptySummaryIsAllZero() {
+        TelemetrySnapshot.Summary summary = new RingHistogram(8).summary();
+        assertEquals(0, summary.count);
+        assertEquals(0, summary.p95);
+        assertEquals(0, new RingHistogram(8).window().length);
+    }
+
+    @Test
+    public void windowKeepsTheMostRecentValues() {
+        RingHistogram histogram = new RingHistogram(4);
+        for (long value = 1; value <= 10; value++) {
+            histogram.record(value);
+        }
+        assertArrayEquals(new long[]{7, 8, 9, 10}, histogram.window());
+        assertEquals(10, histogram.count());
+    }
+
+    @Test
+    public void summaryUsesNearestRankPercentiles() {
+        RingHistogram histogram = new RingHistogram(128);
+        for (long value = 100; value >= 1; value--) {
+            histogram.record(value);
+        }
+        TelemetrySnapshot.Summary summary = histogram.summary();
+        assertEquals(100, summary.count);
+        assertEquals(1, summary.last);
+        assertEquals(1, summary.min);
+        assertEquals(100, summary.max);
+        assertEquals(50.5, summary.mean, 1e-9);
+        assertEquals(50, summary.p50);
+        assertEquals(95, summary.p95);
+    }
+
+    @Test
+    public void bucketsCountEveryValueByPowerOfTwo() {
+        assertEquals(0, RingHistogram.bucket(-5));
+        assertEquals(0, RingHistogram.bucket(0));
+        assertEquals(1, RingHistogram.bucket(1));
+        assertEquals(2, RingHistogram.bucket(3));
+        assertEquals(11, RingHistogram.bucket(1024));
+        assertEquals(63, RingHistogram.bucket(Long.MAX_VALUE));
+        RingHistogram histogram = new RingHistogram(2);
+        for (int i = 0; i < 10; i++) {
+            histogram.record(i % 2 == 0 ? 5 : 1000);
+        }
+        assertEquals(5, histogram.bucketCount(RingHistogram.bucket(5)));
+        assertEquals(5, histogram.bucketCount(RingHistogram.bucket(1000)));
+    }
+
+    @Test
+    public void concurrentWritersLoseNothing() throws InterruptedException {
+        RingHistogram histogram = new RingHistogram(1024);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < 100000; i++) {
+                    histogram.record(7);
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(400000, histogram.count());
+        assertEquals(400000, histogram.bucketCount(RingHistogram.bucket(7)));
+        for (long value : histogram.window()) {
+            assertEquals(7, value);
+        }
+    }
+
+    // recording sits on the stats hot path and must not allocate
+    @Test
+    public void recordingIsAllocationFree() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+        long thread = Thread.currentThread().getId();
+        RingHistogram histogram = new RingHistogram(RingHistogram.DefaultCapacity);
+        int records = 2000000;
+        for (int i = 0; i < records; i++) {
+            histogram.record(i & 1023);
+        }
+        long allocatedBefore = allocations.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < records; i++) {
+            histogram.record(i & 1023);
+        }
+        long allocated = allocations.getThreadAllocatedBytes(thread) - allocatedBefore;
+        // the measurement itself may allocate a little, a record never does
+        assertTrue(allocated < 4096);
+    }
+}
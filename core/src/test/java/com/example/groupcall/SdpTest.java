@@ -0,0 +1,212 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SdpTest {
+    private static final String[] AudioCodecs = {"opus/48000/2", "ISAC/16000", "G722/8000", "PCMU/8000", "PCMA/8000", "telephone-event/8000"};
+    private static final String[] VideoCodecs = {"VP8/90000", "VP9/90000", "H264/90000", "red/90000", "ulpfec/90000", "rtx/90000"};
+    private static final String[] Feedback = {"nack", "nack pli", "ccm fir", "goog-remb", "transport-cc"};
+    private static final String[] Directions = {"sendrecv", "sendonly", "recvonly", "inactive"};
+
+    @Test
+    public void parsesTypedFieldsOfBrowserOffer() throws IOException {
+        Sdp sdp = Sdp.parse(SdpTransformersTest.load("chrome-offer.sdp"));
+        assertEquals(2, sdp.media.size());
+
+        Sdp.Media audio = sdp.media("audio");
+        assertEquals(9, audio.port);
+        assertEquals("RTP/SAVPF", audio.protocol);
+        assertEquals("audio", audio.mid);
+        assertEquals("sendrecv", audio.direction);
+        assertEquals(10, audio.codecs.size());
+        Sdp.Codec opus = audio.codecs.get(0);
+        assertEquals("111", opus.payloadType);
+        assertEquals("opus", opus.name);
+        assertEquals(48000, opus.clockRate);
+        assertEquals(2, opus.channels);
+        assertEquals("minptime=10", opus.fmtp);
+
+        Sdp.Media video = sdp.media("video");
+        assertEquals("VP8", video.codecs.get(0).name);
+        assertEquals(4, video.codec("VP9").feedback.size());
+        assertEquals("apt=100", video.codec("rtx").fmtp);
+        assertNull(video.codec("H264"));
+
+        assertNull(sdp.fingerprint);
+        assertEquals("sha-256", sdp.fingerprint().algorithm);
+        assertTrue(sdp.fingerprint().value.startsWith("3A:8E:1F"));
+    }
+
+    @Test
+    public void codecsFollowMediaLineOrder() throws IOException {
+        String sdp = SdpTransformers.preferCodec("video", "VP9").transform(SdpTransformersTest.load("chrome-offer.sdp"));
+        assertEquals("VP9", Sdp.parse(sdp).media("video").codecs.get(0).name);
+    }
+
+    @Test
+    public void serializesResourcesUnchanged() throws IOException {
+        for (String name : new String[]{"chrome-offer.sdp", "android-answer.sdp", "audio-only-offer.sdp",
+                "chrome-offer.local.sdp", "android-answer.remote.sdp"}) {
+            String text = SdpTransformersTest.load(name);
+            assertEquals(name, text, Sdp.parse(text).serialize());
+            // LF input comes out as CRLF
+            assertEquals(name, text, Sdp.parse(text.replace("\r\n", "\n")).serialize());
+        }
+    }
+
+    @Test
+    public void parsesCandidates() {
+        Sdp.Candidate candidate = Sdp.Candidate.parse(
+                "candidate:842163049 1 udp 1677729535 203.0.113.7 46154 typ srflx raddr 10.0.0.2 rport 46154 generation 0");
+        assertNotNull(candidate);
+        assertEquals("842163049", candidate.foundation);
+        assertEquals(1, candidate.component);
+        assertEquals(1677729535L, candidate.priority);
+        assertEquals("203.0.113.7", candidate.address);
+        assertEquals(46154, candidate.port);
+        assertEquals("srflx", candidate.type);
+        assertNull(Sdp.Candidate.parse("candidate:1 1 udp"));
+        assertNull(Sdp.Candidate.parse("candidate:1 x udp 1 1.2.3.4 5 typ host"));
+    }
+
+    @Test
+    public void rejectsMalformedInput() {
+        for (String bad : new String[]{null, "", "\r\n", "o=- 1 2 IN IP4 127.0.0.1\r\n", "v=0\r\nnot a line\r\n",
+                "v=0\r\nm=audio\r\n", "v=0\r\nm=audio x RTP/SAVPF 0\r\n"}) {
+            try {
+                Sdp.parse(bad);
+                fail("accepted " + bad);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void randomDescriptionsRoundTrip() {
+        Random random = new Random(20161018L);
+        for (int i = 0; i < 500; i++) {
+            Generated generated = generate(random, 1 + random.nextInt(6));
+            Sdp parsed = Sdp.parse(generated.text.toString());
+            assertEquals(generated.text.toString(), parsed.serialize());
+            assertEquals(parsed, Sdp.parse(parsed.serialize()));
+            assertEquals(parsed.hashCode(), Sdp.parse(parsed.serialize()).hashCode());
+
+            assertEquals(generated.codecs.size(), parsed.media.size());
+            for (int m = 0; m < parsed.media.size(); m++) {
+                Sdp.Media media = parsed.media.get(m);
+                assertEquals(generated.codecs.get(m), names(media.codecs));
+                assertEquals(generated.candidates.get(m).intValue(), media.candidates.size());
+                assertEquals(String.valueOf(m), media.mid);
+            }
+        }
+    }
+
+    @Test
+    public void parsesLargeDescription() {
+        // a large SFU style description: 32 media sections with candidates
+        String text = generate(new Random(7), 32).text.toString();
+        Sdp parsed = Sdp.parse(text);
+        assertEquals(32, parsed.media.size());
+        assertEquals(text, parsed.serialize());
+    }
+
+    private static List<String> names(List<Sdp.Codec> codecs) {
+        List<String> names = new ArrayList<>();
+        for (Sdp.Codec codec : codecs) {
+            names.add(codec.name);
+        }
+        return names;
+    }
+
+    private static final class Generated {
+        final StringBuilder text = new StringBuilder();
+        final List<List<String>> codecs = new ArrayList<>();
+        final List<Integer> candidates = new ArrayList<>();
+    }
+
+    private static Generated generate(Random random, int sections) {
+        Generated generated = new Generated();
+        StringBuilder out = generated.text;
+        line(out, "v=0");
+        line(out, "o=- " + Math.abs(random.nextLong()) + " 2 IN IP4 127.0.0.1");
+        line(out, "s=-");
+        line(out, "t=0 0");
+        if (random.nextBoolean()) {
+            line(out, "a=fingerprint:sha-256 " + hex(random));
+        }
+        line(out, "a=msid-semantic: WMS ARDAMS");
+        int payloadType = 96;
+        for (int m = 0; m < sections; m++) {
+            boolean video = random.nextBoolean();
+            String[] available = video ? VideoCodecs : AudioCodecs;
+            int count = 1 + random.nextInt(available.length);
+            List<String> names = new ArrayList<>();
+            List<String> payloadTypes = new ArrayList<>();
+            for (int c = 0; c < count; c++) {
+                names.add(available[c].substring(0, available[c].indexOf('/')));
+                payloadTypes.add(Integer.toString(payloadType++ % 128));
+            }
+            StringBuilder mLine = new StringBuilder("m=").append(video ? "video" : "audio").append(' ')
+                    .append(random.nextInt(65536));
+            if (random.nextInt(10) == 0) {
+                mLine.append('/').append(2);
+            }
+            mLine.append(random.nextBoolean() ? " UDP/TLS/RTP/SAVPF" : " RTP/SAVPF");
+            for (String pt : payloadTypes) {
+                mLine.append(' ').append(pt);
+            }
+            line(out, mLine.toString());
+            line(out, "c=IN IP4 0.0.0.0");
+            if (random.nextBoolean()) {
+                line(out, "b=AS:" + (30 + random.nextInt(2500)));
+            }
+            line(out, "a=mid:" + m);
+            line(out, "a=" + Directions[random.nextInt(Directions.length)]);
+            if (random.nextBoolean()) {
+                line(out, "a=fingerprint:sha-256 " + hex(random));
+            }
+            for (int c = 0; c < count; c++) {
+                String pt = payloadTypes.get(c);
+                line(out, "a=rtpmap:" + pt + " " + available[c]);
+                if (random.nextBoolean()) {
+                    line(out, "a=fmtp:" + pt + " minptime=10;useinbandfec=" + random.nextInt(2));
+                }
+                int feedback = video ? random.nextInt(Feedback.length) : 0;
+                for (int f = 0; f < feedback; f++) {
+                    line(out, "a=rtcp-fb:" + pt + " " + Feedback[f]);
+                }
+            }
+            int candidates = random.nextInt(4);
+            for (int c = 0; c < candidates; c++) {
+                line(out, "a=candidate:" + random.nextInt(Integer.MAX_VALUE) + " 1 udp " + (random.nextInt(Integer.MAX_VALUE) + 1L)
+                        + " 10.0." + random.nextInt(256) + "." + random.nextInt(256) + " " + random.nextInt(65536) + " typ host generation 0");
+            }
+            line(out, "a=ssrc:" + random.nextInt(Integer.MAX_VALUE) + " cname:" + Long.toHexString(random.nextLong()));
+            generated.codecs.add(names);
+            generated.candidates.add(candidates);
+        }
+        return generated;
+    }
+
+    private static String hex(Random random) {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < 32; i++) {
+            if (i > 0) {
+                hex.append(':');
+            }
+            hex.append(String.format("%02X", random.nextInt(256)));
+        }
+        return hex.toString();
+    }
+
+    private static void line(StringBuilder out, String line) {
+        out.append(line).append("\r\n");
+    }
+}
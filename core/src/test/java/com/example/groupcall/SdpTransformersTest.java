@@ -0,0 +1,119 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Golden-file tests for the SDP rewrites. Inputs and expected outputs live in
+ * src/test/resources/sdp and are stored with LF line endings; they are
+ * converted to CRLF on load since that is what the native stack produces.
+ */
+public class SdpTransformersTest {
+
+    // what WebRTCClient applies to its own offers/answers with the MainActivity parameters
+    static SdpTransformer localTransformer() {
+        return SdpTransformers.chain(
+                SdpTransformers.preferCodec("video", "VP9"),
+                SdpTransformers.preferCodec("audio", "opus"),
+                SdpTransformers.opusDtxAndFec(),
+                SdpTransformers.videoStartBitrate("VP9", 600));
+    }
+
+    // what WebRTCClient applies to a remote description with an 800 kbps video and 32 kbps audio send budget
+    static SdpTransformer remoteTransformer() {
+        return SdpTransformers.chain(
+                SdpTransformers.preferCodec("video", "VP9"),
+                SdpTransformers.preferCodec("audio", "opus"),
+                SdpTransformers.bandwidth("video", 800),
+                SdpTransformers.opusMaxAverageBitrate(32));
+    }
+
+    static String load(String name) throws IOException {
+        InputStream in = SdpTransformersTest.class.getClassLoader().getResourceAsStream("sdp/" + name);
+        assertNotNull("missing resource sdp/" + name, in);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, n);
+            }
+            return out.toString("UTF-8").replace("\r\n", "\n").replace("\n", "\r\n");
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void localOfferMatchesGolden() throws IOException {
+        assertEquals(load("chrome-offer.local.sdp"), localTransformer().transform(load("chrome-offer.sdp")));
+    }
+
+    @Test
+    public void audioOnlyOfferMatchesGolden() throws IOException {
+        assertEquals(load("audio-only-offer.local.sdp"), localTransformer().transform(load("audio-only-offer.sdp")));
+    }
+
+    @Test
+    public void remoteAnswerMatchesGolden() throws IOException {
+        assertEquals(load("android-answer.remote.sdp"), remoteTransformer().transform(load("android-answer.sdp")));
+    }
+
+    @Test
+    public void transformsAreIdempotent() throws IOException {
+        for (String name : new String[]{"chrome-offer.sdp", "android-answer.sdp", "audio-only-offer.sdp"}) {
+            String sdp = load(name);
+            String local = localTransformer().transform(sdp);
+            assertEquals(name, local, localTransformer().transform(local));
+            String remote = remoteTransformer().transform(sdp);
+            assertEquals(name, remote, remoteTransformer().transform(remote));
+        }
+    }
+
+    @Test
+    public void missingCodecLeavesSdpUntouched() throws IOException {
+        String sdp = load("chrome-offer.sdp");
+        assertEquals(sdp, SdpTransformers.preferCodec("video", "H264").transform(sdp));
+        assertEquals(sdp, SdpTransformers.videoStartBitrate("H264", 600).transform(sdp));
+        assertEquals(sdp, SdpTransformers.bandwidth("application", 100).transform(sdp));
+        assertEquals(sdp, SdpTransformers.bandwidth("video", 0).transform(sdp));
+    }
+
+    @Test
+    public void bandwidthReplacesExistingLimit() throws IOException {
+        String sdp = SdpTransformers.bandwidth("video", 300).transform(load("android-answer.sdp"));
+        assertFalse(sdp.contains("b=AS:1200"));
+        assertTrue(sdp.contains("c=IN IP4 0.0.0.0\r\nb=AS:300\r\n"));
+        // the audio limit is a different section and stays
+        assertTrue(sdp.contains("b=AS:64\r\n"));
+    }
+
+    @Test
+    public void codecParameterMergesIntoExistingFmtp() throws IOException {
+        String sdp = SdpTransformers.opusDtxAndFec().transform(load("android-answer.sdp"));
+        assertTrue(sdp.contains("a=fmtp:111 minptime=10;useinbandfec=1;usedtx=1\r\n"));
+    }
+
+    // the remote description is what caps our encoder, and fmtp carries bits per second
+    @Test
+    public void opusMaxAverageBitrateSurvivesParsingTheRemoteDescription() throws IOException {
+        Sdp remote = Sdp.parse(remoteTransformer().transform(load("android-answer.sdp")));
+        Sdp.Codec opus = remote.media("audio").codec("opus");
+        assertNotNull(opus);
+        assertTrue(opus.fmtp, opus.fmtp.contains("maxaveragebitrate=32000"));
+        assertTrue(Sdp.parse(remote.serialize()).serialize().contains("a=fmtp:111 minptime=10;useinbandfec=0;maxaveragebitrate=32000\r\n"));
+        // our own offer leaves the remote's encoder alone
+        assertFalse(localTransformer().transform(load("chrome-offer.sdp")).contains("maxaveragebitrate"));
+    }
+
+    @Test
+    public void keepsLineSeparatorOfInput() throws IOException {
+        String crlf = load("audio-only-offer.sdp");
+        String lf = crlf.replace("\r\n", "\n");
+        assertEquals(localTransformer().transform(crlf).replace("\r\n", "\n"), localTransformer().transform(lf));
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.groupcall;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SfuSignalingTest {
+
+    /**
+     * Stand-in for the forwarding server's signaling side: keeps the roster and
+     * pushes it to every connected client whenever someone joins or leaves.
+     */
+    private static final class FakeSfuServer {
+        private final LinkedHashMap<String, FakeClient> clients = new LinkedHashMap<>();
+        private final LinkedHashMap<String, String> roster = new LinkedHashMap<>();
+
+        void receive(String from, String to, String type, JSONObject payload) throws Exception {
+            assertEquals(SfuSignaling.ServerId, to);
+            // round trip through text, as it would over socket.io
+            JSONObject frame = new JSONObject(payload.toString());
+            if (SfuSignaling.Join.equals(type)) {
+                roster.put("stream-" + from, from);
+                assertEquals(from, frame.getString("name"));
+            } else if (SfuSignaling.Leave.equals(type)) {
+                roster.remove("stream-" + from);
+                clients.remove(from);
+            } else {
+                fail("unexpected " + type);
+            }
+            broadcast();
+        }
+
+        private void broadcast() throws Exception {
+            for (FakeClient client : clients.values()) {
+                LinkedHashMap<String, String> others = new LinkedHashMap<>(roster);
+                others.remove("stream-" + client.id);
+                String frame = new JSONObject()
+                        .put("from", SfuSignaling.ServerId)
+                        .put("type", SfuSignaling.Participants)
+                        .put("payload", SfuSignaling.participants(others))
+                        .toString();
+                client.onFrame(frame);
+            }
+        }
+    }
+
+    private static final class FakeClient implements SfuRoster.Listener {
+        final String id;
+        final FakeSfuServer server;
+        final SfuRoster roster;
+        final JsonSignalingCodec codec = new JsonSignalingCodec();
+        final List<String> events = new ArrayList<>();
+
+        FakeClient(String id, FakeSfuServer server, int capacity) {
+            this.id = id;
+            this.server = server;
+            this.roster = new SfuRoster(capacity);
+        }
+
+        void join() throws Exception {
+            server.clients.put(id, this);
+            server.receive(id, SfuSignaling.ServerId, SfuSignaling.Join, SfuSignaling.join(id));
+        }
+
+        void leave() throws Exception {
+            server.receive(id, SfuSignaling.ServerId, SfuSignaling.Leave, SfuSignaling.leave());
+        }
+
+        void onFrame(String frame) throws Exception {
+            SignalingMessage message = new SignalingMessage();
+            assertTrue(codec.decode(frame, message));
+            assertEquals(SfuSignaling.ServerId, message.from);
+            assertEquals(SfuSignaling.Participants, message.type);
+            roster.update(SfuSignaling.parseParticipants(message.payload), this);
+        }
+
+        @Override
+        public void onParticipantJoined(String participantId, String streamLabel, int endPoint) {
+            events.add("+" + participantId + "@" + endPoint);
+        }
+
+        @Override
+        public void onParticipantLeft(String participantId, String streamLabel, int endPoint) {
+            events.add("-" + participantId + "@" + endPoint);
+        }
+    }
+
+    @Test
+    public void participantsRoundTrip() throws Exception {
+        Map<String, String> roster = new LinkedHashMap<>();
+        roster.put("s1", "alice");
+        roster.put("s2", "bob");
+        JSONObject payload = new JSONObject(SfuSignaling.participants(roster).toString());
+        assertEquals(roster, SfuSignaling.parseParticipants(payload));
+    }
+
+    @Test
+    public void clientsSeeJoinsAndLeavesThroughServer() throws Exception {
+        FakeSfuServer server = new FakeSfuServer();
+        FakeClient alice = new FakeClient("alice", server, 4);
+        FakeClient bob = new FakeClient("bob", server, 4);
+        FakeClient carol = new FakeClient("carol", server, 4);
+
+        alice.join();
+        bob.join();
+        carol.join();
+        assertEquals(Arrays.asList("+bob@0", "+carol@1"), alice.events);
+        assertEquals(Arrays.asList("+alice@0", "+carol@1"), bob.events);
+        assertEquals(2, carol.roster.size());
+
+        bob.leave();
+        assertEquals(Arrays.asList("+bob@0", "+carol@1", "-bob@0"), alice.events);
+        assertEquals(-1, alice.roster.endPointOf("stream-bob"));
+        assertEquals("carol", alice.roster.participantOf("stream-carol"));
+
+        // the freed end point is reused by the next participant
+        new FakeClient("dave", server, 4).join();
+        assertEquals("+dave@0", alice.events.get(alice.events.size() - 1));
+    }
+
+    @Test
+    public void participantsBeyondCapacityWaitForAFreeEndPoint() throws Exception {
+        FakeSfuServer server = new FakeSfuServer();
+        FakeClient alice = new FakeClient("alice", server, 1);
+        alice.join();
+        FakeClient bob = new FakeClient("bob", server, 1);
+        bob.join();
+        new FakeClient("carol", server, 1).join();
+        assertEquals(Arrays.asList("+bob@0"), alice.events);
+
+        bob.leave();
+        assertEquals(Arrays.asList("+bob@0", "-bob@0", "+carol@0"), alice.events);
+    }
+
+    @Test
+    public void clearReportsEveryParticipantAsLeft() {
+        SfuRoster roster = new SfuRoster(4);
+        final List<String> left = new ArrayList<>();
+        SfuRoster.Listener listener = new SfuRoster.Listener() {
+            @Override
+            public void onParticipantJoined(String participantId, String streamLabel, int endPoint) {
+            }
+
+            @Override
+            public void onParticipantLeft(String participantId, String streamLabel, int endPoint) {
+                left.add(participantId);
+            }
+        };
+        Map<String, String> update = new LinkedHashMap<>();
+        update.put("s1", "a");
+        update.put("s2", "b");
+        roster.update(update, listener);
+        roster.clear(listener);
+        assertEquals(2, left.size());
+        assertEquals(0, roster.size());
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.groupcall;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SignalingBatcherTest {
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Stand-in for the socket.io relay: every emit costs a fixed hop delay on a
+     * single delivery thread, like frames queued on one websocket.
+     */
+    private static class FakeSocket implements SignalingBatcher.Transport<String> {
+        private final ScheduledExecutorService wire = Executors.newSingleThreadScheduledExecutor();
+        private final long hopMicros;
+        private final List<String> delivered = new ArrayList<>();
+        private final CountDownLatch done;
+        private int emits;
+
+        FakeSocket(long hopMicros, int expectedMessages) {
+            this.hopMicros = hopMicros;
+            this.done = new CountDownLatch(expectedMessages);
+        }
+
+        @Override
+        public synchronized void send(String to, final List<String> messages) {
+            emits++;
+            final List<String> frame = new ArrayList<>(messages);
+            wire.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long until = System.nanoTime() + hopMicros * 1000;
+                    while (System.nanoTime() < until) {
+                        Thread.yield();
+                    }
+                    synchronized (FakeSocket.this) {
+                        delivered.addAll(frame);
+                    }
+                    for (int i = 0; i < frame.size(); i++) {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        synchronized int emits() {
+            return emits;
+        }
+
+        synchronized List<String> delivered() {
+            return new ArrayList<>(delivered);
+        }
+
+        void close() {
+            wire.shutdownNow();
+        }
+    }
+
+    private static final class Recorder implements SignalingBatcher.Transport<String> {
+        final List<List<String>> frames = new ArrayList<>();
+
+        @Override
+        public void send(String to, List<String> messages) {
+            frames.add(new ArrayList<>(messages));
+        }
+    }
+
+    @Test
+    public void candidatesAreCoalescedUntilFlush() {
+        Recorder recorder = new Recorder();
+        SignalingBatcher<String> batcher = new SignalingBatcher<>(recorder, scheduler, 60000, 16);
+        batcher.enqueue("a", "c1", false);
+        batcher.enqueue("a", "c2", false);
+        batcher.enqueue("b", "c3", false);
+        assertTrue(recorder.frames.isEmpty());
+
+        batcher.flushAll();
+        assertEquals(2, recorder.frames.size());
+        assertEquals(3, batcher.getMessagesSent());
+        assertEquals(2, batcher.getFramesSent());
+    }
+
+    @Test
+    public void urgentMessageFlushesPendingCandidatesInOrder() {
+        Recorder recorder = new Recorder();
+        SignalingBatcher<String> batcher = new SignalingBatcher<>(recorder, scheduler, 60000, 16);
+        batcher.enqueue("a", "c1", false);
+        batcher.enqueue("a", "c2", false);
+        batcher.enqueue("a", "offer", true);
+        assertEquals(1, recorder.frames.size());
+        assertEquals(Arrays.asList("c1", "c2", "offer"), recorder.frames.get(0));
+    }
+
+    @Test
+    public void fullBatchIsSentWithoutWaiting() {
+        Recorder recorder = new Recorder();
+        SignalingBatcher<String> batcher = new SignalingBatcher<>(recorder, scheduler, 60000, 3);
+        for (int i = 0; i < 7; i++) {
+            batcher.enqueue("a", "c" + i, false);
+        }
+        assertEquals(2, recorder.frames.size());
+        assertEquals(3, recorder.frames.get(1).size());
+    }
+
+    @Test
+    public void lingerTimerFlushes() throws InterruptedException {
+        final CountDownLatch sent = new CountDownLatch(1);
+        SignalingBatcher<String> batcher = new SignalingBatcher<>(new SignalingBatcher.Transport<String>() {
+            @Override
+            public void send(String to, List<String> messages) {
+                sent.countDown();
+            }
+        }, scheduler, 5, 16);
+        batcher.enqueue("a", "c1", false);
+        assertTrue(sent.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void staleLingerTimerLeavesANewerBufferAlone() {
+        final List<Runnable> timers = new ArrayList<>();
+        ScheduledExecutorService manual = new ScheduledThreadPoolExecutor(1) {
+            @Override
+            public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+                timers.add(command);
+                return null;
+            }
+        };
+        Recorder recorder = new Recorder();
+        SignalingBatcher<String> batcher = new SignalingBatcher<>(recorder, manual, 60000, 2);
+        batcher.enqueue("a", "c1", false);
+        batcher.enqueue("a", "c2", false);
+        batcher.enqueue("a", "c3", false);
+        assertEquals(2, timers.size());
+
+        timers.get(0).run();
+        assertEquals(1, recorder.frames.size());
+        timers.get(1).run();
+        assertEquals(Arrays.asList("c3"), recorder.frames.get(1));
+        manual.shutdownNow();
+    }
+
+    @Test
+    public void closeFlushesAndRejectsLaterMessages() {
+        Recorder recorder = new Recorder();
+        SignalingBatcher<String> batcher = new SignalingBatcher<>(recorder, scheduler, 60000, 16);
+        batcher.enqueue("a", "c1", false);
+        batcher.close();
+        batcher.enqueue("a", "c2", true);
+        assertEquals(1, recorder.frames.size());
+        assertEquals(1, batcher.getMessagesSent());
+    }
+
+    // offer, a burst of candidates and the answer-side candidates, as seen during call setup
+    private static List<String> callSetupTrace(int candidates) {
+        List<String> trace = new ArrayList<>();
+        trace.add("offer");
+        for (int i = 0; i < candidates; i++) {
+            trace.add("candidate" + i);
+        }
+        trace.add("answer");
+        for (int i = 0; i < candidates; i++) {
+            trace.add("candidate" + (candidates + i));
+        }
+        return trace;
+    }
+
+    private int emits(List<String> trace, long lingerMs, int maxBatch) throws InterruptedException {
+        FakeSocket socket = new FakeSocket(200, trace.size());
+        SignalingBatcher<String> batcher = new SignalingBatcher<>(socket, scheduler, lingerMs, maxBatch);
+        for (String message : trace) {
+            batcher.enqueue("peer", message, !message.startsWith("candidate"));
+        }
+        assertTrue(socket.done.await(10, TimeUnit.SECONDS));
+        assertEquals(trace, socket.delivered());
+        socket.close();
+        return socket.emits();
+    }
+
+    @Test
+    public void batchingReducesEmitsForCallSetup() throws InterruptedException {
+        List<String> trace = callSetupTrace(24);
+        // maxBatch 1 reproduces the previous one-emit-per-message behavior
+        int perMessage = emits(trace, 0, 1);
+        int batched = emits(trace, SignalingBatcher.DefaultLingerMs, SignalingBatcher.DefaultMaxBatch);
+        assertEquals(trace.size(), perMessage);
+        assertTrue(batched < perMessage / 4);
+    }
+}
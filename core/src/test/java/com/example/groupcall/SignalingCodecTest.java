@@ -0,0 +1,120 @@
+package com.example.groupcall;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SignalingCodecTest {
+    private static final String Sdp = "v=0\r\no=- 4611731400430051336 2 IN IP4 127.0.0.1\r\ns=-\r\nt=0 0\r\n"
+            + "a=group:BUNDLE audio video\r\nm=audio 9 UDP/TLS/RTP/SAVPF 111\r\na=rtpmap:111 opus/48000/2\r\n";
+
+    private final JsonSignalingCodec json = new JsonSignalingCodec();
+
+    private static String offer() throws Exception {
+        JSONObject payload = new JSONObject();
+        payload.put("type", "offer");
+        payload.put("sdp", Sdp);
+        JSONObject frame = new JSONObject();
+        frame.put("from", "peer-a");
+        frame.put("type", "offer");
+        frame.put("payload", payload);
+        return frame.toString();
+    }
+
+    private static String candidate() throws Exception {
+        JSONObject payload = new JSONObject();
+        payload.put("label", 1);
+        payload.put("id", "video");
+        payload.put("candidate", "candidate:842163049 1 udp 1677729535 10.0.0.2 52341 typ srflx raddr 0.0.0.0 rport 0 generation 0");
+        JSONObject frame = new JSONObject();
+        frame.put("from", "peer-a");
+        frame.put("type", "candidate");
+        frame.put("payload", payload);
+        return frame.toString();
+    }
+
+    private static void assertSameMessage(SignalingMessage expected, SignalingMessage actual) {
+        assertEquals(expected.from, actual.from);
+        assertSame(expected.type, actual.type);
+        assertEquals(expected.sdpType, actual.sdpType);
+        assertEquals(expected.sdp, actual.sdp);
+        assertEquals(expected.candidateId, actual.candidateId);
+        assertEquals(expected.candidateLabel, actual.candidateLabel);
+        assertEquals(expected.candidate, actual.candidate);
+    }
+
+    // the JSONObject socket.io delivers and the recorded text decode the same
+    private void assertFormsAgree(String frame) throws Exception {
+        SignalingMessage a = new SignalingMessage();
+        SignalingMessage b = new SignalingMessage();
+        assertTrue(json.decode(new JSONObject(frame), a));
+        assertTrue(json.decode(frame, b));
+        assertSameMessage(b, a);
+    }
+
+    @Test
+    public void decodesOffer() throws Exception {
+        SignalingMessage message = new SignalingMessage();
+        assertTrue(json.decode(new JSONObject(offer()), message));
+        assertEquals("peer-a", message.from);
+        assertSame(SignalingMessage.Offer, message.type);
+        assertEquals("offer", message.sdpType);
+        assertEquals(Sdp, message.sdp);
+        assertFormsAgree(offer());
+    }
+
+    @Test
+    public void decodesCandidate() throws Exception {
+        SignalingMessage message = new SignalingMessage();
+        assertTrue(json.decode(new JSONObject(candidate()), message));
+        assertSame(SignalingMessage.Candidate, message.type);
+        assertEquals("video", message.candidateId);
+        assertEquals(1, message.candidateLabel);
+        assertFormsAgree(candidate());
+    }
+
+    @Test
+    public void decodesInitAndAnswerInAnyKeyOrder() throws Exception {
+        assertFormsAgree("{\"type\":\"init\",\"from\":\"x\"}");
+        assertFormsAgree("{ \"payload\" : {\"sdp\":\"v=0\\r\\n\",\"type\":\"answer\"}, \"to\":\"me\", \"type\":\"answer\", \"from\":\"x\" }");
+    }
+
+    @Test
+    public void keepsThePayloadOfBatchAndUnknownTypes() {
+        SignalingMessage message = new SignalingMessage();
+        assertTrue(json.decode("{\"from\":\"p\",\"type\":\"batch\",\"payload\":{\"messages\":[{\"type\":\"init\"}]}}", message));
+        assertSame(SignalingMessage.Batch, message.type);
+        assertEquals(1, message.payload.getJSONArray("messages").length());
+
+        assertTrue(json.decode("{\"from\":\"p\",\"type\":\"bye\",\"payload\":{\"reason\":\"left\"}}", message));
+        assertEquals("bye", message.type);
+        assertEquals("left", message.payload.optString("reason"));
+    }
+
+    @Test
+    public void declinesFramesThatAreNotJson() {
+        assertFalse(json.decode(42, new SignalingMessage()));
+        assertFalse(json.decode(null, new SignalingMessage()));
+    }
+
+    @Test
+    public void reusedMessageDoesNotLeakFields() throws Exception {
+        SignalingMessage message = new SignalingMessage();
+        assertTrue(json.decode(new JSONObject(offer()), message));
+        assertTrue(json.decode(new JSONObject(candidate()), message));
+        assertNull(message.sdp);
+        assertNull(message.sdpType);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedFrame() throws Exception {
+        String frame = offer();
+        json.decode(frame.substring(0, frame.length() / 2), new SignalingMessage());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOfferWithoutSdp() throws Exception {
+        json.decode(new JSONObject("{\"from\":\"p\",\"type\":\"offer\",\"payload\":{\"type\":\"offer\"}}"), new SignalingMessage());
+    }
+}
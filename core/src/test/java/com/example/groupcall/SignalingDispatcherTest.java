@@ -0,0 +1,89 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SignalingDispatcherTest {
+
+    private final List<String> executed = new ArrayList<>();
+    private final List<String> ignored = new ArrayList<>();
+    private final SignalingTimings timings = new SignalingTimings();
+
+    private SignalingDispatcher dispatcher(final String blockedPeer) {
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.add(timings);
+        SignalingDispatcher dispatcher = new SignalingDispatcher(pipeline, timings, new SignalingDispatcher.Host() {
+            @Override
+            public boolean accept(SignalingMessage message) {
+                return !message.from.equals(blockedPeer);
+            }
+
+            @Override
+            public void onIgnored(String reason) {
+                ignored.add(reason);
+            }
+        });
+        Command record = (peerId, message) -> executed.add(peerId + " " + message.type);
+        dispatcher.register(SignalingMessage.Init, record);
+        dispatcher.register(SignalingMessage.Candidate, record);
+        return dispatcher;
+    }
+
+    @Test
+    public void runsTheCommandOfTheType() throws JSONException {
+        assertEquals(1, dispatcher(null).handle("{\"from\":\"a\",\"type\":\"init\"}"));
+        assertEquals(1, executed.size());
+        assertEquals("a init", executed.get(0));
+        assertEquals(1, timings.count("init", SignalingTimings.Stage.DECODE));
+        assertEquals(1, timings.count("init", SignalingTimings.Stage.DISPATCH));
+    }
+
+    @Test
+    public void unwrapsBatches() throws JSONException {
+        String batch = "{\"from\":\"a\",\"type\":\"batch\",\"payload\":{\"messages\":["
+                + "{\"type\":\"candidate\",\"payload\":{\"id\":\"audio\",\"label\":0,\"candidate\":\"c1\"}},"
+                + "{\"type\":\"candidate\",\"payload\":{\"id\":\"video\",\"label\":1,\"candidate\":\"c2\"}}]}}";
+        assertEquals(2, dispatcher(null).handle(batch));
+        assertEquals(2, executed.size());
+        assertEquals("a candidate", executed.get(1));
+        assertEquals(1, timings.count(SignalingMessage.Batch, SignalingTimings.Stage.DECODE));
+        assertEquals(2, timings.count("candidate", SignalingTimings.Stage.DECODE));
+    }
+
+    // what socket.io-client hands the "message" listener for an emitted object
+    @Test
+    public void decodesJsonObjectFrames() throws JSONException {
+        JSONObject batch = new JSONObject("{\"from\":\"a\",\"type\":\"batch\",\"payload\":{\"messages\":["
+                + "{\"type\":\"init\"},"
+                + "{\"type\":\"candidate\",\"payload\":{\"id\":\"audio\",\"label\":0,\"candidate\":\"c1\"}}]}}");
+        SignalingDispatcher dispatcher = dispatcher(null);
+        assertEquals(1, dispatcher.handle(new JSONObject("{\"from\":\"b\",\"type\":\"init\"}")));
+        assertEquals(2, dispatcher.handle(batch));
+        assertEquals(Arrays.asList("b init", "a init", "a candidate"), executed);
+        assertEquals(0, timings.count(SignalingDispatcher.Undecodable, SignalingTimings.Stage.DECODE));
+    }
+
+    @Test
+    public void unknownTypesAndRejectedPeersAreIgnored() throws JSONException {
+        SignalingDispatcher dispatcher = dispatcher("b");
+        assertEquals(0, dispatcher.handle("{\"from\":\"a\",\"type\":\"wave\"}"));
+        assertEquals(0, dispatcher.handle("{\"from\":\"b\",\"type\":\"init\"}"));
+        assertEquals(0, dispatcher.handle(42));
+        assertTrue(executed.isEmpty());
+        assertEquals(2, ignored.size());
+        assertEquals("unknown message type wave", ignored.get(0));
+        assertEquals(1, timings.count(SignalingDispatcher.Undecodable, SignalingTimings.Stage.DECODE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedFramesThrow() throws JSONException {
+        dispatcher(null).handle("{\"type\":\"init\"}");
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SignalingExecutorTest {
+
+    /**
+     * Minimal model of the client state the executor protects: a peer registry
+     * plus each peer's pending candidate queue, driven the way WebRTCClient's
+     * commands and Peer callbacks drive it.
+     */
+    private static final class Room {
+        final CallMetrics metrics = new CallMetrics();
+        final PeerRegistry<PendingIceCandidates<String>> peers = new PeerRegistry<>(2);
+        final List<String> applied = new ArrayList<>();
+        final List<Integer> removedEndPoints = new ArrayList<>();
+
+        PendingIceCandidates<String> join(String id) {
+            return peers.register(id, new PeerRegistry.Factory<PendingIceCandidates<String>>() {
+                @Override
+                public PendingIceCandidates<String> create(String id, int endPoint) {
+                    return new PendingIceCandidates<>(PendingIceCandidates.DefaultCapacity, metrics);
+                }
+            });
+        }
+
+        void apply(String event) {
+            String[] parts = event.split(":");
+            String id = parts[1];
+            switch (parts[0]) {
+                case "offer": {
+                    PendingIceCandidates<String> peer = join(id);
+                    if (peer != null) {
+                        peer.onRemoteDescriptionSet(applied::add);
+                    }
+                    break;
+                }
+                case "candidate": {
+                    PendingIceCandidates<String> peer = join(id);
+                    if (peer != null) {
+                        peer.add(parts[2], applied::add);
+                    }
+                    break;
+                }
+                case "disconnected":
+                case "removeStream": {
+                    int endPoint = peers.endPointOf(id);
+                    PendingIceCandidates<String> peer = peers.remove(id);
+                    if (peer != null) {
+                        peer.clear();
+                        removedEndPoints.add(endPoint);
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException(event);
+            }
+        }
+    }
+
+    // posts every source's events in a random interleaving that keeps each source's own order
+    private static List<String> interleave(Random random, List<List<String>> sources) {
+        List<List<String>> remaining = new ArrayList<>();
+        for (List<String> source : sources) {
+            remaining.add(new ArrayList<>(source));
+        }
+        List<String> trace = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            int pick = random.nextInt(remaining.size());
+            trace.add(remaining.get(pick).remove(0));
+            if (remaining.get(pick).isEmpty()) {
+                remaining.remove(pick);
+            }
+        }
+        return trace;
+    }
+
+    private static final List<String> Socket = Arrays.asList("candidate:a:c1", "offer:a", "candidate:a:c2", "candidate:b:c3");
+    // both callbacks report the same loss, only one may tear the peer down
+    private static final List<String> NativeThread = Arrays.asList("disconnected:a", "removeStream:a");
+    private static final List<String> Other = Arrays.asList("offer:b", "removeStream:b");
+
+    private static Room run(SignalingExecutor executor, List<String> trace) {
+        final Room room = new Room();
+        for (final String event : trace) {
+            executor.execute(() -> room.apply(event));
+        }
+        assertEquals(trace.size(), executor.runPending());
+        return room;
+    }
+
+    @Test
+    public void sourcesOneAfterAnother() {
+        List<String> trace = new ArrayList<>(Socket);
+        trace.addAll(NativeThread);
+        trace.addAll(Other);
+        SignalingExecutor executor = new SignalingExecutor(16);
+        Room room = run(executor, trace);
+        assertEquals(0, executor.getEventsFailed());
+        // c1 waits for a's offer, c3 for b's; a is torn down once, on endpoint 0, b on 1
+        assertEquals(Arrays.asList("c1", "c2", "c3"), room.applied);
+        assertEquals(Arrays.asList(0, 1), room.removedEndPoints);
+        assertEquals(0, room.peers.size());
+        assertEquals(2, room.peers.freeEndPoints());
+    }
+
+    // any interleaving gives exactly the state of applying it directly, in posting order
+    @Test
+    public void interleavingsRunAsPosted() {
+        for (int seed = 0; seed < 200; seed++) {
+            List<String> trace = interleave(new Random(seed), Arrays.asList(Socket, NativeThread, Other));
+            SignalingExecutor executor = new SignalingExecutor(4);
+            Room room = run(executor, trace);
+            Room expected = new Room();
+            for (String event : trace) {
+                expected.apply(event);
+            }
+            String context = "seed " + seed + " " + trace;
+            assertEquals(context, 0, executor.getEventsFailed());
+            assertEquals(context, expected.applied, room.applied);
+            assertEquals(context, expected.removedEndPoints, room.removedEndPoints);
+            assertEquals(context, expected.peers.size(), room.peers.size());
+            assertEquals(context, trace.size() - 4, executor.getOverflowed());
+        }
+    }
+
+    @Test
+    public void failingEventDoesNotStopLaterEvents() {
+        SignalingExecutor executor = new SignalingExecutor(4);
+        final List<String> ran = new ArrayList<>();
+        executor.execute(() -> {
+            throw new IllegalStateException("boom");
+        });
+        executor.execute(() -> ran.add("next"));
+        executor.runPending();
+        assertEquals(1, executor.getEventsFailed());
+        assertEquals(Arrays.asList("next"), ran);
+    }
+
+    @Test
+    public void runsEventsFromManyProducersOnOneThreadInOrder() throws InterruptedException {
+        final int producers = 4;
+        final int events = 2000;
+        final SignalingExecutor executor = new SignalingExecutor(64);
+        executor.start();
+        final int[] lastSeen = new int[producers];
+        Arrays.fill(lastSeen, -1);
+        final List<String> violations = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(producers * events);
+
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < events; i++) {
+                    final int sequence = i;
+                    executor.execute(() -> {
+                        // no lock needed: only the signaling thread touches lastSeen
+                        if (!executor.isSignalingThread() || lastSeen[producer] != sequence - 1) {
+                            violations.add(producer + ":" + sequence);
+                        }
+                        lastSeen[producer] = sequence;
+                        done.countDown();
+                    });
+                }
+            }).start();
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(Arrays.asList(), violations);
+        assertEquals(0, executor.getEventsFailed());
+    }
+
+    @Test
+    public void postingPastTheOverflowThresholdNeverBlocks() {
+        SignalingExecutor executor = new SignalingExecutor(2);
+        List<Integer> ran = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final int n = i;
+            // unstarted: a blocking queue would never return here
+            executor.execute(() -> ran.add(n));
+        }
+        assertEquals(3, executor.getOverflowed());
+        assertEquals(5, executor.getMaxQueueDepth());
+        executor.runPending();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), ran);
+    }
+
+    @Test
+    public void eventsPostedFromTheSignalingThreadRunAfterTheQueuedOnes() throws InterruptedException {
+        final SignalingExecutor executor = new SignalingExecutor(1);
+        executor.start();
+        final CountDownLatch gate = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<String> ran = new ArrayList<>();
+        executor.execute(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // the queue is past the threshold, neither may deadlock or overtake "queued"
+            executor.execute(() -> ran.add("first"));
+            executor.execute(() -> {
+                ran.add("second");
+                done.countDown();
+            });
+            ran.add("posting");
+        });
+        executor.execute(() -> ran.add("queued"));
+        gate.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(Arrays.asList("posting", "queued", "first", "second"), ran);
+        assertTrue(executor.getOverflowed() >= 1);
+    }
+
+    @Test(expected = java.util.concurrent.RejectedExecutionException.class)
+    public void rejectsEventsAfterShutdown() {
+        SignalingExecutor executor = new SignalingExecutor(4);
+        executor.shutdown();
+        executor.execute(() -> { });
+    }
+
+    @Test
+    public void postDropsEventsAfterShutdown() {
+        SignalingExecutor executor = new SignalingExecutor(4);
+        List<String> ran = new ArrayList<>();
+        assertTrue(executor.post(() -> ran.add("before")));
+        executor.shutdown();
+        assertFalse(executor.post(() -> ran.add("after")));
+        executor.runPending();
+        assertEquals(Arrays.asList("before"), ran);
+        assertEquals(1, executor.getEventsPosted());
+    }
+
+    // nothing is accepted behind the stop marker, so every accepted event runs
+    @Test
+    public void everyAcceptedEventRunsWhenShutdownRacesPosting() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            final SignalingExecutor executor = new SignalingExecutor(64);
+            executor.start();
+            final AtomicInteger accepted = new AtomicInteger();
+            final AtomicInteger ran = new AtomicInteger();
+            final CountDownLatch started = new CountDownLatch(4);
+            List<Thread> producers = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                Thread producer = new Thread(() -> {
+                    started.countDown();
+                    while (executor.post(ran::incrementAndGet)) {
+                        accepted.incrementAndGet();
+                    }
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            started.await();
+            executor.shutdown();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            assertTrue(executor.awaitTermination(5000));
+            assertEquals("round " + round, accepted.get(), ran.get());
+        }
+    }
+
+    @Test
+    public void eventsAreNotInterruptedByShutdownOrEachOther() throws InterruptedException {
+        SignalingExecutor executor = new SignalingExecutor(4);
+        executor.start();
+        final List<Boolean> interrupted = new ArrayList<>();
+        executor.execute(() -> Thread.currentThread().interrupt());
+        executor.execute(() -> interrupted.add(Thread.currentThread().isInterrupted()));
+        executor.execute(() -> {
+            try {
+                Thread.sleep(20);
+                interrupted.add(false);
+            } catch (InterruptedException e) {
+                interrupted.add(true);
+            }
+        });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5000));
+        assertEquals(Arrays.asList(false, false), interrupted);
+    }
+}
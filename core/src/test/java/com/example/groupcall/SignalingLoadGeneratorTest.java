@@ -0,0 +1,97 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class SignalingLoadGeneratorTest {
+
+    @Test
+    public void synthesizedCallIsOrderedAndComplete() throws JSONException {
+        SignalingRecording recording = SignalingLoadGenerator.synthesize(4, 3, 1);
+        // init + answer or offer, plus candidates, per remote
+        assertEquals(2 + 3 + 1 + 3 + 2 + 3 + 1 + 3, recording.entries.size());
+        long last = -1;
+        for (SignalingRecording.Entry entry : recording.entries) {
+            assertTrue(entry.atMicros >= last);
+            last = entry.atMicros;
+            JSONObject frame = new JSONObject(entry.payload);
+            assertTrue(frame.getString("from").startsWith("remote-"));
+        }
+    }
+
+    @Test
+    public void everyClientHandlesEveryFrame() throws TimeoutException {
+        SignalingRecording recording = SignalingLoadGenerator.synthesize(6, 4, 2);
+        SignalingLoadGenerator.Result result = new SignalingLoadGenerator(5, Double.POSITIVE_INFINITY, 2).run(recording, 20000);
+        assertEquals(5L * recording.entries.size(), result.frames);
+        assertEquals(0, result.failed);
+        long dispatched = 0;
+        for (String type : result.timings.types()) {
+            dispatched += result.timings.count(type, SignalingTimings.Stage.DISPATCH);
+        }
+        assertEquals(result.frames, dispatched);
+        // per client, 3 inits get an offer and 3 offers an answer, each followed by the 2 candidates gathered
+        assertEquals(5L * 6 * (1 + 2), result.replies);
+        // all to replayed peers, which are not connected
+        assertEquals(result.replyFrames, result.unroutable);
+        assertTrue(result.replyFrames >= 5L * 6 * 2);
+    }
+
+    @Test
+    public void pacingFollowsTheRecordingAtTheSpeedFactor() throws TimeoutException {
+        List<SignalingRecording.Entry> entries = new ArrayList<>();
+        entries.add(new SignalingRecording.Entry(true, 0, "message", "{\"from\":\"r\",\"type\":\"init\"}"));
+        entries.add(new SignalingRecording.Entry(true, 400000, "message", "{\"from\":\"r\",\"type\":\"init\"}"));
+        SignalingRecording recording = new SignalingRecording(0, entries);
+        SignalingLoadGenerator.Result result = new SignalingLoadGenerator(2, 4, 0).run(recording, 20000);
+        assertEquals(4, result.frames);
+        // 400ms recorded, replayed at 4x
+        assertTrue(result.elapsedNanos / 1000000 + "ms", result.elapsedNanos >= 100000000);
+        assertTrue(result.elapsedNanos / 1000000 + "ms", result.elapsedNanos < 5000000000L);
+    }
+
+    @Test
+    public void replaysWhatTheRecorderWrote() throws IOException, TimeoutException {
+        File file = File.createTempFile("signaling", ".trace");
+        try {
+            SignalingRecorder recorder = SignalingRecorder.create(file, SignalingRecorder.DefaultCapacityBytes);
+            recorder.recordOutbound(SignalingSession.SessionEvent, "{\"seq\":0}");
+            for (SignalingRecording.Entry entry : SignalingLoadGenerator.synthesize(2, 2, 3).entries) {
+                recorder.recordInbound(entry.event, entry.payload);
+            }
+            recorder.close();
+            SignalingRecording recording = SignalingRecording.read(file);
+            SignalingLoadGenerator.Result result = new SignalingLoadGenerator(3, 1000, 1).run(recording, 20000);
+            assertEquals(3L * recording.inbound().size(), result.frames);
+            assertEquals(0, result.failed);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void needsAPositiveSpeed() {
+        new SignalingLoadGenerator(1, 0, 0);
+    }
+
+    @Test
+    public void throughputByClientCount() throws TimeoutException {
+        SignalingRecording recording = SignalingLoadGenerator.synthesize(16, 8, 4);
+        for (int clients : new int[]{1, 8, 32}) {
+            SignalingLoadGenerator.Result result = new SignalingLoadGenerator(clients, Double.POSITIVE_INFINITY,
+                    SignalingLoadGenerator.DefaultCandidatesPerPeer).run(recording, 60000);
+            assertEquals(0, result.failed);
+            assertEquals(clients * 16L * (1 + SignalingLoadGenerator.DefaultCandidatesPerPeer), result.replies);
+            assertEquals(result.replyFrames, result.unroutable);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SignalingPayloadsTest {
+
+    @Test
+    public void candidatesDecodeBack() throws JSONException {
+        JSONObject frame = SignalingPayloads.message(SignalingMessage.Candidate,
+                SignalingPayloads.candidate("video", 1, "candidate:1 1 udp 1 10.0.0.2 5000 typ host"));
+        frame.put("from", "a");
+        SignalingMessage message = new SignalingMessage();
+        assertTrue(new JsonSignalingCodec().decode(frame.toString(), message));
+        assertEquals(SignalingMessage.Candidate, message.type);
+        assertEquals("video", message.candidateId);
+        assertEquals(1, message.candidateLabel);
+        assertEquals("candidate:1 1 udp 1 10.0.0.2 5000 typ host", message.candidate);
+    }
+
+    @Test
+    public void descriptionsDecodeBack() throws JSONException {
+        JSONObject frame = SignalingPayloads.message(SignalingMessage.Answer,
+                SignalingPayloads.description("answer", "v=0\r\n"));
+        frame.put("from", "a");
+        SignalingMessage message = new SignalingMessage();
+        assertTrue(new JsonSignalingCodec().decode(frame.toString(), message));
+        assertEquals("answer", message.sdpType);
+        assertEquals("v=0\r\n", message.sdp);
+    }
+
+    @Test
+    public void onlyCandidatesWait() {
+        assertFalse(SignalingPayloads.flushes(SignalingMessage.Candidate));
+        assertTrue(SignalingPayloads.flushes(SignalingMessage.Offer));
+        assertTrue(SignalingPayloads.flushes(SfuSignaling.Join));
+    }
+
+    @Test
+    public void singleMessagesAreSentAsIs() throws JSONException {
+        JSONObject message = SignalingPayloads.message(SignalingMessage.Offer, SignalingPayloads.description("offer", "v=0"));
+        JSONObject frame = SignalingPayloads.frame("b", Collections.singletonList(message));
+        assertSame(message, frame);
+        assertEquals("b", frame.getString("to"));
+    }
+
+    @Test
+    public void severalMessagesAreBatched() throws JSONException {
+        JSONObject first = SignalingPayloads.message(SignalingMessage.Candidate, SignalingPayloads.candidate("audio", 0, "c1"));
+        JSONObject second = SignalingPayloads.message(SignalingMessage.Candidate, SignalingPayloads.candidate("video", 1, "c2"));
+        JSONObject frame = SignalingPayloads.frame("b", Arrays.asList(first, second));
+        assertEquals(SignalingMessage.Batch, frame.getString("type"));
+        assertEquals("b", frame.getString("to"));
+        assertEquals(2, frame.getJSONObject("payload").getJSONArray("messages").length());
+    }
+}
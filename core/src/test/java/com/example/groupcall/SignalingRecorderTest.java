@@ -0,0 +1,154 @@
+package com.example.groupcall;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SignalingRecorderTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("signaling", ".trace");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void recordingRoundTrips() throws IOException {
+        SignalingRecorder recorder = SignalingRecorder.create(file, 4096, 0);
+        recorder.record(SignalingRecorder.Out, "session", "{\"seq\":0}", 1000);
+        recorder.record(SignalingRecorder.In, "message", "{\"from\":\"a\",\"type\":\"init\"}", 2500000);
+        recorder.record(SignalingRecorder.In, "message", "{\"from\":\"é\",\"type\":\"candidate\"}", 2600000);
+        recorder.close();
+        assertEquals(3, recorder.records());
+
+        SignalingRecording recording = SignalingRecording.read(file);
+        List<SignalingRecording.Entry> entries = recording.entries;
+        assertEquals(3, entries.size());
+        assertFalse(entries.get(0).inbound);
+        assertEquals(1, entries.get(0).atMicros);
+        assertEquals("session", entries.get(0).event);
+        assertEquals(2500, entries.get(1).atMicros);
+        assertEquals("{\"from\":\"a\",\"type\":\"init\"}", entries.get(1).payload);
+        assertEquals("{\"from\":\"é\",\"type\":\"candidate\"}", entries.get(2).payload);
+        assertEquals(2, recording.inbound().size());
+        assertTrue(System.currentTimeMillis() - recording.startedAtMillis < 60000);
+    }
+
+    @Test
+    public void recordsAreCompact() throws IOException {
+        SignalingRecorder recorder = SignalingRecorder.create(file, 4096, 0);
+        String payload = "{\"type\":\"candidate\"}";
+        recorder.record(SignalingRecorder.In, "message", payload, 5000);
+        // direction, one byte delta, two length bytes
+        assertEquals(SignalingRecorder.HeaderBytes + 4 + "message".length() + payload.length(), recorder.sizeBytes());
+        recorder.close();
+    }
+
+    @Test
+    public void timestampsNeverGoBackwards() throws IOException {
+        SignalingRecorder recorder = SignalingRecorder.create(file, 4096, 0);
+        recorder.record(SignalingRecorder.In, "message", "a", 9000000);
+        recorder.record(SignalingRecorder.Out, "message", "b", 4000000);
+        recorder.close();
+        List<SignalingRecording.Entry> entries = SignalingRecording.read(file).entries;
+        assertEquals(9000, entries.get(0).atMicros);
+        assertEquals(9000, entries.get(1).atMicros);
+    }
+
+    @Test
+    public void fullRecordingDropsAndCounts() throws IOException {
+        SignalingRecorder recorder = SignalingRecorder.create(file, 64, 0);
+        for (int i = 0; i < 10; i++) {
+            recorder.record(SignalingRecorder.In, "message", "0123456789", i * 1000);
+        }
+        recorder.close();
+        // 21 bytes each after the 16 byte header
+        assertEquals(2, recorder.records());
+        assertEquals(8, recorder.dropped());
+        assertEquals(2, SignalingRecording.read(file).entries.size());
+    }
+
+    @Test
+    public void recordsAfterCloseAreIgnored() throws IOException {
+        SignalingRecorder recorder = SignalingRecorder.create(file, 4096, 0);
+        recorder.close();
+        recorder.record(SignalingRecorder.In, "message", "late", 1000);
+        assertEquals(0, recorder.records());
+        assertEquals(0, SignalingRecording.read(file).entries.size());
+    }
+
+    @Test
+    public void aRecordCutShortReadsAsTheEnd() throws IOException {
+        SignalingRecorder recorder = SignalingRecorder.create(file, 4096, 0);
+        recorder.record(SignalingRecorder.In, "message", "kept", 1000);
+        int end = recorder.sizeBytes();
+        recorder.record(SignalingRecorder.In, "message", "lost", 2000);
+        recorder.close();
+        // as if the process died before the direction byte of the second record was written
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(end);
+            raw.write(0);
+        }
+        List<SignalingRecording.Entry> entries = SignalingRecording.read(file).entries;
+        assertEquals(1, entries.size());
+        assertEquals("kept", entries.get(0).payload);
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        SignalingRecording.read(ByteBuffer.wrap(new byte[32]));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedRecordsAreReported() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SignalingRecorder.HeaderBytes + 3);
+        buffer.putInt(SignalingRecorder.Magic).put((byte) SignalingRecorder.Version);
+        buffer.position(SignalingRecorder.HeaderBytes);
+        // direction, delta, then a name length with nothing behind it
+        buffer.put(SignalingRecorder.In).put((byte) 0).put((byte) 5);
+        buffer.flip();
+        SignalingRecording.read(buffer);
+    }
+
+    @Test
+    public void varintsRoundTrip() throws IOException {
+        long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE};
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        for (long value : values) {
+            SignalingRecorder.putVarint(buffer, value);
+        }
+        buffer.flip();
+        for (long value : values) {
+            int before = buffer.position();
+            assertEquals(value, SignalingRecording.getVarint(buffer));
+            assertEquals(SignalingRecorder.varintSize(value), buffer.position() - before);
+        }
+    }
+
+    @Test
+    public void recordsABurstOfCandidates() throws IOException {
+        SignalingRecorder recorder = SignalingRecorder.create(file, 64 << 20, 0);
+        String payload = "{\"from\":\"peer-1\",\"type\":\"candidate\",\"payload\":{\"label\":0,\"id\":\"audio\","
+                + "\"candidate\":\"candidate:1 1 udp 2122260223 192.168.1.2 50000 typ host generation 0\"}}";
+        int iterations = 2000;
+        for (int i = 0; i < iterations; i++) {
+            recorder.recordInbound("message", payload);
+        }
+        recorder.close();
+        assertEquals(iterations, recorder.records());
+    }
+}
@@ -0,0 +1,473 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SignalingSessionTest {
+    private static final long LatencyMs = 5;
+
+    /**
+     * Stands in for the socket.io server and the network in between: every
+     * emit is delivered after {@link #LatencyMs}, and a drop loses whatever
+     * is still in flight. Everything runs on the network thread.
+     */
+    private static final class FakeServer {
+        final ScheduledExecutorService network = Executors.newSingleThreadScheduledExecutor();
+        // session id -> last seq received from the client
+        final Map<String, Long> sessions = new HashMap<>();
+        // payload "n" of every message the server accepted, in order
+        final List<Integer> received = new ArrayList<>();
+        // messages pushed to the client, by seq
+        final List<JSONObject> outbound = new ArrayList<>();
+        final List<Integer> clientReceived = new ArrayList<>();
+        boolean answersHandshake = true;
+        int hellos;
+        int gaps;
+        int sessionCount;
+        String current;
+        volatile int generation;
+        boolean connected;
+        SignalingSession session;
+
+        final SignalingSession.Transport transport = new SignalingSession.Transport() {
+            @Override
+            public void connect() {
+                network.schedule(() -> {
+                    if (!connected) {
+                        connected = true;
+                        current = null;
+                        session.onTransportConnected();
+                    }
+                }, LatencyMs, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public void disconnect() {
+                network.execute(() -> connected = false);
+            }
+
+            @Override
+            public void emit(String event, Object payload) {
+                final String copy = payload.toString();
+                final int sentOn = generation;
+                network.schedule(() -> {
+                    if (connected && generation == sentOn) {
+                        receive(event, copy);
+                    }
+                }, LatencyMs, TimeUnit.MILLISECONDS);
+            }
+        };
+
+        private void receive(String event, String payload) {
+            try {
+                JSONObject frame = new JSONObject(payload);
+                if (SignalingSession.SessionEvent.equals(event)) {
+                    handshake(frame);
+                } else if (current != null) {
+                    long seq = frame.getLong("seq");
+                    long last = sessions.get(current);
+                    if (seq <= last) {
+                        return;
+                    }
+                    if (seq != last + 1) {
+                        gaps++;
+                    }
+                    sessions.put(current, seq);
+                    received.add(frame.getInt("n"));
+                    toClient(SignalingSession.AckEvent, new JSONObject().put("seq", seq));
+                } else {
+                    received.add(frame.getInt("n"));
+                }
+            } catch (JSONException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+            private void handshake(JSONObject hello) throws JSONException {
+            hellos++;
+            if (!answersHandshake) {
+                return;
+            }
+            String id = hello.optString("session", null);
+            boolean resumed = id != null && sessions.containsKey(id);
+            if (!resumed) {
+                id = "s" + (++sessionCount);
+                sessions.put(id, 0L);
+                outbound.clear();
+            }
+            current = id;
+            toClient(SignalingSession.SessionEvent, new JSONObject()
+                    .put("session", id).put("resumed", resumed).put("seq", sessions.get(id)));
+            // replay what the client missed
+            for (int i = (int) hello.getLong("seq"); resumed && i < outbound.size(); i++) {
+                toClient("message", outbound.get(i));
+            }
+        }
+
+        private void toClient(String event, JSONObject payload) {
+            final int sentOn = generation;
+            network.schedule(() -> {
+                if (!connected || generation != sentOn) {
+                    return;
+                }
+                if (SignalingSession.SessionEvent.equals(event)) {
+                    session.onSessionReply(payload);
+                } else if (SignalingSession.AckEvent.equals(event)) {
+                    session.onAck(payload.optLong("seq"));
+                } else if (session.onInbound(payload)) {
+                    clientReceived.add(payload.optInt("n"));
+                }
+            }, LatencyMs, TimeUnit.MILLISECONDS);
+        }
+
+        void push(int n) {
+            network.execute(() -> {
+                try {
+                    JSONObject message = new JSONObject().put("n", n).put("seq", outbound.size() + 1);
+                    outbound.add(message);
+                    toClient("message", message);
+                } catch (JSONException e) {
+                    throw new AssertionError(e);
+                }
+            });
+        }
+
+        // as a server without sessions relays it, with the sender's seq if it had one
+        void relay(int n, long senderSeq) {
+            network.execute(() -> {
+                try {
+                    JSONObject message = new JSONObject().put("n", n);
+                    toClient("message", senderSeq < 0 ? message : message.put("seq", senderSeq));
+                } catch (JSONException e) {
+                    throw new AssertionError(e);
+                }
+            });
+        }
+
+        // the socket goes away, taking in-flight frames with it
+        void drop() {
+            network.execute(() -> {
+                generation++;
+                if (connected) {
+                    connected = false;
+                    session.onTransportDisconnected();
+                }
+            });
+        }
+
+        // a server restart forgets every session
+        void restart() {
+            network.execute(sessions::clear);
+            drop();
+        }
+
+        <T> T read(Callable<T> query) throws Exception {
+            return network.submit(query).get();
+        }
+    }
+
+    private static final class Recorder implements SignalingSession.Listener {
+        volatile int resumed;
+        volatile int lost;
+        volatile int replayed;
+
+        @Override
+        public synchronized void onSessionResumed(long downtimeMs, int replayed) {
+            resumed++;
+            this.replayed += replayed;
+        }
+
+        @Override
+        public synchronized void onSessionLost(long downtimeMs) {
+            lost++;
+        }
+    }
+
+    private ScheduledExecutorService scheduler;
+    private FakeServer server;
+    private Recorder recorder;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        server = new FakeServer();
+        recorder = new Recorder();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+        server.network.shutdownNow();
+    }
+
+    private SignalingSession session(int replayCapacity, long handshakeTimeoutMs) {
+        SignalingSession session = new SignalingSession(server.transport, recorder, scheduler, new Random(7),
+                replayCapacity, 10, 80, handshakeTimeoutMs);
+        server.session = session;
+        return session;
+    }
+
+    private static JSONObject message(int n) throws JSONException {
+        return new JSONObject().put("n", n);
+    }
+
+    private static void await(String what, Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.call()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("timed out waiting for " + what);
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private void awaitOpen(SignalingSession session) throws Exception {
+        await("open", () -> session.state() == SignalingSession.State.OPEN);
+    }
+
+    private void awaitReceived(int count) throws Exception {
+        await(count + " messages", () -> server.read(() -> server.received.size()) >= count);
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> range = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            range.add(i);
+        }
+        return range;
+    }
+
+    @Test
+    public void framesQueuedBeforeConnectGoOutInOrder() throws Exception {
+        SignalingSession session = session(16, 1000);
+        session.send("message", message(0));
+        session.send("message", message(1));
+        session.connect();
+        awaitOpen(session);
+        session.send("message", message(2));
+        awaitReceived(3);
+        assertEquals(range(0, 3), server.read(() -> server.received));
+        await("acks", () -> session.replaySize() == 0);
+        assertEquals(0, recorder.lost + recorder.resumed);
+    }
+
+    @Test
+    public void resumeReplaysWhatWasLostInFlight() throws Exception {
+        SignalingSession session = session(64, 1000);
+        session.connect();
+        awaitOpen(session);
+        for (int i = 0; i < 10; i++) {
+            session.send("message", message(i));
+            if (i == 4) {
+                // frames 3-4 are still in flight and get lost
+                server.drop();
+            }
+        }
+        await("resume", () -> recorder.resumed == 1);
+        awaitReceived(10);
+        assertEquals(range(0, 10), server.read(() -> server.received));
+        assertEquals(0, (int) server.read(() -> server.gaps));
+        assertEquals(0, recorder.lost);
+        assertTrue(session.lastRecoveryMs() >= 0);
+        assertEquals(1, session.reconnects());
+    }
+
+    @Test
+    public void inboundMessagesAreReplayedOnceAfterResume() throws Exception {
+        SignalingSession session = session(64, 1000);
+        session.connect();
+        awaitOpen(session);
+        server.push(0);
+        server.push(1);
+        await("first pushes", () -> server.read(() -> server.clientReceived.size()) == 2);
+        server.drop();
+        server.push(2);
+        server.push(3);
+        await("resume", () -> recorder.resumed == 1);
+        await("replayed pushes", () -> server.read(() -> server.clientReceived.size()) == 4);
+        Thread.sleep(4 * LatencyMs);
+        assertEquals(range(0, 4), server.read(() -> server.clientReceived));
+    }
+
+    @Test
+    public void duplicateInboundIsIgnored() throws Exception {
+        SignalingSession session = session(4, 1000);
+        assertTrue(session.onInbound(new JSONObject().put("seq", 1)));
+        assertFalse(session.onInbound(new JSONObject().put("seq", 1)));
+        assertTrue(session.onInbound(new JSONObject().put("type", "offer")));
+        assertTrue(session.onInbound("raw frame"));
+        assertTrue(session.onInbound(new JSONObject().put("seq", 2)));
+    }
+
+    @Test
+    public void serverRestartLosesTheSession() throws Exception {
+        SignalingSession session = session(64, 1000);
+        session.connect();
+        awaitOpen(session);
+        session.send("message", message(0));
+        awaitReceived(1);
+        server.restart();
+        await("lost", () -> recorder.lost == 1);
+        assertEquals(0, recorder.resumed);
+        assertEquals(0, session.replaySize());
+        // numbering starts over for the new session
+        session.send("message", message(1));
+        awaitReceived(2);
+        assertEquals(0, (int) server.read(() -> server.gaps));
+    }
+
+    @Test
+    public void overflowingTheReplayBufferLosesTheSession() throws Exception {
+        SignalingSession session = session(4, 1000);
+        session.connect();
+        awaitOpen(session);
+        server.drop();
+        await("down", () -> session.state() != SignalingSession.State.OPEN);
+        for (int i = 0; i < 6; i++) {
+            session.send("message", message(i));
+        }
+        await("lost", () -> recorder.lost == 1);
+        assertEquals(0, recorder.resumed);
+    }
+
+    @Test
+    public void serverWithoutHandshakeStillGetsMessages() throws Exception {
+        server.answersHandshake = false;
+        SignalingSession session = session(16, 30);
+        session.send("message", message(0));
+        session.connect();
+        awaitOpen(session);
+        session.send("message", message(1));
+        awaitReceived(2);
+        assertEquals(range(0, 2), server.read(() -> server.received));
+        assertEquals(0, session.replaySize());
+    }
+
+    @Test
+    public void legacyReconnectSendsWhatWasQueuedWhileDown() throws Exception {
+        server.answersHandshake = false;
+        SignalingSession session = session(16, 30);
+        session.connect();
+        awaitOpen(session);
+        session.send("message", message(0));
+        awaitReceived(1);
+        server.drop();
+        await("down", () -> session.state() != SignalingSession.State.OPEN);
+        session.send("message", message(1));
+        session.send("message", message(2));
+        await("resume", () -> recorder.resumed == 1);
+        session.send("message", message(3));
+        awaitReceived(4);
+        assertEquals(range(0, 4), server.read(() -> server.received));
+        // the reconnect did not wait for a handshake that never comes
+        assertEquals(1, (int) server.read(() -> server.hellos));
+        assertEquals(0, session.replaySize());
+        // a short drop with nothing dropped from the buffer does not restart media
+        assertEquals(0, recorder.lost);
+        assertEquals(2, recorder.replayed);
+    }
+
+    @Test
+    public void legacyOverflowWhileDownLosesTheSession() throws Exception {
+        server.answersHandshake = false;
+        SignalingSession session = session(2, 30);
+        session.connect();
+        awaitOpen(session);
+        server.drop();
+        await("down", () -> session.state() != SignalingSession.State.OPEN);
+        for (int i = 0; i < 3; i++) {
+            session.send("message", message(i));
+        }
+        await("lost", () -> recorder.lost == 1);
+        assertEquals(0, recorder.resumed);
+        awaitReceived(2);
+        assertEquals(range(1, 3), server.read(() -> server.received));
+    }
+
+    @Test
+    public void assumedLegacyServerOpensWithoutAHandshake() throws Exception {
+        server.answersHandshake = false;
+        SignalingSession session = session(16, 60000);
+        session.assumeLegacy();
+        session.send("message", message(0));
+        session.connect();
+        awaitOpen(session);
+        awaitReceived(1);
+        assertEquals(0, (int) server.read(() -> server.hellos));
+        assertTrue(session.isLegacy());
+    }
+
+    @Test
+    public void frameWithoutSeqDuringHandshakeOpensWithoutWaiting() throws Exception {
+        server.answersHandshake = false;
+        SignalingSession session = session(16, 60000);
+        session.send("message", message(0));
+        session.connect();
+        await("hello", () -> server.read(() -> server.hellos) == 1);
+        server.relay(7, -1);
+        awaitOpen(session);
+        awaitReceived(1);
+        assertEquals(range(0, 1), server.read(() -> server.received));
+        // seqs stamped by two different senders are both delivered
+        server.relay(8, 5);
+        server.relay(9, 3);
+        await("relayed", () -> server.read(() -> server.clientReceived.size()) == 3);
+        assertEquals(Arrays.asList(7, 8, 9), server.read(() -> server.clientReceived));
+    }
+
+    @Test
+    public void backoffGrowsAndIsCapped() {
+        SignalingSession session = new SignalingSession(server.transport, recorder, scheduler, new Random(1),
+                4, 100, 1000, 1000);
+        long previousMax = 0;
+        for (int attempt = 0; attempt < 8; attempt++) {
+            long max = Math.min(100L << attempt, 1000);
+            long delay = session.backoffMs(attempt);
+            assertTrue("attempt " + attempt + ": " + delay, delay > max / 2 - 1 && delay <= max);
+            assertTrue(max >= previousMax);
+            previousMax = max;
+        }
+        assertTrue(session.backoffMs(60) <= 1000);
+    }
+
+    // repeated drops while sending: every message arrives once and in order
+    @Test
+    public void recoveryUnderRandomDrops() throws Exception {
+        SignalingSession session = session(256, 1000);
+        session.connect();
+        awaitOpen(session);
+        Random random = new Random(42);
+        int messages = 200;
+        int drops = 0;
+        for (int i = 0; i < messages; i++) {
+            session.send("message", message(i));
+            if (random.nextInt(20) == 0) {
+                server.drop();
+                drops++;
+                final int resumes = drops;
+                await("resume " + drops, () -> recorder.resumed == resumes);
+            }
+            Thread.sleep(random.nextInt(2));
+        }
+        awaitReceived(messages);
+        assertEquals(range(0, messages), server.read(() -> server.received));
+        assertEquals(0, recorder.lost);
+        assertTrue(drops > 0);
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SignalingTimingsTest {
+
+    private final long[] now = {0};
+    private final SignalingTimings timings = new SignalingTimings(() -> now[0]);
+
+    // runs SDP operations one at a time and calls back in order, like a PeerConnection
+    private static class FakePeerConnection {
+        private final ArrayDeque<Object[]> operations = new ArrayDeque<>();
+
+        void createOffer(SdpCallback observer) {
+            operations.add(new Object[]{observer, "offer"});
+        }
+
+        void createAnswer(SdpCallback observer) {
+            operations.add(new Object[]{observer, "answer"});
+        }
+
+        void setDescription(SdpCallback observer) {
+            operations.add(new Object[]{observer, null});
+        }
+
+        int pending() {
+            return operations.size();
+        }
+
+        void complete(boolean succeed) {
+            Object[] operation = operations.poll();
+            SdpCallback observer = (SdpCallback) operation[0];
+            String type = (String) operation[1];
+            if (type == null) {
+                if (succeed) observer.onSetSuccess(); else observer.onSetFailure("set failed");
+            } else {
+                if (succeed) observer.onCreateSuccess(type, "v=0"); else observer.onCreateFailure("create failed");
+            }
+        }
+    }
+
+    // sets what it created as the local description, as WebRTCClient.Peer does
+    private class FakePeer implements SdpCallback {
+        final FakePeerConnection peerConnection = new FakePeerConnection();
+        final TimedSdpObserver sdp = new TimedSdpObserver(this, timings);
+        final List<String> callbacks = new ArrayList<>();
+
+        @Override
+        public void onCreateSuccess(String type, String description) {
+            callbacks.add("created " + type);
+            peerConnection.setDescription(sdp.begin(SignalingTimings.Stage.SET_LOCAL, sdp.createdBy()));
+        }
+
+        @Override
+        public void onSetSuccess() {
+            callbacks.add("set");
+        }
+
+        @Override
+        public void onCreateFailure(String error) {
+            callbacks.add(error);
+        }
+
+        @Override
+        public void onSetFailure(String error) {
+            callbacks.add(error);
+        }
+    }
+
+    private static SignalingMessage message(String type) {
+        SignalingMessage message = new SignalingMessage();
+        message.type = type;
+        message.from = "peer-1";
+        return message;
+    }
+
+    @Test
+    public void dispatchIsTimedPerType() throws JSONException {
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.add(timings);
+        pipeline.execute((peerId, message) -> now[0] += 3000, "peer-1", message("candidate"));
+        pipeline.execute((peerId, message) -> now[0] += 5000, "peer-1", message("candidate"));
+        pipeline.execute((peerId, message) -> now[0] += 90000, "peer-1", message("offer"));
+        assertEquals(2, timings.count("candidate", SignalingTimings.Stage.DISPATCH));
+        assertEquals(5000, timings.percentile("candidate", SignalingTimings.Stage.DISPATCH, 100));
+        // within the 1/32 bucket precision
+        assertEquals(3000, timings.percentile("candidate", SignalingTimings.Stage.DISPATCH, 50), 3000 / 32);
+        assertEquals(1, timings.count("offer", SignalingTimings.Stage.DISPATCH));
+        assertEquals(0, timings.count("answer", SignalingTimings.Stage.DISPATCH));
+    }
+
+    @Test
+    public void failedCommandsAreStillTimed() {
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.add(timings);
+        try {
+            pipeline.execute((peerId, message) -> {
+                now[0] += 700;
+                throw new JSONException("bad");
+            }, "peer-1", message("answer"));
+            fail();
+        } catch (JSONException expected) {
+            assertEquals(700, timings.percentile("answer", SignalingTimings.Stage.DISPATCH, 50));
+        }
+    }
+
+    @Test
+    public void offerCommandTimesEachSdpCallback() throws JSONException {
+        FakePeer peer = new FakePeer();
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.add(timings);
+        // what CreateAnswerCommand does
+        pipeline.execute((peerId, message) -> {
+            peer.peerConnection.setDescription(peer.sdp.begin(SignalingTimings.Stage.SET_REMOTE, message.type));
+            peer.peerConnection.createAnswer(peer.sdp.begin(SignalingTimings.Stage.CREATE_ANSWER, message.type));
+        }, "peer-1", message("offer"));
+        assertEquals(2, peer.sdp.pending());
+
+        now[0] += 2000;
+        peer.peerConnection.complete(true);
+        now[0] += 8000;
+        peer.peerConnection.complete(true);
+        // onCreateSuccess queued the local description
+        assertEquals(1, peer.peerConnection.pending());
+        now[0] += 1000;
+        peer.peerConnection.complete(true);
+
+        assertEquals(0, peer.sdp.pending());
+        assertEquals(2000, timings.percentile("offer", SignalingTimings.Stage.SET_REMOTE, 50));
+        assertEquals(10000, timings.percentile("offer", SignalingTimings.Stage.CREATE_ANSWER, 50));
+        assertEquals(1000, timings.percentile("offer", SignalingTimings.Stage.SET_LOCAL, 50));
+        assertArrayEquals(new Object[]{"set", "created answer", "set"}, peer.callbacks.toArray());
+    }
+
+    @Test
+    public void operationsOutsideCommandsCountAsLocal() {
+        FakePeer peer = new FakePeer();
+        peer.peerConnection.createOffer(peer.sdp.begin(SignalingTimings.Stage.CREATE_OFFER, SignalingTimings.Local));
+        now[0] += 4000;
+        peer.peerConnection.complete(true);
+        peer.peerConnection.complete(true);
+        assertEquals(1, timings.count(SignalingTimings.Local, SignalingTimings.Stage.CREATE_OFFER));
+        assertEquals(1, timings.count(SignalingTimings.Local, SignalingTimings.Stage.SET_LOCAL));
+        assertEquals(4000, timings.percentile(SignalingTimings.Local, SignalingTimings.Stage.CREATE_OFFER, 99));
+    }
+
+    @Test
+    public void failuresAreTimedSeparately() {
+        FakePeer peer = new FakePeer();
+        peer.peerConnection.setDescription(peer.sdp.begin(SignalingTimings.Stage.SET_REMOTE, "answer"));
+        now[0] += 300;
+        peer.peerConnection.complete(false);
+        assertEquals(0, timings.count("answer", SignalingTimings.Stage.SET_REMOTE));
+        assertEquals(1, timings.count("answer", SignalingTimings.Stage.SDP_FAILURE));
+        assertEquals(300, timings.percentile("answer", SignalingTimings.Stage.SDP_FAILURE, 50));
+        assertEquals("set failed", peer.callbacks.get(0));
+    }
+
+    @Test
+    public void callbacksWithoutPendingOperationsAreStillDelivered() {
+        FakePeer peer = new FakePeer();
+        peer.sdp.onSetSuccess();
+        assertEquals(1, peer.callbacks.size());
+        assertTrue(timings.types().isEmpty());
+    }
+
+    @Test
+    public void lostCallbacksDoNotGrowThePendingQueue() {
+        FakePeer peer = new FakePeer();
+        for (int i = 0; i < TimedSdpObserver.MaxPending + 5; i++) {
+            peer.sdp.begin(SignalingTimings.Stage.SET_REMOTE, "answer");
+        }
+        assertEquals(TimedSdpObserver.MaxPending, peer.sdp.pending());
+    }
+
+    @Test
+    public void listenerSeesEveryTiming() {
+        List<String> seen = new ArrayList<>();
+        timings.setListener((type, stage, nanos) -> seen.add(type + " " + stage + " " + nanos));
+        timings.record("candidate", SignalingTimings.Stage.DECODE, 42);
+        timings.record(null, SignalingTimings.Stage.CREATE_OFFER, 7);
+        timings.setListener(null);
+        timings.record("candidate", SignalingTimings.Stage.DECODE, 43);
+        assertArrayEquals(new Object[]{"candidate DECODE 42", "local CREATE_OFFER 7"}, seen.toArray());
+        assertEquals(2, timings.count("candidate", SignalingTimings.Stage.DECODE));
+    }
+
+    @Test
+    public void reportListsRecordedStagesOnly() {
+        timings.record("offer", SignalingTimings.Stage.DISPATCH, 5000);
+        timings.record("answer", SignalingTimings.Stage.DECODE, 2000);
+        String report = timings.report();
+        assertEquals("answer DECODE n=1 p50=2us p99=2us max=2us\noffer DISPATCH n=1 p50=5us p99=5us max=5us\n", report);
+    }
+
+    @Test
+    public void timesEveryDispatchedCommand() throws JSONException {
+        SignalingTimings timings = new SignalingTimings();
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.add(timings);
+        Command command = (peerId, message) -> { };
+        SignalingMessage message = message("candidate");
+        int iterations = 2000;
+        for (int i = 0; i < iterations; i++) {
+            pipeline.execute(command, "peer-1", message);
+        }
+        assertEquals(iterations, timings.count("candidate", SignalingTimings.Stage.DISPATCH));
+    }
+}
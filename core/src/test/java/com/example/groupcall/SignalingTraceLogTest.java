@@ -0,0 +1,98 @@
+package com.example.groupcall;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SignalingTraceLogTest {
+
+    private final long[] now = {1000};
+
+    @Test
+    public void traceReplaysInOrder() throws IOException, JSONException {
+        StringWriter out = new StringWriter();
+        SignalingTraceLog trace = new SignalingTraceLog(out, () -> now[0]);
+        now[0] += 10;
+        trace.onInbound("{\"type\":\"offer\",\"from\":\"a\"}");
+        now[0] += 20;
+        trace.onTiming("offer", SignalingTimings.Stage.DECODE, 1500);
+        trace.close();
+
+        final List<String> replayed = new ArrayList<>();
+        SignalingTraceLog.replay(new StringReader(out.toString()), new SignalingTraceLog.Replay() {
+            @Override
+            public void onInbound(long atNanos, String frame) {
+                replayed.add(atNanos + " " + frame);
+            }
+
+            @Override
+            public void onTiming(long atNanos, String type, SignalingTimings.Stage stage, long nanos) {
+                replayed.add(atNanos + " " + type + " " + stage + " " + nanos);
+            }
+        });
+        assertArrayEquals(new Object[]{"10 {\"type\":\"offer\",\"from\":\"a\"}", "30 offer DECODE 1500"}, replayed.toArray());
+    }
+
+    @Test
+    public void replayRebuildsTheHistograms() throws IOException, JSONException {
+        StringWriter out = new StringWriter();
+        SignalingTimings timings = new SignalingTimings(() -> now[0]);
+        timings.setListener(new SignalingTraceLog(out, () -> now[0]));
+        for (int i = 1; i <= 100; i++) {
+            timings.record("candidate", SignalingTimings.Stage.DISPATCH, i * 1000);
+        }
+        timings.record("offer", SignalingTimings.Stage.SET_REMOTE, 250000);
+
+        SignalingTimings replayed = SignalingTraceLog.replayTimings(new StringReader(out.toString()));
+        assertEquals(timings.types(), replayed.types());
+        assertEquals(timings.report(), replayed.report());
+        assertEquals(100, replayed.count("candidate", SignalingTimings.Stage.DISPATCH));
+    }
+
+    @Test
+    public void closedTraceIgnoresFurtherWrites() {
+        StringWriter out = new StringWriter();
+        SignalingTraceLog trace = new SignalingTraceLog(out, () -> now[0]);
+        trace.close();
+        trace.onInbound("late");
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    public void writeErrorsStopTheTrace() {
+        final int[] writes = {0};
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                writes[0]++;
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        SignalingTraceLog trace = new SignalingTraceLog(failing, () -> now[0]);
+        trace.onInbound("first");
+        trace.onInbound("second");
+        assertEquals(1, writes[0]);
+    }
+
+    @Test(expected = JSONException.class)
+    public void unknownStagesAreRejected() throws IOException, JSONException {
+        String line = "{\"t\":1,\"type\":\"offer\",\"stage\":\"TELEPORT\",\"ns\":5}\n";
+        SignalingTraceLog.replayTimings(new StringReader(line));
+    }
+}
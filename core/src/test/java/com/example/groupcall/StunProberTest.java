@@ -0,0 +1,130 @@
+package com.example.groupcall;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StunProberTest {
+
+    /** Answers binding requests on loopback after {@code delayMs}, optionally with junk first. */
+    private static final class LoopbackStunResponder implements Runnable {
+        final DatagramSocket socket;
+        final Thread thread = new Thread(this, "stun-responder");
+        volatile long delayMs;
+        volatile boolean sendJunkFirst;
+        volatile boolean silent;
+
+        LoopbackStunResponder() throws SocketException {
+            socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            thread.start();
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[512];
+            while (!socket.isClosed()) {
+                DatagramPacket request = new DatagramPacket(buffer, buffer.length);
+                try {
+                    socket.receive(request);
+                    if (silent || StunProber.readShort(buffer, 0) != StunProber.BindingRequest) {
+                        continue;
+                    }
+                    Thread.sleep(delayMs);
+                    byte[] response = new byte[StunProber.HeaderLength];
+                    System.arraycopy(buffer, 0, response, 0, StunProber.HeaderLength);
+                    if (sendJunkFirst) {
+                        // right type, someone else's transaction
+                        byte[] junk = response.clone();
+                        StunProber.writeShort(junk, 0, StunProber.BindingSuccess);
+                        junk[19] ^= 1;
+                        socket.send(new DatagramPacket(junk, junk.length, request.getSocketAddress()));
+                    }
+                    StunProber.writeShort(response, 0, StunProber.BindingSuccess);
+                    socket.send(new DatagramPacket(response, response.length, request.getSocketAddress()));
+                } catch (IOException | InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            socket.close();
+        }
+    }
+
+    private LoopbackStunResponder responder;
+    private final StunProber prober = new StunProber(300, new Random(3));
+
+    @Before
+    public void setUp() throws SocketException {
+        responder = new LoopbackStunResponder();
+    }
+
+    @After
+    public void tearDown() {
+        responder.close();
+    }
+
+    @Test
+    public void measuresRoundTripToResponder() throws IOException {
+        responder.delayMs = 40;
+        long rtt = prober.rttMs(InetAddress.getLoopbackAddress(), responder.port());
+        assertTrue("rtt " + rtt, rtt >= 40 && rtt < 300);
+    }
+
+    @Test
+    public void probesServerConfigByUri() {
+        assertTrue(prober.rttMs(new IceServerConfig("stun:127.0.0.1:" + responder.port())) >= 0);
+    }
+
+    @Test
+    public void ignoresResponsesToOtherTransactions() throws IOException {
+        responder.sendJunkFirst = true;
+        assertTrue(prober.rttMs(InetAddress.getLoopbackAddress(), responder.port()) >= 0);
+    }
+
+    @Test
+    public void silentServerIsUnreachable() throws IOException {
+        responder.silent = true;
+        long start = System.nanoTime();
+        assertEquals(-1, prober.rttMs(InetAddress.getLoopbackAddress(), responder.port()));
+        assertTrue((System.nanoTime() - start) / 1000000 >= 290);
+    }
+
+    @Test
+    public void slowServerIsUnreachable() throws IOException {
+        responder.delayMs = 500;
+        assertEquals(-1, prober.rttMs(InetAddress.getLoopbackAddress(), responder.port()));
+    }
+
+    @Test
+    public void unresolvableHostIsUnreachable() {
+        assertEquals(-1, prober.rttMs(new IceServerConfig("stun:host.invalid:3478")));
+    }
+
+    @Test
+    public void rejectsMalformedResponses() {
+        byte[] transaction = new byte[12];
+        byte[] message = new byte[StunProber.HeaderLength];
+        StunProber.writeShort(message, 0, StunProber.BindingSuccess);
+        StunProber.writeInt(message, 4, StunProber.MagicCookie);
+        assertTrue(StunProber.isSuccessFor(message, message.length, transaction));
+        assertFalse(StunProber.isSuccessFor(message, message.length - 1, transaction));
+        StunProber.writeInt(message, 4, 0);
+        assertFalse(StunProber.isSuccessFor(message, message.length, transaction));
+        assertEquals(0x2112A442, StunProber.readInt(new byte[]{0x21, 0x12, (byte) 0xA4, 0x42}, 0));
+    }
+}
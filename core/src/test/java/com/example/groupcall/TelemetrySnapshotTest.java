@@ -0,0 +1,105 @@
+package com.example.groupcall;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TelemetrySnapshotTest {
+
+    private static TelemetryCollector collector() {
+        TelemetryCollector collector = new TelemetryCollector(16);
+        PeerTelemetry a = collector.register("a");
+        for (int i = 1; i <= 20; i++) {
+            a.record(TelemetrySnapshot.Metric.RTT_MS, i * 10);
+        }
+        a.record(TelemetrySnapshot.Metric.SEND_KBPS, 3000000000L);
+        a.setIceState(IceConnectionMonitor.State.CONNECTED);
+        collector.register("b").record(TelemetrySnapshot.Metric.JITTER_MS, 7);
+        return collector;
+    }
+
+    @Test
+    public void registerReturnsTheSamePeer() {
+        TelemetryCollector collector = new TelemetryCollector(16);
+        assertSame(collector.register("a"), collector.register("a"));
+        collector.remove("a");
+        assertEquals(0, collector.size());
+    }
+
+    @Test
+    public void jsonListsOnlyMetricsWithSamples() throws Exception {
+        TelemetrySnapshot snapshot = collector().snapshot(1234);
+        JSONObject json = snapshot.toJson();
+        assertEquals(1234, json.getLong("t"));
+        assertEquals(2, json.getJSONArray("peers").length());
+        for (int i = 0; i < 2; i++) {
+            JSONObject peer = json.getJSONArray("peers").getJSONObject(i);
+            JSONObject metrics = peer.getJSONObject("metrics");
+            if (peer.getString("id").equals("a")) {
+                assertEquals("CONNECTED", peer.getString("ice"));
+                assertEquals(16, metrics.getJSONObject("rtt_ms").getLong("n"));
+                assertEquals(200, metrics.getJSONObject("rtt_ms").getLong("max"));
+                assertEquals(50, metrics.getJSONObject("rtt_ms").getLong("min"));
+                assertFalse(metrics.has("jitter_ms"));
+            } else {
+                assertEquals(1, metrics.length());
+                assertTrue(metrics.has("jitter_ms"));
+            }
+        }
+    }
+
+    @Test
+    public void binaryRoundTrip() throws IOException {
+        TelemetrySnapshot snapshot = collector().snapshot(1234);
+        byte[] record = snapshot.toBytes();
+        TelemetrySnapshot read = TelemetrySnapshot.fromBytes(record);
+        assertEquals(1234, read.timestampMs);
+        assertEquals(2, read.peers.size());
+        for (int i = 0; i < 2; i++) {
+            TelemetrySnapshot.PeerStats expected = snapshot.peers.get(i);
+            TelemetrySnapshot.PeerStats actual = read.peers.get(i);
+            assertEquals(expected.peerId, actual.peerId);
+            assertEquals(expected.iceState, actual.iceState);
+            TelemetrySnapshot.Summary rtt = actual.get(TelemetrySnapshot.Metric.RTT_MS);
+            assertEquals(expected.get(TelemetrySnapshot.Metric.RTT_MS).p95, rtt.p95);
+            assertEquals(expected.get(TelemetrySnapshot.Metric.RTT_MS).mean, rtt.mean, 1e-3);
+        }
+        TelemetrySnapshot.PeerStats a = read.peers.get(0).peerId.equals("a") ? read.peers.get(0) : read.peers.get(1);
+        // clamped to an int
+        assertEquals(Integer.MAX_VALUE, a.get(TelemetrySnapshot.Metric.SEND_KBPS).last);
+        // header, then per peer id, ice state, metric count and 29 bytes per metric with samples
+        assertEquals(11 + (3 + 11 + 1 + 2 * 29) + (3 + 12 + 1 + 29), record.length);
+    }
+
+    @Test
+    public void rejectsOtherVersionsAndTruncation() {
+        byte[] record = collector().snapshot(1).toBytes();
+        byte[] version = record.clone();
+        version[0] = 9;
+        for (byte[] bad : new byte[][]{version, Arrays.copyOf(record, record.length - 1)}) {
+            try {
+                TelemetrySnapshot.fromBytes(bad);
+                fail();
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void publishesOnlyToListeners() {
+        TelemetryCollector collector = collector();
+        assertNull(collector.publish(1));
+        TelemetrySnapshot[] received = new TelemetrySnapshot[1];
+        TelemetryCollector.Listener listener = snapshot -> received[0] = snapshot;
+        collector.addListener(listener);
+        TelemetrySnapshot published = collector.publish(2);
+        assertSame(published, received[0]);
+        assertEquals(2, published.peers.size());
+        collector.removeListener(listener);
+        assertNull(collector.publish(3));
+    }
+}
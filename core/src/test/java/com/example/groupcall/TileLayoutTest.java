@@ -0,0 +1,115 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TileLayoutTest {
+
+    private static TileLayout grid(int participants) {
+        TileLayout layout = new TileLayout(TileLayout.Mode.GRID);
+        for (int i = 1; i <= participants; i++) {
+            layout.add(i);
+        }
+        return layout;
+    }
+
+    // area covered by tiles, counted per percent cell, failing on overlap
+    private static int coveredCells(Map<Integer, TileLayout.Tile> tiles) {
+        boolean[][] cells = new boolean[100][100];
+        int covered = 0;
+        for (TileLayout.Tile tile : tiles.values()) {
+            assertTrue(tile.toString(), tile.x >= 0 && tile.y >= 0 && tile.x + tile.width <= 100 && tile.y + tile.height <= 100);
+            for (int x = tile.x; x < tile.x + tile.width; x++) {
+                for (int y = tile.y; y < tile.y + tile.height; y++) {
+                    assertFalse("overlap at " + x + "," + y, cells[x][y]);
+                    cells[x][y] = true;
+                    covered++;
+                }
+            }
+        }
+        return covered;
+    }
+
+    @Test
+    public void singleParticipantFillsScreen() {
+        assertEquals(new TileLayout.Tile(0, 0, 100, 100), grid(1).tile(1));
+    }
+
+    @Test
+    public void fullGridsCoverScreenWithoutOverlap() {
+        for (int n : new int[]{1, 2, 4, 6, 9, 12, 16}) {
+            TileLayout layout = grid(n);
+            assertEquals(n, layout.tiles().size());
+            int columns = (int) Math.ceil(Math.sqrt(n));
+            if (n % columns == 0) {
+                assertEquals("n=" + n, 100 * 100, coveredCells(layout.tiles()));
+            } else {
+                coveredCells(layout.tiles());
+            }
+        }
+    }
+
+    @Test
+    public void incompleteLastRowIsCentred() {
+        TileLayout layout = grid(3);
+        assertEquals(new TileLayout.Tile(0, 0, 50, 50), layout.tile(1));
+        assertEquals(new TileLayout.Tile(50, 0, 50, 50), layout.tile(2));
+        assertEquals(new TileLayout.Tile(25, 50, 50, 50), layout.tile(3));
+    }
+
+    @Test
+    public void tilesStayWithinScreenUpToManyParticipants() {
+        for (int n = 1; n <= 25; n++) {
+            TileLayout layout = grid(n);
+            assertEquals(n, layout.tiles().size());
+            coveredCells(layout.tiles());
+        }
+    }
+
+    @Test
+    public void relayoutsOnlyWhenParticipantsChange() {
+        TileLayout layout = grid(3);
+        assertEquals(3, layout.layoutCount());
+        assertFalse(layout.add(2));
+        assertFalse(layout.remove(7));
+        assertFalse(layout.setMode(TileLayout.Mode.GRID));
+        // speaker changes do not move tiles in a grid
+        assertFalse(layout.setSpeaker(2));
+        assertEquals(3, layout.layoutCount());
+
+        assertTrue(layout.remove(1));
+        assertNull(layout.tile(1));
+        assertEquals(new TileLayout.Tile(0, 0, 50, 100), layout.tile(2));
+        assertEquals(4, layout.layoutCount());
+    }
+
+    @Test
+    public void speakerLayoutPutsSpeakerOnTop() {
+        TileLayout layout = grid(4);
+        assertTrue(layout.setMode(TileLayout.Mode.SPEAKER));
+        // first participant until someone speaks
+        assertEquals(new TileLayout.Tile(0, 0, 100, 75), layout.tile(1));
+        assertTrue(layout.setSpeaker(3));
+        assertEquals(new TileLayout.Tile(0, 0, 100, 75), layout.tile(3));
+        for (int other : new int[]{1, 2, 4}) {
+            assertEquals(75, layout.tile(other).y);
+            assertEquals(TileLayout.SpeakerStripPercent, layout.tile(other).height);
+        }
+        coveredCells(layout.tiles());
+        assertFalse(layout.setSpeaker(42));
+
+        assertTrue(layout.remove(3));
+        assertEquals(-1, layout.speaker());
+        assertEquals(new TileLayout.Tile(0, 0, 100, 75), layout.tile(1));
+    }
+
+    @Test
+    public void speakerLayoutWithOneParticipantFillsScreen() {
+        TileLayout layout = new TileLayout(TileLayout.Mode.SPEAKER);
+        layout.add(5);
+        assertEquals(new TileLayout.Tile(0, 0, 100, 100), layout.tile(5));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.groupcall;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class VideoLayersTest {
+    private final VideoLayers layers = new VideoLayers(1280, 720, 30, VideoLayers.DefaultCount);
+
+    @Test
+    public void ladderHalvesEachLayer() {
+        assertEquals(1280, layers.width(VideoLayers.Full));
+        assertEquals(640, layers.width(VideoLayers.Half));
+        assertEquals(360, layers.height(VideoLayers.Half));
+        assertEquals(320, layers.width(VideoLayers.Quarter));
+        assertEquals(180, layers.height(VideoLayers.Quarter));
+        assertEquals(30, layers.fps(VideoLayers.Half));
+        assertEquals(15, layers.fps(VideoLayers.Quarter));
+    }
+
+    @Test
+    public void picksSmallestLayerCoveringTile() {
+        assertEquals(VideoLayers.Quarter, layers.select(320, 180));
+        assertEquals(VideoLayers.Half, layers.select(321, 180));
+        assertEquals(VideoLayers.Half, layers.select(640, 360));
+        assertEquals(VideoLayers.Full, layers.select(641, 100));
+        assertEquals(VideoLayers.Full, layers.select(4000, 4000));
+    }
+
+    @Test
+    public void viewportPercentagesMapToLayers() {
+        // full screen remote tile
+        assertEquals(VideoLayers.Full, layers.selectForViewport(1280, 720, 100, 100));
+        // the 25% local-preview sized tile
+        assertEquals(VideoLayers.Quarter, layers.selectForViewport(1280, 720, 25, 25));
+        // half of the screen, e.g. a two-up grid
+        assertEquals(VideoLayers.Half, layers.selectForViewport(1280, 720, 50, 50));
+        assertEquals(VideoLayers.Full, layers.selectForViewport(1280, 720, 50, 51));
+        // hidden tiles and out of range values are clamped
+        assertEquals(VideoLayers.Quarter, layers.selectForViewport(1280, 720, 0, 0));
+        assertEquals(VideoLayers.Full, layers.selectForViewport(1280, 720, 150, 150));
+    }
+
+    @Test
+    public void singleLayerLadderAlwaysSelectsFull() {
+        VideoLayers single = new VideoLayers(640, 480, 30, 1);
+        assertEquals(VideoLayers.Full, single.select(1, 1));
+        assertEquals(30, single.fps(VideoLayers.Full));
+    }
+
+    @Test
+    public void largestRequestedLayerWins() {
+        LayerSubscriptions subscriptions = new LayerSubscriptions(VideoLayers.Full);
+        assertTrue(subscriptions.request("a", VideoLayers.Quarter));
+        assertEquals(VideoLayers.Quarter, subscriptions.current());
+        assertTrue(subscriptions.request("b", VideoLayers.Half));
+        assertFalse(subscriptions.request("a", VideoLayers.Quarter));
+        assertEquals(VideoLayers.Half, subscriptions.current());
+
+        assertTrue(subscriptions.remove("b"));
+        assertEquals(VideoLayers.Quarter, subscriptions.current());
+        assertFalse(subscriptions.remove("unknown"));
+        assertTrue(subscriptions.remove("a"));
+        assertEquals(VideoLayers.Full, subscriptions.current());
+    }
+}